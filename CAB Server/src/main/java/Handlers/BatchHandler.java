@@ -0,0 +1,248 @@
+package Handlers;
+
+import Scheduler.SearchExecutor;
+import Scheduler.SharedTerm;
+import Utilities.Json;
+import Utilities.Metrics;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler for generating schedules for many students at once, as advisors do for a cohort. The
+ * POST body names one term and a list of students, each with the same typed fields as a /generate
+ * JSON body (see {@link GenerateRequest}), except the term, plus an optional {@code id}:
+ *
+ * <pre>
+ * {"term": "202420",
+ *  "students": [{"id": "s1", "classes": 4, "taken": ["CSCI 0150"], "remaining": ["CSCI 0200"],
+ *                ...},
+ *               ...]}
+ * </pre>
+ *
+ * The term's catalog, conflict table and availability-filtered course pools are built once and
+ * shared by every student's search, and the searches run in parallel on the search pool. Results
+ * are streamed back as newline-delimited JSON in the order the searches finish, one line per
+ * student: {@code {"id": "s1", "index": 0, "result": {...}}}, where the result has the same shape
+ * as a /generate response.
+ */
+public class BatchHandler implements Route {
+
+  /** Largest number of students accepted in one batch */
+  static final int MAX_STUDENTS = Integer.getInteger("cab.batch.maxStudents", 1000);
+
+  /** Searches from one batch queued or running at once; one per worker by default */
+  static final int PARALLELISM =
+      Integer.getInteger("cab.batch.parallelism", SearchExecutor.THREADS);
+
+  /** Students searched through this endpoint, exported through /metrics */
+  private static final Metrics.Counter STUDENTS =
+      Metrics.counter("cab_batch_students_total", "Students searched through /generate/batch");
+
+  /** JSON adapter for error responses */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /** The request body: the term and each student's constraints */
+  static final class Body {
+    /** Field names, in the order {@link #read} switches on them */
+    private static final JsonReader.Options NAMES = JsonReader.Options.of("term", "students");
+
+    /** Term every student is searched in */
+    String term;
+    /** Each student's constraints, or null if absent */
+    List<GenerateRequest> students;
+
+    /**
+     * Reads a request body, binding each student as a {@link GenerateRequest}.
+     *
+     * @param source The body
+     * @return The body
+     * @throws IOException If the body cannot be read or is not a JSON object
+     * @throws JsonDataException If a field has the wrong type, naming its path
+     */
+    static Body read(BufferedSource source) throws IOException {
+      try (JsonReader reader = JsonReader.of(source)) {
+        Body body = new Body();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          int field = reader.selectName(NAMES);
+          if (field == -1) {
+            reader.skipName();
+            reader.skipValue();
+            continue;
+          }
+          if (reader.peek() == JsonReader.Token.NULL) {
+            reader.skipValue();
+            continue;
+          }
+          switch (field) {
+            case 0:
+              body.term = reader.nextString();
+              break;
+            case 1:
+              body.students = new ArrayList<>();
+              reader.beginArray();
+              while (reader.hasNext()) body.students.add(GenerateRequest.read(reader));
+              reader.endArray();
+              break;
+            default:
+              throw new AssertionError(field);
+          }
+        }
+        reader.endObject();
+        return body;
+      }
+    }
+  }
+
+  /**
+   * Handles a batch generation request.
+   *
+   * @param req The HTTP request whose body lists the students
+   * @param res The HTTP response object
+   * @return An empty body once the results are streamed, or a JSON string with error information
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    Body body;
+    try {
+      body = Body.read(Okio.buffer(Okio.source(req.raw().getInputStream())));
+    } catch (IOException | JsonDataException e) {
+      return invalid(res, "The request body must be a JSON object: " + e.getMessage());
+    }
+    if (body.term == null || body.students == null) {
+      return invalid(res, "The request body must give a term and a list of students");
+    }
+    String term = body.term;
+    List<GenerateRequest> students = body.students;
+    if (students.isEmpty() || students.size() > MAX_STUDENTS) {
+      return invalid(res, "A batch must have between 1 and " + MAX_STUDENTS + " students");
+    }
+
+    // Parse every student up front; invalid ones are answered without searching
+    int n = students.size();
+    List<String> ids = new ArrayList<>(n);
+    List<ScheduleErrorChecker.Params> params = new ArrayList<>(n);
+    List<List<String>> invalid = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      GenerateRequest student = students.get(i);
+      ids.add(student.id != null ? student.id : String.valueOf(i));
+      student.term = term;
+      List<String> errors = new ArrayList<>();
+      ScheduleErrorChecker.Params p = ScheduleErrorChecker.fromRequest(student, null, errors);
+      if (errors.isEmpty()) ScheduleErrorChecker.validatePreFilter(p, errors);
+      params.add(errors.isEmpty() ? p : null);
+      invalid.add(errors);
+    }
+
+    // Build the shared structures once for every student's search
+    SharedTerm shared;
+    try {
+      shared = SharedTerm.load(term);
+    } catch (IOException e) {
+      res.status(500);
+      return JSON.toJson(
+          Map.of("success", false, "errors", List.of("Could not load term " + term)));
+    }
+
+    AtomicBoolean stopped = new AtomicBoolean();
+    List<Integer> toSearch = new ArrayList<>();
+    List<Callable<SearchResponse>> searches = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      ScheduleErrorChecker.Params p = params.get(i);
+      if (p == null) continue;
+      toSearch.add(i);
+      // Each student's budget starts when its search does, not when the batch arrived
+      searches.add(
+          () -> ScheduleHandler.search(p, System.nanoTime(), stopped::get, null, 0, shared));
+    }
+
+    res.status(200);
+    res.type("application/x-ndjson");
+    BufferedSink out = Okio.buffer(Okio.sink(res.raw().getOutputStream()));
+    try {
+      for (int i = 0; i < n; i++) {
+        if (params.get(i) == null) {
+          writeLine(out, ids.get(i), i, SearchResponse.failure(invalid.get(i)));
+        }
+      }
+      SearchExecutor.runBatch(
+          ScheduleHandler.clientKey(req),
+          searches,
+          PARALLELISM,
+          (k, result, failure) -> {
+            int i = toSearch.get(k);
+            STUDENTS.inc();
+            try {
+              writeLine(
+                  out,
+                  ids.get(i),
+                  i,
+                  failure == null ? result : SearchResponse.failure(List.of(message(failure))));
+            } catch (IOException e) {
+              // Stop the running searches before the batch gives up on them
+              stopped.set(true);
+              throw e;
+            }
+          });
+    } catch (SearchExecutor.RejectedException e) {
+      // Nothing has been searched; refuse outright unless invalid students were already answered
+      if (toSearch.size() == n) return ScheduleHandler.rejected(res, e);
+      writeLine(out, null, -1, SearchResponse.failure(List.of(e.getMessage())));
+    } catch (IOException e) {
+      // The client went away; stop the searches still running for it
+      stopped.set(true);
+    }
+    return "";
+  }
+
+  /**
+   * Writes one student's result as a line of JSON.
+   *
+   * @param out The response stream
+   * @param id The student's ID, or null for a batch-wide error
+   * @param index The student's position in the request, or -1 for a batch-wide error
+   * @param response The student's search response
+   * @throws IOException If writing to the client fails
+   */
+  private static void writeLine(BufferedSink out, String id, int index, SearchResponse response)
+      throws IOException {
+    JsonWriter w = JsonWriter.of(out);
+    w.beginObject();
+    if (id != null) {
+      w.name("id").value(id);
+      w.name("index").value(index);
+    }
+    w.name("result");
+    try (BufferedSink value = w.valueSink()) {
+      response.writeTo(value.outputStream());
+    }
+    w.endObject();
+    w.flush();
+    out.writeByte('\n');
+    out.flush();
+  }
+
+  private static String message(Exception e) {
+    return e instanceof SearchExecutor.RejectedException
+        ? e.getMessage()
+        : "Schedule generation failed: " + e.getMessage();
+  }
+
+  private static String invalid(Response res, String error) {
+    res.status(400);
+    return JSON.toJson(Map.of("success", false, "errors", List.of(error)));
+  }
+}
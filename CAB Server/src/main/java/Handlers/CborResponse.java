@@ -0,0 +1,93 @@
+package Handlers;
+
+import Scheduler.ScheduleGenerator.Result;
+import Scheduler.ScheduleGenerator.Schedule;
+import Utilities.CborWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Binary form of the /generate response, sent as CBOR to clients whose {@code Accept} header lists
+ * {@code application/cbor}. It uses the same dictionary encoding as {@link CompactResponse}, with
+ * each schedule packed into a two-element array of its score as a 32-bit float and its courses'
+ * dictionary indices:
+ *
+ * <pre>
+ * {"success": true, "errors": [], "schedulesCount": 2, "truncated": false,
+ *  "courses": [{"code": "CSCI 0200", "title": "...", "meets": "MWF 10-10:50a", "writ": false}, ...],
+ *  "schedules": [[95.0, [0, 3, 7, 12]], ...]}
+ * </pre>
+ */
+public final class CborResponse {
+
+  private CborResponse() {}
+
+  /**
+   * Writes a generation result as CBOR.
+   *
+   * @param result The schedule generation result
+   * @param out The stream to write to; flushed but not closed
+   * @throws IOException If writing to the stream fails
+   */
+  public static void write(Result result, OutputStream out) throws IOException {
+    // Number the distinct courses in order of first appearance
+    Map<Map<String, Object>, Integer> index = new IdentityHashMap<>();
+    List<Map<String, Object>> dictionary = new ArrayList<>();
+    for (Schedule schedule : result.schedules) {
+      for (Map<String, Object> c : schedule.courses) {
+        if (index.putIfAbsent(c, dictionary.size()) == null) dictionary.add(c);
+      }
+    }
+
+    BufferedSink sink = Okio.buffer(Okio.sink(out));
+    CborWriter w = new CborWriter(sink);
+    w.beginMap(6);
+    w.value("success").value(result.errors.isEmpty());
+    w.value("errors");
+    writeStrings(w, result.errors);
+    w.value("schedulesCount").value((long) result.schedules.size());
+    w.value("truncated").value(result.truncated);
+
+    w.value("courses").beginArray(dictionary.size());
+    for (Map<String, Object> c : dictionary) {
+      w.beginMap(4);
+      w.value("code").value((String) c.get("code"));
+      w.value("title").value((String) c.get("title"));
+      w.value("meets").value((String) c.get("meets"));
+      w.value("writ").value((Boolean) c.get("writ"));
+    }
+
+    w.value("schedules").beginArray(result.schedules.size());
+    for (Schedule schedule : result.schedules) {
+      w.beginArray(2).value((float) schedule.score);
+      w.beginArray(schedule.courses.size());
+      for (Map<String, Object> c : schedule.courses) w.value((long) index.get(c));
+    }
+    sink.flush();
+  }
+
+  /**
+   * Writes a failed request's errors as CBOR: {@code {"success": false, "errors": [...]}}.
+   *
+   * @param errors The reasons the search could not run
+   * @param out The stream to write to; flushed but not closed
+   * @throws IOException If writing to the stream fails
+   */
+  static void writeFailure(List<String> errors, OutputStream out) throws IOException {
+    BufferedSink sink = Okio.buffer(Okio.sink(out));
+    CborWriter w = new CborWriter(sink);
+    w.beginMap(2);
+    w.value("success").value(false);
+    w.value("errors");
+    writeStrings(w, errors);
+    sink.flush();
+  }
+
+  private static void writeStrings(CborWriter w, List<String> values) throws IOException {
+    w.beginArray(values.size());
+    for (String v : values) w.value(v);
+  }
+}
@@ -0,0 +1,103 @@
+package Handlers;
+
+import Scheduler.ScheduleGenerator.Result;
+import Scheduler.ScheduleGenerator.Schedule;
+import Utilities.TermCatalog;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * Dictionary-encoded form of the /generate response, selected with {@code format=compact}. Each
+ * distinct course is sent once in a {@code courses} dictionary, and each schedule lists only its
+ * score and the dictionary indices of its courses:
+ *
+ * <pre>
+ * {"success":true,"errors":[],"schedulesCount":2,"truncated":false,"format":"compact",
+ *  "courses":[{"code":"CSCI 0200","title":"...","meets":"MWF 10-10:50a","writ":false},...],
+ *  "schedules":[{"score":95.0,"courses":[0,3,7,12]},...]}
+ * </pre>
+ *
+ * Dictionary entries are the course fragments pre-serialized at catalog load, and the body is
+ * written straight to the output stream.
+ */
+public final class CompactResponse {
+
+  /** Constant pieces of the output, encoded once */
+  private static final ByteString SUCCESS = ByteString.encodeUtf8("{\"success\":");
+
+  private static final ByteString ERRORS = ByteString.encodeUtf8(",\"errors\":");
+  private static final ByteString COUNT = ByteString.encodeUtf8(",\"schedulesCount\":");
+  private static final ByteString TRUNCATED = ByteString.encodeUtf8(",\"truncated\":");
+  private static final ByteString DICTIONARY =
+      ByteString.encodeUtf8(",\"format\":\"compact\",\"courses\":[");
+  private static final ByteString SCHEDULES = ByteString.encodeUtf8("],\"schedules\":[");
+  private static final ByteString SCORE = ByteString.encodeUtf8("{\"score\":");
+  private static final ByteString COURSES = ByteString.encodeUtf8(",\"courses\":[");
+  private static final ByteString END_SCHEDULE = ByteString.encodeUtf8("]}");
+
+  private CompactResponse() {}
+
+  /**
+   * Writes a generation result in the compact format.
+   *
+   * @param result The schedule generation result
+   * @param out The stream to write to; flushed but not closed
+   * @throws IOException If writing to the stream fails
+   */
+  public static void write(Result result, OutputStream out) throws IOException {
+    // Number the distinct courses in order of first appearance
+    Map<Map<String, Object>, Integer> index = new IdentityHashMap<>();
+    List<Map<String, Object>> dictionary = new ArrayList<>();
+    for (Schedule schedule : result.schedules) {
+      for (Map<String, Object> c : schedule.courses) {
+        if (index.putIfAbsent(c, dictionary.size()) == null) dictionary.add(c);
+      }
+    }
+
+    BufferedSink sink = Okio.buffer(Okio.sink(out));
+    sink.write(SUCCESS).writeUtf8(result.errors.isEmpty() ? "true" : "false");
+    sink.write(ERRORS);
+    FullResponse.writeStrings(sink, result.errors);
+    sink.write(COUNT).writeDecimalLong(result.schedules.size());
+    sink.write(TRUNCATED).writeUtf8(result.truncated ? "true" : "false");
+
+    sink.write(DICTIONARY);
+    for (int i = 0; i < dictionary.size(); i++) {
+      if (i > 0) sink.writeByte(',');
+      sink.write(TermCatalog.fragment(dictionary.get(i)));
+    }
+
+    sink.write(SCHEDULES);
+    for (int i = 0; i < result.schedules.size(); i++) {
+      Schedule schedule = result.schedules.get(i);
+      if (i > 0) sink.writeByte(',');
+      sink.write(SCORE).writeUtf8(Double.toString(schedule.score));
+      sink.write(COURSES);
+      for (int j = 0; j < schedule.courses.size(); j++) {
+        if (j > 0) sink.writeByte(',');
+        sink.writeDecimalLong(index.get(schedule.courses.get(j)));
+      }
+      sink.write(END_SCHEDULE);
+    }
+    sink.write(END_SCHEDULE);
+    sink.flush();
+  }
+
+  /**
+   * Serializes a generation result in the compact format.
+   *
+   * @param result The schedule generation result
+   * @return The JSON response body
+   * @throws IOException Never, as the JSON is written to memory
+   */
+  public static String toJson(Result result) throws IOException {
+    Buffer buffer = new Buffer();
+    write(result, buffer.outputStream());
+    return buffer.readUtf8();
+  }
+}
@@ -0,0 +1,106 @@
+package Handlers;
+
+import Utilities.CourseCatalog;
+import Utilities.Json;
+import Utilities.Metrics;
+import Utilities.PrerequisiteGraph;
+import Utilities.TermCatalog;
+import com.squareup.moshi.JsonAdapter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler listing the courses of a term a student can take given the courses {@code taken},
+ * with what each one unlocks: the courses that taking it would make eligible next, and how many
+ * courses need it directly or through other courses. Answered from the catalog's {@link
+ * PrerequisiteGraph} without checking each course's prerequisites.
+ */
+public class EligibleHandler implements Route {
+
+  /** Time spent finding the eligible courses, before the response is built */
+  private static final Metrics.Histogram ELIGIBLE_TIME = Metrics.stage("eligible");
+
+  /** JSON adapter for responses */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /** Courses offered in each term, as bitsets of the graph, for the catalog they were built from */
+  private static final Map<String, Map.Entry<TermCatalog, BitSet>> OFFERED =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Handles an eligibility request.
+   *
+   * @param req The HTTP request with the {@code term} and the comma-separated {@code taken} courses
+   * @param res The HTTP response object
+   * @return A JSON string with the eligible courses, or an error
+   * @throws Exception If the term's catalog cannot be read
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    String term = req.queryParams("term");
+    if (term == null) {
+      return JSON.toJson(Map.of("success", false, "errors", List.of("Please input a term code")));
+    }
+    List<String> taken = ScheduleErrorChecker.parseList(req.queryParams("taken"));
+    TermCatalog catalog = TermCatalog.forTerm(term);
+    PrerequisiteGraph graph = CourseCatalog.prerequisites();
+
+    long t = System.nanoTime();
+    BitSet takenBits = graph.bits(taken);
+    BitSet eligible = graph.eligible(takenBits);
+    eligible.and(offered(catalog, graph));
+    Map<Integer, BitSet> unlockedBy = new HashMap<>();
+    for (int i = eligible.nextSetBit(0); i >= 0; i = eligible.nextSetBit(i + 1)) {
+      BitSet unlocked = graph.unlockedBy(i, takenBits);
+      if (!unlocked.isEmpty()) unlockedBy.put(i, unlocked);
+    }
+    ELIGIBLE_TIME.observeSince(t);
+
+    // The graph numbers courses in no meaningful order, so list them by course code
+    List<Integer> order = new ArrayList<>();
+    for (int i = eligible.nextSetBit(0); i >= 0; i = eligible.nextSetBit(i + 1)) order.add(i);
+    order.sort(Comparator.comparing(graph::code));
+
+    List<Map<String, Object>> courses = new ArrayList<>();
+    for (int i : order) {
+      BitSet unlocked = unlockedBy.getOrDefault(i, new BitSet());
+      List<String> unlocks = new ArrayList<>();
+      for (int j = unlocked.nextSetBit(0); j >= 0; j = unlocked.nextSetBit(j + 1)) {
+        unlocks.add(graph.code(j));
+      }
+      Collections.sort(unlocks);
+      Map<String, Object> course = new LinkedHashMap<>();
+      course.put("code", graph.code(i));
+      course.put("title", catalog.courseMap.get(graph.code(i)).get("title"));
+      course.put("unlocks", unlocks);
+      course.put("leadsTo", graph.leadsTo(i).cardinality());
+      courses.add(course);
+    }
+
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("success", true);
+    out.put("errors", List.of());
+    out.put("eligibleCount", courses.size());
+    out.put("eligible", courses);
+    return JSON.toJson(out);
+  }
+
+  /**
+   * Returns the courses a term offers as a bitset of the graph, building it once per loaded
+   * catalog.
+   *
+   * @param catalog The term's catalog
+   * @param graph The prerequisite graph
+   * @return The bitset; callers must not modify it
+   */
+  private static BitSet offered(TermCatalog catalog, PrerequisiteGraph graph) {
+    Map.Entry<TermCatalog, BitSet> cached = OFFERED.get(catalog.term);
+    if (cached != null && cached.getKey() == catalog) return cached.getValue();
+    BitSet bits = graph.bits(catalog.courseMap.keySet());
+    OFFERED.put(catalog.term, Map.entry(catalog, bits));
+    return bits;
+  }
+}
@@ -1,8 +1,13 @@
 package Handlers;
 
+import static Utilities.FilterCourses.filter;
 import static Utilities.FilterCourses.filterCourses;
 
+import Utilities.CborWriter;
 import java.io.IOException;
+import java.util.Map;
+import okio.BufferedSink;
+import okio.Okio;
 import spark.Request;
 import spark.Response;
 import spark.Route;
@@ -18,8 +23,9 @@ public class FilterHandler implements Route {
    * Handles HTTP requests to filter courses based on query parameters.
    *
    * @param request  The HTTP request containing query parameters for filtering
-   * @param response The HTTP response (not modified by this method)
-   * @return A JSON string containing filtered course results or an error message
+   * @param response The HTTP response, written directly when CBOR is requested
+   * @return A JSON string containing filtered course results or an error message; empty if the
+   *     results were written as CBOR
    * @throws Exception If an error occurs during filtering
    */
   @Override
@@ -35,7 +41,18 @@ public class FilterHandler implements Route {
       String dept = request.queryParams("dept");   // Department code filter
       String time = request.queryParams("time");   // Class time filter
       String day = request.queryParams("day");     // Class day filter
-      Boolean writ = Boolean.valueOf(request.queryParams("writ")); // WRIT designation filter
+      String writParam = request.queryParams("writ"); // WRIT designation filter
+      Boolean writ = writParam == null ? null : Boolean.valueOf(writParam);
+
+      // Clients that accept CBOR get the same result as a binary body
+      if (CborWriter.accepts(request.headers("Accept"))) {
+        Map<String, Object> result = filter(term, dept, time, day, writ);
+        response.type(CborWriter.MEDIA_TYPE);
+        BufferedSink sink = Okio.buffer(Okio.sink(response.raw().getOutputStream()));
+        new CborWriter(sink).writeValue(result);
+        sink.flush();
+        return "";
+      }
 
       // Call the filterCourses utility method to perform the actual filtering
       return filterCourses(term, dept, time, day, writ);
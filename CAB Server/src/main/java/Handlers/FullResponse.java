@@ -0,0 +1,123 @@
+package Handlers;
+
+import Scheduler.ScheduleGenerator.Result;
+import Scheduler.ScheduleGenerator.Schedule;
+import Utilities.TermCatalog;
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * Writes the standard /generate response, in the same shape as {@link
+ * ScheduleHandler#buildResponse}, straight to an output stream. Each course is written by copying
+ * the fragment pre-serialized at catalog load (see {@link TermCatalog#fragment}), so no
+ * intermediate maps are built and nothing is serialized reflectively.
+ */
+public final class FullResponse {
+
+  /** Constant pieces of the output, encoded once */
+  private static final ByteString SUCCESS = ByteString.encodeUtf8("{\"success\":");
+
+  private static final ByteString ERRORS = ByteString.encodeUtf8(",\"errors\":");
+  private static final ByteString COUNT = ByteString.encodeUtf8(",\"schedulesCount\":");
+  private static final ByteString TRUNCATED = ByteString.encodeUtf8(",\"truncated\":");
+  private static final ByteString SCHEDULES = ByteString.encodeUtf8(",\"schedules\":[");
+  private static final ByteString SCORE = ByteString.encodeUtf8("{\"score\":");
+  private static final ByteString COURSES = ByteString.encodeUtf8(",\"courses\":[");
+  private static final ByteString END_SCHEDULE = ByteString.encodeUtf8("]}");
+
+  private FullResponse() {}
+
+  /**
+   * Writes a generation result as the standard JSON response.
+   *
+   * @param result The schedule generation result
+   * @param out The stream to write to; flushed but not closed
+   * @throws IOException If writing to the stream fails
+   */
+  public static void write(Result result, OutputStream out) throws IOException {
+    BufferedSink sink = Okio.buffer(Okio.sink(out));
+    sink.write(SUCCESS).writeUtf8(result.errors.isEmpty() ? "true" : "false");
+    sink.write(ERRORS);
+    writeStrings(sink, result.errors);
+    sink.write(COUNT).writeDecimalLong(result.schedules.size());
+    sink.write(TRUNCATED).writeUtf8(result.truncated ? "true" : "false");
+    sink.write(SCHEDULES);
+    for (int i = 0; i < result.schedules.size(); i++) {
+      if (i > 0) sink.writeByte(',');
+      writeSchedule(sink, result.schedules.get(i));
+    }
+    sink.write(END_SCHEDULE);
+    sink.flush();
+  }
+
+  /**
+   * Serializes a generation result as the standard JSON response.
+   *
+   * @param result The schedule generation result
+   * @return The JSON text
+   * @throws IOException Never, as the JSON is written to memory
+   */
+  public static String toJson(Result result) throws IOException {
+    Buffer buffer = new Buffer();
+    write(result, buffer.outputStream());
+    return buffer.readUtf8();
+  }
+
+  /**
+   * Serializes one schedule: its score and its courses.
+   *
+   * @param schedule The scored schedule
+   * @return The JSON text
+   */
+  public static String scheduleToJson(Schedule schedule) {
+    Buffer buffer = new Buffer();
+    try {
+      writeSchedule(buffer, schedule);
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to memory cannot fail", e);
+    }
+    return buffer.readUtf8();
+  }
+
+  /**
+   * Writes one schedule: its score, then its courses' pre-serialized fragments.
+   *
+   * @param sink The sink to write to
+   * @param schedule The scored schedule
+   * @throws IOException If writing fails
+   */
+  private static void writeSchedule(BufferedSink sink, Schedule schedule) throws IOException {
+    sink.write(SCORE).writeUtf8(Double.toString(schedule.score));
+    sink.write(COURSES);
+    List<Map<String, Object>> courses = schedule.courses;
+    for (int j = 0; j < courses.size(); j++) {
+      if (j > 0) sink.writeByte(',');
+      sink.write(TermCatalog.fragment(courses.get(j)));
+    }
+    sink.write(END_SCHEDULE);
+  }
+
+  /**
+   * Writes a JSON array of strings, escaping them as needed.
+   *
+   * @param sink The sink to write to
+   * @param values The strings
+   * @throws IOException If writing fails
+   */
+  static void writeStrings(BufferedSink sink, List<String> values) throws IOException {
+    Buffer buffer = new Buffer();
+    try (JsonWriter w = JsonWriter.of(buffer)) {
+      w.beginArray();
+      for (String v : values) w.value(v);
+      w.endArray();
+    }
+    sink.writeAll(buffer);
+  }
+}
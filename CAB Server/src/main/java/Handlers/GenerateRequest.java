@@ -0,0 +1,219 @@
+package Handlers;
+
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import java.io.IOException;
+import java.util.*;
+import okio.BufferedSource;
+
+/**
+ * The constraints of a schedule generation request sent as a JSON body, with the same names as the
+ * query parameters of {@code GET /generate} but typed: numbers as numbers, {@code writ} as a
+ * boolean, and course, department, time block and day lists as arrays. For example:
+ *
+ * <pre>{@code
+ * {"term": "202420", "classes": 4, "taken": ["CSCI 0150"], "remaining": ["CSCI 0200"],
+ *  "days": ["M", "T", "W", "Th", "F"], "mwf": 2, "tth": 2, "reqThisSem": 1}
+ * }</pre>
+ *
+ * <p>Only {@code term}, {@code classes}, {@code days}, {@code mwf}, {@code tth} and {@code
+ * reqThisSem} are required; absent lists are empty and {@code writ} is false. The body is read
+ * field by field from the stream into the typed fields, without building a tree or going through
+ * reflection, and the lists are read straight into sets. Unknown fields are skipped.
+ */
+public final class GenerateRequest {
+
+  /** Field names, in the order {@link #read} switches on them */
+  private static final JsonReader.Options NAMES =
+      JsonReader.Options.of(
+          "term",
+          "classes",
+          "taken",
+          "remaining",
+          "needed",
+          "times",
+          "depts",
+          "writ",
+          "days",
+          "mwf",
+          "tth",
+          "reqThisSem",
+          "budgetMs",
+          "format",
+          "seed",
+          "diverse",
+          "engine",
+          "avail",
+          "busy",
+          "id");
+
+  /** Term code, e.g. "202420" */
+  String term;
+  /** Courses per schedule */
+  Integer classes;
+  /** Courses already taken */
+  Set<String> taken = new LinkedHashSet<>();
+  /** Courses still required for the degree */
+  Set<String> remaining = new LinkedHashSet<>();
+  /** Courses every schedule must include, in the order given */
+  Set<String> needed = new LinkedHashSet<>();
+  /** Time blocks the student is available in; empty for all */
+  Set<String> times = new LinkedHashSet<>();
+  /** Preferred departments for electives */
+  Set<String> depts = new LinkedHashSet<>();
+  /** Whether a WRIT course is required */
+  boolean writ;
+  /** Days the student can have classes */
+  Set<String> days;
+  /** Courses meeting on MWF and on TTh */
+  Integer mwf, tth;
+  /** Required courses to take this term */
+  Integer reqThisSem;
+  /** Search budget in milliseconds, or null for the default */
+  Long budgetMs;
+  /** Response format, "full" or "compact", or null for full */
+  String format;
+  /** Search seed, or null to derive one from the request */
+  Long seed;
+  /** Varied schedules to return, or null for none */
+  Integer diverse;
+  /** Search engine name, or null for the default */
+  String engine;
+  /** Free and busy intervals of the week, or null */
+  String avail, busy;
+  /** Caller's label for the request, echoed with each student's result by /generate/batch */
+  String id;
+
+  /**
+   * Reads a request body.
+   *
+   * @param source The body
+   * @return The request
+   * @throws IOException If the body cannot be read or is not a JSON object
+   * @throws JsonDataException If a field has the wrong type, naming its path
+   */
+  public static GenerateRequest read(BufferedSource source) throws IOException {
+    try (JsonReader reader = JsonReader.of(source)) {
+      return read(reader);
+    }
+  }
+
+  /**
+   * Reads a request object from a reader, as one element of a larger body.
+   *
+   * @param reader The reader, at the object
+   * @return The request
+   * @throws IOException If the object cannot be read
+   * @throws JsonDataException If the value is not an object or a field has the wrong type
+   */
+  static GenerateRequest read(JsonReader reader) throws IOException {
+    GenerateRequest r = new GenerateRequest();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int field = reader.selectName(NAMES);
+      if (field == -1) {
+        reader.skipName();
+        reader.skipValue();
+        continue;
+      }
+      if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue();
+        continue;
+      }
+      switch (field) {
+        case 0:
+          r.term = reader.nextString();
+          break;
+        case 1:
+          r.classes = reader.nextInt();
+          break;
+        case 2:
+          strings(reader, r.taken);
+          break;
+        case 3:
+          strings(reader, r.remaining);
+          break;
+        case 4:
+          strings(reader, r.needed);
+          break;
+        case 5:
+          strings(reader, r.times);
+          break;
+        case 6:
+          strings(reader, r.depts);
+          break;
+        case 7:
+          r.writ = reader.nextBoolean();
+          break;
+        case 8:
+          strings(reader, r.days = new LinkedHashSet<>());
+          break;
+        case 9:
+          r.mwf = reader.nextInt();
+          break;
+        case 10:
+          r.tth = reader.nextInt();
+          break;
+        case 11:
+          r.reqThisSem = reader.nextInt();
+          break;
+        case 12:
+          r.budgetMs = reader.nextLong();
+          break;
+        case 13:
+          r.format = reader.nextString();
+          break;
+        case 14:
+          r.seed = reader.nextLong();
+          break;
+        case 15:
+          r.diverse = reader.nextInt();
+          break;
+        case 16:
+          r.engine = reader.nextString();
+          break;
+        case 17:
+          r.avail = reader.nextString();
+          break;
+        case 18:
+          r.busy = reader.nextString();
+          break;
+        case 19:
+          r.id = reader.nextString();
+          break;
+        default:
+          throw new AssertionError(field);
+      }
+    }
+    reader.endObject();
+    return r;
+  }
+
+  /**
+   * Reads an array of strings, trimmed, into a set.
+   *
+   * @param reader The reader, at the array
+   * @param into The set to add to
+   */
+  private static void strings(JsonReader reader, Set<String> into) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) into.add(reader.nextString().trim());
+    reader.endArray();
+  }
+
+  /**
+   * Lists the required fields that are absent.
+   *
+   * @return The names of the missing fields, empty if none
+   */
+  List<String> missing() {
+    List<String> missing = new ArrayList<>();
+    if (term == null) missing.add("term");
+    if (classes == null) missing.add("classes");
+    if (days == null) missing.add("days");
+    if (mwf == null) missing.add("mwf");
+    if (tth == null) missing.add("tth");
+    if (reqThisSem == null) missing.add("reqThisSem");
+    return missing;
+  }
+}
@@ -0,0 +1,39 @@
+package Handlers;
+
+import Utilities.Json;
+import com.squareup.moshi.JsonAdapter;
+import java.util.List;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler reporting the status of a schedule generation job started through POST /jobs. Once
+ * the job is done the response includes the same body /generate would have returned.
+ */
+public class JobStatusHandler implements Route {
+
+  /** JSON adapter for error responses */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /**
+   * Handles a job status request.
+   *
+   * @param req The HTTP request, with the job ID as the {@code :id} path parameter
+   * @param res The HTTP response object for setting status codes
+   * @return A JSON string describing the job, or an error if it is unknown or expired
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    String id = req.params(":id");
+    JobStore.Job job = JobStore.JOBS.get(id);
+    if (job == null) {
+      res.status(404);
+      return JSON.toJson(
+          Map.of("success", false, "errors", List.of("Unknown or expired job: " + id)));
+    }
+    return job.toJson();
+  }
+}
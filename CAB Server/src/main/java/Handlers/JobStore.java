@@ -0,0 +1,205 @@
+package Handlers;
+
+import Scheduler.SearchExecutor;
+import Utilities.Metrics;
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.LongSupplier;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * In-memory store of asynchronous schedule generation jobs. Job IDs are derived from the client and
+ * the request parameters, so a retried submission finds the job already running or finished instead
+ * of searching again. Finished jobs are kept for a limited time, and the store holds at most a
+ * fixed number of jobs, dropping the oldest finished ones first.
+ */
+public final class JobStore {
+
+  /** Maximum number of jobs kept at once */
+  static final int CAPACITY = Integer.getInteger("cab.jobs.capacity", 1000);
+
+  /** How long a finished job's result is kept, in milliseconds */
+  static final long TTL_MS = Long.getLong("cab.jobs.ttlMs", 10 * 60 * 1000);
+
+  /** The process-wide job store */
+  static final JobStore JOBS = new JobStore(CAPACITY, TTL_MS, System::currentTimeMillis);
+
+  /** Job counters, exported through /metrics */
+  private static final Metrics.Counter STARTED =
+      Metrics.counter("cab_jobs_started_total", "Asynchronous jobs started");
+
+  private static final Metrics.Counter REUSED =
+      Metrics.counter(
+          "cab_jobs_reused_total", "Job submissions answered by an existing job with the same ID");
+
+  private static final Metrics.Counter EVICTED =
+      Metrics.counter("cab_jobs_evicted_total", "Finished jobs dropped by TTL or capacity");
+
+  static {
+    Metrics.gauge("cab_jobs_stored", "Jobs currently held in the job store", JOBS::size);
+  }
+
+  /** Jobs by ID, oldest first */
+  private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+
+  /** Maximum number of jobs kept at once */
+  private final int capacity;
+
+  /** How long a finished job's result is kept, in milliseconds */
+  private final long ttlMs;
+
+  /** Wall-clock time source in milliseconds */
+  private final LongSupplier clock;
+
+  /**
+   * Creates an empty store. The server uses {@link #JOBS}; separate stores are for tests.
+   *
+   * @param capacity Maximum number of jobs kept at once
+   * @param ttlMs How long a finished job's result is kept, in milliseconds
+   * @param clock Wall-clock time source in milliseconds
+   */
+  public JobStore(int capacity, long ttlMs, LongSupplier clock) {
+    this.capacity = capacity;
+    this.ttlMs = ttlMs;
+    this.clock = clock;
+  }
+
+  /** Lifecycle of a job */
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  /** One submitted search and, once finished, its response body */
+  public static final class Job {
+    /** Job ID */
+    public final String id;
+    /** Current state */
+    public volatile Status status = Status.QUEUED;
+    /** JSON response body of the search once it is done */
+    public volatile String result;
+    /** Reason the job failed, if it did */
+    public volatile String failure;
+    /** Wall-clock time the job finished at, or 0 while it is still going */
+    volatile long finishedAtMs;
+
+    Job(String id) {
+      this.id = id;
+    }
+
+    /**
+     * Checks whether the job has stopped running.
+     *
+     * @return true if it is done or failed
+     */
+    public boolean finished() {
+      return status == Status.DONE || status == Status.FAILED;
+    }
+
+    /**
+     * Renders the job as JSON: its ID and status, plus the search response once done.
+     *
+     * @return The JSON text
+     * @throws IOException Never, as the JSON is written to memory
+     */
+    String toJson() throws IOException {
+      Buffer buffer = new Buffer();
+      try (JsonWriter w = JsonWriter.of(buffer)) {
+        w.beginObject();
+        w.name("success").value(status != Status.FAILED);
+        w.name("id").value(id);
+        w.name("status").value(status.name().toLowerCase(Locale.ROOT));
+        if (status == Status.FAILED) {
+          w.name("errors").beginArray().value(failure).endArray();
+        }
+        String body = result;
+        if (body != null) {
+          w.name("result");
+          try (BufferedSink sink = w.valueSink()) {
+            sink.writeUtf8(body);
+          }
+        }
+        w.endObject();
+      }
+      return buffer.readUtf8();
+    }
+  }
+
+  /**
+   * Returns the job with an ID, if it is still stored.
+   *
+   * @param id The job ID
+   * @return The job, or null if unknown or evicted
+   */
+  public synchronized Job get(String id) {
+    evict();
+    return jobs.get(id);
+  }
+
+  /**
+   * Returns the stored job with an ID, or starts a new one on the search pool. Failed jobs are
+   * replaced, so a retry after a failure searches again.
+   *
+   * @param id The job ID
+   * @param client Key identifying the client, for per-client admission limits
+   * @param search The search to run, producing the JSON response body
+   * @return The existing or newly started job
+   * @throws SearchExecutor.RejectedException If a new job cannot be admitted
+   */
+  public synchronized Job getOrStart(String id, String client, Callable<String> search)
+      throws SearchExecutor.RejectedException {
+    evict();
+    Job existing = jobs.get(id);
+    if (existing != null && existing.status != Status.FAILED) {
+      REUSED.inc();
+      return existing;
+    }
+
+    Job job = new Job(id);
+    SearchExecutor.submit(
+        client,
+        () -> {
+          job.status = Status.RUNNING;
+          Status outcome;
+          try {
+            job.result = search.call();
+            outcome = Status.DONE;
+          } catch (Exception e) {
+            job.failure = "Schedule generation failed: " + e.getMessage();
+            outcome = Status.FAILED;
+          }
+          job.finishedAtMs = clock.getAsLong();
+          job.status = outcome;
+          return job.result;
+        });
+    STARTED.inc();
+    jobs.remove(id);
+    jobs.put(id, job);
+    evict();
+    return job;
+  }
+
+  /** Drops finished jobs past their TTL, then the oldest finished jobs while over capacity. */
+  private void evict() {
+    long cutoff = clock.getAsLong() - ttlMs;
+    int over = jobs.size() - capacity;
+    Iterator<Job> it = jobs.values().iterator();
+    while (it.hasNext()) {
+      Job job = it.next();
+      if (job.finished() && (job.finishedAtMs < cutoff || over > 0)) {
+        it.remove();
+        over--;
+        EVICTED.inc();
+      }
+    }
+  }
+
+  private synchronized int size() {
+    return jobs.size();
+  }
+}
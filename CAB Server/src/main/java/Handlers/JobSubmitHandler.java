@@ -0,0 +1,79 @@
+package Handlers;
+
+import Scheduler.SearchBudget;
+import Scheduler.SearchExecutor;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler that starts a schedule generation job in the background. It takes the same
+ * parameters as /generate (as a form body, query string or JSON body), responds at once with 202
+ * Accepted and the job's ID, and the results are then polled from /jobs/{id}. Submitting the same
+ * parameters again returns the existing job instead of starting another search.
+ */
+public class JobSubmitHandler implements Route {
+
+  /**
+   * Handles a job submission.
+   *
+   * @param req The HTTP request containing schedule generation parameters
+   * @param res The HTTP response object for setting status codes and headers
+   * @return A JSON string describing the job, or error information
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    long received = System.nanoTime();
+    ScheduleErrorChecker.Params p;
+    try {
+      p = ScheduleHandler.parseRequest(req);
+    } catch (ScheduleHandler.InvalidRequestException e) {
+      return e.respond(res);
+    }
+
+    // Nobody is holding a connection open, so jobs default to the largest budget allowed
+    if (p.budgetStr == null || p.budgetStr.isBlank()) {
+      p.budgetMs = SearchBudget.MAX_MS;
+    }
+
+    String client = ScheduleHandler.clientKey(req);
+    JobStore.Job job;
+    try {
+      job =
+          JobStore.JOBS.getOrStart(
+              jobId(client, p),
+              client,
+              () -> ScheduleHandler.search(p, received, () -> false).toJson());
+    } catch (SearchExecutor.RejectedException e) {
+      return ScheduleHandler.rejected(res, e);
+    }
+
+    res.status(202);
+    res.header("Location", "/jobs/" + job.id);
+    return job.toJson();
+  }
+
+  /**
+   * Derives a job ID from the client and the parsed request parameters, so identical submissions
+   * map to the same job whether they came as a query string, a form body or a JSON body.
+   *
+   * @param client Key identifying the client
+   * @param p The parsed parameters, with their raw values filled in
+   * @return A 32-character hexadecimal ID
+   * @throws Exception If SHA-256 is unavailable
+   */
+  public static String jobId(String client, ScheduleErrorChecker.Params p) throws Exception {
+    MessageDigest sha = MessageDigest.getInstance("SHA-256");
+    sha.update(client.getBytes(StandardCharsets.UTF_8));
+    for (String v : p.keyValues()) {
+      // A marker byte before each value keeps absent and empty values, and their order, distinct
+      sha.update((byte) (v == null ? 0 : 1));
+      if (v != null) sha.update(v.getBytes(StandardCharsets.UTF_8));
+    }
+    return HexFormat.of().formatHex(sha.digest(), 0, 16);
+  }
+}
@@ -0,0 +1,26 @@
+package Handlers;
+
+import Utilities.Metrics;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Handler for the /metrics endpoint. Exposes request stage timings, search statistics and catalog
+ * cache figures in the Prometheus text format so they can be scraped by monitoring.
+ */
+public class MetricsHandler implements Route {
+
+  /**
+   * Handles HTTP requests for the current metrics.
+   *
+   * @param request The HTTP request (no parameters are used)
+   * @param response The HTTP response, whose content type is set to the exposition format
+   * @return The metrics in Prometheus text format
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    response.type("text/plain; version=0.0.4");
+    return Metrics.render();
+  }
+}
@@ -0,0 +1,105 @@
+package Handlers;
+
+import Scheduler.DegreePlanner;
+import Scheduler.SearchBudget;
+import Scheduler.SearchExecutor;
+import Utilities.Json;
+import Utilities.TermCatalog;
+import com.squareup.moshi.JsonAdapter;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler that lays out the remaining required courses over future terms (see {@link
+ * DegreePlanner}). Takes the term whose catalog holds the prerequisites, the courses {@code taken}
+ * and {@code remaining}, the most {@code terms} the plan may have, the most courses {@code
+ * perTerm}, and optionally a {@code budgetMs} for the search.
+ */
+public class PlanHandler implements Route {
+
+  /** Most terms a plan can have */
+  static final int MAX_TERMS = 16;
+
+  /** JSON adapter for responses */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /**
+   * Handles a planning request.
+   *
+   * @param req The HTTP request containing the planning parameters
+   * @param res The HTTP response object for setting status codes
+   * @return A JSON string with the plan, or with the reasons there is none
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    long received = System.nanoTime();
+    String term = req.queryParams("term");
+    List<String> taken = ScheduleErrorChecker.parseList(req.queryParams("taken"));
+    List<String> remaining = ScheduleErrorChecker.parseList(req.queryParams("remaining"));
+    String termsStr = req.queryParams("terms");
+    String perTermStr = req.queryParams("perTerm");
+    String budgetStr = req.queryParams("budgetMs");
+    if (term == null || termsStr == null || perTermStr == null) {
+      return failure(List.of("Parameters term, terms and perTerm must be filled"));
+    }
+
+    int terms, perTerm;
+    long budgetMs;
+    try {
+      terms = Integer.parseInt(termsStr.trim());
+      perTerm = Integer.parseInt(perTermStr.trim());
+      budgetMs =
+          budgetStr == null || budgetStr.isBlank()
+              ? SearchBudget.DEFAULT_MS
+              : Long.parseLong(budgetStr.trim());
+    } catch (NumberFormatException e) {
+      return failure(List.of("Failed parsing numbers " + e.getMessage()));
+    }
+
+    List<String> errors = new ArrayList<>();
+    if (terms < 1 || terms > MAX_TERMS)
+      errors.add("The number of terms must be between 1 and " + MAX_TERMS);
+    if (perTerm < 1) errors.add("The number of courses per term must be at least 1");
+    if (budgetMs <= 0 || budgetMs > SearchBudget.MAX_MS)
+      errors.add(
+          "The search budget (budgetMs) must be between 1 and " + SearchBudget.MAX_MS + " ms");
+    List<String> both = remaining.stream().filter(taken::contains).toList();
+    if (!both.isEmpty())
+      errors.add(
+          "The following courses are listed in both 'taken' and 'remaining': "
+              + String.join(", ", both));
+    if (!errors.isEmpty()) return failure(errors);
+
+    // Plan on the search pool, as the search is bounded by the budget but still CPU-bound
+    BooleanSupplier disconnected = ScheduleHandler.clientDisconnected(req);
+    DegreePlanner.Plan plan;
+    try {
+      plan =
+          SearchExecutor.run(
+              ScheduleHandler.clientKey(req),
+              () ->
+                  new DegreePlanner(TermCatalog.forTerm(term).courseMap, taken, remaining, perTerm)
+                      .plan(terms, SearchBudget.of(budgetMs, received, disconnected)));
+    } catch (SearchExecutor.RejectedException e) {
+      return ScheduleHandler.rejected(res, e);
+    }
+    if (!plan.errors.isEmpty()) return failure(plan.errors);
+
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("success", true);
+    out.put("errors", List.of());
+    out.put("termsCount", plan.terms.size());
+    out.put("lowerBound", plan.lowerBound);
+    out.put("optimal", plan.optimal);
+    out.put("plan", plan.terms);
+    return JSON.toJson(out);
+  }
+
+  private static String failure(List<String> errors) {
+    return JSON.toJson(Map.of("success", false, "errors", errors));
+  }
+}
@@ -0,0 +1,328 @@
+package Handlers;
+
+import Scheduler.ScheduleGenerator;
+import Scheduler.ScheduleGenerator.Result;
+import Scheduler.ScheduleGenerator.Schedule;
+import Scheduler.SearchBudget;
+import Scheduler.SharedTerm;
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * An interactive planning session: one student's constraints, the courses that passed filtering,
+ * and the latest search result, kept between edits. Each edit changes one constraint and is applied
+ * as a delta. Only the kept courses it affects are filtered again, and the catalog is never
+ * reloaded.
+ *
+ * <p>If the previous search was exhaustive (it finished within its budget and below {@link
+ * ScheduleGenerator#MAX_SCHEDULES}, and did not ask for a diverse sample), an edit that only
+ * narrows the choices is answered from that result without searching. Dropping a day or excluding a
+ * course keeps the schedules that still fit, locking a course keeps those that contain it, and
+ * changing only the MWF/TTh balance rescores them. Other edits, and edits after a truncated search,
+ * search again over the kept courses.
+ *
+ * <p>Methods are synchronized, so edits to one session apply one at a time.
+ */
+public final class PlanningSession {
+
+  /** Day codes that can be dropped */
+  private static final Set<String> DAYS = Set.of("M", "T", "W", "Th", "F");
+
+  /** Session ID */
+  final String id;
+  /** Key identifying the client that created the session */
+  final String client;
+
+  /** Catalog and conflict table of the session's term */
+  private final SharedTerm shared;
+  /** Current constraints; replaced, never modified, when an edit is accepted */
+  private ScheduleErrorChecker.Params p;
+  /** Courses that pass the current constraints */
+  private List<Map<String, Object>> pool;
+  /** Latest successful response */
+  private SearchResponse response;
+  /** Whether the latest result holds every schedule the current constraints allow */
+  private boolean exhaustive;
+  /** Whether the latest result was derived from the previous one without searching */
+  private boolean incremental;
+  /** Wall-clock time the session was last used, for idle expiry */
+  volatile long lastUsedMs = System.currentTimeMillis();
+
+  private PlanningSession(String id, String client, SharedTerm shared) {
+    this.id = id;
+    this.client = client;
+    this.shared = shared;
+  }
+
+  /**
+   * Loads the term, filters its courses and runs the first search.
+   *
+   * @param id The new session's ID
+   * @param client Key identifying the client
+   * @param p The validated request parameters
+   * @param cancelled Returns true once the search should stop early
+   * @return The session
+   * @throws ScheduleHandler.InvalidRequestException If the request cannot be searched
+   * @throws Exception If an error occurs during processing
+   */
+  public static PlanningSession start(
+      String id, String client, ScheduleErrorChecker.Params p, BooleanSupplier cancelled)
+      throws Exception {
+    PlanningSession session = new PlanningSession(id, client, SharedTerm.load(p.term));
+    ScheduleGenerator gen = session.generator(p, cancelled);
+    List<String> errors = new ArrayList<>();
+    ScheduleErrorChecker.validateCourseExistence(p, gen.courseMap.keySet(), errors);
+    gen.filterCourses(p.term);
+    SearchResponse first = ScheduleHandler.solve(gen, p, errors);
+    if (!first.errors().isEmpty()) {
+      throw new ScheduleHandler.InvalidRequestException(200, first.errors());
+    }
+
+    session.p = p;
+    session.pool = new ArrayList<>(gen.getFilteredCourses());
+    session.accept(first, false);
+    return session;
+  }
+
+  /**
+   * Makes a day unavailable. Kept courses meeting that day are dropped.
+   *
+   * @param day The day code: M, T, W, Th or F
+   * @param cancelled Returns true once a search should stop early
+   * @return The new response, or a failure leaving the session unchanged
+   * @throws Exception If an error occurs during the search
+   */
+  public synchronized SearchResponse dropDay(String day, BooleanSupplier cancelled)
+      throws Exception {
+    if (!DAYS.contains(day)) {
+      return SearchResponse.failure(List.of("Unknown day \"" + day + "\"; use M, T, W, Th or F"));
+    }
+    ScheduleErrorChecker.Params next = p.copy();
+    next.dayAvailability = new LinkedHashMap<>(p.dayAvailability);
+    next.dayAvailability.put(day, false);
+
+    // Locked courses are checked by their parsed days, optional ones by letter, as a new search
+    // would check them
+    List<Map<String, Object>> nextPool = new ArrayList<>(pool);
+    nextPool.removeIf(
+        c ->
+            p.necessaryCourses.contains(c.get("code"))
+                ? !ScheduleGenerator.neededFitsDays(c, next.dayAvailability)
+                : !ScheduleGenerator.fitsDays((String) c.get("meets"), next.dayAvailability));
+
+    // A locked course must keep at least one section bundle
+    List<String> errors = new ArrayList<>();
+    for (String code : p.necessaryCourses) {
+      if (nextPool.stream().noneMatch(c -> code.equals(c.get("code")))) {
+        errors.add("Locked course " + code + " meets on " + day);
+      }
+    }
+    if (!errors.isEmpty()) return SearchResponse.failure(errors);
+    return update(next, nextPool, keepWithin(nextPool), false, cancelled);
+  }
+
+  /**
+   * Removes a course from consideration.
+   *
+   * @param code The course code
+   * @param cancelled Returns true once a search should stop early
+   * @return The new response, or a failure leaving the session unchanged
+   * @throws Exception If an error occurs during the search
+   */
+  public synchronized SearchResponse exclude(String code, BooleanSupplier cancelled)
+      throws Exception {
+    if (p.necessaryCourses.contains(code)) {
+      return SearchResponse.failure(List.of("Course " + code + " is locked and can't be excluded"));
+    }
+    List<Map<String, Object>> nextPool = new ArrayList<>(pool);
+    nextPool.removeIf(c -> code.equals(c.get("code")));
+    return update(p, nextPool, keepWithin(nextPool), false, cancelled);
+  }
+
+  /**
+   * Requires a course in every schedule, as if it had been listed in {@code needed}.
+   *
+   * @param code The course code
+   * @param cancelled Returns true once a search should stop early
+   * @return The new response, or a failure leaving the session unchanged
+   * @throws Exception If an error occurs during the search
+   */
+  public synchronized SearchResponse lock(String code, BooleanSupplier cancelled) throws Exception {
+    if (p.necessaryCourses.contains(code)) return update(p, pool, s -> true, false, cancelled);
+    if (!shared.catalog.courseMap.containsKey(code)) {
+      return SearchResponse.failure(List.of("Course \"" + code + "\" doesn't seem to exist"));
+    }
+    if (pool.stream().noneMatch(c -> code.equals(c.get("code")))) {
+      return SearchResponse.failure(
+          List.of("Course " + code + " doesn't fit your current constraints"));
+    }
+
+    ScheduleErrorChecker.Params next = p.copy();
+    List<String> necessary = new ArrayList<>(p.necessaryCourses);
+    necessary.add(code);
+    next.necessaryCourses = necessary;
+    next.needed = String.join(",", necessary);
+    List<String> errors = new ArrayList<>();
+    ScheduleErrorChecker.validatePreFilter(next, errors);
+    if (!errors.isEmpty()) return SearchResponse.failure(errors);
+
+    Predicate<Schedule> contains =
+        s -> s.courses.stream().anyMatch(c -> code.equals(c.get("code")));
+    return update(next, pool, contains, true, cancelled);
+  }
+
+  /**
+   * Changes the number of classes and the MWF/TTh balance. A new number of classes needs a new
+   * search; a new balance alone only rescores the schedules already found, unless the session
+   * searches with the propagating engine.
+   *
+   * @param classes The number of classes per semester
+   * @param mwf The desired number of MWF classes
+   * @param tth The desired number of TTh classes
+   * @param cancelled Returns true once a search should stop early
+   * @return The new response, or a failure leaving the session unchanged
+   * @throws Exception If an error occurs during the search
+   */
+  public synchronized SearchResponse resize(
+      int classes, int mwf, int tth, BooleanSupplier cancelled) throws Exception {
+    ScheduleErrorChecker.Params next = p.copy();
+    next.classesPerSemester = classes;
+    next.classes = String.valueOf(classes);
+    next.mwfCnt = mwf;
+    next.mwfStr = String.valueOf(mwf);
+    next.tthCnt = tth;
+    next.tthStr = String.valueOf(tth);
+    next.balance = new ScheduleGenerator.DayBalance(mwf, tth);
+    List<String> errors = new ArrayList<>();
+    ScheduleErrorChecker.validatePreFilter(next, errors);
+    if (!errors.isEmpty()) return SearchResponse.failure(errors);
+
+    // The propagating engine treats the balance as a hard constraint, so it must search again
+    boolean rescoreOnly =
+        classes == p.classesPerSemester && p.engine != ScheduleGenerator.Engine.PROPAGATE;
+    Predicate<Schedule> keep = rescoreOnly ? s -> true : null;
+    return update(next, pool, keep, true, cancelled);
+  }
+
+  /**
+   * Renders the session as JSON: its ID, whether the latest result was derived without searching,
+   * and the latest response.
+   *
+   * @return The JSON text
+   * @throws IOException Never, as the JSON is written to memory
+   */
+  public synchronized String toJson() throws IOException {
+    Buffer buffer = new Buffer();
+    try (JsonWriter w = JsonWriter.of(buffer)) {
+      w.beginObject();
+      w.name("success").value(true);
+      w.name("id").value(id);
+      w.name("incremental").value(incremental);
+      w.name("result");
+      try (BufferedSink sink = w.valueSink()) {
+        response.writeTo(sink.outputStream());
+      }
+      w.endObject();
+    }
+    return buffer.readUtf8();
+  }
+
+  /**
+   * Checks the edited constraints against the edited pool, then derives the new result from the
+   * previous one if possible, or searches again.
+   *
+   * @param next The edited constraints
+   * @param nextPool The courses that pass them
+   * @param keep Selects the previous schedules that remain valid, or null if a search is needed
+   * @param rescore Whether the kept schedules' scores may have changed
+   * @param cancelled Returns true once a search should stop early
+   * @return The new response, or a failure leaving the session unchanged
+   * @throws Exception If an error occurs during the search
+   */
+  private SearchResponse update(
+      ScheduleErrorChecker.Params next,
+      List<Map<String, Object>> nextPool,
+      Predicate<Schedule> keep,
+      boolean rescore,
+      BooleanSupplier cancelled)
+      throws Exception {
+    ScheduleGenerator gen = generator(next, cancelled);
+    gen.setFilteredCourses(nextPool);
+    List<String> errors = new ArrayList<>();
+    ScheduleHandler.validateFiltered(gen, next, errors);
+    if (!errors.isEmpty()) return SearchResponse.failure(errors);
+
+    SearchResponse updated;
+    boolean derived = exhaustive && keep != null;
+    if (derived) {
+      List<Schedule> kept = new ArrayList<>();
+      for (Schedule s : response.result().schedules) {
+        if (!keep.test(s)) continue;
+        Schedule copy = new Schedule(s.courses);
+        copy.score = s.score;
+        if (rescore) gen.calculateScheduleScore(copy);
+        kept.add(copy);
+      }
+      if (rescore) kept.sort((s1, s2) -> Double.compare(s2.score, s1.score));
+      updated = SearchResponse.of(new Result(kept, new ArrayList<>(), false), next.compact);
+    } else {
+      updated = ScheduleHandler.solve(gen, next, errors);
+      if (!updated.errors().isEmpty()) return updated;
+    }
+
+    p = next;
+    pool = nextPool;
+    accept(updated, derived);
+    return updated;
+  }
+
+  /**
+   * Makes a response the session's latest.
+   *
+   * @param updated The new response, which must hold a successful result
+   * @param derived Whether it was derived from the previous result without searching
+   */
+  private void accept(SearchResponse updated, boolean derived) {
+    Result result = updated.result();
+    response = updated;
+    incremental = derived;
+    exhaustive =
+        derived
+            ? exhaustive
+            : p.diverse == 0
+                && !result.truncated
+                && result.schedules.size() < ScheduleGenerator.MAX_SCHEDULES;
+  }
+
+  /**
+   * Creates a generator over the session's term, bounded by the request's budget from now.
+   *
+   * @param params The constraints to search with
+   * @param cancelled Returns true once the search should stop early
+   * @return The generator, with the term's courses loaded
+   */
+  private ScheduleGenerator generator(
+      ScheduleErrorChecker.Params params, BooleanSupplier cancelled) {
+    ScheduleGenerator gen = ScheduleHandler.newGenerator(params);
+    gen.setBudget(SearchBudget.of(params.budgetMs, System.nanoTime(), cancelled));
+    gen.loadCourseData(shared);
+    return gen;
+  }
+
+  /**
+   * Selects schedules whose courses are all still in a pool.
+   *
+   * @param nextPool The courses still allowed
+   * @return The selection
+   */
+  private static Predicate<Schedule> keepWithin(List<Map<String, Object>> nextPool) {
+    Set<Map<String, Object>> allowed = Collections.newSetFromMap(new IdentityHashMap<>());
+    allowed.addAll(nextPool);
+    return s -> allowed.containsAll(s.courses);
+  }
+}
@@ -2,8 +2,11 @@ package Handlers;
 
 import Scheduler.ScheduleGenerator;
 import Scheduler.SchedulerUtils;
-import com.fasterxml.jackson.databind.JsonNode;
+import Scheduler.SearchBudget;
+import Utilities.ClerkAPI;
+import Utilities.WeeklyMask;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import spark.Request;
@@ -15,19 +18,115 @@ import spark.Request;
  */
 public final class ScheduleErrorChecker {
 
+  /** Most varied schedules a request can ask for with {@code diverse} */
+  static final int MAX_DIVERSE = 100;
+
   /**
    * Container class for storing all schedule generation parameters.
    * This class holds both the raw string inputs and their parsed versions.
    */
   public static class Params {
     String term, classes, taken, remaining, needed, times, depts, writParam;
-    String days, mwfStr, tthStr, reqThisSemStr;
-    int classesPerSemester, mwfCnt, tthCnt, requiredThisSem;
-    List<String> coursesTaken, remainingRequired, necessaryCourses, preferredDepts;
+    String days, mwfStr, tthStr, reqThisSemStr, budgetStr, format, seedStr, diverseStr, engineStr;
+    String avail, busy;
+    int classesPerSemester, mwfCnt, tthCnt, requiredThisSem, diverse;
+    long budgetMs, seed;
+    boolean compact;
+    Set<String> coursesTaken, remainingRequired, preferredDepts;
+    List<String> necessaryCourses;
     Set<String> availableTimes;
+    WeeklyMask allowedSlots;
     boolean needWRIT;
     Map<String, Boolean> dayAvailability;
     ScheduleGenerator.DayBalance balance;
+    ScheduleGenerator.Engine engine;
+
+    /**
+     * Lists the values of the request, as given or as filled in from a JSON body or Clerk metadata,
+     * in a fixed order. Lists are re-joined from their trimmed items and other values are trimmed,
+     * so "M, W" in a query string reads the same as ["M","W"] in a JSON body. Two requests with the
+     * same values search the same way. The first twelve are the search constraints.
+     *
+     * @return The values, null where absent
+     */
+    List<String> keyValues() {
+      return Arrays.asList(
+          trimmed(term),
+          trimmed(classes),
+          joined(taken),
+          joined(remaining),
+          joined(needed),
+          joined(times),
+          joined(depts),
+          trimmed(writParam),
+          joined(days),
+          trimmed(mwfStr),
+          trimmed(tthStr),
+          trimmed(reqThisSemStr),
+          trimmed(budgetStr),
+          trimmed(format),
+          trimmed(seedStr),
+          trimmed(diverseStr),
+          trimmed(engineStr),
+          trimmed(avail),
+          trimmed(busy));
+    }
+
+    private static String trimmed(String raw) {
+      return raw == null ? null : raw.trim();
+    }
+
+    private static String joined(String raw) {
+      return raw == null ? null : String.join(",", parseList(raw));
+    }
+
+    /**
+     * Returns a shallow copy, so an edit can be tried by replacing fields of the copy without
+     * changing these parameters.
+     *
+     * @return The copy
+     */
+    Params copy() {
+      Params c = new Params();
+      c.term = term;
+      c.classes = classes;
+      c.taken = taken;
+      c.remaining = remaining;
+      c.needed = needed;
+      c.times = times;
+      c.depts = depts;
+      c.writParam = writParam;
+      c.days = days;
+      c.mwfStr = mwfStr;
+      c.tthStr = tthStr;
+      c.reqThisSemStr = reqThisSemStr;
+      c.budgetStr = budgetStr;
+      c.format = format;
+      c.seedStr = seedStr;
+      c.diverseStr = diverseStr;
+      c.engineStr = engineStr;
+      c.avail = avail;
+      c.busy = busy;
+      c.classesPerSemester = classesPerSemester;
+      c.mwfCnt = mwfCnt;
+      c.tthCnt = tthCnt;
+      c.requiredThisSem = requiredThisSem;
+      c.budgetMs = budgetMs;
+      c.seed = seed;
+      c.diverse = diverse;
+      c.compact = compact;
+      c.coursesTaken = coursesTaken;
+      c.remainingRequired = remainingRequired;
+      c.necessaryCourses = necessaryCourses;
+      c.preferredDepts = preferredDepts;
+      c.availableTimes = availableTimes;
+      c.allowedSlots = allowedSlots;
+      c.needWRIT = needWRIT;
+      c.dayAvailability = dayAvailability;
+      c.balance = balance;
+      c.engine = engine;
+      return c;
+    }
   }
 
   /**
@@ -39,42 +138,49 @@ public final class ScheduleErrorChecker {
    * @param errors List to collect any validation errors encountered during parsing
    * @return A Params object containing all parsed schedule generation parameters
    */
-  public static Params parseParams(Request req, JsonNode meta, List<String> errors) {
+  public static Params parseParams(Request req, ClerkAPI.Metadata meta, List<String> errors) {
+    return parseParams(req::queryParams, meta, errors);
+  }
+
+  /**
+   * Parses and validates schedule generation parameters from any source of named values, such as
+   * one entry of a batch request.
+   *
+   * @param param Returns the value of a named parameter, or null if it is absent
+   * @param meta Optional JSON metadata containing course information (may be null)
+   * @param errors List to collect any validation errors encountered during parsing
+   * @return A Params object containing all parsed schedule generation parameters
+   */
+  public static Params parseParams(
+      Function<String, String> param, ClerkAPI.Metadata meta, List<String> errors) {
     Params p = new Params();
-    p.term = req.queryParams("term");
-    p.classes = req.queryParams("classes");
-    p.needed = req.queryParams("needed");
-    p.times = req.queryParams("times");
-    p.depts = req.queryParams("depts");
-    p.writParam = req.queryParams("writ");
-    p.days = req.queryParams("days");
-    p.mwfStr = req.queryParams("mwf");
-    p.tthStr = req.queryParams("tth");
-    p.reqThisSemStr = req.queryParams("reqThisSem");
+    p.term = param.apply("term");
+    p.classes = param.apply("classes");
+    p.needed = param.apply("needed");
+    p.times = param.apply("times");
+    p.avail = param.apply("avail");
+    p.busy = param.apply("busy");
+    p.depts = param.apply("depts");
+    p.writParam = param.apply("writ");
+    p.days = param.apply("days");
+    p.mwfStr = param.apply("mwf");
+    p.tthStr = param.apply("tth");
+    p.reqThisSemStr = param.apply("reqThisSem");
+    p.budgetStr = param.apply("budgetMs");
+    p.format = param.apply("format");
+    p.compact = "compact".equals(p.format);
+    p.seedStr = param.apply("seed");
+    p.diverseStr = param.apply("diverse");
+    p.engineStr = param.apply("engine");
+    p.engine = parseEngine(p.engineStr);
 
     // Extract courses from metadata if available
     if (meta != null) {
-      if (meta.has("courses") && meta.get("courses").isArray()) {
-        List<String> takenList = new ArrayList<>();
-        for (JsonNode c : meta.get("courses")) {
-          if (c.has("code")) takenList.add(c.get("code").asText());
-        }
-        p.coursesTaken = takenList;
-        p.taken = String.join(",", takenList);
-      }
-
-      if (meta.has("desiredCourses") && meta.get("desiredCourses").isArray()) {
-        List<String> remainingList = new ArrayList<>();
-        for (JsonNode c : meta.get("desiredCourses")) {
-          if (c.has("code")) remainingList.add(c.get("code").asText());
-        }
-        p.remainingRequired = remainingList;
-        p.remaining = String.join(",", remainingList);
-      }
+      applyMeta(p, meta);
     } else {
       // Use standard query parameters if no metadata
-      p.taken = req.queryParams("taken");
-      p.remaining = req.queryParams("remaining");
+      p.taken = param.apply("taken");
+      p.remaining = param.apply("remaining");
     }
 
     // Check that all required parameters are present
@@ -101,23 +207,138 @@ public final class ScheduleErrorChecker {
     // Parse numeric and boolean parameters
     try {
       p.classesPerSemester = Integer.parseInt(p.classes);
-      p.coursesTaken = parseList(p.taken);
-      p.remainingRequired = parseList(p.remaining);
+      p.coursesTaken = new LinkedHashSet<>(parseList(p.taken));
+      p.remainingRequired = new LinkedHashSet<>(parseList(p.remaining));
       p.necessaryCourses = parseList(p.needed);
       p.availableTimes = new HashSet<>(parseList(p.times));
-      p.preferredDepts = parseList(p.depts);
+      p.preferredDepts = new LinkedHashSet<>(parseList(p.depts));
       p.needWRIT = Boolean.parseBoolean(p.writParam.trim());
       p.mwfCnt = Integer.parseInt(p.mwfStr);
       p.tthCnt = Integer.parseInt(p.tthStr);
       p.requiredThisSem = Integer.parseInt(p.reqThisSemStr);
       p.dayAvailability = buildDayMap(parseList(p.days));
       p.balance = new ScheduleGenerator.DayBalance(p.mwfCnt, p.tthCnt);
+      p.budgetMs =
+          p.budgetStr == null || p.budgetStr.isBlank()
+              ? SearchBudget.DEFAULT_MS
+              : Long.parseLong(p.budgetStr.trim());
+      p.seed =
+          p.seedStr == null || p.seedStr.isBlank()
+              ? defaultSeed(p)
+              : Long.parseLong(p.seedStr.trim());
+      p.diverse =
+          p.diverseStr == null || p.diverseStr.isBlank() ? 0 : Integer.parseInt(p.diverseStr.trim());
     } catch (NumberFormatException e) {
       errors.add("Failed parsing numbers " + e.getMessage());
     }
+
+    // Compile the free hours, less the busy ones, into the slots courses may meet in
+    try {
+      p.allowedSlots = allowedSlots(p.avail, p.busy);
+    } catch (IllegalArgumentException e) {
+      errors.add(e.getMessage());
+    }
+    return p;
+  }
+
+  /**
+   * Converts the typed constraints of a JSON request body into schedule generation parameters. The
+   * raw values are filled in as the query parameters of the same request would give them, so both
+   * forms of a request get the same default seed, and so the same schedules.
+   *
+   * @param body The request body
+   * @param meta Optional JSON metadata containing course information (may be null)
+   * @param errors List to collect any validation errors encountered during parsing
+   * @return A Params object containing all parsed schedule generation parameters
+   */
+  public static Params fromRequest(
+      GenerateRequest body, ClerkAPI.Metadata meta, List<String> errors) {
+    Params p = new Params();
+    List<String> missing = body.missing();
+    if (!missing.isEmpty()) {
+      errors.add("The request body is missing " + String.join(", ", missing));
+      return p;
+    }
+    p.term = body.term;
+    p.classes = String.valueOf(body.classes);
+    p.taken = String.join(",", body.taken);
+    p.remaining = String.join(",", body.remaining);
+    p.needed = String.join(",", body.needed);
+    p.times = String.join(",", body.times);
+    p.depts = String.join(",", body.depts);
+    p.writParam = String.valueOf(body.writ);
+    p.days = String.join(",", body.days);
+    p.mwfStr = String.valueOf(body.mwf);
+    p.tthStr = String.valueOf(body.tth);
+    p.reqThisSemStr = String.valueOf(body.reqThisSem);
+    p.budgetStr = body.budgetMs == null ? null : String.valueOf(body.budgetMs);
+    p.format = body.format;
+    p.compact = "compact".equals(p.format);
+    p.seedStr = body.seed == null ? null : String.valueOf(body.seed);
+    p.diverseStr = body.diverse == null ? null : String.valueOf(body.diverse);
+    p.engineStr = body.engine;
+    p.engine = parseEngine(p.engineStr);
+    p.avail = body.avail;
+    p.busy = body.busy;
+
+    p.classesPerSemester = body.classes;
+    p.coursesTaken = body.taken;
+    p.remainingRequired = body.remaining;
+    if (meta != null) applyMeta(p, meta);
+    p.necessaryCourses = new ArrayList<>(body.needed);
+    p.availableTimes = body.times;
+    p.preferredDepts = body.depts;
+    p.needWRIT = body.writ;
+    p.mwfCnt = body.mwf;
+    p.tthCnt = body.tth;
+    p.requiredThisSem = body.reqThisSem;
+    p.dayAvailability = buildDayMap(new ArrayList<>(body.days));
+    p.balance = new ScheduleGenerator.DayBalance(p.mwfCnt, p.tthCnt);
+    p.budgetMs = body.budgetMs == null ? SearchBudget.DEFAULT_MS : body.budgetMs;
+    p.seed = body.seed == null ? defaultSeed(p) : body.seed;
+    p.diverse = body.diverse == null ? 0 : body.diverse;
+
+    try {
+      p.allowedSlots = allowedSlots(p.avail, p.busy);
+    } catch (IllegalArgumentException e) {
+      errors.add(e.getMessage());
+    }
     return p;
   }
 
+  /**
+   * Replaces the courses taken and remaining with those in a Clerk user's metadata, where given.
+   *
+   * @param p The parameters to update
+   * @param meta The user's metadata
+   */
+  private static void applyMeta(Params p, ClerkAPI.Metadata meta) {
+    if (meta.taken != null) {
+      p.coursesTaken = meta.taken;
+      p.taken = String.join(",", meta.taken);
+    }
+    if (meta.desired != null) {
+      p.remainingRequired = meta.desired;
+      p.remaining = String.join(",", meta.desired);
+    }
+  }
+
+  /**
+   * Compiles a request's free and busy intervals into the slots of the week courses may meet in.
+   *
+   * @param avail Intervals the student is free, such as "MTWThF 10-18"; null or blank for all week
+   * @param busy Intervals the student is not free, such as "MTWThF 12-13"; null or blank for none
+   * @return The allowed slots, or null if neither is given
+   * @throws IllegalArgumentException If an interval cannot be read
+   */
+  static WeeklyMask allowedSlots(String avail, String busy) {
+    boolean hasAvail = avail != null && !avail.isBlank();
+    boolean hasBusy = busy != null && !busy.isBlank();
+    if (!hasAvail && !hasBusy) return null;
+    WeeklyMask free = hasAvail ? WeeklyMask.parse(avail) : WeeklyMask.ALL;
+    return hasBusy ? free.minus(WeeklyMask.parse(busy)) : free;
+  }
+
   /**
    * Validates schedule parameters before course filtering.
    * Checks for logical consistency in user preferences and constraints.
@@ -126,6 +347,24 @@ public final class ScheduleErrorChecker {
    * @param errors List to collect validation errors
    */
   public static void validatePreFilter(Params p, List<String> errors) {
+    // Check the search budget is usable
+    if (p.budgetMs <= 0 || p.budgetMs > SearchBudget.MAX_MS)
+      errors.add(
+          "The search budget (budgetMs) must be between 1 and " + SearchBudget.MAX_MS + " ms");
+
+    // Check the number of varied schedules asked for is usable
+    if (p.diverse < 0 || p.diverse > MAX_DIVERSE)
+      errors.add("The number of varied schedules (diverse) must be between 0 and " + MAX_DIVERSE);
+
+    // Check the search engine is known
+    if (p.engine == null)
+      errors.add(
+          "Unknown search engine \"" + p.engineStr + "\"; use \"enumerate\" or \"propagate\"");
+
+    // Check the response format is known
+    if (p.format != null && !p.format.equals("full") && !p.format.equals("compact"))
+      errors.add("Unknown response format \"" + p.format + "\"; use \"full\" or \"compact\"");
+
     // Check minimum course load
     if (p.classesPerSemester < 3)
       errors.add("The number of classes per semester must be at least 3");
@@ -232,14 +471,17 @@ public final class ScheduleErrorChecker {
               + String.join(", ", droppedRequired));
     }
 
-    // Check for time conflicts between necessary courses
+    // Check for time conflicts between necessary courses, in every section bundle they fit in
     for (int i = 0; i < p.necessaryCourses.size(); i++) {
       for (int j = i + 1; j < p.necessaryCourses.size(); j++) {
         String a = p.necessaryCourses.get(i);
         String b = p.necessaryCourses.get(j);
-        Map<String, Object> c = gen.courseMap.get(a);
-        Map<String, Object> d = gen.courseMap.get(b);
-        if (c != null && d != null && SchedulerUtils.hasTimeConflict(c, d)) {
+        List<Map<String, Object>> c = gen.bundlesOf(a);
+        List<Map<String, Object>> d = gen.bundlesOf(b);
+        boolean compatible =
+            c.stream()
+                .anyMatch(x -> d.stream().anyMatch(y -> !SchedulerUtils.hasTimeConflict(x, y)));
+        if (!c.isEmpty() && !d.isEmpty() && !compatible) {
           errors.add("The needed courses " + a + " and " + b + " have a time conflict");
         }
       }
@@ -287,7 +529,7 @@ public final class ScheduleErrorChecker {
    * @return A list of trimmed strings, or an empty list if input is null or blank
    */
   static List<String> parseList(String raw) {
-    return raw == null || raw.isBlank() ? List.of() : List.of(raw.split("\\s*,\\s*"));
+    return raw == null || raw.isBlank() ? List.of() : List.of(raw.trim().split("\\s*,\\s*"));
   }
 
   /**
@@ -302,4 +544,29 @@ public final class ScheduleErrorChecker {
     days.forEach(d -> map.put(d, true));
     return map;
   }
-}
\ No newline at end of file
+
+  /**
+   * Parses the name of a search engine.
+   *
+   * @param name The engine name, or null or blank for the default
+   * @return The engine, or null if the name is unknown
+   */
+  private static ScheduleGenerator.Engine parseEngine(String name) {
+    if (name == null || name.isBlank()) return ScheduleGenerator.DEFAULT_ENGINE;
+    for (ScheduleGenerator.Engine e : ScheduleGenerator.Engine.values()) {
+      if (e.name().equalsIgnoreCase(name.trim())) return e;
+    }
+    return null;
+  }
+
+  /**
+   * Derives the search seed used when a request gives none, from the request's constraints, so the
+   * same request always gets the same schedules however its lists are spaced.
+   *
+   * @param p The parameters, with their raw values filled in
+   * @return The seed
+   */
+  private static long defaultSeed(Params p) {
+    return p.keyValues().subList(0, 12).hashCode();
+  }
+}
@@ -2,12 +2,21 @@ package Handlers;
 
 import Scheduler.ScheduleGenerator;
 import static Utilities.ClerkAPI.getUser;
-import com.fasterxml.jackson.databind.JsonNode;
 import Scheduler.ScheduleGenerator.Result;
+import Scheduler.SearchBudget;
+import Scheduler.SearchExecutor;
+import Scheduler.SearchListener;
+import Scheduler.SharedTerm;
+import Utilities.CborWriter;
+import Utilities.ClerkAPI;
+import Utilities.Json;
+import Utilities.Metrics;
 import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
+import com.squareup.moshi.JsonDataException;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import okio.Okio;
 import spark.Request;
 import spark.Response;
 import spark.Route;
@@ -20,57 +29,273 @@ import spark.Route;
  */
 public class ScheduleHandler implements Route {
 
-  /** Moshi instance for JSON serialization and deserialization */
-  private static final Moshi MOSHI = new Moshi.Builder().build();
-
   /** JSON adapter for converting between Maps and JSON strings */
-  private static final JsonAdapter<Map<String, Object>> JSON =
-      MOSHI.adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /** Request attribute holding the user ID once Clerk has confirmed it */
+  private static final String VERIFIED_USER = "cab.verifiedUser";
+
+  /** Latency histograms for the stages timed here; the search stages are timed by the generator */
+  private static final Metrics.Histogram CLERK_TIME = Metrics.stage("clerk_fetch");
+  private static final Metrics.Histogram PARSE_TIME = Metrics.stage("parse_params");
+  private static final Metrics.Histogram CATALOG_TIME = Metrics.stage("catalog_load");
+  private static final Metrics.Histogram FILTER_TIME = Metrics.stage("filter");
+  private static final Metrics.Histogram SERIALIZE_TIME = Metrics.stage("serialize");
 
   /**
    * Handles HTTP requests for schedule generation.
    * This method processes the incoming request, validates parameters,
-   * generates schedules, and returns the results as JSON.
+   * generates schedules, and returns the results as JSON, or as CBOR when the
+   * Accept header asks for {@code application/cbor}.
    *
    * @param req The HTTP request containing schedule generation parameters
    * @param res The HTTP response object for setting status codes
-   * @return A JSON string containing generated schedules or error information
+   * @return An empty body once the schedules are written, or a JSON string with error information
    * @throws Exception If an error occurs during processing
    */
   @Override
   public Object handle(Request req, Response res) throws Exception {
-    JsonNode meta = null;
+    long received = System.nanoTime();
+    ScheduleErrorChecker.Params p;
+    try {
+      p = parseRequest(req);
+    } catch (InvalidRequestException e) {
+      return e.respond(res);
+    }
+
+    // Run the search on the dedicated worker pool, refusing fast when it is saturated
+    BooleanSupplier disconnected = clientDisconnected(req);
+    SearchResponse body;
+    try {
+      body = SearchExecutor.run(clientKey(req), () -> search(p, received, disconnected));
+    } catch (SearchExecutor.RejectedException e) {
+      return rejected(res, e);
+    }
+
+    // Stream the body in the negotiated format on this thread, freeing the worker
+    long t = System.nanoTime();
+    if (CborWriter.accepts(req.headers("Accept"))) {
+      res.type(CborWriter.MEDIA_TYPE);
+      body.writeCborTo(res.raw().getOutputStream());
+    } else {
+      res.type("application/json");
+      body.writeTo(res.raw().getOutputStream());
+    }
+    SERIALIZE_TIME.observeSince(t);
+    return "";
+  }
+
+  /** Thrown when a request cannot be searched, carrying the response to send instead */
+  static final class InvalidRequestException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /** HTTP status to respond with */
+    final int status;
+    /** Errors to report to the client */
+    final List<String> errors;
+
+    InvalidRequestException(int status, List<String> errors) {
+      super(String.join("; ", errors));
+      this.status = status;
+      this.errors = errors;
+    }
+
+    /**
+     * Sets the response status and builds the error body.
+     *
+     * @param res The HTTP response object
+     * @return A JSON string with the errors
+     */
+    String respond(Response res) {
+      res.status(status);
+      return JSON.toJson(Map.of("success", false, "errors", errors));
+    }
+  }
+
+  /**
+   * Fetches the user's Clerk metadata if a user is given, then parses and validates the request
+   * parameters: from a {@link GenerateRequest} body when the request is a POST of JSON, otherwise
+   * from the query parameters. Runs on the request thread, before the search is queued.
+   *
+   * @param req The HTTP request containing schedule generation parameters
+   * @return The validated parameters
+   * @throws InvalidRequestException If the user is unknown or the parameters are invalid
+   */
+  static ScheduleErrorChecker.Params parseRequest(Request req) throws InvalidRequestException {
+    ClerkAPI.Metadata meta = null;
     String userId = req.queryParams("user");
+    long t = System.nanoTime();
 
     // Retrieve user metadata from Clerk if a user ID is provided
     if (userId != null && !userId.isBlank()) {
       try {
-        meta = getUser(userId).get("unsafe_metadata");
+        meta = getUser(userId);
+        req.attribute(VERIFIED_USER, userId);
+        t = CLERK_TIME.observeSince(t);
       } catch (Exception e) {
-        res.status(400);
-        return JSON.toJson(Map.of(
-            "success", false,
-            "errors", List.of("Invalid Clerk user ID: " + userId)
-        ));
+        throw new InvalidRequestException(400, List.of("Invalid Clerk user ID: " + userId));
       }
     }
 
     List<String> errors = new ArrayList<>();
 
     // Parse and validate request parameters
-    ScheduleErrorChecker.Params p = ScheduleErrorChecker.parseParams(req, meta, errors);
+    ScheduleErrorChecker.Params p;
+    if (hasJsonBody(req)) {
+      GenerateRequest body;
+      try {
+        body = GenerateRequest.read(Okio.buffer(Okio.source(req.raw().getInputStream())));
+      } catch (IOException | JsonDataException e) {
+        throw new InvalidRequestException(
+            400, List.of("The request body must be a JSON object: " + e.getMessage()));
+      }
+      p = ScheduleErrorChecker.fromRequest(body, meta, errors);
+    } else {
+      p = ScheduleErrorChecker.parseParams(req, meta, errors);
+    }
+    PARSE_TIME.observeSince(t);
 
     if (!errors.isEmpty()) {
-      return JSON.toJson(Map.of("success", false, "errors", errors));
+      throw new InvalidRequestException(200, errors);
     }
 
     // Pre-filter validation
     ScheduleErrorChecker.validatePreFilter(p, errors);
     if (!errors.isEmpty()) {
-      return JSON.toJson(Map.of("success", false, "errors", errors));
+      throw new InvalidRequestException(200, errors);
     }
+    return p;
+  }
+
+  /**
+   * Checks whether a request carries its constraints as a JSON body.
+   *
+   * @param req The HTTP request
+   * @return true for a POST with a JSON content type
+   */
+  private static boolean hasJsonBody(Request req) {
+    String type = req.contentType();
+    return "POST".equals(req.requestMethod())
+        && type != null
+        && type.toLowerCase(Locale.ROOT).startsWith("application/json");
+  }
+
+  /**
+   * Identifies the client for per-client admission limits: the Clerk user if {@link #parseRequest}
+   * found it in Clerk, otherwise the remote address. A {@code user} parameter that was not looked
+   * up is ignored, so a client cannot take on fresh limits by naming other users.
+   *
+   * @param req The HTTP request
+   * @return The client key
+   */
+  static String clientKey(Request req) {
+    String userId = req.attribute(VERIFIED_USER);
+    return userId != null ? "user:" + userId : "ip:" + req.ip();
+  }
 
-    // Initialize the schedule generator with validated parameters
+  /**
+   * Builds the response for a search refused by admission control.
+   *
+   * @param res The HTTP response object
+   * @param e The rejection
+   * @return A JSON string with the reason
+   */
+  static String rejected(Response res, SearchExecutor.RejectedException e) {
+    res.status(e.status());
+    res.header("Retry-After", String.valueOf(SearchExecutor.RETRY_AFTER_SECONDS));
+    return JSON.toJson(Map.of("success", false, "errors", List.of(e.getMessage())));
+  }
+
+  /**
+   * Loads the term's courses, filters them and runs the schedule search. Called on a {@link
+   * SearchExecutor} worker thread.
+   *
+   * @param p The validated request parameters
+   * @param received {@link System#nanoTime()} reading at the request's arrival
+   * @param disconnected Returns true once the client has gone away
+   * @return The generated schedules or error information, ready to be written
+   * @throws Exception If an error occurs during processing
+   */
+  static SearchResponse search(
+      ScheduleErrorChecker.Params p, long received, BooleanSupplier disconnected)
+      throws Exception {
+    return search(p, received, disconnected, null, 0);
+  }
+
+  /**
+   * Loads the term's courses, filters them and runs the schedule search, reporting progress to a
+   * listener as it goes.
+   *
+   * @param p The validated request parameters
+   * @param received {@link System#nanoTime()} reading at the request's arrival
+   * @param cancelled Returns true once the search should stop early
+   * @param listener Receives progress reports, or null for none
+   * @param topK Number of best schedules whose improvements are reported
+   * @return The generated schedules or error information, ready to be written
+   * @throws Exception If an error occurs during processing
+   */
+  static SearchResponse search(
+      ScheduleErrorChecker.Params p,
+      long received,
+      BooleanSupplier cancelled,
+      SearchListener listener,
+      int topK)
+      throws Exception {
+    return search(p, received, cancelled, listener, topK, null);
+  }
+
+  /**
+   * Filters the courses and runs the schedule search, using a term's shared structures if given
+   * and otherwise loading the term's courses for this search alone.
+   *
+   * @param p The validated request parameters
+   * @param received {@link System#nanoTime()} reading the search budget is counted from
+   * @param cancelled Returns true once the search should stop early
+   * @param listener Receives progress reports, or null for none
+   * @param topK Number of best schedules whose improvements are reported
+   * @param shared Catalog, conflict table and availability pools shared with other searches of the
+   *     same term, or null
+   * @return The generated schedules or error information, ready to be written
+   * @throws Exception If an error occurs during processing
+   */
+  static SearchResponse search(
+      ScheduleErrorChecker.Params p,
+      long received,
+      BooleanSupplier cancelled,
+      SearchListener listener,
+      int topK,
+      SharedTerm shared)
+      throws Exception {
+    List<String> errors = new ArrayList<>();
+    ScheduleGenerator gen = newGenerator(p);
+
+    // Bound the search by the request's budget, counted from its arrival
+    gen.setBudget(SearchBudget.of(p.budgetMs, received, cancelled));
+    if (listener != null) gen.setListener(listener, topK);
+
+    // Load course data for the requested term
+    long t = System.nanoTime();
+    if (shared != null) {
+      gen.loadCourseData(shared);
+    } else {
+      gen.loadCourseData(p.term);
+    }
+    t = CATALOG_TIME.observeSince(t);
+
+    // Validate course existence and filter courses
+    ScheduleErrorChecker.validateCourseExistence(p, gen.courseMap.keySet(), errors);
+    gen.filterCourses(p.term);
+    FILTER_TIME.observeSince(t);
+    return solve(gen, p, errors);
+  }
+
+  /**
+   * Creates a schedule generator for validated request parameters.
+   *
+   * @param p The validated request parameters
+   * @return A generator configured with the request's constraints
+   */
+  static ScheduleGenerator newGenerator(ScheduleErrorChecker.Params p) {
     ScheduleGenerator gen =
         new ScheduleGenerator(
             p.classesPerSemester,
@@ -83,34 +308,70 @@ public class ScheduleHandler implements Route {
             p.requiredThisSem,
             p.preferredDepts,
             p.needWRIT);
+    gen.setSampling(p.seed, p.diverse);
+    gen.setEngine(p.engine);
+    gen.setAllowedSlots(p.allowedSlots);
+    return gen;
+  }
 
-    // Load course data for the requested term
-    gen.loadCourseData(p.term);
+  /**
+   * Validates the filtered courses and runs the schedule search on them.
+   *
+   * @param gen A generator whose courses are loaded and filtered
+   * @param p The validated request parameters
+   * @param errors Errors found so far, such as unknown courses; more are added here
+   * @return The generated schedules or error information, ready to be written
+   * @throws Exception If an error occurs during the search
+   */
+  static SearchResponse solve(
+      ScheduleGenerator gen, ScheduleErrorChecker.Params p, List<String> errors) throws Exception {
+    validateFiltered(gen, p, errors);
+    if (!errors.isEmpty()) {
+      return SearchResponse.failure(errors);
+    }
 
-    // Validate course existence and filter courses
-    ScheduleErrorChecker.validateCourseExistence(p, gen.courseMap.keySet(), errors);
-    gen.filterCourses(p.term);
+    // Generate schedules; serialization happens when the response is written
+    Result result = gen.generateSchedules(p.term);
+    return SearchResponse.of(result, p.compact);
+  }
 
+  /**
+   * Checks that the filtered courses can satisfy the request: enough required courses, compatible
+   * needed courses, a WRIT course if one is needed, and a schedule meeting all of these at once.
+   *
+   * @param gen A generator whose courses are loaded and filtered
+   * @param p The validated request parameters
+   * @param errors List to collect the problems found
+   */
+  static void validateFiltered(
+      ScheduleGenerator gen, ScheduleErrorChecker.Params p, List<String> errors) {
     // Post-filter validation
     ScheduleErrorChecker.validatePostFilter(gen, p, errors);
-    if (!errors.isEmpty()) {
-      return JSON.toJson(Map.of("success", false, "errors", errors));
-    }
+    if (!errors.isEmpty()) return;
 
     // Check WRIT requirement can be satisfied
     if (p.needWRIT
         && gen.getFilteredCourses().stream().noneMatch(c -> Boolean.TRUE.equals(c.get("writ")))) {
-      return JSON.toJson(
-          Map.of(
-              "success",
-              false,
-              "errors",
-              List.of("No WRIT‑designated course fits the given constraints")));
+      errors.add("No WRIT‑designated course fits the given constraints");
+      return;
     }
 
-    // Generate schedules and build the response
-    Result result = gen.generateSchedules(p.term);
-    return JSON.toJson(buildResponse(result));
+    // Reject requests whose constraints can't all be met before searching for them
+    errors.addAll(gen.checkFeasibility());
+  }
+
+  /**
+   * Returns a check for whether the client has closed its connection, so a search nobody is waiting
+   * for can stop early. Jetty only notices a closed connection once its selector sees it, so this
+   * can lag the actual disconnect.
+   *
+   * @param req The HTTP request being served
+   * @return A supplier that is true once the connection is closed
+   */
+  static BooleanSupplier clientDisconnected(Request req) {
+    if (!(req.raw() instanceof org.eclipse.jetty.server.Request)) return () -> false;
+    var endPoint = ((org.eclipse.jetty.server.Request) req.raw()).getHttpChannel().getEndPoint();
+    return () -> !endPoint.isOpen();
   }
 
   /**
@@ -121,31 +382,42 @@ public class ScheduleHandler implements Route {
    * @return A map containing the formatted response with schedules and metadata
    */
   @SuppressWarnings("unchecked")
-  private static Map<String, Object> buildResponse(Result result) {
+  public static Map<String, Object> buildResponse(Result result) {
     Map<String, Object> outPut = new LinkedHashMap<>();
     outPut.put("success", result.errors.isEmpty());
     outPut.put("errors", result.errors);
     outPut.put("schedulesCount", result.schedules.size());
+    outPut.put("truncated", result.truncated);
 
     List<Map<String, Object>> schedOut = new ArrayList<>();
     for (var schedule : result.schedules) {
-      Map<String, Object> map = new LinkedHashMap<>();
-      map.put("score", schedule.score);
-
-      // Extract essential course information for each schedule
-      List<Map<String, Object>> cm = new ArrayList<>();
-      for (var c : schedule.courses) {
-        cm.add(
-            Map.of(
-                "code", c.get("code"),
-                "title", c.get("title"),
-                "meets", c.get("meets"),
-                "writ", c.get("writ")));
-      }
-      map.put("courses", cm);
-      schedOut.add(map);
+      schedOut.add(scheduleToMap(schedule));
     }
     outPut.put("schedules", schedOut);
     return outPut;
   }
+
+  /**
+   * Formats one schedule as a JSON-compatible map of its score and essential course information.
+   *
+   * @param schedule The scored schedule
+   * @return A map with the schedule's score and courses
+   */
+  static Map<String, Object> scheduleToMap(ScheduleGenerator.Schedule schedule) {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("score", schedule.score);
+
+    // Extract essential course information for each schedule
+    List<Map<String, Object>> cm = new ArrayList<>();
+    for (var c : schedule.courses) {
+      cm.add(
+          Map.of(
+              "code", c.get("code"),
+              "title", c.get("title"),
+              "meets", c.get("meets"),
+              "writ", c.get("writ")));
+    }
+    map.put("courses", cm);
+    return map;
+  }
 }
\ No newline at end of file
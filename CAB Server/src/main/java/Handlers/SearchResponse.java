@@ -0,0 +1,115 @@
+package Handlers;
+
+import Scheduler.ScheduleGenerator.Result;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * The outcome of a schedule search, kept unserialized until it is written. The search thread
+ * produces it, and it is streamed to the client in the requested format afterwards, or turned into
+ * a string for jobs and event streams.
+ */
+public final class SearchResponse {
+
+  /** Reasons the search could not run; empty if it ran */
+  private final List<String> errors;
+  /** The search result, or null if the search could not run */
+  private final Result result;
+  /** Whether to use the dictionary-encoded format */
+  private final boolean compact;
+
+  private SearchResponse(List<String> errors, Result result, boolean compact) {
+    this.errors = errors;
+    this.result = result;
+    this.compact = compact;
+  }
+
+  /**
+   * Creates a response for a request that failed validation after the catalog was loaded.
+   *
+   * @param errors The reasons the search could not run
+   * @return The response
+   */
+  static SearchResponse failure(List<String> errors) {
+    return new SearchResponse(errors, null, false);
+  }
+
+  /**
+   * Creates a response for a finished search.
+   *
+   * @param result The search result
+   * @param compact Whether to use the dictionary-encoded format
+   * @return The response
+   */
+  public static SearchResponse of(Result result, boolean compact) {
+    return new SearchResponse(List.of(), result, compact);
+  }
+
+  /**
+   * Returns the search result.
+   *
+   * @return The result, or null if the search could not run
+   */
+  Result result() {
+    return result;
+  }
+
+  /**
+   * Returns the reasons the search failed, whether it could not run or ran and reported errors.
+   *
+   * @return The errors; empty if the search succeeded
+   */
+  List<String> errors() {
+    return result == null ? errors : result.errors;
+  }
+
+  /**
+   * Writes the response body as JSON.
+   *
+   * @param out The stream to write to; flushed but not closed
+   * @throws IOException If writing to the stream fails
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    if (result == null) {
+      BufferedSink sink = Okio.buffer(Okio.sink(out));
+      sink.writeUtf8("{\"success\":false,\"errors\":");
+      FullResponse.writeStrings(sink, errors);
+      sink.writeUtf8("}");
+      sink.flush();
+    } else if (compact) {
+      CompactResponse.write(result, out);
+    } else {
+      FullResponse.write(result, out);
+    }
+  }
+
+  /**
+   * Writes the response body as CBOR, for clients that negotiated the binary format.
+   *
+   * @param out The stream to write to; flushed but not closed
+   * @throws IOException If writing to the stream fails
+   */
+  public void writeCborTo(OutputStream out) throws IOException {
+    if (result == null) {
+      CborResponse.writeFailure(errors, out);
+    } else {
+      CborResponse.write(result, out);
+    }
+  }
+
+  /**
+   * Returns the response body as a JSON string.
+   *
+   * @return The JSON text
+   * @throws IOException Never, as the JSON is written to memory
+   */
+  public String toJson() throws IOException {
+    Buffer buffer = new Buffer();
+    writeTo(buffer.outputStream());
+    return buffer.readUtf8();
+  }
+}
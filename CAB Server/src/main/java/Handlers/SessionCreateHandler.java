@@ -0,0 +1,52 @@
+package Handlers;
+
+import Scheduler.SearchExecutor;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler that starts an interactive planning session. It takes the same parameters as
+ * /generate, runs the first search, and keeps the filtered courses and results server-side so later
+ * edits through /sessions/{id}/edits are answered without starting over.
+ */
+public class SessionCreateHandler implements Route {
+
+  /**
+   * Handles a session creation request.
+   *
+   * @param req The HTTP request containing schedule generation parameters
+   * @param res The HTTP response object for setting status codes
+   * @return A JSON string with the session ID and first result, or error information
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    ScheduleErrorChecker.Params p;
+    try {
+      p = ScheduleHandler.parseRequest(req);
+    } catch (ScheduleHandler.InvalidRequestException e) {
+      return e.respond(res);
+    }
+
+    String client = ScheduleHandler.clientKey(req);
+    PlanningSession session;
+    try {
+      session =
+          SearchExecutor.run(
+              client,
+              () ->
+                  PlanningSession.start(
+                      SessionStore.newId(), client, p, ScheduleHandler.clientDisconnected(req)));
+    } catch (SearchExecutor.RejectedException e) {
+      return ScheduleHandler.rejected(res, e);
+    } catch (ScheduleHandler.InvalidRequestException e) {
+      return e.respond(res);
+    }
+
+    SessionStore.SESSIONS.put(session);
+    res.status(201);
+    res.header("Location", "/sessions/" + session.id);
+    return session.toJson();
+  }
+}
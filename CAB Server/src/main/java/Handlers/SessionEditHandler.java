@@ -0,0 +1,173 @@
+package Handlers;
+
+import Scheduler.SearchExecutor;
+import Utilities.Json;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+import okio.BufferedSource;
+import okio.Okio;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler that applies one edit to a planning session. The POST body names the edit:
+ *
+ * <ul>
+ *   <li>{@code {"op": "dropDay", "day": "F"}}: make a day unavailable
+ *   <li>{@code {"op": "exclude", "course": "CSCI 0200"}}: stop considering a course
+ *   <li>{@code {"op": "lock", "course": "CSCI 0200"}}: require a course in every schedule
+ *   <li>{@code {"op": "classes", "classes": 5, "mwf": 3, "tth": 2}}: change the course load
+ * </ul>
+ *
+ * The response has the same shape as the session itself, with {@code incremental} telling whether
+ * the result was derived from the previous one without searching. A rejected edit leaves the
+ * session unchanged and reports why.
+ */
+public class SessionEditHandler implements Route {
+
+  /** JSON adapter for error responses */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /** An edit request body; each edit uses only some of the fields */
+  static final class Edit {
+    /** Field names, in the order {@link #read} switches on them */
+    private static final JsonReader.Options NAMES =
+        JsonReader.Options.of("op", "day", "course", "classes", "mwf", "tth");
+
+    /** The edit's name */
+    String op;
+    /** Day to drop */
+    String day;
+    /** Course to exclude or lock */
+    String course;
+    /** New number of classes and MWF/TTh balance */
+    Integer classes, mwf, tth;
+
+    /**
+     * Reads an edit request body.
+     *
+     * @param source The body
+     * @return The edit
+     * @throws IOException If the body cannot be read or is not a JSON object
+     * @throws JsonDataException If a field has the wrong type
+     */
+    static Edit read(BufferedSource source) throws IOException {
+      try (JsonReader reader = JsonReader.of(source)) {
+        Edit edit = new Edit();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          int field = reader.selectName(NAMES);
+          if (field == -1) {
+            reader.skipName();
+            reader.skipValue();
+            continue;
+          }
+          if (reader.peek() == JsonReader.Token.NULL) {
+            reader.skipValue();
+            continue;
+          }
+          switch (field) {
+            case 0:
+              edit.op = reader.nextString();
+              break;
+            case 1:
+              edit.day = reader.nextString();
+              break;
+            case 2:
+              edit.course = reader.nextString();
+              break;
+            case 3:
+              edit.classes = reader.nextInt();
+              break;
+            case 4:
+              edit.mwf = reader.nextInt();
+              break;
+            case 5:
+              edit.tth = reader.nextInt();
+              break;
+            default:
+              throw new AssertionError(field);
+          }
+        }
+        reader.endObject();
+        return edit;
+      }
+    }
+  }
+
+  /**
+   * Handles a session edit.
+   *
+   * @param req The HTTP request, with the session ID as the {@code :id} path parameter
+   * @param res The HTTP response object for setting status codes
+   * @return A JSON string with the session's new result, or error information
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    String id = req.params(":id");
+    PlanningSession session = SessionStore.SESSIONS.get(id);
+    if (session == null) {
+      res.status(404);
+      return error("Unknown or expired session: " + id);
+    }
+
+    Edit body;
+    try {
+      body = Edit.read(Okio.buffer(Okio.source(req.raw().getInputStream())));
+    } catch (IOException | JsonDataException e) {
+      body = null;
+    }
+    Callable<SearchResponse> edit =
+        body == null ? null : edit(session, body, ScheduleHandler.clientDisconnected(req));
+    if (edit == null) {
+      res.status(400);
+      return error("The body must name an edit: dropDay, exclude, lock or classes");
+    }
+
+    SearchResponse response;
+    try {
+      response = SearchExecutor.run(ScheduleHandler.clientKey(req), edit);
+    } catch (SearchExecutor.RejectedException e) {
+      return ScheduleHandler.rejected(res, e);
+    }
+    if (!response.errors().isEmpty()) return response.toJson();
+    return session.toJson();
+  }
+
+  /**
+   * Turns an edit request body into the session operation it names.
+   *
+   * @param session The session to edit
+   * @param body The edit request body
+   * @param cancelled Returns true once a search should stop early
+   * @return The operation, or null if the body does not name a valid edit
+   */
+  private static Callable<SearchResponse> edit(
+      PlanningSession session, Edit body, BooleanSupplier cancelled) {
+    if ("dropDay".equals(body.op) && body.day != null) {
+      return () -> session.dropDay(body.day, cancelled);
+    }
+    if ("exclude".equals(body.op) && body.course != null) {
+      return () -> session.exclude(body.course, cancelled);
+    }
+    if ("lock".equals(body.op) && body.course != null) {
+      return () -> session.lock(body.course, cancelled);
+    }
+    if ("classes".equals(body.op) && body.classes != null && body.mwf != null && body.tth != null) {
+      return () -> session.resize(body.classes, body.mwf, body.tth, cancelled);
+    }
+    return null;
+  }
+
+  private static String error(String message) {
+    return JSON.toJson(Map.of("success", false, "errors", List.of(message)));
+  }
+}
@@ -0,0 +1,41 @@
+package Handlers;
+
+import Utilities.Json;
+import com.squareup.moshi.JsonAdapter;
+import java.util.List;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler that returns a planning session's latest result on GET and ends the session on
+ * DELETE.
+ */
+public class SessionStatusHandler implements Route {
+
+  /** JSON adapter for responses without a result */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /**
+   * Handles a session lookup or deletion.
+   *
+   * @param req The HTTP request, with the session ID as the {@code :id} path parameter
+   * @param res The HTTP response object for setting status codes
+   * @return A JSON string describing the session, or an error if it is unknown or expired
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    String id = req.params(":id");
+    if ("DELETE".equals(req.requestMethod())) {
+      if (SessionStore.SESSIONS.remove(id)) return JSON.toJson(Map.of("success", true));
+    } else {
+      PlanningSession session = SessionStore.SESSIONS.get(id);
+      if (session != null) return session.toJson();
+    }
+    res.status(404);
+    return JSON.toJson(
+        Map.of("success", false, "errors", List.of("Unknown or expired session: " + id)));
+  }
+}
@@ -0,0 +1,97 @@
+package Handlers;
+
+import Utilities.Metrics;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * In-memory store of interactive planning sessions. A session expires once it has been idle for a
+ * configured time, and the store holds at most a fixed number of sessions, dropping the least
+ * recently used first. Session IDs are random, so only the client that created a session knows its
+ * ID.
+ */
+final class SessionStore {
+
+  /** Maximum number of sessions kept at once */
+  static final int CAPACITY = Integer.getInteger("cab.sessions.capacity", 1000);
+
+  /** How long a session may sit unused before it is dropped, in milliseconds */
+  static final long IDLE_TTL_MS = Long.getLong("cab.sessions.idleTtlMs", 30 * 60 * 1000);
+
+  /** The process-wide session store */
+  static final SessionStore SESSIONS = new SessionStore();
+
+  private static final Metrics.Counter EXPIRED =
+      Metrics.counter("cab_sessions_expired_total", "Sessions dropped for idleness or capacity");
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /** Sessions by ID, least recently used first */
+  private final LinkedHashMap<String, PlanningSession> sessions =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private SessionStore() {
+    Metrics.gauge("cab_sessions_stored", "Planning sessions currently held", this::size);
+  }
+
+  /**
+   * Generates an ID for a new session.
+   *
+   * @return A random 32-character hexadecimal ID
+   */
+  static String newId() {
+    byte[] bytes = new byte[16];
+    RANDOM.nextBytes(bytes);
+    return HexFormat.of().formatHex(bytes);
+  }
+
+  /**
+   * Returns a session and marks it as used.
+   *
+   * @param id The session ID
+   * @return The session, or null if unknown or expired
+   */
+  synchronized PlanningSession get(String id) {
+    evict();
+    PlanningSession session = sessions.get(id);
+    if (session != null) session.lastUsedMs = System.currentTimeMillis();
+    return session;
+  }
+
+  /**
+   * Stores a new session.
+   *
+   * @param session The session
+   */
+  synchronized void put(PlanningSession session) {
+    sessions.put(session.id, session);
+    evict();
+  }
+
+  /**
+   * Drops a session.
+   *
+   * @param id The session ID
+   * @return true if the session existed
+   */
+  synchronized boolean remove(String id) {
+    return sessions.remove(id) != null;
+  }
+
+  /** Drops idle sessions, then the least recently used while over capacity. */
+  private void evict() {
+    long cutoff = System.currentTimeMillis() - IDLE_TTL_MS;
+    Iterator<PlanningSession> it = sessions.values().iterator();
+    while (it.hasNext()) {
+      PlanningSession session = it.next();
+      if (session.lastUsedMs < cutoff || sessions.size() > CAPACITY) {
+        it.remove();
+        EXPIRED.inc();
+      }
+    }
+  }
+
+  private synchronized int size() {
+    return sessions.size();
+  }
+}
@@ -0,0 +1,181 @@
+package Handlers;
+
+import Scheduler.ScheduleGenerator;
+import Scheduler.SearchBudget;
+import Scheduler.SearchExecutor;
+import Scheduler.SearchListener;
+import Utilities.Json;
+import com.squareup.moshi.JsonAdapter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletResponse;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * HTTP handler that runs a schedule search and streams its progress as Server-Sent Events. Takes
+ * the same parameters as /generate and sends:
+ *
+ * <ul>
+ *   <li>{@code progress}: nodes explored, schedules found and the best score so far, a few times a
+ *       second
+ *   <li>{@code top}: each schedule that enters the top results, with its score and courses
+ *   <li>{@code result}: the full /generate response once the search ends
+ *   <li>{@code error}: the reasons the request could not be searched
+ * </ul>
+ *
+ * Closing the connection stops the search at the next progress report, so a user who stops waiting
+ * stops using server CPU.
+ */
+public class StreamHandler implements Route {
+
+  /** Number of best schedules whose improvements are streamed */
+  static final int TOP_K = Integer.getInteger("cab.stream.topK", 10);
+
+  /** Events buffered between the search and the connection; progress beyond this is dropped */
+  private static final int EVENT_QUEUE_CAPACITY = 1024;
+
+  /** Idle time after which a comment line is sent to keep proxies from closing the stream */
+  private static final long KEEPALIVE_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+  /** JSON adapter for event payloads */
+  private static final JsonAdapter<Map<String, Object>> JSON = Json.MAP;
+
+  /**
+   * Handles a streaming schedule generation request.
+   *
+   * @param req The HTTP request containing schedule generation parameters
+   * @param res The HTTP response object
+   * @return An empty body, as events are written directly to the connection
+   * @throws Exception If an error occurs during processing
+   */
+  @Override
+  public Object handle(Request req, Response res) throws Exception {
+    long received = System.nanoTime();
+    ScheduleErrorChecker.Params p;
+    try {
+      p = ScheduleHandler.parseRequest(req);
+    } catch (ScheduleHandler.InvalidRequestException e) {
+      if (e.status != 200) return e.respond(res);
+      OutputStream out = open(res);
+      send(out, "error", JSON.toJson(Map.of("success", false, "errors", e.errors)));
+      return "";
+    }
+
+    // The user can stop the stream, so it defaults to the largest budget allowed
+    if (p.budgetStr == null || p.budgetStr.isBlank()) {
+      p.budgetMs = SearchBudget.MAX_MS;
+    }
+
+    // The search thread only queues events; this thread writes them to the connection
+    BlockingQueue<String> events = new LinkedBlockingQueue<>(EVENT_QUEUE_CAPACITY);
+    AtomicBoolean stopped = new AtomicBoolean();
+    SearchListener listener =
+        new SearchListener() {
+          @Override
+          public void onProgress(long nodesExpanded, int schedulesFound, double bestScore) {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("nodes", nodesExpanded);
+            data.put("found", schedulesFound);
+            data.put("bestScore", bestScore);
+            data.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - received));
+            events.offer(event("progress", JSON.toJson(data)));
+          }
+
+          @Override
+          public void onTopSchedule(ScheduleGenerator.Schedule schedule) {
+            events.offer(event("top", FullResponse.scheduleToJson(schedule)));
+          }
+        };
+
+    Future<SearchResponse> search;
+    try {
+      search =
+          SearchExecutor.submit(
+              ScheduleHandler.clientKey(req),
+              () -> ScheduleHandler.search(p, received, stopped::get, listener, TOP_K));
+    } catch (SearchExecutor.RejectedException e) {
+      return ScheduleHandler.rejected(res, e);
+    }
+
+    OutputStream out = open(res);
+    try {
+      long lastWrite = System.nanoTime();
+      while (!search.isDone() || !events.isEmpty()) {
+        String ev = events.poll(100, TimeUnit.MILLISECONDS);
+        if (ev != null) {
+          write(out, ev);
+          lastWrite = System.nanoTime();
+        } else if (System.nanoTime() - lastWrite >= KEEPALIVE_NANOS) {
+          write(out, ": keepalive\n\n");
+          lastWrite = System.nanoTime();
+        }
+      }
+
+      try {
+        send(out, "result", search.get().toJson());
+      } catch (ExecutionException e) {
+        send(
+            out,
+            "error",
+            JSON.toJson(
+                Map.of(
+                    "success",
+                    false,
+                    "errors",
+                    List.of("Schedule generation failed: " + e.getCause().getMessage()))));
+      }
+    } catch (IOException e) {
+      // The client went away; stop searching for it
+      stopped.set(true);
+    }
+    return "";
+  }
+
+  /**
+   * Switches the response to an event stream and commits its headers. The CORS headers are set here
+   * because the server's after-filter runs only once the stream has been sent.
+   *
+   * @param res The HTTP response object
+   * @return The response body stream
+   * @throws IOException If the connection is already closed
+   */
+  private static OutputStream open(Response res) throws IOException {
+    HttpServletResponse raw = res.raw();
+    raw.setStatus(200);
+    raw.setContentType("text/event-stream;charset=utf-8");
+    raw.setHeader("Cache-Control", "no-cache");
+    raw.setHeader("X-Accel-Buffering", "no");
+    raw.setHeader("Access-Control-Allow-Origin", "*");
+    OutputStream out = raw.getOutputStream();
+    out.flush();
+    return out;
+  }
+
+  /**
+   * Formats one Server-Sent Event. The data must be a single line, which holds for compact JSON.
+   *
+   * @param name The event name
+   * @param data The event payload
+   * @return The event in wire format
+   */
+  private static String event(String name, String data) {
+    return "event: " + name + "\ndata: " + data + "\n\n";
+  }
+
+  private static void send(OutputStream out, String name, String data) throws IOException {
+    write(out, event(name, data));
+  }
+
+  private static void write(OutputStream out, String text) throws IOException {
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+}
@@ -0,0 +1,104 @@
+package Scheduler;
+
+import java.util.*;
+
+/**
+ * Precomputed time-conflict table for a set of courses. Whether two courses conflict depends only
+ * on their {@code meetingTimes}, so each distinct meeting pattern is parsed once and the conflicts
+ * between patterns are worked out up front. Lookups are then two map reads and an array access,
+ * instead of re-parsing both courses' meeting times on every check as {@link
+ * SchedulerUtils#hasTimeConflict} does. The index is immutable and safe to share between threads.
+ */
+public final class ConflictIndex {
+
+  /** Meeting pattern number of each indexed course */
+  private final Map<Map<String, Object>, Integer> patternOf = new IdentityHashMap<>();
+
+  /** Whether two meeting patterns overlap, by pattern number */
+  private final boolean[][] overlaps;
+
+  private ConflictIndex(Collection<Map<String, Object>> courses) {
+    Map<String, Integer> patternIds = new HashMap<>();
+    List<List<SchedulerUtils.MeetingTime>> patterns = new ArrayList<>();
+    for (Map<String, Object> course : courses) {
+      String key = Objects.toString(course.get("meetingTimes"), "");
+      Integer id = patternIds.get(key);
+      if (id == null) {
+        id = patterns.size();
+        patternIds.put(key, id);
+        patterns.add(SchedulerUtils.parseMeetingTimes(course));
+      }
+      patternOf.put(course, id);
+    }
+
+    int n = patterns.size();
+    overlaps = new boolean[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = i; j < n; j++) {
+        boolean overlap = overlap(patterns.get(i), patterns.get(j));
+        overlaps[i][j] = overlap;
+        overlaps[j][i] = overlap;
+      }
+    }
+  }
+
+  /**
+   * Builds the conflict table for a set of courses.
+   *
+   * @param courses The courses to index, typically a whole term's catalog
+   * @return The index
+   */
+  public static ConflictIndex of(Collection<Map<String, Object>> courses) {
+    return new ConflictIndex(courses);
+  }
+
+  /**
+   * Checks whether two courses meet at overlapping times. Courses outside the index are checked by
+   * parsing their meeting times, so the answer is always the same as {@link
+   * SchedulerUtils#hasTimeConflict}.
+   *
+   * @param a The first course
+   * @param b The second course
+   * @return true if the courses conflict
+   */
+  public boolean conflict(Map<String, Object> a, Map<String, Object> b) {
+    Integer pa = patternOf.get(a);
+    Integer pb = patternOf.get(b);
+    if (pa == null || pb == null) return SchedulerUtils.hasTimeConflict(a, b);
+    return overlaps[pa][pb];
+  }
+
+  /**
+   * Checks whether any two courses in a list conflict.
+   *
+   * @param courses The courses of a schedule
+   * @return true if there is a time conflict
+   */
+  public boolean hasConflicts(List<Map<String, Object>> courses) {
+    for (int i = 0; i < courses.size(); i++) {
+      for (int j = i + 1; j < courses.size(); j++) {
+        if (conflict(courses.get(i), courses.get(j))) return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of distinct meeting patterns indexed.
+   *
+   * @return The pattern count
+   */
+  public int patternCount() {
+    return overlaps.length;
+  }
+
+  private static boolean overlap(
+      List<SchedulerUtils.MeetingTime> a, List<SchedulerUtils.MeetingTime> b) {
+    for (SchedulerUtils.MeetingTime mt1 : a) {
+      for (SchedulerUtils.MeetingTime mt2 : b) {
+        if (mt1.conflictsWith(mt2)) return true;
+      }
+    }
+    return false;
+  }
+}
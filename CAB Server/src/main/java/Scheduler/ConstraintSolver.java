@@ -0,0 +1,264 @@
+package Scheduler;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Schedule search by constraint propagation, selected with {@code engine=propagate}. Where the
+ * enumerating search only scores the required-course count, the MWF/TTh balance and the WRIT
+ * requirement once a schedule is complete, this solver treats them as hard constraints and finds
+ * only the schedules that meet all three exactly.
+ *
+ * <p>It takes classes of interchangeable courses (see {@link CourseClass}) in increasing order. The
+ * classes that can still be added form a domain, and taking one clears every class it conflicts
+ * with (forward checking). The remaining domain is then checked against what the open slots still
+ * need: enough courses to fill them, exactly the missing number of required, MWF and TTh courses,
+ * and a WRIT course if there is none yet. A branch is cut as soon as one of these can no longer be
+ * met, so a request with no such schedule fails at the root or within a few nodes instead of
+ * exhausting the tree.
+ */
+final class ConstraintSolver {
+
+  /** Receives each solution found */
+  interface Sink {
+    /**
+     * Accepts a solution.
+     *
+     * @param picks Pairs of a class index and the number of its members taken, flattened, in
+     *     increasing class order
+     * @return false to stop the search
+     */
+    boolean accept(int[] picks);
+  }
+
+  /** A constraint that can leave no way to complete a schedule */
+  enum Wipeout {
+    SLOTS("there are not enough compatible courses to fill the schedule"),
+    REQUIRED("the number of required courses can't be met exactly"),
+    MWF("the number of MWF classes can't be met exactly"),
+    TTH("the number of TTh classes can't be met exactly"),
+    WRIT("no compatible WRIT course is left");
+
+    /** Explanation for the user */
+    final String reason;
+
+    Wipeout(String reason) {
+      this.reason = reason;
+    }
+  }
+
+  /** The classes, in the order they are taken */
+  private final List<CourseClass> classes;
+  /** Per class: whether its members are required, meet on MWF, and meet on TTh */
+  private final boolean[] required, mwf, tth;
+  /** Per class: the classes it can be taken with, itself included if it can be taken twice */
+  private final BitSet[] compatible;
+  /** Whether two courses' meeting times overlap */
+  private final BiPredicate<Map<String, Object>, Map<String, Object>> conflict;
+  /** Counts a node and returns false once the search must stop */
+  private final BooleanSupplier visit;
+
+  /** Branches cut, by the constraint that cut them */
+  private final long[] wipeouts = new long[Wipeout.values().length];
+  /** Class of each course added on the current path */
+  private int[] path;
+
+  private Sink sink;
+  private boolean stopped;
+
+  /**
+   * Prepares a solver over classes of courses, working out which classes can be taken together.
+   *
+   * @param classes The classes, in the order they are taken
+   * @param required Per class, whether its members are required courses
+   * @param mwf Per class, whether its members meet on MWF
+   * @param tth Per class, whether its members meet on TTh
+   * @param conflict Whether two courses' meeting times overlap
+   * @param visit Counts a node and returns false once the search must stop
+   */
+  ConstraintSolver(
+      List<CourseClass> classes,
+      boolean[] required,
+      boolean[] mwf,
+      boolean[] tth,
+      BiPredicate<Map<String, Object>, Map<String, Object>> conflict,
+      BooleanSupplier visit) {
+    this.classes = classes;
+    this.required = required;
+    this.mwf = mwf;
+    this.tth = tth;
+    this.conflict = conflict;
+    this.visit = visit;
+
+    // Members of a class share their conflicts, so the first stands for all of them
+    int n = classes.size();
+    compatible = new BitSet[n];
+    for (int i = 0; i < n; i++) compatible[i] = new BitSet(n);
+    for (int i = 0; i < n; i++) {
+      if (classes.get(i).maxTaken > 1) compatible[i].set(i);
+      Map<String, Object> a = classes.get(i).members.get(0);
+      for (int j = i + 1; j < n; j++) {
+        if (!conflict.test(a, classes.get(j).members.get(0))) {
+          compatible[i].set(j);
+          compatible[j].set(i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the ways to fill the open slots of a schedule that meet the constraints exactly.
+   *
+   * @param fixed Courses already in the schedule; classes conflicting with them are left out
+   * @param slots Number of courses to add
+   * @param needRequired Number of required courses to add
+   * @param needMwf Number of MWF courses to add
+   * @param needTth Number of TTh courses to add
+   * @param needWrit Whether a WRIT course must be added
+   * @param sink Receives the solutions
+   * @return The constraint that rules out every schedule from the start, or null if the search ran
+   */
+  Wipeout solve(
+      List<Map<String, Object>> fixed,
+      int slots,
+      int needRequired,
+      int needMwf,
+      int needTth,
+      boolean needWrit,
+      Sink sink) {
+    this.sink = sink;
+    this.path = new int[slots];
+
+    BitSet domain = new BitSet(classes.size());
+    domain.set(0, classes.size());
+    for (Map<String, Object> course : fixed) {
+      for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+        if (conflict.test(classes.get(c).members.get(0), course)) domain.clear(c);
+      }
+    }
+
+    Wipeout root = check(domain, -1, 0, slots, needRequired, needMwf, needTth, needWrit);
+    if (root != null) {
+      wipeouts[root.ordinal()]++;
+      return root;
+    }
+    search(domain, -1, 0, 0, slots, needRequired, needMwf, needTth, needWrit);
+    return null;
+  }
+
+  /**
+   * Returns the number of branches cut by each constraint.
+   *
+   * @return Counts indexed by {@link Wipeout#ordinal()}
+   */
+  long[] wipeouts() {
+    return wipeouts;
+  }
+
+  /**
+   * Extends the current path by each class left in the domain, recursing where the constraints can
+   * still be met.
+   *
+   * @param domain Classes that can still be added
+   * @param last The class added last, or -1
+   * @param taken Number of that class's members already taken
+   * @param depth Number of courses on the path
+   * @param slots Number of courses still to add
+   * @param needRequired Number of required courses still to add
+   * @param needMwf Number of MWF courses still to add
+   * @param needTth Number of TTh courses still to add
+   * @param needWrit Whether a WRIT course must still be added
+   */
+  private void search(
+      BitSet domain,
+      int last,
+      int taken,
+      int depth,
+      int slots,
+      int needRequired,
+      int needMwf,
+      int needTth,
+      boolean needWrit) {
+    if (stopped) return;
+    if (!visit.getAsBoolean()) {
+      stopped = true;
+      return;
+    }
+    if (slots == 0) {
+      if (!sink.accept(CourseClass.picks(path, depth))) stopped = true;
+      return;
+    }
+
+    for (int c = domain.nextSetBit(0); c >= 0 && !stopped; c = domain.nextSetBit(c + 1)) {
+      int takenNow = c == last ? taken + 1 : 1;
+      BitSet next = (BitSet) domain.clone();
+      next.and(compatible[c]);
+      next.clear(0, c);
+      if (takenNow >= classes.get(c).maxTaken) next.clear(c);
+
+      int nextRequired = needRequired - (required[c] ? 1 : 0);
+      int nextMwf = needMwf - (mwf[c] ? 1 : 0);
+      int nextTth = needTth - (tth[c] ? 1 : 0);
+      boolean nextWrit = needWrit && !classes.get(c).writ;
+      Wipeout cut = check(next, c, takenNow, slots - 1, nextRequired, nextMwf, nextTth, nextWrit);
+      if (cut != null) {
+        wipeouts[cut.ordinal()]++;
+        continue;
+      }
+
+      path[depth] = c;
+      search(next, c, takenNow, depth + 1, slots - 1, nextRequired, nextMwf, nextTth, nextWrit);
+    }
+  }
+
+  /**
+   * Checks that the open slots can still be filled from the domain so that every constraint is met.
+   * Each class counts with as many members as it can still give, capped at the open slots.
+   *
+   * @param domain Classes that can still be added
+   * @param last The class added last, or -1
+   * @param taken Number of that class's members already taken
+   * @param slots Number of courses still to add
+   * @param needRequired Number of required courses still to add
+   * @param needMwf Number of MWF courses still to add
+   * @param needTth Number of TTh courses still to add
+   * @param needWrit Whether a WRIT course must still be added
+   * @return The first constraint that can no longer be met, or null if all still can
+   */
+  private Wipeout check(
+      BitSet domain,
+      int last,
+      int taken,
+      int slots,
+      int needRequired,
+      int needMwf,
+      int needTth,
+      boolean needWrit) {
+    if (needRequired < 0 || needRequired > slots) return Wipeout.REQUIRED;
+    if (needMwf < 0 || needMwf > slots) return Wipeout.MWF;
+    if (needTth < 0 || needTth > slots) return Wipeout.TTH;
+    if (needWrit && slots == 0) return Wipeout.WRIT;
+    if (slots == 0) return null;
+
+    int total = 0, requiredLeft = 0, mwfLeft = 0, tthLeft = 0;
+    boolean writLeft = false;
+    for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+      CourseClass cls = classes.get(c);
+      int cap = Math.min(slots, cls.maxTaken - (c == last ? taken : 0));
+      total += cap;
+      if (required[c]) requiredLeft += cap;
+      if (mwf[c]) mwfLeft += cap;
+      if (tth[c]) tthLeft += cap;
+      writLeft |= cls.writ;
+    }
+
+    if (total < slots) return Wipeout.SLOTS;
+    if (requiredLeft < needRequired || total - requiredLeft < slots - needRequired)
+      return Wipeout.REQUIRED;
+    if (mwfLeft < needMwf || total - mwfLeft < slots - needMwf) return Wipeout.MWF;
+    if (tthLeft < needTth || total - tthLeft < slots - needTth) return Wipeout.TTH;
+    if (needWrit && !writLeft) return Wipeout.WRIT;
+    return null;
+  }
+}
@@ -0,0 +1,83 @@
+package Scheduler;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Courses that are interchangeable to the schedule search: they have the same meeting times, so
+ * they conflict with exactly the same courses, and they add the same to a schedule's score. The
+ * search branches once per class rather than once per course, and the members are expanded into
+ * concrete schedules only for the schedules that are returned.
+ */
+final class CourseClass {
+
+  /** The interchangeable courses, in the order they were given */
+  final List<Map<String, Object>> members = new ArrayList<>();
+  /** Whether the members are WRIT-designated */
+  final boolean writ;
+  /** Most members one schedule can hold: one if they conflict with each other, otherwise all */
+  int maxTaken;
+
+  private CourseClass(boolean writ) {
+    this.writ = writ;
+  }
+
+  /**
+   * Groups courses into classes of interchangeable courses. Classes are ordered by their first
+   * member, and members keep their relative order.
+   *
+   * @param courses The courses to group
+   * @param key Returns a value equal for two courses exactly when they are interchangeable
+   * @param conflict Whether two courses' meeting times overlap
+   * @return The classes
+   */
+  static List<CourseClass> group(
+      List<Map<String, Object>> courses,
+      Function<Map<String, Object>, Object> key,
+      BiPredicate<Map<String, Object>, Map<String, Object>> conflict) {
+    Map<Object, CourseClass> byKey = new LinkedHashMap<>();
+    for (Map<String, Object> course : courses) {
+      byKey
+          .computeIfAbsent(key.apply(course), k -> new CourseClass(isWrit(course)))
+          .members
+          .add(course);
+    }
+
+    List<CourseClass> classes = new ArrayList<>(byKey.values());
+    for (CourseClass c : classes) {
+      List<Map<String, Object>> m = c.members;
+      c.maxTaken = m.size() > 1 && !conflict.test(m.get(0), m.get(1)) ? m.size() : 1;
+    }
+    return classes;
+  }
+
+  /**
+   * Encodes a path of classes taken, in increasing order, as pairs of a class and the number of its
+   * members taken.
+   *
+   * @param path Class of each course on the path
+   * @param length Number of courses on the path
+   * @return The pairs, flattened
+   */
+  static int[] picks(int[] path, int length) {
+    int runs = 0;
+    for (int i = 0; i < length; i++) {
+      if (i == 0 || path[i] != path[i - 1]) runs++;
+    }
+    int[] picks = new int[2 * runs];
+    int r = -2;
+    for (int i = 0; i < length; i++) {
+      if (i == 0 || path[i] != path[i - 1]) {
+        r += 2;
+        picks[r] = path[i];
+      }
+      picks[r + 1]++;
+    }
+    return picks;
+  }
+
+  private static boolean isWrit(Map<String, Object> course) {
+    return Boolean.TRUE.equals(course.get("writ"));
+  }
+}
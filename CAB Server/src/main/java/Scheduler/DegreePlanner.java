@@ -0,0 +1,367 @@
+package Scheduler;
+
+import Utilities.Metrics;
+import java.util.*;
+
+/**
+ * Lays out a student's remaining required courses over future terms, taking each course only after
+ * a course from every one of its prerequisite groups, and at most a set number of courses per term.
+ * It looks for the plan with the fewest terms.
+ *
+ * <p>The remaining courses are numbered, so the courses done after some terms form a bitset held in
+ * one {@code long}. The search deepens the number of terms allowed, starting at a lower bound, and
+ * the first limit with a plan gives the shortest plan. A term takes as many available courses as
+ * the load allows. Taking a course earlier never delays another, so plans that leave room unused
+ * need not be tried. Different orders of the same terms reach the same bitset, so each bitset
+ * remembers the largest number of terms it was shown not to finish in, and is not searched again
+ * for that many or fewer.
+ *
+ * <p>A branch is cut once its lower bound exceeds the terms left. The bound is the larger of two:
+ * the courses left divided by the load, and the length of the longest prerequisite chain left. A
+ * greedy plan, taking the courses that head the longest chains first, is built before the search.
+ * It is returned, marked not optimal, if the budget runs out before a shorter plan is found.
+ *
+ * <p>The catalog holds one term, so every course is assumed to be offered in every term.
+ */
+public final class DegreePlanner {
+
+  /** Most remaining courses a plan can hold, one bit each in a {@code long} */
+  public static final int MAX_COURSES = 64;
+
+  /** Nodes visited between budget checks */
+  private static final int CHECK_EVERY = 256;
+
+  /** Search counters and latency, exported through /metrics */
+  private static final Metrics.Counter NODES =
+      Metrics.counter("cab_plan_nodes_expanded_total", "Degree plan search nodes visited");
+
+  private static final Metrics.Counter MEMO_HITS =
+      Metrics.counter(
+          "cab_plan_memo_hits_total", "Degree plan subproblems already shown to need more terms");
+
+  private static final Metrics.Histogram PLAN_TIME = Metrics.stage("plan");
+
+  /** The outcome of planning: the courses of each term, or why there is no plan */
+  public static final class Plan {
+    /** Course codes to take in each term, in order; empty if there is no plan */
+    public final List<List<String>> terms;
+    /** Whether no plan has fewer terms; false if the budget ran out before that was shown */
+    public final boolean optimal;
+    /** Fewest terms the lower bound allows before searching */
+    public final int lowerBound;
+    /** Why there is no plan; empty if there is one */
+    public final List<String> errors;
+
+    private Plan(List<List<String>> terms, boolean optimal, int lowerBound, List<String> errors) {
+      this.terms = terms;
+      this.optimal = optimal;
+      this.lowerBound = lowerBound;
+      this.errors = errors;
+    }
+
+    private static Plan failure(int lowerBound, List<String> errors) {
+      return new Plan(List.of(), false, lowerBound, errors);
+    }
+  }
+
+  /** The remaining courses; course i is bit i */
+  private final List<String> codes = new ArrayList<>();
+  /**
+   * Per course: one mask of remaining courses per prerequisite group not met by the courses taken.
+   * The course can be taken once a course of every mask is done.
+   */
+  private final long[][] groups;
+  /** Per course: length of the longest chain of remaining courses it heads, itself included */
+  private final int[] chain;
+  /** Most courses per term */
+  private final int perTerm;
+  /** Bitset of all remaining courses */
+  private final long all;
+  /** Problems that rule out any plan, found while compiling the prerequisites */
+  private final List<String> errors = new ArrayList<>();
+
+  /** Per bitset of done courses: the most terms it was shown not to finish in */
+  private final Map<Long, Integer> failed = new HashMap<>();
+  /** Courses taken in each term of the current path */
+  private long[] path;
+
+  private SearchBudget budget;
+  private long nodes;
+  private boolean stopped;
+
+  /**
+   * Compiles the prerequisites of the remaining courses into bitsets.
+   *
+   * @param courseMap Course code to course, for the prerequisite groups
+   * @param taken Codes of the courses already taken
+   * @param remaining Codes of the courses to plan; repeats are ignored
+   * @param perTerm Most courses per term
+   */
+  public DegreePlanner(
+      Map<String, Map<String, Object>> courseMap,
+      List<String> taken,
+      List<String> remaining,
+      int perTerm) {
+    this.perTerm = perTerm;
+    codes.addAll(new LinkedHashSet<>(remaining));
+    int n = codes.size();
+    groups = new long[n][];
+    chain = new int[n];
+    all = n == MAX_COURSES ? -1L : (1L << n) - 1;
+    if (n > MAX_COURSES) {
+      errors.add("A plan can hold at most " + MAX_COURSES + " remaining courses");
+      return;
+    }
+
+    List<String> unknown = new ArrayList<>();
+    for (String code : codes) {
+      if (!courseMap.containsKey(code)) unknown.add(code);
+    }
+    if (unknown.size() == 1) {
+      errors.add(String.format("Course \"%s\" doesn't seem to exist", unknown.get(0)));
+    } else if (!unknown.isEmpty()) {
+      errors.add("These courses don't seem to exist: " + String.join(", ", unknown));
+    }
+    if (!errors.isEmpty()) return;
+
+    Set<String> done = new HashSet<>(taken);
+    for (int i = 0; i < n; i++) {
+      @SuppressWarnings("unchecked")
+      List<List<String>> prereqs =
+          (List<List<String>>) courseMap.get(codes.get(i)).getOrDefault("prereqGroups", List.of());
+      List<Long> masks = new ArrayList<>();
+      for (List<String> orSet : prereqs) {
+        if (orSet.stream().anyMatch(done::contains)) continue;
+        long mask = 0;
+        for (String code : orSet) {
+          int j = codes.indexOf(code);
+          if (j >= 0 && j != i) mask |= 1L << j;
+        }
+        if (mask == 0) {
+          errors.add(
+              "Remaining course "
+                  + codes.get(i)
+                  + " needs "
+                  + (orSet.size() == 1 ? "" : "one of ")
+                  + String.join(", ", orSet)
+                  + ", which is neither taken nor remaining");
+        }
+        masks.add(mask);
+      }
+      groups[i] = masks.stream().mapToLong(Long::longValue).toArray();
+    }
+    if (!errors.isEmpty()) return;
+
+    // Courses that never become available depend on each other
+    long reached = 0;
+    int[] round = new int[n];
+    for (int r = 1; ; r++) {
+      long next = available(reached);
+      if (next == 0) break;
+      for (long b = next; b != 0; b &= b - 1) round[Long.numberOfTrailingZeros(b)] = r;
+      reached |= next;
+    }
+    if (reached != all) {
+      List<String> stuck = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        if ((reached & 1L << i) == 0) stuck.add(codes.get(i));
+      }
+      errors.add("The prerequisites of " + String.join(", ", stuck) + " can't be met in any order");
+      return;
+    }
+
+    // Chains, from the courses that can come last back to those that must come first
+    Integer[] byRound = new Integer[n];
+    for (int i = 0; i < n; i++) byRound[i] = i;
+    Arrays.sort(byRound, (a, b) -> round[b] - round[a]);
+    for (int i : byRound) {
+      chain[i] = 1;
+      for (int j = 0; j < n; j++) {
+        if (round[j] <= round[i]) continue;
+        for (long mask : groups[j]) {
+          if ((mask & 1L << i) != 0) chain[i] = Math.max(chain[i], chain[j] + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the plan with the fewest terms, within a number of terms and a time budget.
+   *
+   * @param maxTerms Most terms the plan may have
+   * @param budget Stops the search; the best plan found so far is returned then
+   * @return The plan, or the reasons there is none
+   */
+  public Plan plan(int maxTerms, SearchBudget budget) {
+    long start = System.nanoTime();
+    try {
+      if (!errors.isEmpty()) return Plan.failure(0, errors);
+      int lowerBound = lowerBound(0);
+      if (lowerBound > maxTerms) {
+        return Plan.failure(
+            lowerBound,
+            List.of(
+                "The remaining courses need at least "
+                    + lowerBound
+                    + " terms at "
+                    + perTerm
+                    + " per term, but the plan has "
+                    + maxTerms));
+      }
+
+      this.budget = budget;
+      long[] best = greedy();
+      boolean optimal = best.length == lowerBound;
+      for (int k = lowerBound; k < Math.min(best.length, maxTerms + 1) && !optimal; k++) {
+        path = new long[k];
+        if (search(0, k, 0)) {
+          best = path;
+          optimal = true;
+        } else if (stopped) {
+          break;
+        }
+      }
+      // Every shorter plan was ruled out
+      optimal |= !stopped;
+
+      if (best.length > maxTerms) {
+        return Plan.failure(
+            lowerBound,
+            List.of(
+                stopped
+                    ? "No plan within " + maxTerms + " terms was found within the time budget"
+                    : "The remaining courses need more than "
+                        + maxTerms
+                        + " terms at "
+                        + perTerm
+                        + " per term"));
+      }
+      return new Plan(decode(best), optimal, lowerBound, List.of());
+    } finally {
+      NODES.add(nodes);
+      PLAN_TIME.observeSince(start);
+    }
+  }
+
+  /**
+   * Looks for a way to finish the remaining courses in a number of terms, recording the courses of
+   * each term on the path.
+   *
+   * @param done Bitset of the courses done
+   * @param terms Terms left
+   * @param depth Terms already on the path
+   * @return true if a plan was found; false if there is none or the budget ran out
+   */
+  private boolean search(long done, int terms, int depth) {
+    if (done == all) return true;
+    if (stopped || (++nodes % CHECK_EVERY == 0 && budget.exhausted())) {
+      stopped = true;
+      return false;
+    }
+    if (lowerBound(done) > terms) return false;
+    Integer shown = failed.get(done);
+    if (shown != null && shown >= terms) {
+      MEMO_HITS.inc();
+      return false;
+    }
+
+    int[] order = byChain(available(done));
+    int take = Math.min(perTerm, order.length);
+    int[] pick = new int[take];
+    for (int i = 0; i < take; i++) pick[i] = i;
+    while (true) {
+      long term = 0;
+      for (int i : pick) term |= 1L << order[i];
+      path[depth] = term;
+      if (search(done | term, terms - 1, depth + 1)) return true;
+      if (stopped) return false;
+
+      // Next choice of courses, in order of the chains they head
+      int i = take - 1;
+      while (i >= 0 && pick[i] == order.length - take + i) i--;
+      if (i < 0) break;
+      pick[i]++;
+      for (int j = i + 1; j < take; j++) pick[j] = pick[j - 1] + 1;
+    }
+    failed.merge(done, terms, Math::max);
+    return false;
+  }
+
+  /**
+   * Builds a plan term by term, taking the available courses that head the longest chains.
+   *
+   * @return The courses of each term
+   */
+  private long[] greedy() {
+    List<Long> terms = new ArrayList<>();
+    for (long done = 0; done != all; ) {
+      int[] order = byChain(available(done));
+      long term = 0;
+      for (int i = 0; i < Math.min(perTerm, order.length); i++) term |= 1L << order[i];
+      terms.add(term);
+      done |= term;
+    }
+    return terms.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Returns the fewest terms that could finish the courses left: at least the courses left divided
+   * by the load, and at least the number of terms the prerequisite chains need with no load limit.
+   *
+   * @param done Bitset of the courses done
+   * @return The lower bound
+   */
+  private int lowerBound(long done) {
+    int left = Long.bitCount(all & ~done);
+    int rounds = 0;
+    for (long reached = done; reached != all; rounds++) reached |= available(reached);
+    return Math.max((left + perTerm - 1) / perTerm, rounds);
+  }
+
+  /**
+   * Returns the courses not done whose prerequisite groups all have a course done.
+   *
+   * @param done Bitset of the courses done
+   * @return Bitset of the courses that can be taken next
+   */
+  private long available(long done) {
+    long available = 0;
+    for (long left = all & ~done; left != 0; left &= left - 1) {
+      int i = Long.numberOfTrailingZeros(left);
+      boolean met = true;
+      for (long mask : groups[i]) met &= (mask & done) != 0;
+      if (met) available |= 1L << i;
+    }
+    return available;
+  }
+
+  /**
+   * Lists the courses of a bitset, those heading the longest chains first.
+   *
+   * @param courses A bitset of courses
+   * @return Their indexes
+   */
+  private int[] byChain(long courses) {
+    Integer[] order = new Integer[Long.bitCount(courses)];
+    int k = 0;
+    for (long b = courses; b != 0; b &= b - 1) order[k++] = Long.numberOfTrailingZeros(b);
+    Arrays.sort(order, (a, b) -> chain[b] - chain[a]);
+    return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Turns the bitsets of a plan back into course codes.
+   *
+   * @param terms The courses of each term
+   * @return Their codes, in the order the courses were given
+   */
+  private List<List<String>> decode(long[] terms) {
+    List<List<String>> plan = new ArrayList<>();
+    for (long term : terms) {
+      List<String> courses = new ArrayList<>();
+      for (long b = term; b != 0; b &= b - 1) courses.add(codes.get(Long.numberOfTrailingZeros(b)));
+      plan.add(courses);
+    }
+    return plan;
+  }
+}
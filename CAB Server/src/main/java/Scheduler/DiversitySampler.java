@@ -0,0 +1,91 @@
+package Scheduler;
+
+import Scheduler.ScheduleGenerator.Schedule;
+import java.util.*;
+
+/**
+ * Picks a small, varied set of schedules by maximal marginal relevance (MMR). Each pick maximizes
+ *
+ * <pre>
+ *   lambda * score / 100 - (1 - lambda) * max overlap with the schedules already picked
+ * </pre>
+ *
+ * where the overlap of two schedules is the Jaccard similarity of their courses. The first pick is
+ * the best-scoring schedule; later picks trade score for courses not seen yet, so the result does
+ * not fill up with schedules that differ in a single elective.
+ *
+ * <p>Each candidate's highest overlap is updated as picks are made, so selecting k of n candidates
+ * of c courses each costs O(k * n * c). Ties go to the earlier candidate, so the same candidates in
+ * the same order always give the same picks.
+ */
+public final class DiversitySampler {
+
+  /** Weight of score against novelty, between 0 (novelty only) and 1 (score only) */
+  public static final double LAMBDA =
+      Double.parseDouble(System.getProperty("cab.diverse.lambda", "0.7"));
+
+  private DiversitySampler() {}
+
+  /**
+   * Selects up to k schedules by maximal marginal relevance.
+   *
+   * @param candidates Scored schedules to choose from, best first
+   * @param k Number of schedules to pick
+   * @param lambda Weight of score against novelty
+   * @return The picked schedules, in the order they were picked
+   */
+  public static List<Schedule> select(List<Schedule> candidates, int k, double lambda) {
+    int n = candidates.size();
+    if (n <= k) return new ArrayList<>(candidates);
+
+    // Course sets by identity; a term's catalog holds one map per course
+    List<Set<Map<String, Object>>> courseSets = new ArrayList<>(n);
+    for (Schedule s : candidates) {
+      Set<Map<String, Object>> set = Collections.newSetFromMap(new IdentityHashMap<>());
+      set.addAll(s.courses);
+      courseSets.add(set);
+    }
+
+    double[] maxOverlap = new double[n];
+    boolean[] picked = new boolean[n];
+    List<Schedule> result = new ArrayList<>(k);
+    while (result.size() < k) {
+      int best = -1;
+      double bestValue = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < n; i++) {
+        if (picked[i]) continue;
+        double value = lambda * candidates.get(i).score / 100 - (1 - lambda) * maxOverlap[i];
+        if (value > bestValue) {
+          best = i;
+          bestValue = value;
+        }
+      }
+
+      picked[best] = true;
+      result.add(candidates.get(best));
+      Set<Map<String, Object>> chosen = courseSets.get(best);
+      for (int i = 0; i < n; i++) {
+        if (!picked[i]) {
+          maxOverlap[i] = Math.max(maxOverlap[i], jaccard(courseSets.get(i), chosen));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the Jaccard similarity of two course sets.
+   *
+   * @param a One set
+   * @param b The other set
+   * @return The size of their intersection over the size of their union
+   */
+  static double jaccard(Set<Map<String, Object>> a, Set<Map<String, Object>> b) {
+    int shared = 0;
+    for (Map<String, Object> c : a) {
+      if (b.contains(c)) shared++;
+    }
+    int union = a.size() + b.size() - shared;
+    return union == 0 ? 1 : (double) shared / union;
+  }
+}
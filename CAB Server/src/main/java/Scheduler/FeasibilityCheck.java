@@ -0,0 +1,408 @@
+package Scheduler;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Cheap test, run before the schedule search, of whether a request's hard constraints can be met at
+ * all: the number of classes, each needed course, the number of required courses, a WRIT course
+ * and, for the propagating engine, the exact MWF/TTh balance.
+ *
+ * <p>A set of constraints is shown impossible first by bounds on the conflict graph of the
+ * candidate courses, then by a small search for a single schedule meeting them that gives up after
+ * {@link #NODE_LIMIT} nodes. The bounds cover the candidates compatible with the needed courses
+ * with cliques of mutually conflicting classes; a schedule takes at most one course from each, so
+ * the number of cliques bounds how many courses fit together. A search that gives up proves
+ * nothing, so a request is only rejected when it is certainly impossible.
+ *
+ * <p>When the whole request is impossible, constraints are dropped one at a time and kept out
+ * whenever the rest is still impossible. What remains is a minimal conflicting set: every
+ * constraint in it is needed to make the request impossible, which is the explanation the student
+ * can act on.
+ */
+final class FeasibilityCheck {
+
+  /** Search nodes one check may visit before giving up */
+  static final int NODE_LIMIT = Integer.getInteger("cab.feasibility.nodes", 20_000);
+
+  /** Kinds of hard constraint */
+  enum Kind {
+    NEEDED,
+    SLOTS,
+    REQUIRED,
+    WRIT,
+    MWF,
+    TTH
+  }
+
+  /** One hard constraint of a request */
+  static final class Constraint {
+    /** What it constrains */
+    final Kind kind;
+    /** The needed course, for {@link Kind#NEEDED} */
+    final Map<String, Object> course;
+    /** The target count, for the counting kinds */
+    final int count;
+
+    private Constraint(Kind kind, Map<String, Object> course, int count) {
+      this.kind = kind;
+      this.course = course;
+      this.count = count;
+    }
+
+    static Constraint needed(Map<String, Object> course) {
+      return new Constraint(Kind.NEEDED, course, 0);
+    }
+
+    static Constraint count(Kind kind, int count) {
+      return new Constraint(kind, null, count);
+    }
+
+    static Constraint writ() {
+      return new Constraint(Kind.WRIT, null, 1);
+    }
+
+    /**
+     * Describes the constraint for the student.
+     *
+     * @return For example "needed course CSCI 0320" or "4 classes"
+     */
+    String label() {
+      switch (kind) {
+        case NEEDED:
+          return "needed course " + course.get("code");
+        case SLOTS:
+          return count + (count == 1 ? " class" : " classes");
+        case REQUIRED:
+          return count + " required course" + (count == 1 ? "" : "s");
+        case WRIT:
+          return "a WRIT course";
+        case MWF:
+          return count + " MWF class" + (count == 1 ? "" : "es");
+        default:
+          return count + " TTh class" + (count == 1 ? "" : "es");
+      }
+    }
+  }
+
+  /** Candidate classes of interchangeable courses, each needed course in a class of its own */
+  private final List<CourseClass> classes;
+  /** Index of the class holding each candidate course */
+  private final Map<Map<String, Object>, Integer> classOf = new IdentityHashMap<>();
+  /** Per class: whether its members are required, meet on MWF, and meet on TTh */
+  private final boolean[] required, mwf, tth;
+  /** Per class: the classes it can be taken with, itself included if it can be taken twice */
+  private final BitSet[] compatible;
+  /** Whether a course is required, meets on MWF, or meets on TTh */
+  private final Predicate<Map<String, Object>> isRequired, isMwf, isTth;
+  /** Whether two courses' meeting times overlap */
+  private final BiPredicate<Map<String, Object>, Map<String, Object>> conflict;
+
+  /** Nodes visited by the current search */
+  private int nodes;
+  /** Whether the current search counts MWF and TTh classes */
+  private boolean countMwf, countTth;
+  /** Whether the current search must fill its open slots exactly */
+  private boolean exact;
+  /** Why the last set of constraints checked is impossible, when a bound showed it */
+  private String detail;
+
+  /**
+   * Prepares a check over classes of candidate courses, working out which can be taken together.
+   *
+   * @param classes Classes of the candidate courses; a needed course must be alone in its class, as
+   *     it becomes an ordinary candidate when its constraint is dropped
+   * @param isRequired Whether a course is one of the student's remaining required courses
+   * @param isMwf Whether a course meets on Monday, Wednesday or Friday
+   * @param isTth Whether a course meets on Tuesday or Thursday
+   * @param conflict Whether two courses' meeting times overlap
+   */
+  FeasibilityCheck(
+      List<CourseClass> classes,
+      Predicate<Map<String, Object>> isRequired,
+      Predicate<Map<String, Object>> isMwf,
+      Predicate<Map<String, Object>> isTth,
+      BiPredicate<Map<String, Object>, Map<String, Object>> conflict) {
+    this.classes = classes;
+    this.isRequired = isRequired;
+    this.isMwf = isMwf;
+    this.isTth = isTth;
+    this.conflict = conflict;
+
+    int n = classes.size();
+    required = new boolean[n];
+    mwf = new boolean[n];
+    tth = new boolean[n];
+    compatible = new BitSet[n];
+    for (int i = 0; i < n; i++) {
+      for (Map<String, Object> course : classes.get(i).members) classOf.put(course, i);
+      Map<String, Object> a = classes.get(i).members.get(0);
+      required[i] = isRequired.test(a);
+      mwf[i] = isMwf.test(a);
+      tth[i] = isTth.test(a);
+      compatible[i] = new BitSet(n);
+      if (classes.get(i).maxTaken > 1) compatible[i].set(i);
+    }
+    for (int i = 0; i < n; i++) {
+      Map<String, Object> a = classes.get(i).members.get(0);
+      for (int j = i + 1; j < n; j++) {
+        if (!conflict.test(a, classes.get(j).members.get(0))) {
+          compatible[i].set(j);
+          compatible[j].set(i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds a minimal set of constraints that no schedule can meet together.
+   *
+   * @param constraints The request's constraints, the ones to keep in an explanation last
+   * @return The conflicting constraints, or null if the request could not be shown impossible
+   */
+  List<Constraint> conflictSet(List<Constraint> constraints) {
+    if (!impossible(constraints)) return null;
+
+    List<Constraint> core = new ArrayList<>(constraints);
+    for (Constraint c : constraints) {
+      List<Constraint> without = new ArrayList<>(core);
+      without.remove(c);
+      if (impossible(without)) core = without;
+    }
+
+    // Recompute the reason for the set that is reported
+    impossible(core);
+    return core;
+  }
+
+  /**
+   * Returns the bound that showed the last conflicting set impossible.
+   *
+   * @return A short reason, such as "at most 3 of the courses fit together", or null if it took a
+   *     search to show
+   */
+  String detail() {
+    return detail;
+  }
+
+  /**
+   * Checks whether a set of constraints is certainly impossible to meet. Without a class count the
+   * schedule may hold any number of courses.
+   *
+   * @param constraints The constraints to meet together
+   * @return true if no schedule meets them; false if one does or the search gave up
+   */
+  private boolean impossible(List<Constraint> constraints) {
+    detail = null;
+    List<Map<String, Object>> fixed = new ArrayList<>();
+    int slots = 0, needRequired = 0, needMwf = 0, needTth = 0;
+    boolean needWrit = false;
+    exact = countMwf = countTth = false;
+    for (Constraint c : constraints) {
+      switch (c.kind) {
+        case NEEDED:
+          fixed.add(c.course);
+          break;
+        case SLOTS:
+          exact = true;
+          slots = c.count;
+          break;
+        case REQUIRED:
+          needRequired = c.count;
+          break;
+        case WRIT:
+          needWrit = true;
+          break;
+        case MWF:
+          countMwf = true;
+          needMwf = c.count;
+          break;
+        case TTH:
+          countTth = true;
+          needTth = c.count;
+          break;
+      }
+    }
+
+    // Needed courses take their share of every target, and rule out what they conflict with
+    BitSet domain = new BitSet(classes.size());
+    domain.set(0, classes.size());
+    for (Map<String, Object> course : fixed) {
+      if (isRequired.test(course)) needRequired--;
+      if (countMwf && isMwf.test(course)) needMwf--;
+      if (countTth && isTth.test(course)) needTth--;
+      needWrit &= !Boolean.TRUE.equals(course.get("writ"));
+      Integer own = classOf.get(course);
+      if (own != null) domain.clear(own);
+      for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+        if (conflict.test(classes.get(c).members.get(0), course)) domain.clear(c);
+      }
+    }
+    int open = exact ? slots - fixed.size() : Integer.MAX_VALUE;
+    needRequired = Math.max(0, needRequired);
+
+    if (open < 0) {
+      detail = "there are more needed courses than classes";
+      return true;
+    }
+    if (needMwf < 0 || needTth < 0) {
+      detail = "the needed courses already exceed the MWF/TTh balance";
+      return true;
+    }
+    if (needRequired > open || needMwf > open || needTth > open) {
+      detail = "there are too few classes for the targets";
+      return true;
+    }
+
+    int fit = cover(domain, null);
+    if (exact && fit < open) {
+      detail = "at most " + fit + " of the remaining courses fit together";
+      return true;
+    }
+    int requiredFit = cover(domain, required);
+    if (requiredFit < needRequired) {
+      detail = "at most " + requiredFit + " of the remaining required courses fit together";
+      return true;
+    }
+    boolean writLeft = false;
+    for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+      writLeft |= classes.get(c).writ;
+    }
+    if (needWrit && !writLeft) {
+      detail = "every WRIT course conflicts with a needed course";
+      return true;
+    }
+    if (cover(domain, mwf) < needMwf || cover(domain, tth) < needTth) {
+      detail = "too few MWF or TTh courses fit together";
+      return true;
+    }
+
+    nodes = 0;
+    try {
+      return !search(domain, -1, 0, open, needRequired, needMwf, needTth, needWrit);
+    } catch (GiveUp e) {
+      return false;
+    }
+  }
+
+  /**
+   * Bounds how many courses of the domain fit in one schedule, by covering the classes with cliques
+   * of classes that all conflict with each other. Classes are placed greedily, most conflicted
+   * first, into the first clique they conflict with entirely.
+   *
+   * @param domain Classes that can be added
+   * @param only Per class, whether to count it; null counts every class
+   * @return An upper bound on the number of courses of the counted classes that fit together
+   */
+  private int cover(BitSet domain, boolean[] only) {
+    List<Integer> order = new ArrayList<>();
+    for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+      if (only == null || only[c]) order.add(c);
+    }
+    order.sort(Comparator.comparingInt((Integer c) -> compatible[c].cardinality()));
+
+    List<BitSet> cliques = new ArrayList<>();
+    int bound = 0;
+    for (int c : order) {
+      if (classes.get(c).maxTaken > 1) {
+        bound += classes.get(c).maxTaken;
+        continue;
+      }
+      BitSet home = null;
+      for (BitSet clique : cliques) {
+        if (!clique.intersects(compatible[c])) {
+          home = clique;
+          break;
+        }
+      }
+      if (home == null) {
+        home = new BitSet(classes.size());
+        cliques.add(home);
+        bound++;
+      }
+      home.set(c);
+    }
+    return bound;
+  }
+
+  /**
+   * Looks for one way to add courses from the domain that meets every target.
+   *
+   * @param domain Classes that can still be added
+   * @param last The class added last, or -1
+   * @param taken Number of that class's members already taken
+   * @param open Number of courses still to add, exactly when {@link #exact}
+   * @param needRequired Number of required courses still to add, at least
+   * @param needMwf Number of MWF courses still to add, exactly when counted
+   * @param needTth Number of TTh courses still to add, exactly when counted
+   * @param needWrit Whether a WRIT course must still be added
+   * @return true if a way was found
+   * @throws GiveUp Once the search has visited {@link #NODE_LIMIT} nodes
+   */
+  private boolean search(
+      BitSet domain,
+      int last,
+      int taken,
+      int open,
+      int needRequired,
+      int needMwf,
+      int needTth,
+      boolean needWrit) {
+    if (++nodes > NODE_LIMIT) throw new GiveUp();
+    if (needMwf < 0 || needTth < 0) return false;
+    if (needRequired <= 0 && needMwf == 0 && needTth == 0 && !needWrit && (!exact || open == 0)) {
+      return true;
+    }
+    if (open == 0) return false;
+
+    // Count what the domain can still give, as the propagating search does
+    int total = 0, requiredLeft = 0, mwfLeft = 0, tthLeft = 0;
+    boolean writLeft = false;
+    for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+      CourseClass cls = classes.get(c);
+      int cap = Math.min(open, cls.maxTaken - (c == last ? taken : 0));
+      total += cap;
+      if (required[c]) requiredLeft += cap;
+      if (mwf[c]) mwfLeft += cap;
+      if (tth[c]) tthLeft += cap;
+      writLeft |= cls.writ;
+    }
+    if ((exact && total < open)
+        || requiredLeft < needRequired
+        || mwfLeft < needMwf
+        || tthLeft < needTth
+        || (needWrit && !writLeft)) {
+      return false;
+    }
+
+    for (int c = domain.nextSetBit(0); c >= 0; c = domain.nextSetBit(c + 1)) {
+      int takenNow = c == last ? taken + 1 : 1;
+      BitSet next = (BitSet) domain.clone();
+      next.and(compatible[c]);
+      next.clear(0, c);
+      if (takenNow >= classes.get(c).maxTaken) next.clear(c);
+      if (search(
+          next,
+          c,
+          takenNow,
+          open == Integer.MAX_VALUE ? open : open - 1,
+          needRequired - (required[c] ? 1 : 0),
+          needMwf - (countMwf && mwf[c] ? 1 : 0),
+          needTth - (countTth && tth[c] ? 1 : 0),
+          needWrit && !classes.get(c).writ)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Thrown to abandon a search that has run too long to be cheap */
+  private static final class GiveUp extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    GiveUp() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -3,13 +3,12 @@ package Scheduler;
 import static Scheduler.SchedulerUtils.parseMeetingDays;
 
 import Utilities.CourseCatalog;
-import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
+import Utilities.Metrics;
+import Utilities.PrerequisiteGraph;
+import Utilities.SectionBundles;
+import Utilities.TermCatalog;
+import Utilities.WeeklyMask;
 import java.io.IOException;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.Collections;
 import java.util.stream.Collectors;
@@ -21,32 +20,75 @@ import java.util.stream.Collectors;
  */
 public class ScheduleGenerator {
 
-  private static final Moshi moshi = new Moshi.Builder().build();
-  /** Path to the JSON file containing course data */
-  private static final String COURSES_FILE = "data/courses_formatted.json";
+  /** Search statistics and stage timings, exported through /metrics */
+  private static final Metrics.Counter NODES_EXPANDED =
+      Metrics.counter("cab_search_nodes_expanded_total", "Search tree nodes visited");
+
+  private static final Metrics.Counter CONFLICT_PRUNES =
+      Metrics.counter(
+          "cab_search_conflict_prunes_total", "Branches cut because a course had a time conflict");
+
+  private static final Metrics.Counter DUPLICATE_KEYS =
+      Metrics.counter(
+          "cab_search_duplicate_keys_total", "Complete schedules rejected as already seen");
+
+  private static final Metrics.Counter SCHEDULES_EMITTED =
+      Metrics.counter("cab_search_schedules_emitted_total", "Unique schedules produced");
+
+  private static final Metrics.Counter TRUNCATED =
+      Metrics.counter(
+          "cab_search_truncated_total", "Searches stopped early by their deadline or a disconnect");
+
+  private static final Metrics.Histogram SEARCH_TIME = Metrics.stage("build_schedules");
+  private static final Metrics.Histogram SCORING_TIME = Metrics.stage("scoring");
+  private static final Metrics.Histogram SORTING_TIME = Metrics.stage("sorting");
+  private static final Metrics.Histogram EXPAND_TIME = Metrics.stage("expand_classes");
+
+  private static final Metrics.Counter COURSE_CLASSES =
+      Metrics.counter(
+          "cab_search_course_classes_total",
+          "Classes of interchangeable courses searched over instead of single courses");
+
+  private static final Metrics.Histogram FEASIBILITY_TIME = Metrics.stage("feasibility");
+
+  private static final Metrics.Counter INFEASIBLE =
+      Metrics.counter(
+          "cab_feasibility_rejections_total",
+          "Requests rejected before the search because their constraints can't all be met");
+
+  private static final Metrics.Counter WIPEOUTS =
+      Metrics.counter(
+          "cab_search_wipeouts_total",
+          "Branches cut by the propagating search because a constraint could no longer be met");
 
   /** Number of courses to include in each generated schedule */
   private int classesPerSemester;
+  /** Codes of the courses offered in more than one section bundle, worked out on first use */
+  private Set<String> multiSection;
 
   /** Set to track unique schedules and avoid duplicates */
   private final Set<String> seenKeys = new HashSet<>();
-  /** List of courses the student has already taken */
-  private List<String> coursesTaken;
-  /** List of courses required for the student's degree completion */
-  private List<String> remainingRequired;
-
-  /** List of courses that must be included in the generated schedules */
-  private List<String> necessaryCourses;
+  /** Courses the student has already taken */
+  private Set<String> coursesTaken;
+  /** The courses taken as a bitset of the prerequisite graph, built on first use */
+  private BitSet takenBits;
+  /** Courses required for the student's degree completion */
+  private Set<String> remainingRequired;
+
+  /** Courses that must be included in the generated schedules, in the order given */
+  private Set<String> necessaryCourses;
   /** Set of time blocks when the student is available for classes */
   private Set<String> availableTimes;
+  /** Slots of the week courses may meet in, or null if only the time blocks apply */
+  private WeeklyMask allowedSlots;
   /** Map indicating which days of the week the student is available */
   private Map<String, Boolean> dayAvailability;
   /** Desired balance between MWF and TTh classes */
   private DayBalance dayBalance;
   /** Number of required courses to include in this semester's schedule */
   private int requiredCoursesThisSemester;
-  /** List of preferred departments for elective courses */
-  private List<String> preferredDepts;
+  /** Preferred departments for elective courses */
+  private Set<String> preferredDepts;
   /** Whether a WRIT-designated course is required this semester */
   private boolean needWRIT;
 
@@ -63,6 +105,93 @@ public class ScheduleGenerator {
   /** List of generated schedules */
   private List<Schedule> generatedSchedules;
 
+  /** Structures shared with other searches of the same term, or null if loaded per search */
+  private SharedTerm shared;
+  /** Precomputed conflict table, or null to parse meeting times on each check */
+  private ConflictIndex conflicts;
+
+  /** Most schedules a search produces; a search that reaches this stops early */
+  public static final int MAX_SCHEDULES = 9999;
+
+  /** Most ways of taking the necessary courses' section bundles that one search starts from */
+  private static final int MAX_BASES = 64;
+
+  /** Most random probes a diverse search makes */
+  private static final int DIVERSE_PROBES = Integer.getInteger("cab.diverse.probes", 2000);
+
+  /** Distinct schedules a diverse search collects before choosing among them */
+  private static final int DIVERSE_CANDIDATES = Integer.getInteger("cab.diverse.candidates", 500);
+
+  /** Nodes one probe may visit before it gives up on finding a complete schedule */
+  private static final int PROBE_NODE_LIMIT = 256;
+
+  /** Each course's contributions to a schedule's score, worked out on first use in this request */
+  private final Map<Map<String, Object>, ScoreTally> contributions = new IdentityHashMap<>();
+
+  /** Seed for the order options are tried in; the same seed gives the same schedules */
+  private long seed;
+  /** Number of varied schedules to return, or 0 to return every schedule found, by score */
+  private int diverse;
+  /** Nodes visited by the current probe */
+  private int probeNodes;
+
+  /** How schedules are searched for */
+  public enum Engine {
+    /** Enumerate compatible schedules and rank them by score */
+    ENUMERATE,
+    /** Propagate the scoring targets as hard constraints; see {@link ConstraintSolver} */
+    PROPAGATE
+  }
+
+  /** Search engine used when a request doesn't choose one */
+  public static final Engine DEFAULT_ENGINE =
+      Engine.valueOf(System.getProperty("cab.search.engine", "enumerate").toUpperCase(Locale.ROOT));
+
+  /** The search engine to use */
+  private Engine engine = DEFAULT_ENGINE;
+
+  /**
+   * Candidate courses grouped into interchangeable classes: required classes first, then, when a
+   * WRIT course is needed, WRIT electives, then the other electives
+   */
+  private List<CourseClass> courseClasses;
+  /** Number of required classes at the front of {@link #courseClasses} */
+  private int requiredClasses;
+  /** Number of WRIT elective classes after the required ones, if a WRIT course is needed */
+  private int writClasses;
+  /** Most required courses to add to the necessary ones */
+  private int requiredSlots;
+  /** Class of each course added on the current search path */
+  private int[] classPath;
+
+  /** Number of nodes visited between checks of the search budget */
+  private static final int BUDGET_CHECK_INTERVAL = 64;
+
+  /** Time limit and cancellation signal for the search */
+  private SearchBudget budget = SearchBudget.UNLIMITED;
+  /** Whether the search stopped because its budget ran out */
+  private boolean truncated;
+
+  /** Minimum time between progress reports, in nanoseconds */
+  private static final long PROGRESS_INTERVAL_NANOS = 200_000_000L;
+
+  /** Receives progress reports, or null if nobody is listening */
+  private SearchListener listener;
+  /** Number of best schedules whose improvements are reported to the listener */
+  private int topK;
+  /** The best schedules found so far, lowest score first; only kept when listening */
+  private PriorityQueue<Schedule> top;
+  /** Highest score found so far */
+  private double bestScore;
+  /** When progress was last reported, as a {@link System#nanoTime()} reading */
+  private long lastProgressNanos;
+
+  /** Per-request search statistics, flushed to the shared metrics once the search ends */
+  private long nodesExpanded;
+  private long conflictPrunes;
+  private long duplicateKeys;
+  private long scoringNanos;
+
   /**
    * Container class for schedule generation results.
    * Includes both the generated schedules and any errors encountered.
@@ -72,6 +201,8 @@ public class ScheduleGenerator {
     public final List<Schedule> schedules;
     /** List of errors encountered during generation */
     public final List<String> errors;
+    /** Whether the search was cut short, so the schedules are only the best found in time */
+    public final boolean truncated;
 
     /**
      * Creates a new Result with the specified schedules and errors.
@@ -80,8 +211,20 @@ public class ScheduleGenerator {
      * @param e List of errors encountered during generation
      */
     Result(List<Schedule> s, List<String> e) {
+      this(s, e, false);
+    }
+
+    /**
+     * Creates a new Result with the specified schedules, errors and truncation flag.
+     *
+     * @param s List of generated schedules
+     * @param e List of errors encountered during generation
+     * @param truncated Whether the search stopped before exploring every option
+     */
+    public Result(List<Schedule> s, List<String> e, boolean truncated) {
       this.schedules = s;
       this.errors = e;
+      this.truncated = truncated;
     }
   }
 
@@ -106,6 +249,46 @@ public class ScheduleGenerator {
     }
   }
 
+  /**
+   * The inputs to a schedule's score, summed over its courses: MWF and TTh counts, required
+   * courses, the penalty for electives outside the preferred departments, and whether any course is
+   * WRIT. A course's own tally is worked out once per request, and a schedule's tally is its
+   * parent's plus the added course, so a complete schedule is scored without rescanning it.
+   */
+  private static final class ScoreTally {
+    /** The tally of a schedule without courses */
+    static final ScoreTally EMPTY = new ScoreTally(0, 0, 0, 0, false);
+
+    final int mwf;
+    final int tth;
+    final int required;
+    final int deptPenalty;
+    final boolean writ;
+
+    ScoreTally(int mwf, int tth, int required, int deptPenalty, boolean writ) {
+      this.mwf = mwf;
+      this.tth = tth;
+      this.required = required;
+      this.deptPenalty = deptPenalty;
+      this.writ = writ;
+    }
+
+    /**
+     * Adds another tally to this one.
+     *
+     * @param o The tally to add, typically one course's
+     * @return The sum
+     */
+    ScoreTally plus(ScoreTally o) {
+      return new ScoreTally(
+          mwf + o.mwf,
+          tth + o.tth,
+          required + o.required,
+          deptPenalty + o.deptPenalty,
+          writ || o.writ);
+    }
+  }
+
   /**
    * Class representing a potential course schedule.
    */
@@ -114,6 +297,13 @@ public class ScheduleGenerator {
     public List<Map<String, Object>> courses;
     /** Calculated score for this schedule based on how well it meets preferences */
     public double score;
+    /** Score inputs summed over the courses, carried along the search path; null if not tracked */
+    private ScoreTally tally;
+    /**
+     * For a schedule standing for a group of interchangeable ones: pairs of an elective class and
+     * the number of its members taken, matching the last courses of the schedule. Null otherwise.
+     */
+    private int[] classPicks;
 
     /**
      * Creates a new Schedule with the specified courses.
@@ -166,10 +356,10 @@ public class ScheduleGenerator {
     /**
      * Counts how many required courses are included in this schedule.
      *
-     * @param remainingRequired List of courses required for degree completion
+     * @param remainingRequired Courses required for degree completion
      * @return The number of required courses in this schedule
      */
-    public int countRequiredCourses(List<String> remainingRequired) {
+    public int countRequiredCourses(Collection<String> remainingRequired) {
       int count = 0;
       for (Map<String, Object> course : courses) {
         String code = (String) course.get("code");
@@ -198,37 +388,38 @@ public class ScheduleGenerator {
    * Creates a new ScheduleGenerator with the specified parameters.
    *
    * @param classesPerSemester Number of courses to include in each schedule
-   * @param coursesTaken List of courses the student has already taken
-   * @param remainingRequired List of courses required for degree completion
-   * @param necessaryCourses List of courses that must be included in schedules
+   * @param coursesTaken Courses the student has already taken
+   * @param remainingRequired Courses required for degree completion
+   * @param necessaryCourses Courses that must be included in schedules
    * @param availableTimes Set of time blocks when the student is available
    * @param dayAvailability Map indicating which days of the week are available
    * @param dayBalance Desired balance between MWF and TTh classes
    * @param requiredCoursesThisSemester Number of required courses to include
-   * @param preferredDepts List of preferred departments for electives
+   * @param preferredDepts Preferred departments for electives
    * @param needWRIT Whether a WRIT-designated course is required
    */
   public ScheduleGenerator(
       int classesPerSemester,
-      List<String> coursesTaken,
-      List<String> remainingRequired,
-      List<String> necessaryCourses,
+      Collection<String> coursesTaken,
+      Collection<String> remainingRequired,
+      Collection<String> necessaryCourses,
       Set<String> availableTimes,
       Map<String, Boolean> dayAvailability,
       DayBalance dayBalance,
       int requiredCoursesThisSemester,
-      List<String> preferredDepts,
+      Collection<String> preferredDepts,
       boolean needWRIT) {
 
     this.classesPerSemester = classesPerSemester;
-    this.coursesTaken = coursesTaken;
-    this.remainingRequired = remainingRequired;
-    this.necessaryCourses = necessaryCourses;
+    // Held as sets, as they are only looked up in, often once per course or schedule
+    this.coursesTaken = new HashSet<>(coursesTaken);
+    this.remainingRequired = new HashSet<>(remainingRequired);
+    this.necessaryCourses = new LinkedHashSet<>(necessaryCourses);
     this.availableTimes = availableTimes;
     this.dayAvailability = dayAvailability;
     this.dayBalance = dayBalance;
     this.requiredCoursesThisSemester = requiredCoursesThisSemester;
-    this.preferredDepts = preferredDepts;
+    this.preferredDepts = new HashSet<>(preferredDepts);
     this.needWRIT = needWRIT;
 
     this.generatedSchedules = new ArrayList<>();
@@ -236,27 +427,86 @@ public class ScheduleGenerator {
   }
 
   /**
-   * Loads course data for the specified term from the JSON file.
+   * Limits how long {@link #generateSchedules} may search. When the budget runs out the search
+   * stops and returns the best schedules found so far, flagged as truncated.
+   *
+   * @param budget The time limit and cancellation signal to apply
+   */
+  public void setBudget(SearchBudget budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Sets how the search varies its results. Options are tried in an order drawn from the seed, so
+   * the same inputs and seed always give the same schedules. With {@code diverse} above zero, the
+   * search samples complete schedules with seeded random probes instead of enumerating them, and
+   * returns that many, chosen by {@link DiversitySampler} to trade score against overlap.
+   *
+   * @param seed Seed for the option order and the probes
+   * @param diverse Number of varied schedules to return, or 0 for every schedule found
+   */
+  public void setSampling(long seed, int diverse) {
+    this.seed = seed;
+    this.diverse = diverse;
+  }
+
+  /**
+   * Chooses the search engine.
+   *
+   * @param engine The engine to search with
+   */
+  public void setEngine(Engine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * Restricts courses to those meeting only within some slots of the week, in addition to the
+   * allowed time blocks.
+   *
+   * @param allowedSlots The slots courses may meet in, or null for no restriction
+   */
+  public void setAllowedSlots(WeeklyMask allowedSlots) {
+    this.allowedSlots = allowedSlots;
+  }
+
+  /**
+   * Reports the search's progress to a listener: periodic counts, and each schedule that enters the
+   * top {@code topK} by score.
+   *
+   * @param listener The listener to notify
+   * @param topK Number of best schedules to track
+   */
+  public void setListener(SearchListener listener, int topK) {
+    this.listener = listener;
+    this.topK = topK;
+    this.top = new PriorityQueue<>(Comparator.comparingDouble((Schedule s) -> s.score));
+  }
+
+  /**
+   * Loads course data for the specified term.
+   * The parsed catalog is cached across requests (see {@link TermCatalog}), so the
+   * course list and lookup map are shared and read-only.
    *
    * @param term The term code (e.g., "202420" for Spring 2025)
    * @throws IOException If an error occurs reading the course data file
    */
   public void loadCourseData(String term) throws IOException {
-    String json = Files.readString(Paths.get(COURSES_FILE));
-    Type type = Types.newParameterizedType(Map.class, String.class, Object.class);
-    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(type);
-    Map<String, Object> data = adapter.fromJson(json);
-
-    List<Object> results = (List<Object>) data.get("results");
-    this.allCourses = new ArrayList<>();
-
-    for (Object obj : results) {
-      Map<String, Object> course = (Map<String, Object>) obj;
-      if (course.get("srcdb").equals(term)) {
-        this.allCourses.add(course);
-        this.courseMap.put((String) course.get("code"), course);
-      }
-    }
+    TermCatalog catalog = TermCatalog.forTerm(term);
+    this.allCourses = catalog.courses;
+    this.courseMap = catalog.courseMap;
+  }
+
+  /**
+   * Uses a term's shared structures instead of loading them for this search alone: the cached
+   * catalog, its conflict table and its availability pools.
+   *
+   * @param shared The shared structures for the term being searched
+   */
+  public void loadCourseData(SharedTerm shared) {
+    this.shared = shared;
+    this.allCourses = shared.catalog.courses;
+    this.courseMap = shared.catalog.courseMap;
+    this.conflicts = shared.conflicts;
   }
 
   /**
@@ -268,73 +518,146 @@ public class ScheduleGenerator {
    * @throws Exception If an error occurs during filtering
    */
   public void filterCourses(String term) throws Exception {
-    this.filteredCourses = new ArrayList<>();
+    List<Map<String, Object>> available =
+        shared != null
+            ? shared.available(this.dayAvailability, this.availableTimes, this.allowedSlots)
+            : availableCourses(
+                this.allCourses, this.dayAvailability, this.availableTimes, this.allowedSlots);
+    filterCourses(available);
+  }
 
-    for (Map<String, Object> course : this.allCourses) {
-      String courseCode = (String) course.get("code");
+  /**
+   * Selects the courses that have defined meeting times, meet only on available days and meet at
+   * an allowed time; a section bundle fits only if each of its sections does. A course fits the
+   * allowed slots if its meeting mask, built when the catalog loads, lies within them. This part of
+   * filtering depends only on the student's availability, so searches with the same availability
+   * can share its result.
+   *
+   * @param courses The courses to check
+   * @param dayAvailability Map indicating which days of the week are available
+   * @param availableTimes Set of allowed time blocks; empty allows all
+   * @param allowedSlots Slots of the week courses may meet in, or null to allow all
+   * @return The courses that fit, in their original order
+   */
+  public static List<Map<String, Object>> availableCourses(
+      List<Map<String, Object>> courses,
+      Map<String, Boolean> dayAvailability,
+      Set<String> availableTimes,
+      WeeklyMask allowedSlots) {
+    List<Map<String, Object>> available = new ArrayList<>();
+    for (Map<String, Object> course : courses) {
       String meets = (String) course.get("meets");
 
-      // Special handling for necessary courses - they must be included if possible
-      if (this.necessaryCourses.contains(courseCode)) {
-        // Check day availability for necessary courses
-        Set<String> meetDays = parseMeetingDays(meets);
-        boolean badDay = false;
-        for (String d : meetDays) {
-          if (!Boolean.TRUE.equals(this.dayAvailability.get(d))) {
-            errors.add("Needed course " + courseCode + " meets on an unavailable day: " + d);
-            badDay = true;
-          }
-        }
-        if (badDay) continue;
-
-        // Check time block availability for necessary courses
-        String block = meets.split(" ", 2)[1];
-        if (!SchedulerUtils.isAllowedTime(block, this.availableTimes)) {
-          errors.add("Needed course " + courseCode + " meets at an unavailable time: " + meets);
-          continue;
-        }
-
-        // Check prerequisites for necessary courses
-        if (!checkPrerequisites(courseCode)) {
-          errors.add("Needed course " + courseCode + " missing prerequisites");
-          continue;
-        }
-
-        this.filteredCourses.add(course);
-        continue;
-      }
-
       // Skip courses with undefined meeting times
       if (meets == null || meets.isBlank() || "TBA".equalsIgnoreCase(meets.trim())) {
         continue;
       }
 
-      // Skip courses already taken
-      if (this.coursesTaken.contains(courseCode)) {
-        continue;
+      // Check day and time block availability of every section in the bundle
+      boolean fits = true;
+      for (Map<String, Object> part : SectionBundles.parts(course)) {
+        String partMeets = (String) part.get("meets");
+        String humanTimeBlock =
+            partMeets.split(" ", 2).length > 1 ? partMeets.split(" ", 2)[1] : "TBA";
+        fits &=
+            fitsDays(partMeets, dayAvailability)
+                && SchedulerUtils.isAllowedTime(humanTimeBlock, availableTimes);
+      }
+      if (fits && (allowedSlots == null || TermCatalog.meetingMask(course).within(allowedSlots))) {
+        available.add(course);
       }
+    }
+    return available;
+  }
 
-      // Check day availability for optional courses
-      boolean dayAvailable = true;
-      if (meets.contains("M") && !this.dayAvailability.get("M")) dayAvailable = false;
-      if (meets.contains("T") && !this.dayAvailability.get("T")) dayAvailable = false;
-      if (meets.contains("W") && !this.dayAvailability.get("W")) dayAvailable = false;
-      if (meets.contains("Th") && !this.dayAvailability.get("Th")) dayAvailable = false;
-      if (meets.contains("F") && !this.dayAvailability.get("F")) dayAvailable = false;
+  /**
+   * Checks that a course meets only on available days. The check is by letter, so an unavailable
+   * Tuesday also excludes Thursday meetings, matching how courses have always been filtered.
+   *
+   * @param meets The course's meeting string, e.g. "MWF 10-10:50a"
+   * @param dayAvailability Map indicating which days of the week are available
+   * @return true if no meeting falls on an unavailable day
+   */
+  public static boolean fitsDays(String meets, Map<String, Boolean> dayAvailability) {
+    if (meets.contains("M") && !dayAvailability.get("M")) return false;
+    if (meets.contains("T") && !dayAvailability.get("T")) return false;
+    if (meets.contains("W") && !dayAvailability.get("W")) return false;
+    if (meets.contains("Th") && !dayAvailability.get("Th")) return false;
+    return !meets.contains("F") || dayAvailability.get("F");
+  }
 
-      if (!dayAvailable) {
-        continue;
+  /**
+   * Checks that every part of a necessary course's section bundle meets only on available days.
+   * Unlike {@link #fitsDays}, the days of each part are parsed, as filtering checks necessary
+   * courses, so a Thursday-only course still fits when Tuesday is unavailable.
+   *
+   * @param course The bundle
+   * @param dayAvailability Map indicating which days of the week are available
+   * @return true if no part meets on an unavailable day
+   */
+  public static boolean neededFitsDays(
+      Map<String, Object> course, Map<String, Boolean> dayAvailability) {
+    for (Map<String, Object> part : SectionBundles.parts(course)) {
+      for (String d : parseMeetingDays((String) part.get("meets"))) {
+        if (!Boolean.TRUE.equals(dayAvailability.get(d))) return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Uses courses filtered earlier, such as the pool a planning session keeps between edits,
+   * instead of filtering the catalog again.
+   *
+   * @param courses The filtered courses; the generator does not modify the list
+   */
+  public void setFilteredCourses(List<Map<String, Object>> courses) {
+    this.filteredCourses = courses;
+  }
+
+  /**
+   * Applies the student-specific filters: necessary courses are checked against the full catalog
+   * so problems with them are reported, and optional courses are taken from the courses that fit
+   * the student's availability, skipping those already taken or lacking prerequisites.
+   *
+   * @param available Courses that fit the student's day and time availability
+   */
+  private void filterCourses(List<Map<String, Object>> available) {
+    this.filteredCourses = new ArrayList<>();
+
+    // A necessary course is kept if any of its section bundles fits; if none does, the problems
+    // with its first bundle are reported
+    Map<String, List<String>> neededProblems = new LinkedHashMap<>();
+    Set<String> neededFit = new HashSet<>();
+    for (Map<String, Object> course : this.allCourses) {
+      String courseCode = (String) course.get("code");
+
+      // Special handling for necessary courses - they must be included if possible
+      if (this.necessaryCourses.contains(courseCode)) {
+        List<String> problems = neededProblems(course);
+        if (problems.isEmpty()) {
+          this.filteredCourses.add(course);
+          neededFit.add(courseCode);
+        } else {
+          neededProblems.putIfAbsent(courseCode, problems);
+        }
       }
+    }
+    neededProblems.forEach(
+        (code, problems) -> {
+          if (!neededFit.contains(code)) errors.addAll(problems);
+        });
 
-      // Check time block availability for optional courses
-      String humanTimeBlock = meets.split(" ", 2).length > 1 ? meets.split(" ", 2)[1] : "TBA";
-      boolean timeAvailable = SchedulerUtils.isAllowedTime(humanTimeBlock, this.availableTimes);
+    for (Map<String, Object> course : available) {
+      String courseCode = (String) course.get("code");
 
-      // Check prerequisites for optional courses
-      boolean prerequisitesMet = checkPrerequisites(courseCode);
+      // Necessary courses were handled above; skip courses already taken
+      if (this.necessaryCourses.contains(courseCode) || this.coursesTaken.contains(courseCode)) {
+        continue;
+      }
 
-      // Add course to filtered list if it passes all checks
-      if (timeAvailable && prerequisitesMet) {
+      // Add course to filtered list if its prerequisites are met
+      if (checkPrerequisites(courseCode)) {
         this.filteredCourses.add(course);
       }
     }
@@ -352,15 +675,62 @@ public class ScheduleGenerator {
   }
 
   /**
-   * Checks if prerequisites are satisfied for a course.
+   * Checks a section bundle of a necessary course against the student's availability and
+   * prerequisites.
+   *
+   * @param course The bundle
+   * @return The problems found, empty if it fits
+   */
+  private List<String> neededProblems(Map<String, Object> course) {
+    String courseCode = (String) course.get("code");
+    List<String> problems = new ArrayList<>();
+    for (Map<String, Object> part : SectionBundles.parts(course)) {
+      String meets = (String) part.get("meets");
+
+      // Check day availability for necessary courses
+      Set<String> meetDays = parseMeetingDays(meets);
+      for (String d : meetDays) {
+        if (!Boolean.TRUE.equals(this.dayAvailability.get(d))) {
+          problems.add("Needed course " + courseCode + " meets on an unavailable day: " + d);
+        }
+      }
+      if (!problems.isEmpty()) return problems;
+
+      // Check time block availability for necessary courses
+      String block = meets.split(" ", 2)[1];
+      if (!SchedulerUtils.isAllowedTime(block, this.availableTimes)) {
+        problems.add("Needed course " + courseCode + " meets at an unavailable time: " + meets);
+        return problems;
+      }
+    }
+
+    // Check the bundle meets only within the available hours
+    if (allowedSlots != null && !TermCatalog.meetingMask(course).within(allowedSlots)) {
+      problems.add(
+          "Needed course "
+              + courseCode
+              + " meets outside your available hours: "
+              + course.get("meets"));
+      return problems;
+    }
+
+    // Check prerequisites for necessary courses
+    if (!checkPrerequisites(courseCode)) {
+      problems.add("Needed course " + courseCode + " missing prerequisites");
+    }
+    return problems;
+  }
+
+  /**
+   * Checks if prerequisites are satisfied for a course, using the catalog's prerequisite graph.
    *
    * @param courseCode The course code to check
    * @return true if prerequisites are satisfied or none exist, false otherwise
    */
   public boolean checkPrerequisites(String courseCode) {
-    Map<String, Object> course = CourseCatalog.getCourse(courseCode);
-    if (course == null) return true; // should not happen
-    return SchedulerUtils.arePrerequisitesSatisfied(course, this.coursesTaken);
+    PrerequisiteGraph graph = CourseCatalog.prerequisites();
+    if (takenBits == null) takenBits = graph.bits(this.coursesTaken);
+    return graph.satisfied(courseCode, takenBits);
   }
 
   /**
@@ -401,31 +771,29 @@ public class ScheduleGenerator {
       return new Result(List.of(), errors);
     }
 
-    // Build list of necessary courses
-    List<Map<String, Object>> necessaryCourseList = new ArrayList<>();
+    // Build the section bundles each necessary course can be taken in
+    List<List<Map<String, Object>>> necessaryOptions = new ArrayList<>();
     for (String code : this.necessaryCourses) {
-      Map<String, Object> course = this.courseMap.get(code);
-      if (course != null) {
-        necessaryCourseList.add(course);
-      } else {
+      if (!this.courseMap.containsKey(code)) {
         errors.add("Necessary course not found: " + code);
         return new Result(List.of(), errors);
       }
+      necessaryOptions.add(bundlesOf(code));
     }
 
     // Check if too many necessary courses
-    if (necessaryCourseList.size() > this.classesPerSemester) {
+    if (necessaryOptions.size() > this.classesPerSemester) {
       errors.add(
-          "Too many necessary courses: " + necessaryCourseList.size() + " > " + classesPerSemester);
+          "Too many necessary courses: " + necessaryOptions.size() + " > " + classesPerSemester);
       return new Result(List.of(), errors);
     }
 
-    // Start with necessary courses as the base schedule
-    Schedule baseSchedule = new Schedule(necessaryCourseList);
+    // Start with necessary courses as the base schedule, one per way to take them
+    List<Schedule> bases = baseSchedules(necessaryOptions);
+    Schedule baseSchedule = bases.get(0);
 
     // Find courses already in the base schedule
-    Set<String> inSchedule =
-        baseSchedule.courses.stream().map(c -> (String) c.get("code")).collect(Collectors.toSet());
+    Set<String> inSchedule = new HashSet<>(this.necessaryCourses);
 
     // Filter remaining courses to exclude those already in schedule
     List<Map<String, Object>> remainingFilteredCourses =
@@ -433,12 +801,13 @@ public class ScheduleGenerator {
             .filter(c -> !inSchedule.contains(c.get("code")))
             .collect(Collectors.toList());
 
-    // Identify required courses that can be added
+    // Identify required courses that can be added; the search adds at most as many as are still
+    // missing, chosen after the shuffle rather than the first few in catalog order
     List<Map<String, Object>> requiredCourseOptions =
         remainingFilteredCourses.stream()
             .filter(c -> this.remainingRequired.contains(c.get("code")))
-            .limit(this.requiredCoursesThisSemester - baseSchedule.courses.size())
             .collect(Collectors.toList());
+    requiredSlots = Math.max(0, this.requiredCoursesThisSemester - baseSchedule.tally.required);
 
     // Update tracking of courses in schedule
     inSchedule.addAll(
@@ -452,112 +821,720 @@ public class ScheduleGenerator {
             .filter(c -> !inSchedule.contains(c.get("code")))
             .collect(Collectors.toList());
 
-    // Randomize options for variety in generated schedules
-    Collections.shuffle(requiredCourseOptions);
-    Collections.shuffle(electiveCourseOptions);
+    // Vary the option order for variety in generated schedules, reproducibly
+    Random random = new Random(seed);
+    Collections.shuffle(requiredCourseOptions, random);
+
+    // The enumerating search tries only as many required courses first as are still missing; the
+    // others stay electives, so a schedule can still take them at the cost of their score penalty
+    if (engine == Engine.ENUMERATE && requiredCourseOptions.size() > requiredSlots) {
+      List<Map<String, Object>> surplus =
+          requiredCourseOptions.subList(requiredSlots, requiredCourseOptions.size());
+      electiveCourseOptions.addAll(surplus);
+      surplus.clear();
+    }
+    Collections.shuffle(electiveCourseOptions, random);
 
     // Check if WRIT course needs to be added
     boolean needToAddWRIT = this.needWRIT && !baseSchedule.hasWRITCourse();
 
     // Generate schedules recursively
     this.generatedSchedules.clear();
-    buildSchedules(
-        baseSchedule, requiredCourseOptions, electiveCourseOptions, 0, needToAddWRIT, term);
+    long start = System.nanoTime();
+    lastProgressNanos = start;
+    if (diverse > 0) {
+      sampleSchedules(bases, requiredCourseOptions, electiveCourseOptions, needToAddWRIT, random);
+    } else {
+      groupCourses(requiredCourseOptions, electiveCourseOptions, needToAddWRIT);
+      ConstraintSolver.Wipeout wipeout = null;
+      for (Schedule base : bases) {
+        if (this.generatedSchedules.size() >= MAX_SCHEDULES || this.truncated) break;
+        if (engine == Engine.PROPAGATE) {
+          ConstraintSolver.Wipeout w = propagate(base);
+          if (wipeout == null) wipeout = w;
+        } else {
+          buildSchedules(base, 0, 0, 0, 0, needToAddWRIT);
+        }
+      }
+      if (engine == Engine.PROPAGATE && generatedSchedules.isEmpty() && !truncated) {
+        errors.add(
+            wipeout != null
+                ? "No schedule meets your targets exactly: " + wipeout.reason
+                : "No schedule meets your required-course, MWF/TTh and WRIT targets exactly");
+      }
+    }
+    start = SEARCH_TIME.observeSince(start);
 
-    // Sort schedules by score (highest first)
+    // Sort schedules by score (highest first), then pick a varied few if asked to
     this.generatedSchedules.sort((s1, s2) -> Double.compare(s2.score, s1.score));
+    start = SORTING_TIME.observeSince(start);
+    if (diverse > 0) {
+      this.generatedSchedules =
+          DiversitySampler.select(generatedSchedules, diverse, DiversitySampler.LAMBDA);
+    } else {
+      this.generatedSchedules = expand(generatedSchedules);
+      EXPAND_TIME.observeSince(start);
+    }
+    recordSearchStats();
+    if (listener != null) {
+      listener.onProgress(nodesExpanded, generatedSchedules.size(), bestScore);
+    }
 
     // Limit number of returned schedules
-    int maxOptions = Math.min(9999, this.generatedSchedules.size());
+    int maxOptions = Math.min(MAX_SCHEDULES, this.generatedSchedules.size());
     List<Schedule> top = generatedSchedules.subList(0, maxOptions);
-    return new Result(top, errors);
+    return new Result(top, errors, truncated);
+  }
+
+  /**
+   * Checks, before any search, that the filtered courses can hold a schedule meeting the request's
+   * hard constraints: the number of classes, the needed courses, the number of required courses,
+   * a WRIT course if one is needed and, for the propagating engine, the MWF/TTh balance. A request
+   * that certainly can't be met is rejected with the smallest set of these that conflict, so the
+   * student knows what to relax, instead of after a search that finds nothing.
+   *
+   * @return Errors explaining why the request can't be met; empty if it may be
+   */
+  public List<String> checkFeasibility() {
+    if (!this.errors.isEmpty()) return List.of();
+    long start = System.nanoTime();
+
+    List<FeasibilityCheck.Constraint> constraints = new ArrayList<>();
+    for (String code : this.necessaryCourses) {
+      if (!this.courseMap.containsKey(code)) return List.of();
+
+      // A course that fits in several section bundles is left among the candidates, which only
+      // relaxes the check
+      List<Map<String, Object>> bundles = bundlesOf(code);
+      if (bundles.size() == 1) constraints.add(FeasibilityCheck.Constraint.needed(bundles.get(0)));
+    }
+    if (this.needWRIT) constraints.add(FeasibilityCheck.Constraint.writ());
+    if (engine == Engine.PROPAGATE && diverse == 0) {
+      constraints.add(
+          FeasibilityCheck.Constraint.count(FeasibilityCheck.Kind.MWF, dayBalance.mwfCount));
+      constraints.add(
+          FeasibilityCheck.Constraint.count(FeasibilityCheck.Kind.TTH, dayBalance.tthCount));
+    }
+    if (this.requiredCoursesThisSemester > 0) {
+      constraints.add(
+          FeasibilityCheck.Constraint.count(
+              FeasibilityCheck.Kind.REQUIRED, this.requiredCoursesThisSemester));
+    }
+    constraints.add(
+        FeasibilityCheck.Constraint.count(FeasibilityCheck.Kind.SLOTS, this.classesPerSemester));
+
+    // Needed courses stay apart, to be taken as candidates once their constraint is dropped
+    List<CourseClass> classes =
+        CourseClass.group(
+            filteredCourses,
+            c -> {
+              if (this.necessaryCourses.contains(c.get("code"))) {
+                return Arrays.asList(c.get("code"), c.get("meetingTimes"));
+              }
+              ScoreTally t = contribution(c);
+              return Arrays.asList(
+                  c.get("meetingTimes"), c.get("meets"), t.required, t.writ, bundleGroup(c));
+            },
+            this::conflict);
+
+    // Compare meeting patterns through a table even when no shared one was loaded
+    ConflictIndex index = conflicts;
+    if (index == null) {
+      List<Map<String, Object>> representatives = new ArrayList<>();
+      for (CourseClass c : classes) representatives.add(c.members.get(0));
+      index = ConflictIndex.of(representatives);
+    }
+    ConflictIndex table = index;
+
+    FeasibilityCheck check =
+        new FeasibilityCheck(
+            classes,
+            c -> contribution(c).required > 0,
+            c -> contribution(c).mwf > 0,
+            c -> contribution(c).tth > 0,
+            (a, b) -> sameCourse(a, b) || table.conflict(a, b));
+    List<FeasibilityCheck.Constraint> conflicting = check.conflictSet(constraints);
+    FEASIBILITY_TIME.observeSince(start);
+    if (conflicting == null) return List.of();
+
+    INFEASIBLE.inc();
+    List<String> labels = new ArrayList<>();
+    for (FeasibilityCheck.Constraint c : conflicting) labels.add(c.label());
+    String message =
+        (labels.size() == 1
+                ? "This can't be met under your availability: "
+                : "These can't all be met together under your availability: ")
+            + String.join(", ", labels)
+            + (check.detail() != null ? " (" + check.detail() + ")" : "");
+    return List.of(message);
+  }
+
+  /**
+   * Returns the section bundles a course can be taken in: those that passed filtering, or the
+   * course's first bundle if none did.
+   *
+   * @param code The course code
+   * @return The bundles, in catalog order
+   */
+  public List<Map<String, Object>> bundlesOf(String code) {
+    List<Map<String, Object>> bundles = new ArrayList<>();
+    for (Map<String, Object> c : this.filteredCourses) {
+      if (code.equals(c.get("code"))) bundles.add(c);
+    }
+    if (bundles.isEmpty() && this.courseMap.get(code) != null) {
+      bundles.add(this.courseMap.get(code));
+    }
+    return bundles;
+  }
+
+  /**
+   * Builds the schedules of necessary courses the search starts from, one for each way to take
+   * them in section bundles that don't conflict, up to {@link #MAX_BASES}. If no way is free of
+   * conflicts the first one is used, and the search finds nothing from it.
+   *
+   * @param options The bundles of each necessary course
+   * @return The base schedules, with their tallies
+   */
+  private List<Schedule> baseSchedules(List<List<Map<String, Object>>> options) {
+    List<List<Map<String, Object>>> combos = new ArrayList<>();
+    combos.add(new ArrayList<>());
+    for (List<Map<String, Object>> bundles : options) {
+      List<List<Map<String, Object>>> next = new ArrayList<>();
+      for (List<Map<String, Object>> combo : combos) {
+        for (Map<String, Object> bundle : bundles) {
+          if (next.size() == MAX_BASES) break;
+          List<Map<String, Object>> longer = new ArrayList<>(combo);
+          longer.add(bundle);
+          next.add(longer);
+        }
+      }
+      combos = next;
+    }
+
+    List<Schedule> bases = new ArrayList<>();
+    for (List<Map<String, Object>> combo : combos) {
+      Schedule base = new Schedule(combo);
+      base.tally = tallyOf(combo);
+      if (bases.isEmpty() || !hasTimeConflicts(base)) bases.add(base);
+    }
+    if (bases.size() > 1 && hasTimeConflicts(bases.get(0))) bases.remove(0);
+    return bases;
+  }
+
+  /**
+   * Groups the candidate courses into classes of interchangeable courses and orders them for the
+   * search: the classes of the required options first, then, when a WRIT course is needed, WRIT
+   * electives, so that as when adding courses one by one the first elective can be required to be
+   * WRIT. Required courses among the elective options stay with the electives.
+   *
+   * @param requiredOptions Required courses to try first
+   * @param electiveOptions Elective courses that can be added
+   * @param needWRIT Whether a WRIT course still needs to be added
+   */
+  private void groupCourses(
+      List<Map<String, Object>> requiredOptions,
+      List<Map<String, Object>> electiveOptions,
+      boolean needWRIT) {
+    courseClasses = CourseClass.group(requiredOptions, this::classKey, this::conflict);
+    requiredClasses = courseClasses.size();
+
+    List<CourseClass> electives =
+        CourseClass.group(electiveOptions, this::classKey, this::conflict);
+    writClasses = 0;
+    if (needWRIT) {
+      electives.sort(Comparator.comparing((CourseClass c) -> !c.writ));
+      writClasses = (int) electives.stream().filter(c -> c.writ).count();
+    }
+    courseClasses.addAll(electives);
+    classPath = new int[this.classesPerSemester];
+    COURSE_CLASSES.add(courseClasses.size());
   }
 
   /**
    * Recursively builds schedules by adding courses one at a time.
-   * This method explores all possible combinations of courses that satisfy the constraints.
+   * Courses are added a class at a time and in class order, required classes first, so every set
+   * of courses is reached once. The schedule takes the class's next member, which stands for any
+   * member, and {@link #expand} later substitutes the others.
    *
    * @param currentSchedule The schedule being built
-   * @param requiredOptions List of required courses that can be added
-   * @param electiveOptions List of elective courses that can be added
+   * @param depth Number of courses added so far
    * @param requiredAdded Number of required courses already added
+   * @param nextClass Index of the first class that may still be added
+   * @param takenFromClass Number of members of that class already in the schedule
    * @param needWRIT Whether a WRIT course still needs to be added
-   * @param term The term code for which schedules are being generated
-   * @throws Exception If an error occurs during schedule building
    */
   private void buildSchedules(
       Schedule currentSchedule,
-      List<Map<String, Object>> requiredOptions,
-      List<Map<String, Object>> electiveOptions,
+      int depth,
       int requiredAdded,
-      boolean needWRIT,
-      String term)
-      throws Exception {
+      int nextClass,
+      int takenFromClass,
+      boolean needWRIT) {
 
-    // Stop if we've generated enough schedules
-    if (this.generatedSchedules.size() >= 9999) {
+    // Stop if we've generated enough schedules or run out of time
+    if (this.generatedSchedules.size() >= MAX_SCHEDULES || this.truncated) {
       return;
     }
+    if (!visit()) return;
 
     // If schedule is complete, add it to results
     if (currentSchedule.courses.size() >= this.classesPerSemester) {
-      String key =
-          currentSchedule.courses.stream()
-              .map(c -> (String) c.get("code"))
-              .sorted()
-              .collect(Collectors.joining("|"));
-
-      // Only add unique schedules
-      if (seenKeys.add(key)) {
-        calculateScheduleScore(currentSchedule);
-        this.generatedSchedules.add(currentSchedule);
-      }
+      currentSchedule.classPicks = CourseClass.picks(classPath, depth);
+      keep(currentSchedule);
       return;
     }
 
-    // Try adding required courses first
-    if (requiredAdded < this.requiredCoursesThisSemester && !requiredOptions.isEmpty()) {
-      for (int i = 0; i < requiredOptions.size(); i++) {
-        Map<String, Object> course = requiredOptions.get(i);
+    // Required classes come first, until the missing required courses are added
+    int from = nextClass;
+    if (from < requiredClasses && requiredAdded >= requiredSlots) from = requiredClasses;
 
-        Schedule next = new Schedule(new ArrayList<>(currentSchedule.courses));
-        next.courses.add(course);
-        if (next.hasTimeConflicts()) continue;
+    // While a WRIT course is needed, the first elective must be WRIT if any is
+    int to = courseClasses.size();
+    if (needWRIT && writClasses > 0) to = requiredClasses + writClasses;
 
-        List<Map<String, Object>> nextReq = new ArrayList<>(requiredOptions);
-        nextReq.remove(i);
+    for (int c = from; c < to; c++) {
+      CourseClass cls = courseClasses.get(c);
+      int taken = c == nextClass ? takenFromClass : 0;
+      if (taken >= cls.maxTaken) continue;
 
-        boolean nextNeedWRIT = needWRIT && !Boolean.TRUE.equals(course.get("writ"));
-        buildSchedules(next, nextReq, electiveOptions, requiredAdded + 1, nextNeedWRIT, term);
+      Schedule next = extend(currentSchedule, cls.members.get(taken));
+      if (hasTimeConflicts(next)) {
+        conflictPrunes++;
+        continue;
       }
+
+      classPath[depth] = c;
+      boolean isRequired = c < requiredClasses;
+      boolean nextNeedWRIT = needWRIT && !cls.writ;
+      buildSchedules(
+          next, depth + 1, requiredAdded + (isRequired ? 1 : 0), c, taken + 1, nextNeedWRIT);
     }
+  }
 
-    // If no elective options, stop here
-    if (electiveOptions.isEmpty()) return;
+  /**
+   * Runs the constraint-propagating search from the necessary courses, keeping every schedule that
+   * meets the required-course count, the MWF/TTh balance and the WRIT requirement exactly.
+   *
+   * @param base The schedule of necessary courses, with its tally
+   * @return The constraint that rules out every schedule from the start, or null if the search ran
+   */
+  private ConstraintSolver.Wipeout propagate(Schedule base) {
+    int n = courseClasses.size();
+    boolean[] required = new boolean[n];
+    boolean[] mwf = new boolean[n];
+    boolean[] tth = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      ScoreTally t = contribution(courseClasses.get(i).members.get(0));
+      required[i] = t.required > 0;
+      mwf[i] = t.mwf > 0;
+      tth[i] = t.tth > 0;
+    }
 
-    // Filter electives for WRIT courses if needed
-    List<Map<String, Object>> pool = electiveOptions;
-    if (needWRIT) {
-      pool =
-          electiveOptions.stream()
-              .filter(c -> Boolean.TRUE.equals(c.get("writ")))
-              .collect(Collectors.toList());
-      if (pool.isEmpty()) pool = electiveOptions;
+    // Compare meeting patterns through a table even when no shared one was loaded
+    ConflictIndex index = conflicts;
+    if (index == null) {
+      List<Map<String, Object>> representatives = new ArrayList<>(base.courses);
+      for (CourseClass c : courseClasses) representatives.add(c.members.get(0));
+      index = ConflictIndex.of(representatives);
+    }
+
+    ConflictIndex table = index;
+    ConstraintSolver solver =
+        new ConstraintSolver(
+            courseClasses,
+            required,
+            mwf,
+            tth,
+            (a, b) -> sameCourse(a, b) || table.conflict(a, b),
+            this::visit);
+    ScoreTally t = base.tally;
+    ConstraintSolver.Wipeout wipeout =
+        solver.solve(
+            base.courses,
+            this.classesPerSemester - base.courses.size(),
+            this.requiredCoursesThisSemester - t.required,
+            this.dayBalance.mwfCount - t.mwf,
+            this.dayBalance.tthCount - t.tth,
+            this.needWRIT && !t.writ,
+            picks -> {
+              Schedule s = base;
+              for (int i = 0; i < picks.length; i += 2) {
+                CourseClass cls = courseClasses.get(picks[i]);
+                for (int j = 0; j < picks[i + 1]; j++) s = extend(s, cls.members.get(j));
+              }
+              s.classPicks = picks;
+              keep(s);
+              return this.generatedSchedules.size() < MAX_SCHEDULES;
+            });
+    for (long w : solver.wipeouts()) WIPEOUTS.add(w);
+    return wipeout;
+  }
+
+  /**
+   * Checks whether a course is one of the student's remaining required courses.
+   *
+   * @param course The course
+   * @return true if it is required
+   */
+  private boolean isRequired(Map<String, Object> course) {
+    return contribution(course).required > 0;
+  }
+
+  /**
+   * Expands scored schedules that stand for groups of interchangeable ones into concrete
+   * schedules, best first, until {@link #MAX_SCHEDULES} are produced. Members of one group share
+   * its score, so only the groups that make the cut are expanded.
+   *
+   * @param schedules Scored schedules, best first
+   * @return Concrete schedules, best first
+   */
+  private List<Schedule> expand(List<Schedule> schedules) {
+    List<Schedule> expanded = new ArrayList<>();
+    for (Schedule group : schedules) {
+      if (expanded.size() >= MAX_SCHEDULES) break;
+      if (group.classPicks == null) {
+        expanded.add(group);
+        continue;
+      }
+      int fixed = group.courses.size();
+      for (int i = 1; i < group.classPicks.length; i += 2) fixed -= group.classPicks[i];
+      expand(group, 0, new ArrayList<>(group.courses.subList(0, fixed)), expanded);
+    }
+    return expanded;
+  }
+
+  /**
+   * Expands the remaining class picks of a group, after the courses chosen so far.
+   *
+   * @param group The schedule standing for the group
+   * @param pick Index in the group's class picks of the next class to expand
+   * @param courses Courses chosen so far; restored before returning
+   * @param expanded Receives the concrete schedules
+   */
+  private void expand(
+      Schedule group, int pick, List<Map<String, Object>> courses, List<Schedule> expanded) {
+    if (pick == group.classPicks.length) {
+      Schedule s = new Schedule(new ArrayList<>(courses));
+      s.score = group.score;
+      s.tally = group.tally;
+      expanded.add(s);
+      return;
+    }
+    CourseClass cls = courseClasses.get(group.classPicks[pick]);
+    choose(group, pick, cls.members, group.classPicks[pick + 1], 0, courses, expanded);
+  }
+
+  /**
+   * Chooses members of one class for a group, in every combination, then expands the rest.
+   *
+   * @param group The schedule standing for the group
+   * @param pick Index in the group's class picks of the class being chosen from
+   * @param members The class's members
+   * @param remaining Number of members still to choose
+   * @param from Index of the first member that may be chosen
+   * @param courses Courses chosen so far; restored before returning
+   * @param expanded Receives the concrete schedules
+   */
+  private void choose(
+      Schedule group,
+      int pick,
+      List<Map<String, Object>> members,
+      int remaining,
+      int from,
+      List<Map<String, Object>> courses,
+      List<Schedule> expanded) {
+    if (remaining == 0) {
+      expand(group, pick + 2, courses, expanded);
+      return;
+    }
+    for (int i = from; i <= members.size() - remaining && expanded.size() < MAX_SCHEDULES; i++) {
+      courses.add(members.get(i));
+      choose(group, pick, members, remaining - 1, i + 1, courses, expanded);
+      courses.remove(courses.size() - 1);
+    }
+  }
+
+  /**
+   * Returns a value equal for two electives exactly when the search can treat them as the same: the
+   * same meeting times, so the same conflicts, and the same contributions to the score.
+   *
+   * @param course The course
+   * @return Its class key
+   */
+  private Object classKey(Map<String, Object> course) {
+    ScoreTally t = contribution(course);
+    return Arrays.asList(
+        course.get("meetingTimes"),
+        course.get("meets"),
+        t.required,
+        t.deptPenalty,
+        t.writ,
+        bundleGroup(course));
+  }
+
+  /**
+   * Keeps the section bundles of a course with several apart from other courses in class keys.
+   * Bundles of one course that meet at the same times then form a class of their own, taken at
+   * most once, so the search branches once for them rather than once per bundle.
+   *
+   * @param course The course
+   * @return Its code if it has several bundles, otherwise null
+   */
+  private Object bundleGroup(Map<String, Object> course) {
+    Object code = course.get("code");
+    return multiSection().contains(code) ? code : null;
+  }
+
+  /**
+   * Checks two courses for a time conflict, using the shared conflict table when there is one. Two
+   * section bundles of the same course always conflict.
+   *
+   * @param a One course
+   * @param b The other course
+   * @return true if their meeting times overlap or they are bundles of the same course
+   */
+  private boolean conflict(Map<String, Object> a, Map<String, Object> b) {
+    if (sameCourse(a, b)) return true;
+    return conflicts != null ? conflicts.conflict(a, b) : SchedulerUtils.hasTimeConflict(a, b);
+  }
+
+  /**
+   * Collects up to {@link #DIVERSE_CANDIDATES} distinct schedules with random probes. Each probe
+   * descends from a base schedule trying the same additions as when adding courses one by one,
+   * in a random order, and stops at the first complete schedule or after {@link #PROBE_NODE_LIMIT}
+   * nodes. Unlike a depth-first enumeration, whose first thousands of schedules share all but their
+   * last course, the probes spread over the whole space.
+   *
+   * @param bases The schedules of necessary courses; each probe starts from one at random
+   * @param requiredOptions Required courses that can be added
+   * @param electiveOptions Elective courses that can be added
+   * @param needWRIT Whether a WRIT course still needs to be added
+   * @param random Source of the probes' choices
+   */
+  private void sampleSchedules(
+      List<Schedule> bases,
+      List<Map<String, Object>> requiredOptions,
+      List<Map<String, Object>> electiveOptions,
+      boolean needWRIT,
+      Random random) {
+    for (int i = 0;
+        i < DIVERSE_PROBES && generatedSchedules.size() < DIVERSE_CANDIDATES && !truncated;
+        i++) {
+      probeNodes = 0;
+      Schedule base = bases.size() == 1 ? bases.get(0) : bases.get(random.nextInt(bases.size()));
+      probe(base, requiredOptions, electiveOptions, 0, needWRIT, random);
+    }
+  }
+
+  /**
+   * Extends a schedule by randomly chosen courses, backtracking on conflicts, until it is complete.
+   *
+   * @param currentSchedule The schedule being built
+   * @param requiredOptions Required courses that can be added
+   * @param electiveOptions Elective courses that can be added
+   * @param requiredAdded Number of required courses already added
+   * @param needWRIT Whether a WRIT course still needs to be added
+   * @param random Source of the choices
+   * @return true once the probe is over, because it completed a schedule or ran out of nodes or time
+   */
+  private boolean probe(
+      Schedule currentSchedule,
+      List<Map<String, Object>> requiredOptions,
+      List<Map<String, Object>> electiveOptions,
+      int requiredAdded,
+      boolean needWRIT,
+      Random random) {
+    if (++probeNodes > PROBE_NODE_LIMIT || !visit()) return true;
+    if (currentSchedule.courses.size() >= this.classesPerSemester) {
+      addIfNew(currentSchedule);
+      return true;
     }
 
-    // Try adding elective courses
-    for (Map<String, Object> course : pool) {
-      Schedule next = new Schedule(new ArrayList<>(currentSchedule.courses));
-      next.courses.add(course);
-      if (next.hasTimeConflicts()) continue;
+    // The additions to try: required courses first in the list, then electives
+    List<Map<String, Object>> moves = new ArrayList<>();
+    if (requiredAdded < requiredSlots) moves.addAll(requiredOptions);
+    int requiredMoves = moves.size();
+    moves.addAll(electivePool(electiveOptions, needWRIT));
+
+    // Draw the additions in random order, shuffling only as far as needed
+    int[] order = new int[moves.size()];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    for (int i = 0; i < order.length; i++) {
+      int j = i + random.nextInt(order.length - i);
+      int m = order[j];
+      order[j] = order[i];
+      order[i] = m;
+
+      Map<String, Object> course = moves.get(m);
+      Schedule next = extend(currentSchedule, course);
+      if (hasTimeConflicts(next)) {
+        conflictPrunes++;
+        continue;
+      }
 
       boolean nextNeedWRIT = needWRIT && !Boolean.TRUE.equals(course.get("writ"));
+      boolean done;
+      if (m < requiredMoves) {
+        List<Map<String, Object>> nextReq = new ArrayList<>(requiredOptions);
+        nextReq.remove(course);
+        done = probe(next, nextReq, electiveOptions, requiredAdded + 1, nextNeedWRIT, random);
+      } else {
+        List<Map<String, Object>> nextElect = new ArrayList<>(electiveOptions);
+        nextElect.remove(course);
+        done = probe(next, requiredOptions, nextElect, requiredAdded, nextNeedWRIT, random);
+      }
+      if (done) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Counts a search node, and at the first node and every {@link #BUDGET_CHECK_INTERVAL} nodes
+   * after it polls the budget and reports progress.
+   *
+   * @return false if the budget has run out and the search must stop
+   */
+  private boolean visit() {
+    nodesExpanded++;
+
+    // Poll the budget and report progress periodically rather than on every node; polling at the
+    // first node stops a search cancelled before it started, however few nodes it has
+    if (nodesExpanded % BUDGET_CHECK_INTERVAL == 1) {
+      if (budget.exhausted()) {
+        this.truncated = true;
+        return false;
+      }
+      if (listener != null && System.nanoTime() - lastProgressNanos >= PROGRESS_INTERVAL_NANOS) {
+        lastProgressNanos = System.nanoTime();
+        listener.onProgress(nodesExpanded, generatedSchedules.size(), bestScore);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Scores and keeps a complete schedule unless the same courses were already found.
+   *
+   * @param schedule The complete schedule
+   */
+  private void addIfNew(Schedule schedule) {
+    String key =
+        schedule.courses.stream().map(SectionBundles::id).sorted().collect(Collectors.joining("|"));
+
+    // Only add unique schedules
+    if (seenKeys.add(key)) {
+      keep(schedule);
+    } else {
+      duplicateKeys++;
+    }
+  }
+
+  /**
+   * Scores and keeps a complete schedule.
+   *
+   * @param schedule The complete schedule
+   */
+  private void keep(Schedule schedule) {
+    long scoreStart = System.nanoTime();
+    schedule.score = score(schedule.tally);
+    scoringNanos += System.nanoTime() - scoreStart;
+    this.generatedSchedules.add(schedule);
+    if (listener != null) reportIfTop(schedule);
+  }
+
+  /**
+   * Returns the electives worth trying next: only WRIT courses while one is still needed, unless
+   * there are none.
+   *
+   * @param electiveOptions Elective courses that can be added
+   * @param needWRIT Whether a WRIT course still needs to be added
+   * @return The electives to try
+   */
+  private static List<Map<String, Object>> electivePool(
+      List<Map<String, Object>> electiveOptions, boolean needWRIT) {
+    if (!needWRIT) return electiveOptions;
+    List<Map<String, Object>> pool =
+        electiveOptions.stream()
+            .filter(c -> Boolean.TRUE.equals(c.get("writ")))
+            .collect(Collectors.toList());
+    return pool.isEmpty() ? electiveOptions : pool;
+  }
+
+  /**
+   * Checks a schedule for time conflicts, using the shared conflict table when there is one, and
+   * for two section bundles of the same course.
+   *
+   * @param schedule The schedule to check
+   * @return true if any two of its courses conflict
+   */
+  private boolean hasTimeConflicts(Schedule schedule) {
+    boolean overlap =
+        conflicts != null ? conflicts.hasConflicts(schedule.courses) : schedule.hasTimeConflicts();
+    if (overlap || multiSection().isEmpty()) return overlap;
+    List<Map<String, Object>> courses = schedule.courses;
+    for (int i = 0; i < courses.size(); i++) {
+      for (int j = i + 1; j < courses.size(); j++) {
+        if (sameCourse(courses.get(i), courses.get(j))) return true;
+      }
+    }
+    return false;
+  }
 
-      List<Map<String, Object>> nextElect = new ArrayList<>(electiveOptions);
-      nextElect.remove(course);
+  /**
+   * Checks whether two course maps are different section bundles of the same course, which one
+   * schedule can't both hold.
+   *
+   * @param a One course
+   * @param b The other course
+   * @return true if they share a code
+   */
+  private static boolean sameCourse(Map<String, Object> a, Map<String, Object> b) {
+    return a != b && Objects.equals(a.get("code"), b.get("code"));
+  }
 
-      buildSchedules(next, requiredOptions, nextElect, requiredAdded, nextNeedWRIT, term);
+  /**
+   * Returns the codes of the courses offered in more than one section bundle.
+   *
+   * @return The codes; empty when every course has a single bundle
+   */
+  private Set<String> multiSection() {
+    if (multiSection == null) {
+      Set<String> seen = new HashSet<>();
+      multiSection = new HashSet<>();
+      for (Map<String, Object> c : allCourses != null ? allCourses : filteredCourses) {
+        String code = (String) c.get("code");
+        if (!seen.add(code)) multiSection.add(code);
+      }
     }
+    return multiSection;
+  }
+
+  /**
+   * Tells the listener about a schedule if it makes the top {@code topK} so far.
+   *
+   * @param schedule A newly found, scored schedule
+   */
+  private void reportIfTop(Schedule schedule) {
+    bestScore = Math.max(bestScore, schedule.score);
+    if (top.size() < topK) {
+      top.add(schedule);
+    } else if (schedule.score > top.peek().score) {
+      top.poll();
+      top.add(schedule);
+    } else {
+      return;
+    }
+    listener.onTopSchedule(schedule);
+  }
+
+  /** Adds this request's search statistics to the process-wide metrics. */
+  private void recordSearchStats() {
+    NODES_EXPANDED.add(nodesExpanded);
+    CONFLICT_PRUNES.add(conflictPrunes);
+    DUPLICATE_KEYS.add(duplicateKeys);
+    SCHEDULES_EMITTED.add(generatedSchedules.size());
+    if (truncated) TRUNCATED.inc();
+    SCORING_TIME.observeNanos(scoringNanos);
   }
 
   /**
@@ -566,45 +1543,96 @@ public class ScheduleGenerator {
    *
    * @param schedule The schedule to score
    */
-  private void calculateScheduleScore(Schedule schedule) {
+  public void calculateScheduleScore(Schedule schedule) {
+    schedule.tally = tallyOf(schedule.courses);
+    schedule.score = score(schedule.tally);
+  }
+
+  /**
+   * Scores a schedule from its tally. Runs in constant time, however many courses it holds.
+   *
+   * @param t The schedule's tally
+   * @return The score, from 0 to 100
+   */
+  private double score(ScoreTally t) {
     double score = 100.0;
 
     // Penalize deviation from desired day balance
-    DayBalance actualBalance = schedule.getDayBalance();
-    int mwfDiff = Math.abs(actualBalance.mwfCount - this.dayBalance.mwfCount);
-    int tthDiff = Math.abs(actualBalance.tthCount - this.dayBalance.tthCount);
+    int mwfDiff = Math.abs(t.mwf - this.dayBalance.mwfCount);
+    int tthDiff = Math.abs(t.tth - this.dayBalance.tthCount);
     score -= (mwfDiff + tthDiff) * 10;
 
     // Penalize deviation from required course count
-    int requiredCount = schedule.countRequiredCourses(this.remainingRequired);
-    int requiredDiff = Math.abs(requiredCount - this.requiredCoursesThisSemester);
-    score -= requiredDiff * 15;
+    score -= Math.abs(t.required - this.requiredCoursesThisSemester) * 15;
 
     // Penalize electives not in preferred departments
-    if (!this.preferredDepts.isEmpty()) {
-      for (Map<String, Object> course : schedule.courses) {
-        String code = (String) course.get("code");
-        String dept = code.split(" ")[0];
-
-        // Skip required/necessary courses
-        if (this.remainingRequired.contains(code) || this.necessaryCourses.contains(code)) {
-          continue;
-        }
-
-        // Penalize non-preferred departments
-        if (!this.preferredDepts.contains(dept)) {
-          score -= 5;
-        }
-      }
-    }
+    score -= t.deptPenalty;
 
     // Penalize missing WRIT course if needed
-    if (this.needWRIT && !schedule.hasWRITCourse()) {
+    if (this.needWRIT && !t.writ) {
       score -= 10;
     }
 
     // Ensure score is non-negative
-    schedule.score = Math.max(0, score);
+    return Math.max(0, score);
+  }
+
+  /**
+   * Adds a course to a copy of a schedule, carrying its tally forward.
+   *
+   * @param schedule The schedule to extend
+   * @param course The course to add
+   * @return The extended schedule
+   */
+  private Schedule extend(Schedule schedule, Map<String, Object> course) {
+    Schedule next = new Schedule(new ArrayList<>(schedule.courses));
+    next.courses.add(course);
+    next.tally = schedule.tally.plus(contribution(course));
+    return next;
+  }
+
+  /**
+   * Sums the tallies of a list of courses.
+   *
+   * @param courses The courses
+   * @return Their combined tally
+   */
+  private ScoreTally tallyOf(List<Map<String, Object>> courses) {
+    ScoreTally t = ScoreTally.EMPTY;
+    for (Map<String, Object> course : courses) t = t.plus(contribution(course));
+    return t;
+  }
+
+  /**
+   * Returns a course's contributions to a schedule's score, working them out on first use.
+   *
+   * @param course The course
+   * @return Its tally
+   */
+  private ScoreTally contribution(Map<String, Object> course) {
+    return contributions.computeIfAbsent(
+        course,
+        c -> {
+          String meets = (String) c.get("meets");
+          String code = (String) c.get("code");
+          boolean required = this.remainingRequired.contains(code);
+
+          // Electives outside the preferred departments cost 5 points each
+          int deptPenalty = 0;
+          if (!this.preferredDepts.isEmpty()
+              && !required
+              && !this.necessaryCourses.contains(code)
+              && !this.preferredDepts.contains(code.split(" ")[0])) {
+            deptPenalty = 5;
+          }
+
+          return new ScoreTally(
+              meets.contains("M") || meets.contains("W") || meets.contains("F") ? 1 : 0,
+              meets.contains("T") ? 1 : 0,
+              required ? 1 : 0,
+              deptPenalty,
+              Boolean.TRUE.equals(c.get("writ")));
+        });
   }
 
   /**
@@ -1,7 +1,6 @@
 package Scheduler;
 
-import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
+import Utilities.Json;
 import java.util.*;
 
 /**
@@ -11,9 +10,6 @@ import java.util.*;
  */
 public class SchedulerUtils {
 
-  /** Moshi instance for JSON parsing */
-  private static final Moshi moshi = new Moshi.Builder().build();
-
   /**
    * Represents a specific time block when a course meets.
    * Contains the days of the week, start time, and end time.
@@ -82,17 +78,10 @@ public class SchedulerUtils {
         return meetingTimes;
       }
 
-      JsonAdapter<List> adapter = moshi.adapter(List.class);
-      List<Map<String, Object>> meetings = adapter.fromJson(meetingTimesJson);
-
-      if (meetings == null) {
-        return meetingTimes;
-      }
-
-      for (Map<String, Object> meeting : meetings) {
-        String meetDay = (String) meeting.get("meet_day");
-        String startTime = (String) meeting.get("start_time");
-        String endTime = (String) meeting.get("end_time");
+      for (Json.Meeting meeting : Json.meetings(meetingTimesJson)) {
+        String meetDay = meeting.meetDay;
+        String startTime = meeting.startTime;
+        String endTime = meeting.endTime;
 
         List<Integer> days = new ArrayList<>();
         int day = Integer.parseInt(meetDay);
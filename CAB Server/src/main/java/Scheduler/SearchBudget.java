@@ -0,0 +1,53 @@
+package Scheduler;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Time limit and cancellation signal for one schedule search. The search polls {@link #exhausted()}
+ * every few nodes and, once it returns true, stops and returns the best schedules found so far
+ * flagged as truncated.
+ */
+public final class SearchBudget {
+
+  /** Budget applied when a request does not ask for one, in milliseconds */
+  public static final long DEFAULT_MS = Long.getLong("cab.search.budgetMs", 2000);
+
+  /** Largest budget a request may ask for, in milliseconds */
+  public static final long MAX_MS = Long.getLong("cab.search.maxBudgetMs", 10000);
+
+  /** A budget that never runs out, for callers that want the full search */
+  public static final SearchBudget UNLIMITED = new SearchBudget(Long.MAX_VALUE, () -> false);
+
+  /** {@link System#nanoTime()} reading after which the search must stop */
+  private final long deadlineNanos;
+  /** Returns true once the result is no longer wanted, e.g. the client went away */
+  private final BooleanSupplier cancelled;
+
+  private SearchBudget(long deadlineNanos, BooleanSupplier cancelled) {
+    this.deadlineNanos = deadlineNanos;
+    this.cancelled = cancelled;
+  }
+
+  /**
+   * Creates a budget that runs out a number of milliseconds after a start time.
+   *
+   * @param budgetMs Milliseconds the search may run for, measured from {@code startNanos}
+   * @param startNanos {@link System#nanoTime()} reading the budget starts from, typically the
+   *     arrival of the request
+   * @param cancelled Returns true once the search should stop regardless of time left
+   * @return The budget
+   */
+  public static SearchBudget of(long budgetMs, long startNanos, BooleanSupplier cancelled) {
+    return new SearchBudget(startNanos + budgetMs * 1_000_000L, cancelled);
+  }
+
+  /**
+   * Checks whether the search should stop.
+   *
+   * @return true if the deadline has passed or the search was cancelled
+   */
+  public boolean exhausted() {
+    return (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos >= 0)
+        || cancelled.getAsBoolean();
+  }
+}
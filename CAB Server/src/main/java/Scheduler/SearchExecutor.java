@@ -0,0 +1,326 @@
+package Scheduler;
+
+import Utilities.Metrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated thread pool for CPU-heavy schedule searches. Searches run here instead of on Jetty's
+ * request threads, so a burst of expensive requests queues behind a fixed number of workers while
+ * cheap routes stay responsive. The queue is bounded and full queues reject immediately, and each
+ * client may only have a few searches admitted at once.
+ */
+public final class SearchExecutor {
+
+  /** Number of worker threads, one per core by default */
+  public static final int THREADS =
+      Integer.getInteger("cab.search.threads", Runtime.getRuntime().availableProcessors());
+
+  /** Searches that may wait for a worker before new ones are rejected */
+  public static final int QUEUE_CAPACITY = Integer.getInteger("cab.search.queue", THREADS * 4);
+
+  /** Searches one client may have running or queued at once */
+  public static final int PER_CLIENT_LIMIT = Integer.getInteger("cab.search.perClient", 2);
+
+  /** Seconds a rejected client is told to wait before retrying */
+  public static final int RETRY_AFTER_SECONDS = Integer.getInteger("cab.search.retryAfter", 1);
+
+  /** Rejection counters, exported through /metrics */
+  private static final Metrics.Counter REJECTED_OVERLOADED =
+      Metrics.counter(
+          "cab_search_rejected_total",
+          "Searches refused by admission control",
+          "reason=\"overloaded\"");
+
+  private static final Metrics.Counter REJECTED_CLIENT_LIMIT =
+      Metrics.counter(
+          "cab_search_rejected_total",
+          "Searches refused by admission control",
+          "reason=\"client_limit\"");
+
+  private static final Metrics.Histogram QUEUE_TIME = Metrics.stage("queue_wait");
+
+  /** The worker pool */
+  private static final ThreadPoolExecutor POOL =
+      new ThreadPoolExecutor(
+          THREADS,
+          THREADS,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+          new SearchThreadFactory(),
+          new ThreadPoolExecutor.AbortPolicy());
+
+  /** Searches admitted per client key; entries are removed when they drop to zero */
+  private static final ConcurrentHashMap<String, Integer> IN_FLIGHT = new ConcurrentHashMap<>();
+
+  static {
+    Metrics.gauge(
+        "cab_search_pool_active",
+        "Searches running on the worker pool",
+        () -> POOL.getActiveCount());
+    Metrics.gauge(
+        "cab_search_pool_queued", "Searches waiting for a worker", () -> POOL.getQueue().size());
+  }
+
+  private SearchExecutor() {}
+
+  /** Thrown when a search is refused without being run */
+  public static final class RejectedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /** Whether the whole pool is saturated, as opposed to this client being over its limit */
+    public final boolean overloaded;
+
+    RejectedException(boolean overloaded, String message) {
+      super(message);
+      this.overloaded = overloaded;
+    }
+
+    /**
+     * The HTTP status to answer with.
+     *
+     * @return 503 when the pool is saturated, 429 when the client is over its limit
+     */
+    public int status() {
+      return overloaded ? 503 : 429;
+    }
+  }
+
+  /** Names worker threads and marks them as daemons so they never block shutdown */
+  private static final class SearchThreadFactory implements ThreadFactory {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "cab-search-" + next.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+
+  /**
+   * Runs a search on the worker pool and waits for its result. The calling thread only blocks while
+   * the search is admitted; refusals are immediate.
+   *
+   * @param client Key identifying the requesting client, e.g. a user ID or remote address
+   * @param search The work to run
+   * @param <T> Result type of the search
+   * @return The search's result
+   * @throws RejectedException If the client is at its limit or the queue is full
+   * @throws Exception Whatever the search itself threw
+   */
+  public static <T> T run(String client, Callable<T> search) throws Exception {
+    Future<T> future = submit(client, search);
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) throw (Exception) cause;
+      throw (Error) cause;
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw e;
+    }
+  }
+
+  /**
+   * Queues a search on the worker pool without waiting for it. The client's admission is held until
+   * the search returns, even if it is cancelled while running, or until it is cancelled before it
+   * starts.
+   *
+   * @param client Key identifying the requesting client, e.g. a user ID or remote address
+   * @param search The work to run
+   * @param <T> Result type of the search
+   * @return The pending result
+   * @throws RejectedException If the client is at its limit or the queue is full
+   */
+  public static <T> Future<T> submit(String client, Callable<T> search) throws RejectedException {
+    if (!acquire(client)) {
+      REJECTED_CLIENT_LIMIT.inc();
+      throw new RejectedException(
+          false, "Too many schedule requests in progress; wait for one to finish and try again");
+    }
+
+    // Whichever of the task body and a cancellation before it starts claims the admission first
+    // gives it back, so a search cancelled mid-run keeps its slot until it actually stops
+    AtomicBoolean claimed = new AtomicBoolean();
+    long queued = System.nanoTime();
+    FutureTask<T> task =
+        new FutureTask<>(
+            () -> {
+              if (!claimed.compareAndSet(false, true)) return null;
+              try {
+                QUEUE_TIME.observeSince(queued);
+                return search.call();
+              } finally {
+                release(client);
+              }
+            }) {
+          @Override
+          protected void done() {
+            if (claimed.compareAndSet(false, true)) release(client);
+          }
+        };
+    try {
+      POOL.execute(task);
+    } catch (RejectedExecutionException e) {
+      release(client);
+      REJECTED_OVERLOADED.inc();
+      throw new RejectedException(true, "The server is busy; please try again shortly");
+    }
+    return task;
+  }
+
+  /** Receives each finished search of a batch */
+  public interface BatchConsumer<T> {
+    /**
+     * Handles one finished search. Called on the thread that started the batch, in completion
+     * order.
+     *
+     * @param index Position of the search in the batch
+     * @param result The search's result, or null if it failed
+     * @param failure What the search threw, or null if it succeeded
+     * @throws IOException If the result cannot be delivered; no further searches are started
+     */
+    void accept(int index, T result, Exception failure) throws IOException;
+  }
+
+  /**
+   * Runs a batch of searches for one client on the worker pool, with at most {@code parallelism}
+   * of them queued or running at once, and hands each result to a consumer as it finishes. The
+   * whole batch holds a single admission for the client, so it counts once against the client's
+   * limit while still using every worker. The admission is given back once the batch has returned
+   * and none of its searches are still running, so a batch that ends early keeps it until the
+   * searches it started have stopped.
+   *
+   * <p>If the pool is full before any search starts, the batch is rejected. If it fills up later
+   * and none of the batch's searches are in flight, the remaining searches fail with a {@link
+   * RejectedException}, passed to the consumer.
+   *
+   * @param client Key identifying the requesting client
+   * @param searches The searches to run
+   * @param parallelism Maximum searches from this batch in flight at once
+   * @param consumer Receives each result
+   * @param <T> Result type of the searches
+   * @throws RejectedException If the client is at its limit or the pool has no room
+   * @throws IOException If the consumer failed to deliver a result
+   * @throws InterruptedException If the calling thread is interrupted while waiting
+   */
+  public static <T> void runBatch(
+      String client, List<Callable<T>> searches, int parallelism, BatchConsumer<T> consumer)
+      throws RejectedException, IOException, InterruptedException {
+    if (!acquire(client)) {
+      REJECTED_CLIENT_LIMIT.inc();
+      throw new RejectedException(
+          false, "Too many schedule requests in progress; wait for one to finish and try again");
+    }
+
+    int n = searches.size();
+    List<T> results = new ArrayList<>(Collections.nCopies(n, null));
+    Exception[] failures = new Exception[n];
+    ExecutorCompletionService<Integer> done = new ExecutorCompletionService<>(POOL);
+    List<Future<Integer>> pending = new ArrayList<>();
+    // Holders of the admission: the batch itself and each search that has started. Each search
+    // is claimed either by its task body, which then runs it, or by the batch dropping it
+    AtomicInteger holders = new AtomicInteger(1);
+    List<AtomicBoolean> claims = new ArrayList<>();
+    Runnable releaseShare =
+        () -> {
+          if (holders.decrementAndGet() == 0) release(client);
+        };
+    int next = 0;
+    int inFlight = 0;
+    try {
+      while (next < n || inFlight > 0) {
+        // Keep the batch's share of the pool topped up
+        while (next < n && inFlight < parallelism) {
+          int i = next;
+          long queued = System.nanoTime();
+          AtomicBoolean claimed = new AtomicBoolean();
+          holders.incrementAndGet();
+          try {
+            pending.add(
+                done.submit(
+                    () -> {
+                      if (!claimed.compareAndSet(false, true)) return i;
+                      try {
+                        QUEUE_TIME.observeSince(queued);
+                        results.set(i, searches.get(i).call());
+                      } catch (Exception e) {
+                        failures[i] = e;
+                      } finally {
+                        releaseShare.run();
+                      }
+                      return i;
+                    }));
+            claims.add(claimed);
+          } catch (RejectedExecutionException e) {
+            holders.decrementAndGet();
+            if (inFlight > 0) break;
+            REJECTED_OVERLOADED.inc();
+            RejectedException busy =
+                new RejectedException(true, "The server is busy; please try again shortly");
+            if (next == 0) throw busy;
+            for (; next < n; next++) consumer.accept(next, null, busy);
+            return;
+          }
+          next++;
+          inFlight++;
+        }
+
+        // Deliver the next search to finish
+        int i;
+        try {
+          i = done.take().get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Batch search wrapper failed", e.getCause());
+        }
+        inFlight--;
+        consumer.accept(i, results.get(i), failures[i]);
+      }
+    } finally {
+      // Drop searches that have not started if the batch ended early; those already running keep
+      // their share of the admission until they stop
+      for (int k = 0; k < pending.size(); k++) {
+        pending.get(k).cancel(false);
+        if (claims.get(k).compareAndSet(false, true)) releaseShare.run();
+      }
+      releaseShare.run();
+    }
+  }
+
+  /**
+   * Admits one more search for a client if it is under its limit.
+   *
+   * @param client The client key
+   * @return true if the search was admitted
+   */
+  private static boolean acquire(String client) {
+    boolean[] admitted = {false};
+    IN_FLIGHT.compute(
+        client,
+        (k, n) -> {
+          int current = n == null ? 0 : n;
+          if (current >= PER_CLIENT_LIMIT) return n;
+          admitted[0] = true;
+          return current + 1;
+        });
+    return admitted[0];
+  }
+
+  /**
+   * Gives back one of a client's admissions, dropping its entry once none remain.
+   *
+   * @param client The client key
+   */
+  private static void release(String client) {
+    IN_FLIGHT.computeIfPresent(client, (k, n) -> n <= 1 ? null : n - 1);
+  }
+}
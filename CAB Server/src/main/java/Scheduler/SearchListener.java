@@ -0,0 +1,25 @@
+package Scheduler;
+
+/**
+ * Receives progress reports from a running schedule search, e.g. to stream them to the client.
+ * Callbacks run on the search thread and should return quickly, e.g. by handing the report to
+ * another thread. To stop the search early, cancel its {@link SearchBudget} instead.
+ */
+public interface SearchListener {
+
+  /**
+   * Reports periodic progress.
+   *
+   * @param nodesExpanded Search tree nodes visited so far
+   * @param schedulesFound Unique complete schedules found so far
+   * @param bestScore Highest score found so far, or 0 if none
+   */
+  void onProgress(long nodesExpanded, int schedulesFound, double bestScore);
+
+  /**
+   * Reports a schedule that has just entered the top results by score.
+   *
+   * @param schedule The schedule, already scored
+   */
+  void onTopSchedule(ScheduleGenerator.Schedule schedule);
+}
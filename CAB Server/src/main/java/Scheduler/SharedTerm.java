@@ -0,0 +1,72 @@
+package Scheduler;
+
+import Utilities.TermCatalog;
+import Utilities.WeeklyMask;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only search structures for one term, built once and shared by many searches, as in a batch
+ * of students planning the same semester: the parsed catalog, the conflict table, and the courses
+ * that fit each distinct day and time availability. Safe to use from several threads at once.
+ */
+public final class SharedTerm {
+
+  /** The term code */
+  public final String term;
+  /** The term's parsed catalog */
+  public final TermCatalog catalog;
+  /** Time conflicts between the term's courses */
+  public final ConflictIndex conflicts;
+
+  /** Courses that fit each availability, keyed by the day map, time blocks and allowed slots */
+  private final Map<List<Object>, List<Map<String, Object>>> pools = new ConcurrentHashMap<>();
+
+  private SharedTerm(String term, TermCatalog catalog) {
+    this.term = term;
+    this.catalog = catalog;
+    this.conflicts = ConflictIndex.of(catalog.courses);
+  }
+
+  /**
+   * Loads a term's catalog and builds its conflict table.
+   *
+   * @param term The term code
+   * @return The shared structures
+   * @throws IOException If the catalog cannot be read
+   */
+  public static SharedTerm load(String term) throws IOException {
+    return new SharedTerm(term, TermCatalog.forTerm(term));
+  }
+
+  /**
+   * Returns the term's courses that meet only on available days and at allowed times, computing
+   * them the first time an availability is seen.
+   *
+   * @param dayAvailability Which days of the week are available
+   * @param availableTimes Allowed time blocks; empty allows all
+   * @param allowedSlots Slots of the week courses may meet in, or null to allow all
+   * @return The matching courses, in catalog order; callers must not modify the list
+   */
+  public List<Map<String, Object>> available(
+      Map<String, Boolean> dayAvailability,
+      Set<String> availableTimes,
+      WeeklyMask allowedSlots) {
+    return pools.computeIfAbsent(
+        Arrays.asList(dayAvailability, availableTimes, allowedSlots),
+        k ->
+            Collections.unmodifiableList(
+                ScheduleGenerator.availableCourses(
+                    catalog.courses, dayAvailability, availableTimes, allowedSlots)));
+  }
+
+  /**
+   * Returns the number of distinct availabilities pooled so far.
+   *
+   * @return The pool count
+   */
+  public int poolCount() {
+    return pools.size();
+  }
+}
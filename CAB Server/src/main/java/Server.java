@@ -1,8 +1,28 @@
-import static spark.Spark.after;
+import static spark.Spark.before;
 import static spark.Spark.options;
 
+import Handlers.BatchHandler;
+import Handlers.EligibleHandler;
+import Handlers.FilterHandler;
+import Handlers.JobStatusHandler;
+import Handlers.JobSubmitHandler;
+import Handlers.MetricsHandler;
+import Handlers.PlanHandler;
 import Handlers.ScheduleHandler;
+import Handlers.SessionCreateHandler;
+import Handlers.SessionEditHandler;
+import Handlers.SessionStatusHandler;
+import Handlers.StreamHandler;
+import Utilities.VirtualThreads;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import spark.Spark;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 /** The Main class of our project. This is where execution begins. */
 public final class Server {
@@ -10,16 +30,28 @@ public final class Server {
   /**
    * The main method is the entry point of the application.
    *
-   * @param args command-line arguments passed to the program
+   * <p>With {@code -Dcab.virtualThreads=true} on Java 21+, Jetty handles each request on its own
+   * virtual thread, so requests blocked on Clerk cost no platform thread.
+   *
+   * @param args command-line arguments passed to the program; an optional first argument overrides
+   *     the default port 3232
    */
   public static void main(String[] args) {
-    int port = 3232;
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 3232;
     Spark.port(port);
 
-    after(
+    // Handle requests on virtual threads when enabled; searches still use their bounded pool
+    if (VirtualThreads.enabled()) {
+      EmbeddedServers.add(
+          EmbeddedServers.Identifiers.JETTY,
+          new EmbeddedJettyFactory().withThreadPool(VirtualThreads.jettyThreadPool()));
+    }
+
+    // Set before the route runs, as handlers that stream their body commit the headers early
+    before(
         (request, response) -> {
           response.header("Access-Control-Allow-Origin", "*");
-          response.header("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+          response.header("Access-Control-Allow-Methods", "GET, POST, DELETE, OPTIONS");
           response.header("Access-Control-Allow-Headers", "Content-Type");
         });
 
@@ -29,11 +61,86 @@ public final class Server {
           return "OK";
         });
 
-    // Schedule generation endpoint
+    // Optionally capture query strings so real traffic can be replayed by the load tester
+    String tracePath = System.getProperty("cab.trace");
+    if (tracePath != null) {
+      captureTrace(tracePath);
+    }
+
+    // Schedule generation endpoint, from query parameters or from a typed JSON body
     Spark.get("/generate", new ScheduleHandler());
+    Spark.post("/generate", new ScheduleHandler());
+
+    // Course search by term, department, time, day and WRIT designation
+    Spark.get("/filter", new FilterHandler());
+
+    // Schedule generation for many students of one term at once, streamed as JSON lines
+    Spark.post("/generate/batch", new BatchHandler());
+
+    // Schedule generation with live progress as Server-Sent Events
+    Spark.get("/generate/stream", new StreamHandler());
+
+    // Courses a student can take this term given the courses taken, and what each unlocks
+    Spark.get("/eligible", new EligibleHandler());
+
+    // Remaining required courses laid out over future terms
+    Spark.get("/plan", new PlanHandler());
+
+    // Asynchronous schedule generation: submit a job, then poll for its result
+    Spark.post("/jobs", new JobSubmitHandler());
+    Spark.get("/jobs/:id", new JobStatusHandler());
+
+    // Interactive planning sessions: start one, then apply edits without starting over
+    Spark.post("/sessions", new SessionCreateHandler());
+    Spark.post("/sessions/:id/edits", new SessionEditHandler());
+    Spark.get("/sessions/:id", new SessionStatusHandler());
+    Spark.delete("/sessions/:id", new SessionStatusHandler());
+
+    // Prometheus-style metrics endpoint
+    Spark.get("/metrics", new MetricsHandler());
 
     Spark.init();
     Spark.awaitInitialization();
-    System.out.println("Server started at http://localhost:" + port);
+    System.out.println(
+        "Server started at http://localhost:"
+            + port
+            + (VirtualThreads.enabled() ? " (virtual threads)" : ""));
+  }
+
+  /**
+   * Appends one line per GET /generate request to a trace file, in the format read by the
+   * load-test harness: the arrival time in epoch milliseconds, a tab, then the path and query
+   * string. POSTed requests are left out, as their constraints are not in the query string.
+   *
+   * @param tracePath The file to append to
+   */
+  private static void captureTrace(String tracePath) {
+    BufferedWriter out;
+    try {
+      out =
+          Files.newBufferedWriter(
+              Paths.get(tracePath),
+              StandardCharsets.UTF_8,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to open trace file " + tracePath, e);
+    }
+
+    Spark.before(
+        "/generate",
+        (request, response) -> {
+          if (!"GET".equals(request.requestMethod())) return;
+          String line =
+              System.currentTimeMillis()
+                  + "\t"
+                  + request.pathInfo()
+                  + (request.queryString() == null ? "" : "?" + request.queryString());
+          synchronized (out) {
+            out.write(line);
+            out.newLine();
+            out.flush();
+          }
+        });
   }
 }
@@ -1,10 +1,6 @@
 package Utilities;
 
-import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -15,6 +11,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * API client for fetching course data from Brown University's course catalog.
@@ -23,11 +22,14 @@ import java.util.*;
  */
 public class BrownCourseAPI {
 
-  /** Moshi instance for JSON serialization/deserialization */
-  private static final Moshi moshi = new Moshi.Builder().build();
+  /** HTTP client for making requests to the Brown API; uses virtual threads when enabled */
+  private static final HttpClient httpClient =
+      VirtualThreads.enabled()
+          ? HttpClient.newBuilder().executor(VirtualThreads.newIoExecutor("cab-http-", 1)).build()
+          : HttpClient.newHttpClient();
 
-  /** HTTP client for making requests to the Brown API */
-  private static final HttpClient httpClient = HttpClient.newHttpClient();
+  /** Maximum number of course detail requests in flight at once */
+  private static final int FETCH_CONCURRENCY = Integer.getInteger("cab.fetch.concurrency", 8);
 
   /** Directory where course data is stored */
   private static final String DATA_DIR = "data";
@@ -84,8 +86,9 @@ public class BrownCourseAPI {
    * - Fetching basic course information
    * - Retrieving detailed information for each course
    * - Extracting WRIT designation and prerequisites
-   * - Removing duplicate sections
    * - Formatting and saving the data
+   * Every section is kept, including the linked sections listed in {@code linked_crns}, so the
+   * catalog can offer each course's section bundles (see {@link SectionBundles}).
    *
    * @param term The term code to fetch courses for (e.g., "202420" for Spring 2025)
    * @throws Exception If an error occurs during the fetch, process, or save steps
@@ -116,81 +119,116 @@ public class BrownCourseAPI {
     // Send the request and get the response
     HttpResponse<String> searchResp = httpClient.send(searchReq, BodyHandlers.ofString());
 
-    // Set up JSON adapter for parsing the response
-    Type mapT = Types.newParameterizedType(Map.class, String.class, Object.class);
-    JsonAdapter<Map<String, Object>> mapAdapter = moshi.adapter(mapT);
-
     // Parse the response JSON
-    Map<String, Object> root = mapAdapter.fromJson(searchResp.body());
+    Map<String, Object> root = Json.MAP.fromJson(searchResp.body());
 
     // Extract the results list, or use an empty list if null
     @SuppressWarnings("unchecked")
     List<Map<String, Object>> raw = (List<Map<String, Object>>) root.get("results");
     if (raw == null) raw = new ArrayList<>();
 
-    // Map to store unique courses by course code
-    Map<String, Map<String, Object>> coursesByCode = new LinkedHashMap<>();
-
-    // Remove duplicate courses (keeping only one section per course)
-    for (Map<String, Object> course : raw) {
-      String code = (String) course.get("code");
-      coursesByCode.putIfAbsent(code, course);
+    // Group the sections by course code; details are fetched once per course
+    Map<String, List<Map<String, Object>>> sectionsByCode = new LinkedHashMap<>();
+    for (Map<String, Object> section : raw) {
+      String code = (String) section.get("code");
+      sectionsByCode.computeIfAbsent(code, k -> new ArrayList<>()).add(section);
     }
 
-    // Convert the map values back to a list
-    List<Map<String, Object>> results = new ArrayList<>(coursesByCode.values());
-
     // Extract all department codes for use in parsing prerequisites
     Set<String> deptCodes = new HashSet<>();
-    for (Map<String, Object> c : results) {
+    for (Map<String, Object> c : raw) {
       String code = (String) c.get("code");
       if (code != null && code.contains(" ")) {
         deptCodes.add(code.substring(0, code.indexOf(' ')));
       }
     }
 
-    // Fetch detailed information for each course
-    int count = 0;
-    for (Map<String, Object> course : results) {
-      count++;
-      String crn = (String) course.get("crn");
-      String srcdb = (String) course.get("srcdb");
-
-      try {
-        String courseCode = (String) course.get("code");
-        // Fetch detailed course information
-        Map<String, Object> details = fetchDetails(crn, srcdb);
-
-        // Check for WRIT designation
-        boolean hasWrit = false;
-        String attr = (String) details.get("attr_html");
-        if (attr != null && attr.toUpperCase().contains("WRIT")) hasWrit = true;
-        course.put("writ", hasWrit);
-
-        // Extract prerequisites
-        String restrictions = (String) details.get("registration_restrictions");
-        String prereqSentence = extractPrereq(null, restrictions);
-        course.put("prereq", prereqSentence);
-
-        // Extract prerequisite groups for programmatic use
-        List<List<String>> prereqGroups = extractPrereqGroups(restrictions, deptCodes);
-        course.put("prereqGroups", prereqGroups);
-
-      } catch (Exception e) {
-        // Set default values if fetching details fails
-        course.put("writ", false);
-        course.put("prereq", "");
+    // Fetch detailed information for each course, a bounded number at a time
+    ExecutorService io = VirtualThreads.newIoExecutor("cab-fetch-", FETCH_CONCURRENCY);
+    Semaphore inFlight = new Semaphore(FETCH_CONCURRENCY);
+    List<Future<?>> pending = new ArrayList<>();
+    try {
+      for (List<Map<String, Object>> sections : sectionsByCode.values()) {
+        pending.add(
+            io.submit(
+                () -> {
+                  inFlight.acquire();
+                  try {
+                    addDetails(sections, deptCodes);
+                  } finally {
+                    inFlight.release();
+                  }
+                  return null;
+                }));
       }
+      for (Future<?> f : pending) f.get();
+    } finally {
+      io.shutdown();
     }
 
-    // Create the final JSON object with de-duplicated courses
-    Map<String, Object> uniqueRoot = new LinkedHashMap<>(root);
-    uniqueRoot.put("results", new ArrayList<>(coursesByCode.values()));
-    uniqueRoot.put("count", coursesByCode.size());
+    // Create the final JSON object with every section
+    Map<String, Object> allRoot = new LinkedHashMap<>(root);
+    allRoot.put("results", raw);
+    allRoot.put("count", raw.size());
 
     // Write the formatted JSON to file
     Path out = Paths.get(DATA_DIR, COURSES_FILE);
-    Files.writeString(out, mapAdapter.indent("  ").toJson(uniqueRoot));
+    Files.writeString(out, Json.MAP.indent("  ").toJson(allRoot));
+  }
+
+  /**
+   * Fetches a course's details and records its WRIT designation and prerequisites on every
+   * section of the course. They are properties of the course, so the first section's details
+   * stand for all of them.
+   *
+   * @param sections The sections of one course, in catalog order
+   * @param deptCodes Set of valid department codes for parsing prerequisites
+   */
+  private static void addDetails(List<Map<String, Object>> sections, Set<String> deptCodes) {
+    Map<String, Object> course = sections.get(0);
+    addDetails(course, deptCodes);
+    for (Map<String, Object> section : sections.subList(1, sections.size())) {
+      for (String field : List.of("writ", "prereq", "prereqGroups")) {
+        if (course.containsKey(field)) section.put(field, course.get(field));
+      }
+    }
+  }
+
+  /**
+   * Fetches a course's details and records its WRIT designation and prerequisites on the course.
+   * Falls back to no WRIT and no prerequisites if the details cannot be fetched.
+   *
+   * @param course The course to update
+   * @param deptCodes Set of valid department codes for parsing prerequisites
+   */
+  private static void addDetails(Map<String, Object> course, Set<String> deptCodes) {
+    String crn = (String) course.get("crn");
+    String srcdb = (String) course.get("srcdb");
+
+    try {
+      // Fetch detailed course information
+      Map<String, Object> details = fetchDetails(crn, srcdb);
+
+      // Check for WRIT designation
+      boolean hasWrit = false;
+      String attr = (String) details.get("attr_html");
+      if (attr != null && attr.toUpperCase().contains("WRIT")) hasWrit = true;
+      course.put("writ", hasWrit);
+
+      // Extract prerequisites
+      String restrictions = (String) details.get("registration_restrictions");
+      String prereqSentence = extractPrereq(null, restrictions);
+      course.put("prereq", prereqSentence);
+
+      // Extract prerequisite groups for programmatic use
+      List<List<String>> prereqGroups = extractPrereqGroups(restrictions, deptCodes);
+      course.put("prereqGroups", prereqGroups);
+
+    } catch (Exception e) {
+      // Set default values if fetching details fails
+      course.put("writ", false);
+      course.put("prereq", "");
+    }
   }
 
   /**
@@ -214,13 +252,12 @@ public class BrownCourseAPI {
             .uri(URI.create(url))
             .headers(headersArray())
             .header("Cookie", COOKIE_HEADER)
-            .POST(BodyPublishers.ofString(moshi.adapter(Object.class).toJson(body)))
+            .POST(BodyPublishers.ofString(Json.VALUE.toJson(body)))
             .build();
 
     // Send the request and parse the response
     HttpResponse<String> resp = httpClient.send(req, BodyHandlers.ofString());
-    Type t = Types.newParameterizedType(Map.class, String.class, Object.class);
-    return (Map<String, Object>) moshi.adapter(t).fromJson(resp.body());
+    return Json.MAP.fromJson(resp.body());
   }
 
   /**
@@ -0,0 +1,212 @@
+package Utilities;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import okio.BufferedSink;
+import okio.Utf8;
+
+/**
+ * Minimal streaming CBOR (RFC 8949) encoder. It writes definite-length arrays and maps, text
+ * strings, integers, 32-bit floats, booleans and null straight to a sink, enough to encode the
+ * server's responses without building them in memory first. Container sizes must be known up front;
+ * the writer does not check that the right number of items follow.
+ */
+public final class CborWriter {
+
+  /** Media type that selects CBOR responses */
+  public static final String MEDIA_TYPE = "application/cbor";
+
+  /** CBOR major types, shifted into the high bits of the initial byte */
+  private static final int UNSIGNED = 0 << 5;
+
+  private static final int NEGATIVE = 1 << 5;
+  private static final int TEXT = 3 << 5;
+  private static final int ARRAY = 4 << 5;
+  private static final int MAP = 5 << 5;
+
+  /** Simple values and float markers */
+  private static final int FALSE = 0xf4;
+
+  private static final int TRUE = 0xf5;
+  private static final int NULL = 0xf6;
+  private static final int FLOAT32 = 0xfa;
+  private static final int FLOAT64 = 0xfb;
+
+  private final BufferedSink sink;
+
+  /**
+   * Creates a writer over a sink. The caller flushes and closes the sink.
+   *
+   * @param sink The sink to write to
+   */
+  public CborWriter(BufferedSink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Checks whether an Accept header asks for CBOR.
+   *
+   * @param accept The Accept header value, possibly null
+   * @return true if it lists the CBOR media type
+   */
+  public static boolean accepts(String accept) {
+    return accept != null && accept.contains(MEDIA_TYPE);
+  }
+
+  /**
+   * Starts an array of a known number of items.
+   *
+   * @param size The number of items that follow
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter beginArray(int size) throws IOException {
+    head(ARRAY, size);
+    return this;
+  }
+
+  /**
+   * Starts a map of a known number of entries, each written as a key then a value.
+   *
+   * @param size The number of entries that follow
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter beginMap(int size) throws IOException {
+    head(MAP, size);
+    return this;
+  }
+
+  /**
+   * Writes a text string, or null.
+   *
+   * @param value The string
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter value(String value) throws IOException {
+    if (value == null) return nullValue();
+    head(TEXT, Utf8.size(value));
+    sink.writeUtf8(value);
+    return this;
+  }
+
+  /**
+   * Writes an integer in its shortest encoding.
+   *
+   * @param value The integer
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter value(long value) throws IOException {
+    if (value >= 0) head(UNSIGNED, value);
+    else head(NEGATIVE, -1 - value);
+    return this;
+  }
+
+  /**
+   * Writes a single-precision float, which is exact for schedule scores.
+   *
+   * @param value The number
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter value(float value) throws IOException {
+    sink.writeByte(FLOAT32).writeInt(Float.floatToIntBits(value));
+    return this;
+  }
+
+  /**
+   * Writes a double-precision float.
+   *
+   * @param value The number
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter value(double value) throws IOException {
+    sink.writeByte(FLOAT64).writeLong(Double.doubleToLongBits(value));
+    return this;
+  }
+
+  /**
+   * Writes a boolean, or null.
+   *
+   * @param value The boolean
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter value(Boolean value) throws IOException {
+    if (value == null) return nullValue();
+    sink.writeByte(value ? TRUE : FALSE);
+    return this;
+  }
+
+  /**
+   * Writes null.
+   *
+   * @return This writer
+   * @throws IOException If writing fails
+   */
+  public CborWriter nullValue() throws IOException {
+    sink.writeByte(NULL);
+    return this;
+  }
+
+  /**
+   * Writes a value parsed from JSON: a map, list, string, number, boolean or null, nested to any
+   * depth. Integral numbers are written as integers and others as doubles.
+   *
+   * @param value The value
+   * @return This writer
+   * @throws IOException If writing fails
+   * @throws IllegalArgumentException If the value has some other type
+   */
+  public CborWriter writeValue(Object value) throws IOException {
+    if (value == null) return nullValue();
+    if (value instanceof String) return value((String) value);
+    if (value instanceof Boolean) return value((Boolean) value);
+    if (value instanceof Number) {
+      double d = ((Number) value).doubleValue();
+      long l = (long) d;
+      return l == d ? value(l) : value(d);
+    }
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      beginMap(map.size());
+      for (Map.Entry<?, ?> e : map.entrySet()) {
+        value(String.valueOf(e.getKey()));
+        writeValue(e.getValue());
+      }
+      return this;
+    }
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      beginArray(list.size());
+      for (Object o : list) writeValue(o);
+      return this;
+    }
+    throw new IllegalArgumentException("Cannot encode " + value.getClass().getName() + " as CBOR");
+  }
+
+  /**
+   * Writes an initial byte with its argument in the shortest form.
+   *
+   * @param major The major type, already shifted
+   * @param argument The length, count or integer value
+   * @throws IOException If writing fails
+   */
+  private void head(int major, long argument) throws IOException {
+    if (argument < 24) {
+      sink.writeByte(major | (int) argument);
+    } else if (argument < 0x100) {
+      sink.writeByte(major | 24).writeByte((int) argument);
+    } else if (argument < 0x10000) {
+      sink.writeByte(major | 25).writeShort((int) argument);
+    } else if (argument < 0x100000000L) {
+      sink.writeByte(major | 26).writeInt((int) argument);
+    } else {
+      sink.writeByte(major | 27).writeLong(argument);
+    }
+  }
+}
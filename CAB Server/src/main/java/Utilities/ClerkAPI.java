@@ -1,10 +1,12 @@
 package Utilities;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.squareup.moshi.JsonReader;
+import java.io.IOException;
+import java.util.*;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okio.BufferedSource;
 
 /**
  * Client for interacting with the Clerk authentication API.
@@ -14,8 +16,19 @@ import okhttp3.Response;
  */
 public class ClerkAPI {
 
-  /** JSON object mapper for parsing API responses */
-  private static final ObjectMapper mapper = new ObjectMapper();
+  /** Field of a user read for its metadata */
+  private static final JsonReader.Options USER = JsonReader.Options.of("unsafe_metadata");
+  /** Fields of the metadata read for its course lists */
+  private static final JsonReader.Options METADATA =
+      JsonReader.Options.of("courses", "desiredCourses");
+  /** Field of a course read for its code */
+  private static final JsonReader.Options COURSE = JsonReader.Options.of("code");
+
+  /**
+   * HTTP client shared by all lookups, so concurrent requests reuse one connection pool. Calls are
+   * synchronous and block the caller, which is cheap when the caller is a virtual thread.
+   */
+  private static final OkHttpClient client = new OkHttpClient();
 
   /**
    * Clerk API secret key for server-side authentication.
@@ -25,22 +38,32 @@ public class ClerkAPI {
   private static final String CLERK_SECRET_KEY =
       "sk_test_aYPrgZ2mZYpoTMeUSZqeDXlztrkweExpiFTZQ4UVGx";
 
-  /** Base URL for Clerk API requests */
-  private static final String CLERK_API_URL = "https://api.clerk.dev/v1/users/";
+  /**
+   * Base URL for Clerk API requests.
+   * The {@code clerk.api.url} system property overrides it, e.g. to point at a local
+   * stub during load tests.
+   */
+  private static final String CLERK_API_URL =
+      System.getProperty("clerk.api.url", "https://api.clerk.dev/v1/users/");
+
+  /** The courses a user keeps in their Clerk metadata */
+  public static final class Metadata {
+    /** Codes of the courses taken, or null if the metadata has no course list */
+    public Set<String> taken;
+    /** Codes of the courses still wanted, or null if the metadata has no such list */
+    public Set<String> desired;
+  }
 
   /**
-   * Retrieves detailed information about a Clerk user.
+   * Retrieves the course metadata of a Clerk user.
    * This method makes an authenticated request to the Clerk API to fetch
    * user profile and metadata for the specified user ID.
    *
    * @param userId The Clerk user ID to retrieve information for
-   * @return A JsonNode containing the user's profile information and metadata
+   * @return The user's course metadata, or null if the user has no metadata
    * @throws Exception If the API request fails or returns an error
    */
-  public static JsonNode getUser(String userId) throws Exception {
-    // Create HTTP client
-    OkHttpClient client = new OkHttpClient();
-
+  public static Metadata getUser(String userId) throws Exception {
     // Build request with authorization header
     Request request =
         new Request.Builder()
@@ -53,8 +76,75 @@ public class ClerkAPI {
       if (!response.isSuccessful()) {
         throw new Exception("Clerk API Error: " + response.code());
       }
-      // Parse response body to JSON
-      return mapper.readTree(response.body().string());
+      // Read the metadata straight from the response body
+      return readUser(response.body().source());
+    }
+  }
+
+  /**
+   * Reads the course metadata from a Clerk user object, skipping every other field.
+   *
+   * @param source The user JSON
+   * @return The user's {@code unsafe_metadata} courses, or null if it has no metadata object
+   * @throws IOException If the JSON is malformed
+   */
+  public static Metadata readUser(BufferedSource source) throws IOException {
+    JsonReader reader = JsonReader.of(source);
+    Metadata meta = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int field = reader.selectName(USER);
+      if (field == -1) reader.skipName();
+      if (field == 0 && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+        meta = new Metadata();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          int list = reader.selectName(METADATA);
+          if (list == -1) reader.skipName();
+          if (list == -1 || reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+          } else if (list == 0) {
+            meta.taken = codes(reader);
+          } else {
+            meta.desired = codes(reader);
+          }
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return meta;
+  }
+
+  /**
+   * Reads the codes of an array of course objects, skipping courses without one.
+   *
+   * @param reader The reader, at the array
+   * @return The codes, in order
+   */
+  private static Set<String> codes(JsonReader reader) throws IOException {
+    Set<String> codes = new LinkedHashSet<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        int field = reader.selectName(COURSE);
+        if (field == -1) reader.skipName();
+        if (field == 0 && reader.peek() != JsonReader.Token.NULL) {
+          codes.add(reader.nextString());
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
     }
+    reader.endArray();
+    return codes;
   }
-}
\ No newline at end of file
+}
@@ -1,11 +1,9 @@
 package Utilities;
 
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import okio.BufferedSource;
+import okio.Okio;
 
 /**
  * Utility class that provides access to the Brown University course catalog.
@@ -15,12 +13,24 @@ import java.util.*;
  */
 public final class CourseCatalog {
 
+  /**
+   * Path to the course catalog JSON file.
+   * Defaults to the real catalog; the {@code cab.catalog} system property can point it at
+   * another file with the same shape, e.g. one written by {@link SyntheticCatalog}.
+   */
+  public static final String CATALOG_FILE =
+      System.getProperty("cab.catalog", "data/courses_formatted.json");
+
   /**
    * Map of course codes to course data objects.
-   * This provides quick lookup of course information by course code.
+   * This provides quick lookup of course information by course code. A course's first section
+   * stands for the course, as all sections share its WRIT designation and prerequisites.
    */
   private static final Map<String, Map<String, Object>> coursesByCode = new HashMap<>();
 
+  /** The catalog's prerequisites, compiled once the catalog is loaded */
+  private static final PrerequisiteGraph prerequisites;
+
   /**
    * Static initializer that loads the course catalog data when the class is first used.
    * Reads course data from a JSON file, parses it, and stores it in memory for efficient access.
@@ -30,25 +40,24 @@ public final class CourseCatalog {
   static {
     try {
       // Read the JSON file containing course data
-      String json = Files.readString(Paths.get("data/courses_formatted.json"));
-
-      // Set up Moshi for JSON parsing
-      Moshi moshi = new Moshi.Builder().build();
-      Type rootT = Types.newParameterizedType(Map.class, String.class, Object.class);
-      Map<String, Object> root = (Map<String, Object>) moshi.adapter(rootT).fromJson(json);
+      Map<String, Object> root;
+      try (BufferedSource source = Okio.buffer(Okio.source(Paths.get(CATALOG_FILE)))) {
+        root = Json.MAP.fromJson(source);
+      }
 
       // Extract course results and populate the lookup map
       @SuppressWarnings("unchecked")
       List<Map<String, Object>> results = (List<Map<String, Object>>) root.get("results");
       if (results != null) {
         for (Map<String, Object> course : results) {
-          coursesByCode.put((String) course.get("code"), course);
+          coursesByCode.putIfAbsent((String) course.get("code"), course);
         }
       }
+      prerequisites = new PrerequisiteGraph(coursesByCode);
 
     } catch (Exception e) {
       // If loading fails, throw a runtime exception to prevent using incomplete data
-      throw new RuntimeException("Failed to load courses_formatted.json", e);
+      throw new RuntimeException("Failed to load " + CATALOG_FILE, e);
     }
   }
 
@@ -73,4 +82,14 @@ public final class CourseCatalog {
   public static Map<String, Object> getCourse(String code) {
     return coursesByCode.get(code);
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns the catalog's prerequisite graph, for checking prerequisites against a taken set
+   * without reading each course's groups.
+   *
+   * @return The graph
+   */
+  public static PrerequisiteGraph prerequisites() {
+    return prerequisites;
+  }
+}
@@ -1,6 +1,5 @@
 package Utilities;
 
-import com.squareup.moshi.Moshi;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
@@ -38,16 +37,13 @@ public class FormatCourses {
       // Read the raw JSON file content
       String json = new String(Files.readAllBytes(Paths.get(inputPath)));
 
-      // Set up Moshi for JSON parsing and formatting
-      Moshi moshi = new Moshi.Builder().build();
-
       // Parse the JSON to ensure it's valid
-      Object parsed = moshi.adapter(Object.class).fromJson(json);
+      Object parsed = Json.VALUE.fromJson(json);
 
       // Format and write the JSON if parsing was successful
       if (parsed != null) {
         // Create pretty-printed JSON with 2-space indentation
-        String pretty = moshi.adapter(Object.class).indent("  ").toJson(parsed);
+        String pretty = Json.VALUE.indent("  ").toJson(parsed);
 
         // Write the formatted JSON to the output file
         Files.writeString(Paths.get(outputPath), pretty);
@@ -0,0 +1,84 @@
+package Utilities;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.io.IOException;
+import java.util.*;
+import okio.Buffer;
+
+/**
+ * The server's one JSON layer, on Moshi. Every class reads and writes JSON through the adapters
+ * here, built once from a single {@link Moshi} instance, or through a streaming reader for a typed
+ * class such as {@link Meeting}, {@link Handlers.GenerateRequest} or {@link ClerkAPI.Metadata},
+ * which reads only the fields it needs and skips the rest without building a tree.
+ */
+public final class Json {
+
+  /** The shared Moshi instance */
+  public static final Moshi MOSHI = new Moshi.Builder().build();
+
+  /** Adapter for any JSON value, as maps, lists, strings, doubles and booleans */
+  public static final JsonAdapter<Object> VALUE = MOSHI.adapter(Object.class);
+
+  /** Adapter for JSON objects, such as response bodies and catalog files */
+  public static final JsonAdapter<Map<String, Object>> MAP =
+      MOSHI.adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+
+  /** Field names of a catalog meeting, in the order {@link #meetings} switches on them */
+  private static final JsonReader.Options MEETING_NAMES =
+      JsonReader.Options.of("meet_day", "start_time", "end_time");
+
+  private Json() {}
+
+  /** One meeting of a course, from the catalog's {@code meetingTimes} JSON, as written there */
+  public static final class Meeting {
+    /** Day of the week, "0" for Monday */
+    public final String meetDay;
+    /** Start and end times as hours and minutes run together, e.g. "930" and "1050" */
+    public final String startTime, endTime;
+
+    Meeting(String meetDay, String startTime, String endTime) {
+      this.meetDay = meetDay;
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+  }
+
+  /**
+   * Reads a course's {@code meetingTimes} JSON into its meetings. Fields other than the day and
+   * times are skipped; numbers are read as their text.
+   *
+   * @param meetingTimes The JSON list of meetings
+   * @return The meetings, with null for any field a meeting lacks
+   * @throws IOException If the JSON is malformed
+   * @throws com.squareup.moshi.JsonDataException If the JSON is not a list of objects
+   */
+  public static List<Meeting> meetings(String meetingTimes) throws IOException {
+    List<Meeting> meetings = new ArrayList<>();
+    try (JsonReader reader = JsonReader.of(new Buffer().writeUtf8(meetingTimes))) {
+      if (reader.peek() == JsonReader.Token.NULL) return meetings;
+      reader.beginArray();
+      while (reader.hasNext()) {
+        String[] fields = new String[3];
+        reader.beginObject();
+        while (reader.hasNext()) {
+          int field = reader.selectName(MEETING_NAMES);
+          if (field == -1) {
+            reader.skipName();
+            reader.skipValue();
+          } else if (reader.peek() == JsonReader.Token.NULL) {
+            reader.skipValue();
+          } else {
+            fields[field] = reader.nextString();
+          }
+        }
+        reader.endObject();
+        meetings.add(new Meeting(fields[0], fields[1], fields[2]));
+      }
+      reader.endArray();
+    }
+    return meetings;
+  }
+}
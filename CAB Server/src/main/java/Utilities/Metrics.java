@@ -0,0 +1,221 @@
+package Utilities;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms, exported in the Prometheus text
+ * format by the /metrics endpoint. Metrics are registered once (typically into static final fields)
+ * and then updated without locks: every counter and histogram bucket is a {@link LongAdder}, so
+ * recording stays cheap enough to leave on in production.
+ */
+public final class Metrics {
+
+  /** Upper bounds of the latency histogram buckets, in seconds */
+  private static final double[] BUCKETS = {
+    0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10,
+    30
+  };
+
+  /** Same bounds in nanoseconds, for comparisons on the recording path */
+  private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+  static {
+    for (int i = 0; i < BUCKETS.length; i++) BUCKET_NANOS[i] = (long) (BUCKETS[i] * 1e9);
+  }
+
+  /** Registered metric families by name, in registration order */
+  private static final Map<String, Family> FAMILIES = new LinkedHashMap<>();
+
+  private Metrics() {}
+
+  /** A monotonically increasing count */
+  public static final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    /** Adds one to the counter */
+    public void inc() {
+      value.increment();
+    }
+
+    /**
+     * Adds an amount to the counter.
+     *
+     * @param n The amount to add
+     */
+    public void add(long n) {
+      value.add(n);
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return The sum of all increments so far
+     */
+    public long get() {
+      return value.sum();
+    }
+  }
+
+  /** A latency distribution with fixed buckets */
+  public static final class Histogram {
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+      for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records one observation.
+     *
+     * @param nanos The observed duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+      int i = 0;
+      while (i < BUCKET_NANOS.length && nanos > BUCKET_NANOS[i]) i++;
+      buckets[i].increment();
+      sumNanos.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos The earlier reading
+     * @return The current {@link System#nanoTime()}, so consecutive stages can be chained
+     */
+    public long observeSince(long startNanos) {
+      long now = System.nanoTime();
+      observeNanos(now - startNanos);
+      return now;
+    }
+  }
+
+  /** All metrics that share a name, help text and type, distinguished by labels */
+  private static final class Family {
+    final String name;
+    final String help;
+    final String type;
+    final Map<String, Object> byLabels = new LinkedHashMap<>();
+
+    Family(String name, String help, String type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+  }
+
+  /**
+   * Registers (or returns the already registered) unlabelled counter.
+   *
+   * @param name Metric name, conventionally ending in _total
+   * @param help One-line description
+   * @return The counter
+   */
+  public static Counter counter(String name, String help) {
+    return counter(name, help, "");
+  }
+
+  /**
+   * Registers (or returns the already registered) counter with the given labels.
+   *
+   * @param name Metric name, conventionally ending in _total
+   * @param help One-line description
+   * @param labels Label pairs in exposition syntax, e.g. {@code outcome="ok"}, or ""
+   * @return The counter
+   */
+  public static Counter counter(String name, String help, String labels) {
+    return register(name, help, "counter", labels, Counter::new);
+  }
+
+  /**
+   * Registers (or returns the already registered) latency histogram.
+   *
+   * @param name Metric name, conventionally ending in _seconds
+   * @param help One-line description
+   * @param labels Label pairs in exposition syntax, e.g. {@code stage="filter"}, or ""
+   * @return The histogram
+   */
+  public static Histogram histogram(String name, String help, String labels) {
+    return register(name, help, "histogram", labels, Histogram::new);
+  }
+
+  /**
+   * Returns the latency histogram for one stage of schedule generation.
+   *
+   * @param stage Stage name, e.g. "filter" or "serialize"
+   * @return The stage's histogram
+   */
+  public static Histogram stage(String stage) {
+    return histogram(
+        "cab_generate_stage_seconds",
+        "Time spent in each stage of schedule generation",
+        "stage=\"" + stage + "\"");
+  }
+
+  /**
+   * Registers a gauge whose value is computed when metrics are scraped.
+   *
+   * @param name Metric name
+   * @param help One-line description
+   * @param value Supplier of the current value
+   */
+  public static void gauge(String name, String help, DoubleSupplier value) {
+    register(name, help, "gauge", "", () -> value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static synchronized <T> T register(
+      String name, String help, String type, String labels, Supplier<T> make) {
+    Family f = FAMILIES.computeIfAbsent(name, n -> new Family(n, help, type));
+    if (!f.type.equals(type)) {
+      throw new IllegalArgumentException(name + " is already registered as a " + f.type);
+    }
+    return (T) f.byLabels.computeIfAbsent(labels, l -> make.get());
+  }
+
+  /**
+   * Renders every registered metric in the Prometheus text exposition format.
+   *
+   * @return The exposition text
+   */
+  public static synchronized String render() {
+    StringBuilder sb = new StringBuilder();
+    for (Family f : FAMILIES.values()) {
+      sb.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+      sb.append("# TYPE ").append(f.name).append(' ').append(f.type).append('\n');
+      for (Map.Entry<String, Object> e : f.byLabels.entrySet()) {
+        String labels = e.getKey();
+        Object m = e.getValue();
+        if (m instanceof Counter) {
+          line(sb, f.name, labels, ((Counter) m).get());
+        } else if (m instanceof DoubleSupplier) {
+          line(sb, f.name, labels, ((DoubleSupplier) m).getAsDouble());
+        } else {
+          renderHistogram(sb, f.name, labels, (Histogram) m);
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void renderHistogram(StringBuilder sb, String name, String labels, Histogram h) {
+    String prefix = labels.isEmpty() ? "" : labels + ",";
+    long cumulative = 0;
+    for (int i = 0; i < h.buckets.length; i++) {
+      cumulative += h.buckets[i].sum();
+      String le = i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf";
+      line(sb, name + "_bucket", prefix + "le=\"" + le + "\"", cumulative);
+    }
+    line(sb, name + "_sum", labels, h.sumNanos.sum() / 1e9);
+    line(sb, name + "_count", labels, cumulative);
+  }
+
+  private static void line(StringBuilder sb, String name, String labels, Object value) {
+    sb.append(name);
+    if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+    sb.append(' ').append(value).append('\n');
+  }
+}
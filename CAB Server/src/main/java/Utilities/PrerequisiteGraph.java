@@ -0,0 +1,263 @@
+package Utilities;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * The catalog's prerequisites compiled into a graph, built once when the catalog loads. Each course
+ * and each course named in a prerequisite is numbered, so a set of courses is a {@link BitSet}. A
+ * course's prerequisite groups are bitsets: it can be taken once every group shares a course with
+ * the courses taken. The graph also keeps the reverse edges (the courses each course unlocks), each
+ * course's topological level, and the transitive closures both ways.
+ *
+ * <p>Checking a course against a taken set is then a few bitset intersections, and the courses a
+ * taken set makes eligible are found from the reverse edges of the taken courses instead of by
+ * checking every course in the catalog.
+ */
+public final class PrerequisiteGraph {
+
+  /** Course codes, by number */
+  private final List<String> codes = new ArrayList<>();
+  /** Course code to number */
+  private final Map<String, Integer> index = new HashMap<>();
+  /** Per course: its prerequisite groups, each the courses of which one is needed */
+  private final List<BitSet[]> groups = new ArrayList<>();
+  /** Per course: the courses with a prerequisite group it belongs to */
+  private final List<BitSet> unlocks = new ArrayList<>();
+  /** Per course: every course it needs, directly or through other courses */
+  private final List<BitSet> requires = new ArrayList<>();
+  /** Per course: every course that needs it, directly or through other courses */
+  private final List<BitSet> leadsTo = new ArrayList<>();
+  /** Per course: fewest terms of prerequisites before it; -1 if its prerequisites form a cycle */
+  private final int[] level;
+  /** Courses without prerequisites */
+  private final BitSet open = new BitSet();
+
+  /**
+   * Compiles the prerequisite groups of a catalog's courses.
+   *
+   * @param courses Course code to course, whose {@code prereqGroups} are read
+   */
+  @SuppressWarnings("unchecked")
+  PrerequisiteGraph(Map<String, Map<String, Object>> courses) {
+    courses.keySet().forEach(this::number);
+    Map<Integer, List<List<String>>> raw = new HashMap<>();
+    courses.forEach(
+        (code, course) ->
+            raw.put(
+                index.get(code),
+                (List<List<String>>) course.getOrDefault("prereqGroups", List.of())));
+    raw.values().forEach(g -> g.forEach(orSet -> orSet.forEach(this::number)));
+
+    int n = codes.size();
+    for (int i = 0; i < n; i++) {
+      List<List<String>> prereqs = raw.getOrDefault(i, List.of());
+      BitSet[] compiled = new BitSet[prereqs.size()];
+      for (int g = 0; g < compiled.length; g++) {
+        compiled[g] = new BitSet(n);
+        for (String code : prereqs.get(g)) {
+          int j = index.get(code);
+          compiled[g].set(j);
+          unlocks.get(j).set(i);
+        }
+      }
+      groups.add(compiled);
+      if (compiled.length == 0) open.set(i);
+    }
+
+    // Levels, relaxed until no course can be placed lower
+    level = new int[n];
+    Arrays.fill(level, -1);
+    for (boolean changed = true; changed; ) {
+      changed = false;
+      for (int i = 0; i < n; i++) {
+        int l = 0;
+        for (BitSet group : groups.get(i)) {
+          int best = -1;
+          for (int j = group.nextSetBit(0); j >= 0; j = group.nextSetBit(j + 1)) {
+            if (level[j] >= 0 && (best < 0 || level[j] < best)) best = level[j];
+          }
+          if (best < 0) {
+            l = -1;
+            break;
+          }
+          l = Math.max(l, best + 1);
+        }
+        if (l >= 0 && (level[i] < 0 || l < level[i])) {
+          level[i] = l;
+          changed = true;
+        }
+      }
+    }
+
+    List<BitSet> needs = new ArrayList<>();
+    for (BitSet[] g : groups) {
+      BitSet union = new BitSet();
+      for (BitSet orSet : g) union.or(orSet);
+      needs.add(union);
+    }
+    for (int i = 0; i < n; i++) {
+      leadsTo.add(reach(i, unlocks::get));
+      requires.add(reach(i, needs::get));
+    }
+  }
+
+  /**
+   * Returns the number of a course, numbering it if it is new.
+   *
+   * @param code The course code
+   * @return Its number
+   */
+  private int number(String code) {
+    return index.computeIfAbsent(
+        code,
+        c -> {
+          codes.add(c);
+          unlocks.add(new BitSet());
+          return codes.size() - 1;
+        });
+  }
+
+  /**
+   * Finds every course reachable from one along some edges, not counting the course itself unless
+   * it lies on a cycle.
+   *
+   * @param from The course's number
+   * @param edges Returns the courses one step from a course
+   * @return The reachable courses
+   */
+  private static BitSet reach(int from, IntFunction<BitSet> edges) {
+    BitSet seen = new BitSet();
+    Deque<Integer> todo = new ArrayDeque<>(List.of(from));
+    while (!todo.isEmpty()) {
+      BitSet next = edges.apply(todo.pop());
+      for (int j = next.nextSetBit(0); j >= 0; j = next.nextSetBit(j + 1)) {
+        if (!seen.get(j)) {
+          seen.set(j);
+          todo.push(j);
+        }
+      }
+    }
+    return seen;
+  }
+
+  /**
+   * Converts course codes to a bitset. Codes the graph does not know are left out, as no
+   * prerequisite names them.
+   *
+   * @param courseCodes The codes
+   * @return The bitset of their numbers
+   */
+  public BitSet bits(Collection<String> courseCodes) {
+    BitSet bits = new BitSet(codes.size());
+    for (String code : courseCodes) {
+      Integer i = index.get(code);
+      if (i != null) bits.set(i);
+    }
+    return bits;
+  }
+
+  /**
+   * Returns the code of a numbered course.
+   *
+   * @param i The course's number
+   * @return The course code
+   */
+  public String code(int i) {
+    return codes.get(i);
+  }
+
+  /**
+   * Checks whether a course's prerequisites are met: every group shares a course with those taken.
+   *
+   * @param code The course code
+   * @param taken Bitset of the courses taken (see {@link #bits})
+   * @return true if the prerequisites are met, or the course is unknown
+   */
+  public boolean satisfied(String code, BitSet taken) {
+    Integer i = index.get(code);
+    return i == null || satisfied(i, taken);
+  }
+
+  private boolean satisfied(int i, BitSet taken) {
+    for (BitSet group : groups.get(i)) {
+      if (!group.intersects(taken)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the courses not taken whose prerequisites are met. Only courses without prerequisites
+   * and courses unlocked by a taken course are checked.
+   *
+   * @param taken Bitset of the courses taken
+   * @return Bitset of the eligible courses
+   */
+  public BitSet eligible(BitSet taken) {
+    BitSet candidates = new BitSet(codes.size());
+    for (int t = taken.nextSetBit(0); t >= 0; t = taken.nextSetBit(t + 1)) {
+      candidates.or(unlocks.get(t));
+    }
+    BitSet eligible = (BitSet) open.clone();
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if (satisfied(i, taken)) eligible.set(i);
+    }
+    eligible.andNot(taken);
+    return eligible;
+  }
+
+  /**
+   * Returns the courses that taking one more course would make eligible, on top of those already
+   * eligible.
+   *
+   * @param i The number of the course to take
+   * @param taken Bitset of the courses taken
+   * @return Bitset of the courses it unlocks
+   */
+  public BitSet unlockedBy(int i, BitSet taken) {
+    BitSet unlocked = new BitSet();
+    BitSet direct = unlocks.get(i);
+    for (int j = direct.nextSetBit(0); j >= 0; j = direct.nextSetBit(j + 1)) {
+      if (!taken.get(j) && satisfiedWith(j, taken, i) && !satisfied(j, taken)) unlocked.set(j);
+    }
+    return unlocked;
+  }
+
+  private boolean satisfiedWith(int j, BitSet taken, int extra) {
+    for (BitSet group : groups.get(j)) {
+      if (!group.get(extra) && !group.intersects(taken)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns every course that needs a course, directly or through other courses.
+   *
+   * @param i The course's number
+   * @return Bitset of those courses; callers must not modify it
+   */
+  public BitSet leadsTo(int i) {
+    return leadsTo.get(i);
+  }
+
+  /**
+   * Returns every course a course needs, directly or through other courses.
+   *
+   * @param i The course's number
+   * @return Bitset of those courses; callers must not modify it
+   */
+  public BitSet requires(int i) {
+    return requires.get(i);
+  }
+
+  /**
+   * Returns a course's topological level: 0 without prerequisites, otherwise one more than the
+   * highest level among the lowest-level course of each prerequisite group.
+   *
+   * @param i The course's number
+   * @return The level, or -1 if the course's prerequisites form a cycle
+   */
+  public int level(int i) {
+    return level[i];
+  }
+}
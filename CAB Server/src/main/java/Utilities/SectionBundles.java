@@ -0,0 +1,172 @@
+package Utilities;
+
+import java.util.*;
+
+/**
+ * Builds the units the schedule search chooses between: section bundles. The catalog keeps every
+ * section of a course, and a lecture section may list linked sections in {@code linked_crns}, such
+ * as the conferences or labs a student must also join. A bundle is one primary section together
+ * with one linked section of each kind, so choosing a course means choosing one of its bundles.
+ *
+ * <p>A bundle is a course map like any other: it has the primary section's fields, with {@code
+ * meets} and {@code meetingTimes} covering every part, so conflict checks, filters and scoring work
+ * on it unchanged. A primary section without linked sections is its own bundle, and the map from
+ * the catalog file is used as it is. When a course has several bundles, each carries a {@code
+ * section} field naming its sections, for example "S01 C03", so responses can tell them apart.
+ */
+public final class SectionBundles {
+
+  /** Field holding a bundle's parts, when it has more than one */
+  private static final String PARTS = "parts";
+
+  private SectionBundles() {}
+
+  /**
+   * Builds the section bundles of one term's sections. A section listed in another section's {@code
+   * linked_crns} is a linked section and only appears inside bundles; every other section is
+   * primary. Linked CRNs missing from the term are ignored.
+   *
+   * @param sections The term's sections, in catalog order
+   * @return The bundles, grouped by course in order of each course's first section
+   */
+  public static List<Map<String, Object>> build(List<Map<String, Object>> sections) {
+    Map<String, Map<String, Object>> byCrn = new HashMap<>();
+    Map<String, List<Map<String, Object>>> byCode = new LinkedHashMap<>();
+    for (Map<String, Object> s : sections) {
+      Object crn = s.get("crn");
+      if (crn != null) byCrn.put(crn.toString(), s);
+      byCode.computeIfAbsent((String) s.get("code"), k -> new ArrayList<>()).add(s);
+    }
+
+    List<Map<String, Object>> bundles = new ArrayList<>();
+    for (List<Map<String, Object>> course : byCode.values()) {
+      // Linked sections of the same course, by the primary section that lists them
+      Map<Map<String, Object>, List<Map<String, Object>>> linkedTo = new LinkedHashMap<>();
+      Set<Map<String, Object>> linked = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Map<String, Object> s : course) {
+        List<Map<String, Object>> parts = new ArrayList<>();
+        for (String crn : Objects.toString(s.get("linked_crns"), "").split(",")) {
+          Map<String, Object> part = byCrn.get(crn.trim());
+          if (part != null && part != s && Objects.equals(part.get("code"), s.get("code"))) {
+            parts.add(part);
+          }
+        }
+        linkedTo.put(s, parts);
+        linked.addAll(parts);
+      }
+
+      List<List<Map<String, Object>>> courseBundles = new ArrayList<>();
+      for (Map<String, Object> s : course) {
+        if (linked.contains(s)) continue;
+        for (List<Map<String, Object>> choice : choices(linkedTo.get(s))) {
+          List<Map<String, Object>> parts = new ArrayList<>();
+          parts.add(s);
+          parts.addAll(choice);
+          courseBundles.add(parts);
+        }
+      }
+
+      // Sections that only link to each other are all primary rather than lost
+      if (courseBundles.isEmpty()) {
+        for (Map<String, Object> s : course) courseBundles.add(List.of(s));
+      }
+      for (List<Map<String, Object>> parts : courseBundles) {
+        bundles.add(courseBundles.size() == 1 ? merge(parts) : named(merge(parts), parts));
+      }
+    }
+    return bundles;
+  }
+
+  /**
+   * Returns the sections a bundle is made of, each with its own {@code meets} string.
+   *
+   * @param course A bundle, or a single section
+   * @return The bundle's sections, primary first; the course itself if it is a single section
+   */
+  @SuppressWarnings("unchecked")
+  public static List<Map<String, Object>> parts(Map<String, Object> course) {
+    Object parts = course.get(PARTS);
+    return parts instanceof List ? (List<Map<String, Object>>) parts : List.of(course);
+  }
+
+  /**
+   * Returns a key identifying a bundle among all bundles of a term.
+   *
+   * @param course A bundle
+   * @return The course code, followed by the bundle's sections if the course has several bundles
+   */
+  public static String id(Map<String, Object> course) {
+    Object section = course.get("section");
+    return section == null ? (String) course.get("code") : course.get("code") + " " + section;
+  }
+
+  /**
+   * Lists the ways to take one linked section of each kind. The kind is the first letter of the
+   * section number, such as C for conferences and L for labs.
+   *
+   * @param linked A primary section's linked sections
+   * @return Each choice of linked sections; a single empty choice if there are none
+   */
+  private static List<List<Map<String, Object>>> choices(List<Map<String, Object>> linked) {
+    Map<String, List<Map<String, Object>>> byKind = new LinkedHashMap<>();
+    for (Map<String, Object> s : linked) {
+      String no = Objects.toString(s.get("no"), "");
+      byKind.computeIfAbsent(no.isEmpty() ? "" : no.substring(0, 1), k -> new ArrayList<>()).add(s);
+    }
+
+    List<List<Map<String, Object>>> choices = new ArrayList<>();
+    choices.add(List.of());
+    for (List<Map<String, Object>> kind : byKind.values()) {
+      List<List<Map<String, Object>>> next = new ArrayList<>();
+      for (List<Map<String, Object>> choice : choices) {
+        for (Map<String, Object> s : kind) {
+          List<Map<String, Object>> longer = new ArrayList<>(choice);
+          longer.add(s);
+          next.add(longer);
+        }
+      }
+      choices = next;
+    }
+    return choices;
+  }
+
+  /**
+   * Combines a primary section and its chosen linked sections into one course map.
+   *
+   * @param parts The sections, primary first
+   * @return The primary section itself if there is only one part, otherwise a new map
+   */
+  private static Map<String, Object> merge(List<Map<String, Object>> parts) {
+    Map<String, Object> primary = parts.get(0);
+    if (parts.size() == 1) return primary;
+
+    Map<String, Object> bundle = new LinkedHashMap<>(primary);
+    StringJoiner meets = new StringJoiner("; ");
+    StringJoiner times = new StringJoiner(",", "[", "]");
+    for (Map<String, Object> part : parts) {
+      meets.add(Objects.toString(part.get("meets"), ""));
+      String json = Objects.toString(part.get("meetingTimes"), "").trim();
+      if (json.length() > 2) times.add(json.substring(1, json.length() - 1));
+    }
+    bundle.put("meets", meets.toString());
+    bundle.put("meetingTimes", times.toString());
+    bundle.put(PARTS, List.copyOf(parts));
+    return bundle;
+  }
+
+  /**
+   * Names a bundle after its sections, copying it first if it is a section from the catalog file.
+   *
+   * @param bundle The bundle
+   * @param parts Its sections, primary first
+   * @return A map with the {@code section} field set
+   */
+  private static Map<String, Object> named(
+      Map<String, Object> bundle, List<Map<String, Object>> parts) {
+    Map<String, Object> copy = bundle == parts.get(0) ? new LinkedHashMap<>(bundle) : bundle;
+    StringJoiner section = new StringJoiner(" ");
+    for (Map<String, Object> part : parts) section.add(Objects.toString(part.get("no"), ""));
+    copy.put("section", section.toString());
+    return copy;
+  }
+}
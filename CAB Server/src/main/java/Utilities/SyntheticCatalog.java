@@ -0,0 +1,484 @@
+package Utilities;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Generator for synthetic course catalogs used in scale testing. The output has the same shape as
+ * data/courses_formatted.json (as written by {@link BrownCourseAPI}), including meetingTimes JSON,
+ * WRIT flags and prereqGroups, so it can be loaded by the scheduler unchanged by pointing the
+ * {@code cab.catalog} system property at it.
+ *
+ * <p>Distributions are modelled on the Spring 2025 catalog: department sizes, meeting patterns,
+ * WRIT ratio and how often and how deeply prerequisites are nested. All randomness comes from a
+ * single seeded {@link Random}, so a given set of options always produces byte-identical output.
+ */
+public class SyntheticCatalog {
+
+  /** Number of courses in the real single-term catalog */
+  public static final int BASE_COURSES_PER_TERM = 1466;
+
+  /** Share of courses with a WRIT designation in the real catalog */
+  private static final double DEFAULT_WRIT_RATIO = 0.13;
+
+  /** Share of courses with at least one prerequisite group in the real catalog */
+  private static final double DEFAULT_PREREQ_RATIO = 0.24;
+
+  /** Department codes with their course counts in the real catalog */
+  private static final Map<String, Integer> DEPARTMENTS = new LinkedHashMap<>();
+
+  static {
+    String[] depts = {
+      "ENGN:73", "CSCI:63", "HIST:61", "PHP:59", "BIOL:52", "ECON:49", "ENGL:46", "TAPS:43",
+      "MUSC:40", "POLS:37", "APMA:33", "SOC:33", "ANTH:32", "MCM:32", "ARCH:30", "MATH:29",
+      "IAPA:28", "PHIL:28", "PHYS:28", "EMOW:27", "LITR:27", "RELS:24", "CLPS:23", "EDUC:23",
+      "LACA:23", "COLT:22", "AFRI:21", "CHEM:21", "EEPS:21", "AMST:19", "ENVS:19", "HISP:19",
+      "HMAN:19", "FREN:17", "HIAA:17", "VISA:17", "NEUR:15", "RUSS:14", "GRMN:12", "ITAL:12",
+      "CLAS:11", "MED:11", "GPHP:10", "LATN:10", "URBN:10", "DATA:7", "LING:8", "CHIN:6"
+    };
+    for (String d : depts) {
+      String[] parts = d.split(":");
+      DEPARTMENTS.put(parts[0], Integer.parseInt(parts[1]));
+    }
+  }
+
+  /** Departments whose courses commonly list cross-listed quantitative prerequisites */
+  private static final List<String> QUANT_DEPTS = List.of("MATH", "APMA", "CSCI");
+
+  /** Day letters in meet_day order (0=Monday ... 4=Friday) */
+  private static final String[] DAY_LETTERS = {"M", "T", "W", "Th", "F"};
+
+  /**
+   * A family of meeting patterns: which days, how long, the standard start times and how often the
+   * pattern appears in the real catalog.
+   */
+  private static final class Pattern {
+    final int[] days;
+    final int minutes;
+    final int[] starts;
+    final int weight;
+
+    Pattern(int[] days, int minutes, int[] starts, int weight) {
+      this.days = days;
+      this.minutes = minutes;
+      this.starts = starts;
+      this.weight = weight;
+    }
+  }
+
+  /** Meeting pattern families; days == null means no scheduled meeting time */
+  private static final List<Pattern> PATTERNS =
+      List.of(
+          new Pattern(new int[] {1, 3}, 80, hm(900, 1030, 1300, 1430, 1600), 330),
+          new Pattern(new int[] {0, 2, 4}, 50, hm(900, 1000, 1100, 1200, 1300, 1400, 1500), 220),
+          new Pattern(new int[] {0, 2}, 80, hm(830, 900, 1030, 1300, 1500), 50),
+          new Pattern(new int[] {0}, 150, hm(900, 1300, 1500, 1600), 75),
+          new Pattern(new int[] {1}, 150, hm(900, 1300, 1500, 1600), 75),
+          new Pattern(new int[] {2}, 150, hm(900, 1300, 1500, 1600), 95),
+          new Pattern(new int[] {3}, 150, hm(900, 1300, 1500, 1600), 75),
+          new Pattern(new int[] {4}, 150, hm(900, 1300, 1500), 50),
+          new Pattern(new int[] {0, 1, 2, 3, 4}, 50, hm(900, 1100, 1200), 20),
+          new Pattern(null, 0, new int[0], 115));
+
+  /** Generation options */
+  private final double scale;
+
+  private final int terms;
+  private final int sections;
+  private final int density;
+  private final double writRatio;
+  private final double prereqRatio;
+  private final Random rng;
+
+  /** Running counters for the key and crn fields */
+  private int nextKey = 1;
+
+  private int nextCrn = 10000;
+
+  /**
+   * Creates a generator with the given options.
+   *
+   * @param scale Multiplier on the real catalog's courses per term (1 = about 1,500)
+   * @param terms Number of consecutive terms to emit, starting with Spring 2025
+   * @param sections Maximum number of sections per offered course
+   * @param density Time grid density; 1 is the standard grid, n adds n-1 offset start times
+   * @param writRatio Share of courses with a WRIT designation
+   * @param prereqRatio Share of courses with prerequisites
+   * @param seed Seed for all random choices
+   */
+  public SyntheticCatalog(
+      double scale,
+      int terms,
+      int sections,
+      int density,
+      double writRatio,
+      double prereqRatio,
+      long seed) {
+    this.scale = scale;
+    this.terms = terms;
+    this.sections = Math.max(1, sections);
+    this.density = Math.max(1, density);
+    this.writRatio = writRatio;
+    this.prereqRatio = prereqRatio;
+    this.rng = new Random(seed);
+  }
+
+  /**
+   * Entry point for running the generator from the command line. Options are given as key=value
+   * pairs, for example: {@code scale=10 terms=2 sections=3 density=2 seed=7
+   * out=data/courses_10x.json}.
+   *
+   * @param args Generation options
+   * @throws Exception If the catalog cannot be written
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opts = new HashMap<>();
+    for (String a : args) {
+      String[] kv = a.split("=", 2);
+      if (kv.length == 2) opts.put(kv[0], kv[1]);
+    }
+
+    double scale = Double.parseDouble(opts.getOrDefault("scale", "1"));
+    SyntheticCatalog gen =
+        new SyntheticCatalog(
+            scale,
+            Integer.parseInt(opts.getOrDefault("terms", "1")),
+            Integer.parseInt(opts.getOrDefault("sections", "1")),
+            Integer.parseInt(opts.getOrDefault("density", "1")),
+            Double.parseDouble(opts.getOrDefault("writ", String.valueOf(DEFAULT_WRIT_RATIO))),
+            Double.parseDouble(opts.getOrDefault("prereq", String.valueOf(DEFAULT_PREREQ_RATIO))),
+            Long.parseLong(opts.getOrDefault("seed", "320")));
+
+    Path out =
+        Paths.get(
+            opts.getOrDefault(
+                "out", "data/courses_synthetic_" + opts.getOrDefault("scale", "1") + "x.json"));
+    int count = gen.write(out);
+    System.out.println("Wrote " + count + " course sections to " + out.toAbsolutePath());
+  }
+
+  /**
+   * Generates the catalog and streams it to a file.
+   *
+   * @param out Path of the JSON file to write
+   * @return The number of course sections written
+   * @throws Exception If the file cannot be written
+   */
+  public int write(Path out) throws Exception {
+    if (out.getParent() != null) Files.createDirectories(out.getParent());
+    List<Map<String, Object>> results = generate();
+
+    JsonAdapter<Map<String, Object>> adapter = Json.MAP;
+
+    try (BufferedSink sink = Okio.buffer(Okio.sink(out));
+        JsonWriter writer = JsonWriter.of(sink)) {
+      writer.setIndent("  ");
+      writer.beginObject();
+      writer.name("srcdb").value(termCode(0));
+      writer.name("count").value(results.size());
+      writer.name("results").beginArray();
+      for (Map<String, Object> course : results) adapter.toJson(writer, course);
+      writer.endArray();
+      writer.endObject();
+    }
+    return results.size();
+  }
+
+  /**
+   * Generates all course sections for all terms.
+   *
+   * @return The generated course records, in catalog order
+   */
+  public List<Map<String, Object>> generate() {
+    int perTerm = (int) Math.round(BASE_COURSES_PER_TERM * scale);
+
+    // The course universe is larger than one term, so consecutive terms differ
+    List<Definition> universe = buildUniverse((int) Math.ceil(perTerm / 0.85));
+
+    List<Map<String, Object>> results = new ArrayList<>();
+    for (int t = 0; t < terms; t++) {
+      String term = termCode(t);
+      List<Definition> offered = new ArrayList<>(universe);
+      Collections.shuffle(offered, rng);
+      offered = offered.subList(0, Math.min(perTerm, offered.size()));
+      offered.sort(Comparator.comparing(d -> d.code));
+
+      for (Definition def : offered) {
+        int n = sections == 1 ? 1 : 1 + rng.nextInt(sections);
+        for (int s = 1; s <= n; s++) {
+          results.add(section(def, term, s));
+        }
+      }
+    }
+    return results;
+  }
+
+  /** Term-independent description of a course: code, title, WRIT and prerequisites */
+  private static final class Definition {
+    String code;
+    String title;
+    boolean writ;
+    List<List<String>> prereqGroups = new ArrayList<>();
+  }
+
+  /**
+   * Builds the set of courses that terms draw their offerings from. Departments get a share
+   * proportional to their real size. Prerequisites only point at lower-numbered courses, so they
+   * form chains the way real course sequences do.
+   *
+   * @param size Total number of course definitions
+   * @return The course definitions
+   */
+  private List<Definition> buildUniverse(int size) {
+    int totalWeight = DEPARTMENTS.values().stream().mapToInt(Integer::intValue).sum();
+    Map<String, List<Definition>> byDept = new LinkedHashMap<>();
+
+    for (Map.Entry<String, Integer> e : DEPARTMENTS.entrySet()) {
+      String dept = e.getKey();
+      int n = Math.max(1, (int) Math.round((double) size * e.getValue() / totalWeight));
+
+      // Pick distinct course numbers, then walk them in ascending order
+      // (large departments at high scale run out of plain numbers and need suffixes)
+      TreeSet<String> numbers = new TreeSet<>();
+      while (numbers.size() < n) numbers.add(courseNumber(n > 1000));
+
+      List<Definition> defs = new ArrayList<>();
+      for (String num : numbers) {
+        Definition d = new Definition();
+        d.code = dept + " " + num;
+        d.title = "Topics in " + dept + " " + num;
+        d.writ = rng.nextDouble() < writRatio;
+        defs.add(d);
+      }
+      byDept.put(dept, defs);
+    }
+
+    for (Map.Entry<String, List<Definition>> e : byDept.entrySet()) {
+      List<Definition> defs = e.getValue();
+      for (int i = 1; i < defs.size(); i++) {
+        Definition d = defs.get(i);
+        // Upper-level courses are more likely to have prerequisites
+        double p =
+            d.code.charAt(d.code.indexOf(' ') + 1) == '0' ? prereqRatio / 2 : prereqRatio * 1.3;
+        if (rng.nextDouble() >= p) continue;
+
+        int groups = pick(new int[] {80, 15, 5}) + 1;
+        for (int g = 0; g < groups; g++) {
+          List<Definition> source = defs.subList(0, i);
+          if (rng.nextDouble() < 0.3) {
+            List<Definition> quant = byDept.get(QUANT_DEPTS.get(rng.nextInt(QUANT_DEPTS.size())));
+            if (quant != null && !quant.isEmpty()) {
+              // Only earlier definitions may be drawn, so the graph never gains a cycle
+              List<Definition> earlier =
+                  new ArrayList<>(quant.subList(0, Math.max(1, quant.size() / 3)));
+              earlier.retainAll(source);
+              if (!earlier.isEmpty()) source = earlier;
+            }
+          }
+          int width =
+              Math.min(
+                  source.size(),
+                  new int[] {1, 2, 3, 4, 6, 9}[pick(new int[] {40, 25, 12, 8, 10, 5})]);
+          LinkedHashSet<String> orSet = new LinkedHashSet<>();
+          while (orSet.size() < width) orSet.add(source.get(rng.nextInt(source.size())).code);
+          d.prereqGroups.add(new ArrayList<>(orSet));
+        }
+      }
+    }
+
+    List<Definition> all = new ArrayList<>();
+    byDept.values().forEach(all::addAll);
+    return all;
+  }
+
+  /**
+   * Builds one course section record in the catalog's JSON shape.
+   *
+   * @param def The course being offered
+   * @param term The term code
+   * @param sectionNo The 1-based section number
+   * @return The course record
+   */
+  private Map<String, Object> section(Definition def, String term, int sectionNo) {
+    Pattern pattern = PATTERNS.get(pick(PATTERNS.stream().mapToInt(p -> p.weight).toArray()));
+
+    String meets = "TBA";
+    List<Map<String, String>> meetingTimes = new ArrayList<>();
+    if (pattern.days != null) {
+      int start = startTime(pattern);
+      int end = start + pattern.minutes;
+      StringBuilder days = new StringBuilder();
+      for (int day : pattern.days) {
+        days.append(DAY_LETTERS[day]);
+        Map<String, String> mt = new LinkedHashMap<>();
+        mt.put("meet_day", String.valueOf(day));
+        mt.put("start_time", String.valueOf(start / 60 * 100 + start % 60));
+        mt.put("end_time", String.valueOf(end / 60 * 100 + end % 60));
+        meetingTimes.add(mt);
+      }
+      meets = days + " " + formatRange(start, end);
+    }
+
+    Map<String, Object> c = new LinkedHashMap<>();
+    c.put("key", String.valueOf(nextKey++));
+    c.put("code", def.code);
+    c.put("title", def.title);
+    c.put("crn", String.valueOf(nextCrn++));
+    c.put("no", String.format("S%02d", sectionNo));
+    c.put("total", "1");
+    c.put("schd", "S");
+    c.put("stat", "A");
+    c.put("meets", meets);
+    c.put("meetingTimes", toMeetingTimesJson(meetingTimes));
+    c.put("instr", "Staff");
+    c.put("linked_crns", "");
+    c.put("srcdb", term);
+    c.put("writ", def.writ);
+    c.put("prereq", prereqSentence(def.prereqGroups));
+    c.put("prereqGroups", def.prereqGroups);
+    return c;
+  }
+
+  /**
+   * Picks a start time from the pattern's grid. With a density above one, each standard start time
+   * also gets evenly spaced offsets within the following hour.
+   *
+   * @param pattern The meeting pattern
+   * @return Start time in minutes since midnight
+   */
+  private int startTime(Pattern pattern) {
+    int base = pattern.starts[rng.nextInt(pattern.starts.length)];
+    int step = 60 / density;
+    return base + step * rng.nextInt(density);
+  }
+
+  /**
+   * Formats a time range the way Courses@Brown does, e.g. "10-10:50a", "1-2:20p", "11a-12:20p" or
+   * "6:40-8p". The start only carries an am/pm suffix if it differs from the end's.
+   *
+   * @param start Start in minutes since midnight
+   * @param end End in minutes since midnight
+   * @return The formatted range
+   */
+  static String formatRange(int start, int end) {
+    String endSuffix = end >= 12 * 60 ? "p" : "a";
+    String startSuffix = start >= 12 * 60 ? "p" : "a";
+    return clock(start)
+        + (startSuffix.equals(endSuffix) ? "" : startSuffix)
+        + "-"
+        + clock(end)
+        + endSuffix;
+  }
+
+  /**
+   * Formats minutes since midnight as a 12-hour clock time without suffix.
+   *
+   * @param minutes Minutes since midnight
+   * @return The time, e.g. "9", "10:30" or "12:50"
+   */
+  private static String clock(int minutes) {
+    int h = minutes / 60 % 12;
+    int m = minutes % 60;
+    return (h == 0 ? 12 : h) + (m == 0 ? "" : String.format(":%02d", m));
+  }
+
+  /**
+   * Serialises meeting times as the JSON string the catalog stores in meetingTimes.
+   *
+   * @param meetingTimes The meeting blocks
+   * @return The JSON array as a string
+   */
+  private static String toMeetingTimesJson(List<Map<String, String>> meetingTimes) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < meetingTimes.size(); i++) {
+      Map<String, String> mt = meetingTimes.get(i);
+      if (i > 0) sb.append(',');
+      sb.append("{\"meet_day\":\"")
+          .append(mt.get("meet_day"))
+          .append("\",\"start_time\":\"")
+          .append(mt.get("start_time"))
+          .append("\",\"end_time\":\"")
+          .append(mt.get("end_time"))
+          .append("\"}");
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Builds the human-readable prerequisite sentence that accompanies prereqGroups.
+   *
+   * @param groups The AND-of-OR prerequisite groups
+   * @return The sentence, or an empty string if there are no prerequisites
+   */
+  private static String prereqSentence(List<List<String>> groups) {
+    if (groups.isEmpty()) return "";
+    StringJoiner and = new StringJoiner(" and ");
+    for (List<String> orSet : groups) and.add(String.join(" or ", orSet));
+    return and + ".";
+  }
+
+  /**
+   * Draws a course number: mostly upper-level 1000s, with intro 0000s and some graduate 2000s, and
+   * an occasional letter suffix like "1951A".
+   *
+   * @param crowded Whether the department needs more codes than plain numbers allow
+   * @return A four-digit course number, possibly with a letter suffix
+   */
+  private String courseNumber(boolean crowded) {
+    int level = pick(new int[] {30, 55, 15});
+    String num =
+        String.format("%d%03d", level, crowded ? rng.nextInt(1000) : rng.nextInt(100) * 10);
+    if ((level == 1 && rng.nextDouble() < 0.1) || (crowded && rng.nextDouble() < 0.9)) {
+      num += (char) ('A' + rng.nextInt(26));
+    }
+    return num;
+  }
+
+  /**
+   * Picks an index with probability proportional to its weight.
+   *
+   * @param weights Non-negative weights
+   * @return The chosen index
+   */
+  private int pick(int[] weights) {
+    int total = 0;
+    for (int w : weights) total += w;
+    int r = rng.nextInt(total);
+    for (int i = 0; i < weights.length; i++) {
+      r -= weights[i];
+      if (r < 0) return i;
+    }
+    return weights.length - 1;
+  }
+
+  /**
+   * Returns the code of the n-th generated term, starting with Spring 2025 ("202420") and
+   * alternating fall ("10") and spring ("20") terms after that.
+   *
+   * @param n Zero-based term index
+   * @return The term code
+   */
+  static String termCode(int n) {
+    int half = n + 1; // Spring 2025 is the second half of academic year 2024
+    int year = 2024 + half / 2;
+    return year + (half % 2 == 0 ? "10" : "20");
+  }
+
+  /**
+   * Converts HHMM clock values to minutes since midnight.
+   *
+   * @param times Times like 930 or 1430
+   * @return The same times in minutes since midnight
+   */
+  private static int[] hm(int... times) {
+    int[] out = new int[times.length];
+    for (int i = 0; i < times.length; i++) out[i] = times[i] / 100 * 60 + times[i] % 100;
+    return out;
+  }
+}
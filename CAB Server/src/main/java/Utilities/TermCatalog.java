@@ -0,0 +1,252 @@
+package Utilities;
+
+import com.squareup.moshi.JsonWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * The courses offered in one term, parsed once and shared by all requests. The catalog file is
+ * re-read only when its modification time changes, so schedule generation no longer pays for a full
+ * JSON parse on every request. Course maps are shared between requests and must be treated as
+ * read-only.
+ *
+ * <p>The catalog file holds every section of a course. Loading combines them into section bundles
+ * (see {@link SectionBundles}), the units the search chooses between, and serializes each bundle's
+ * response fragment once (see {@link #fragment}), so responses are written by copying bytes rather
+ * than serializing course maps per schedule. It also builds each bundle's meeting mask (see {@link
+ * #meetingMask}), so checking a course against a student's availability is one mask test.
+ */
+public final class TermCatalog {
+
+  /** Cache hit and miss counters, exported through /metrics */
+  private static final Metrics.Counter HITS =
+      Metrics.counter("cab_catalog_cache_hits_total", "Term catalog lookups served from memory");
+
+  private static final Metrics.Counter MISSES =
+      Metrics.counter(
+          "cab_catalog_cache_misses_total", "Term catalog lookups that re-read the catalog file");
+
+  /** The most recently loaded catalog file, split by term */
+  private static volatile Snapshot snapshot;
+
+  static {
+    Metrics.gauge(
+        "cab_catalog_cache_hit_ratio",
+        "Share of term catalog lookups served from memory",
+        () -> {
+          long hits = HITS.get();
+          long total = hits + MISSES.get();
+          return total == 0 ? 0 : (double) hits / total;
+        });
+    Metrics.gauge(
+        "cab_catalog_courses",
+        "Section bundles held in memory across all loaded terms",
+        () -> snapshot == null ? 0 : snapshot.courseCount);
+    Metrics.gauge(
+        "cab_catalog_estimated_bytes",
+        "Estimated heap footprint of the loaded catalog",
+        () -> snapshot == null ? 0 : snapshot.estimatedBytes);
+  }
+
+  /** Term code, e.g. "202420" */
+  public final String term;
+  /** Sections offered in the term, as read from the catalog file, in catalog order */
+  public final List<Map<String, Object>> sections;
+  /** Section bundles offered in the term, in catalog order (see {@link SectionBundles}) */
+  public final List<Map<String, Object>> courses;
+  /** Course code to the course's first section bundle, for the term */
+  public final Map<String, Map<String, Object>> courseMap;
+
+  private TermCatalog(String term, List<Map<String, Object>> sections) {
+    List<Map<String, Object>> courses = SectionBundles.build(sections);
+    Map<String, Map<String, Object>> byCode = new HashMap<>();
+    for (Map<String, Object> course : courses) {
+      byCode.putIfAbsent((String) course.get("code"), course);
+    }
+    this.term = term;
+    this.sections = Collections.unmodifiableList(sections);
+    this.courses = Collections.unmodifiableList(courses);
+    this.courseMap = Collections.unmodifiableMap(byCode);
+  }
+
+  /** One parse of the catalog file */
+  private static final class Snapshot {
+    final FileTime modified;
+    final Map<String, TermCatalog> terms;
+    final Map<Map<String, Object>, byte[]> fragments;
+    final Map<Map<String, Object>, WeeklyMask> masks;
+    final long courseCount;
+    final long estimatedBytes;
+
+    Snapshot(
+        FileTime modified,
+        Map<String, TermCatalog> terms,
+        Map<Map<String, Object>, byte[]> fragments,
+        Map<Map<String, Object>, WeeklyMask> masks,
+        long courseCount,
+        long bytes) {
+      this.modified = modified;
+      this.terms = terms;
+      this.fragments = fragments;
+      this.masks = masks;
+      this.courseCount = courseCount;
+      this.estimatedBytes = bytes;
+    }
+  }
+
+  /**
+   * Returns a course's response fragment: the UTF-8 JSON object with its code, title, meeting times
+   * and WRIT flag, and its sections when the course has several bundles, as sent inside each
+   * schedule. Courses from the loaded catalog are served from the
+   * fragments built at load; any other course is serialized on the spot.
+   *
+   * @param course A course map
+   * @return The fragment's bytes; callers must not modify them
+   */
+  public static byte[] fragment(Map<String, Object> course) {
+    Snapshot s = snapshot;
+    byte[] bytes = s == null ? null : s.fragments.get(course);
+    return bytes != null ? bytes : serializeFragment(course);
+  }
+
+  /**
+   * Returns the five-minute slots of the week a course meets in, for checking it against a
+   * student's availability. Courses from the loaded catalog are served from the masks built at
+   * load; any other course is parsed on the spot.
+   *
+   * @param course A course map
+   * @return The course's meeting mask
+   */
+  public static WeeklyMask meetingMask(Map<String, Object> course) {
+    Snapshot s = snapshot;
+    WeeklyMask mask = s == null ? null : s.masks.get(course);
+    return mask != null ? mask : WeeklyMask.ofMeetingTimes((String) course.get("meetingTimes"));
+  }
+
+  /**
+   * Serializes the fields of a course that responses include.
+   *
+   * @param course A course map
+   * @return The JSON object as UTF-8 bytes
+   */
+  private static byte[] serializeFragment(Map<String, Object> course) {
+    Buffer buffer = new Buffer();
+    try (JsonWriter w = JsonWriter.of(buffer)) {
+      w.setSerializeNulls(true);
+      w.beginObject();
+      w.name("code").value((String) course.get("code"));
+      w.name("title").value((String) course.get("title"));
+      w.name("meets").value((String) course.get("meets"));
+      w.name("writ").value((Boolean) course.get("writ"));
+      if (course.get("section") != null) w.name("section").value((String) course.get("section"));
+      w.endObject();
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to memory cannot fail", e);
+    }
+    return buffer.readByteArray();
+  }
+
+  /**
+   * Returns the catalog for a term, loading the catalog file if it has not been loaded yet or has
+   * changed on disk.
+   *
+   * @param term The term code (e.g., "202420" for Spring 2025)
+   * @return The term's courses; empty if the file has no courses for the term
+   * @throws IOException If the catalog file cannot be read
+   */
+  public static TermCatalog forTerm(String term) throws IOException {
+    Path path = Paths.get(CourseCatalog.CATALOG_FILE);
+    FileTime modified = Files.getLastModifiedTime(path);
+
+    Snapshot s = snapshot;
+    if (s == null || !s.modified.equals(modified)) {
+      synchronized (TermCatalog.class) {
+        s = snapshot;
+        if (s == null || !s.modified.equals(modified)) {
+          MISSES.inc();
+          s = load(path, modified);
+          snapshot = s;
+          return s.terms.getOrDefault(term, new TermCatalog(term, new ArrayList<>()));
+        }
+      }
+    }
+    HITS.inc();
+    return s.terms.getOrDefault(term, new TermCatalog(term, new ArrayList<>()));
+  }
+
+  /**
+   * Parses the catalog file and splits its courses by term.
+   *
+   * @param path Path of the catalog file
+   * @param modified Modification time the file was read at
+   * @return The parsed snapshot
+   * @throws IOException If the file cannot be read
+   */
+  @SuppressWarnings("unchecked")
+  private static Snapshot load(Path path, FileTime modified) throws IOException {
+    Map<String, Object> data;
+    try (BufferedSource source = Okio.buffer(Okio.source(path))) {
+      data = Json.MAP.fromJson(source);
+    }
+
+    Map<String, List<Map<String, Object>>> byTerm = new LinkedHashMap<>();
+    List<Object> results = (List<Object>) data.get("results");
+    for (Object obj : results) {
+      Map<String, Object> course = (Map<String, Object>) obj;
+      byTerm.computeIfAbsent((String) course.get("srcdb"), t -> new ArrayList<>()).add(course);
+    }
+
+    Map<String, TermCatalog> terms = new HashMap<>();
+    byTerm.forEach((t, courses) -> terms.put(t, new TermCatalog(t, courses)));
+
+    // Serialize every bundle's response fragment and build its meeting mask up front
+    Map<Map<String, Object>, byte[]> fragments = new IdentityHashMap<>();
+    Map<Map<String, Object>, WeeklyMask> masks = new IdentityHashMap<>();
+    long fragmentBytes = 0;
+    long bundles = 0;
+    for (TermCatalog catalog : terms.values()) {
+      for (Map<String, Object> course : catalog.courses) {
+        byte[] bytes = serializeFragment(course);
+        fragments.put(course, bytes);
+        masks.put(course, WeeklyMask.ofMeetingTimes((String) course.get("meetingTimes")));
+        fragmentBytes += 16 + bytes.length;
+        bundles++;
+      }
+    }
+    return new Snapshot(
+        modified, terms, fragments, masks, bundles, estimateBytes(results) + fragmentBytes);
+  }
+
+  /**
+   * Roughly estimates the heap used by parsed JSON, using typical 64-bit object sizes with
+   * compressed references. Good enough to watch growth, not an exact measurement.
+   *
+   * @param value A parsed JSON value
+   * @return The estimated size in bytes
+   */
+  private static long estimateBytes(Object value) {
+    if (value instanceof String) {
+      return 40 + ((String) value).length();
+    }
+    if (value instanceof Map) {
+      long bytes = 64;
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+        bytes += 40 + estimateBytes(e.getKey()) + estimateBytes(e.getValue());
+      }
+      return bytes;
+    }
+    if (value instanceof List) {
+      long bytes = 40;
+      for (Object o : (List<?>) value) bytes += 4 + estimateBytes(o);
+      return bytes;
+    }
+    return 16;
+  }
+}
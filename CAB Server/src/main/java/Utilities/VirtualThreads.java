@@ -0,0 +1,161 @@
+package Utilities;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Opt-in virtual-thread execution for I/O-bound work: Jetty request handling and outbound calls to
+ * Clerk and Courses@Brown. Enabled with {@code -Dcab.virtualThreads=true} on a JVM that has virtual
+ * threads (Java 21+); on older JVMs the flag is ignored with a warning and platform threads are
+ * used. CPU-heavy schedule searches never run here; they stay on the bounded {@code SearchExecutor}
+ * pool whatever the mode.
+ *
+ * <p>The project still compiles for Java 17, so virtual threads are created through reflection.
+ */
+public final class VirtualThreads {
+
+  /** Whether virtual-thread mode was requested */
+  public static final boolean REQUESTED = Boolean.getBoolean("cab.virtualThreads");
+
+  /** Factory for virtual threads, or null if the running JVM has none */
+  private static final ThreadFactory FACTORY = REQUESTED ? lookupFactory("cab-vt-") : null;
+
+  private VirtualThreads() {}
+
+  /**
+   * Checks whether virtual-thread mode is active.
+   *
+   * @return true if it was requested and the JVM supports it
+   */
+  public static boolean enabled() {
+    return FACTORY != null;
+  }
+
+  /**
+   * Creates an executor for blocking I/O tasks.
+   *
+   * @param name Prefix for platform thread names
+   * @param platformThreads Number of platform threads to use when virtual threads are off
+   * @return An executor that starts a virtual thread per task, or a fixed platform thread pool
+   */
+  public static ExecutorService newIoExecutor(String name, int platformThreads) {
+    if (enabled()) return newThreadPerTaskExecutor(FACTORY);
+    AtomicInteger next = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        platformThreads,
+        r -> {
+          Thread t = new Thread(r, name + next.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  /**
+   * Creates a Jetty thread pool that runs every task, including request handling, on its own
+   * virtual thread.
+   *
+   * @return The thread pool
+   * @throws IllegalStateException If virtual-thread mode is not active
+   */
+  public static ThreadPool jettyThreadPool() {
+    if (!enabled()) throw new IllegalStateException("Virtual threads are not enabled");
+    return new PerTaskThreadPool(FACTORY);
+  }
+
+  /**
+   * Looks up {@code Thread.ofVirtual().name(prefix, 0).factory()}.
+   *
+   * @param prefix Prefix for virtual thread names
+   * @return The factory, or null if the JVM has no virtual threads
+   */
+  private static ThreadFactory lookupFactory(String prefix) {
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      Object b = Thread.class.getMethod("ofVirtual").invoke(null);
+      b = builder.getMethod("name", String.class, long.class).invoke(b, prefix, 0L);
+      return (ThreadFactory) builder.getMethod("factory").invoke(b);
+    } catch (ReflectiveOperationException e) {
+      System.err.println(
+          "cab.virtualThreads is set but Java "
+              + Runtime.version().feature()
+              + " has no virtual threads; using platform threads");
+      return null;
+    }
+  }
+
+  /**
+   * Returns {@code Executors.newThreadPerTaskExecutor(factory)}.
+   *
+   * @param factory The thread factory
+   * @return The executor
+   */
+  private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+    try {
+      Method m = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService) m.invoke(null, factory);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Virtual thread executor unavailable", e);
+    }
+  }
+
+  /**
+   * Jetty thread pool that starts a new thread for every task instead of reusing pooled threads.
+   * Only sensible for virtual threads, which are cheap to create and park.
+   */
+  static final class PerTaskThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final ThreadFactory factory;
+    private final AtomicInteger running = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    PerTaskThreadPool(ThreadFactory factory) {
+      this.factory = factory;
+    }
+
+    @Override
+    public void execute(Runnable job) {
+      running.incrementAndGet();
+      factory
+          .newThread(
+              () -> {
+                try {
+                  job.run();
+                } finally {
+                  running.decrementAndGet();
+                }
+              })
+          .start();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+      stopped.countDown();
+      super.doStop();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+      stopped.await();
+    }
+
+    @Override
+    public int getThreads() {
+      return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+      return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package Utilities;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A set of five-minute slots of the teaching week, Monday to Friday, held as bits. A course's mask
+ * holds every slot its meetings touch, and a student's availability holds every slot fully inside
+ * an interval they are free, so a course fits exactly when its mask lies within the availability.
+ *
+ * <p>Availability is written as comma-separated intervals of days and 24-hour times, such as {@code
+ * "MTWThF 10-18"} or {@code "MWF 9:30-12, TTh 13-17:45"}. Masks are immutable.
+ */
+public final class WeeklyMask {
+
+  /** Minutes per slot */
+  public static final int SLOT_MINUTES = 5;
+
+  /** Slots per day, covering the whole day */
+  private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+  /** Day codes, Monday first, in the order of the days' slots */
+  private static final List<String> DAYS = List.of("M", "T", "W", "Th", "F");
+
+  /** Every slot of the week */
+  public static final WeeklyMask ALL;
+
+  /** No slot */
+  public static final WeeklyMask EMPTY = new WeeklyMask(new long[words()]);
+
+  static {
+    long[] bits = new long[words()];
+    for (int day = 0; day < DAYS.size(); day++) set(bits, day, 0, SLOTS_PER_DAY);
+    ALL = new WeeklyMask(bits);
+  }
+
+  /** The slots, day by day */
+  private final long[] bits;
+
+  private WeeklyMask(long[] bits) {
+    this.bits = bits;
+  }
+
+  private static int words() {
+    return (DAYS.size() * SLOTS_PER_DAY + 63) / 64;
+  }
+
+  /**
+   * Sets the slots from one slot up to, not including, another on a day.
+   *
+   * @param bits The slots to modify
+   * @param day The day, 0 for Monday
+   * @param from First slot of the day
+   * @param to Slot after the last
+   */
+  private static void set(long[] bits, int day, int from, int to) {
+    for (int s = day * SLOTS_PER_DAY + from; s < day * SLOTS_PER_DAY + to; s++) {
+      bits[s >> 6] |= 1L << s;
+    }
+  }
+
+  /**
+   * Builds the mask of a course from its {@code meetingTimes} JSON: every slot a meeting touches.
+   *
+   * @param meetingTimes The JSON list of meetings, each with a meet_day of 0 to 4 and start and end
+   *     times such as "930" and "1050"; null or blank for a course without set meetings
+   * @return The mask; empty if the course has no meetings on weekdays
+   */
+  public static WeeklyMask ofMeetingTimes(String meetingTimes) {
+    if (meetingTimes == null || meetingTimes.isBlank()) return EMPTY;
+    long[] bits = new long[words()];
+    try {
+      for (Json.Meeting meeting : Json.meetings(meetingTimes)) {
+        int day = Integer.parseInt(String.valueOf(meeting.meetDay));
+        if (day < 0 || day >= DAYS.size()) continue;
+        int start = clock(String.valueOf(meeting.startTime));
+        int end = clock(String.valueOf(meeting.endTime));
+        set(bits, day, start / SLOT_MINUTES, Math.min(SLOTS_PER_DAY, ceilSlot(end)));
+      }
+    } catch (IOException | RuntimeException e) {
+      // Keep the meetings read so far, as parseMeetingTimes does
+      System.err.println("Error parsing meeting times: " + e.getMessage());
+    }
+    return new WeeklyMask(bits);
+  }
+
+  /**
+   * Parses intervals such as {@code "MWF 9:30-12, TTh 13-17"} into the slots fully inside them.
+   *
+   * @param spec Comma-separated intervals, each day codes (M, T, W, Th, F), a space, and a start
+   *     and end time in 24-hour hours or hours:minutes
+   * @return The mask
+   * @throws IllegalArgumentException If an interval cannot be parsed, naming it
+   */
+  public static WeeklyMask parse(String spec) {
+    long[] bits = new long[words()];
+    for (String interval : spec.split(",")) {
+      String[] parts = interval.trim().split("\\s+");
+      String[] times = parts.length == 2 ? parts[1].split("-") : new String[0];
+      List<Integer> days = parts.length == 2 ? days(parts[0]) : List.of();
+      if (times.length != 2 || days.isEmpty()) {
+        throw new IllegalArgumentException("Can't read availability \"" + interval.trim() + "\"");
+      }
+      int start = minutes(times[0], interval);
+      int end = minutes(times[1], interval);
+      if (end <= start) {
+        throw new IllegalArgumentException(
+            "Availability \"" + interval.trim() + "\" ends before it starts");
+      }
+      for (int day : days) set(bits, day, ceilSlot(start), end / SLOT_MINUTES);
+    }
+    return new WeeklyMask(bits);
+  }
+
+  /**
+   * Returns the slots of this mask that are not in another.
+   *
+   * @param other The slots to remove
+   * @return The difference
+   */
+  public WeeklyMask minus(WeeklyMask other) {
+    long[] diff = new long[bits.length];
+    for (int i = 0; i < bits.length; i++) diff[i] = bits[i] & ~other.bits[i];
+    return new WeeklyMask(diff);
+  }
+
+  /**
+   * Checks that every slot of this mask is also in another.
+   *
+   * @param allowed The slots allowed
+   * @return true if none of this mask's slots lies outside {@code allowed}
+   */
+  public boolean within(WeeklyMask allowed) {
+    for (int i = 0; i < bits.length; i++) {
+      if ((bits[i] & ~allowed.bits[i]) != 0) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof WeeklyMask && Arrays.equals(bits, ((WeeklyMask) o).bits);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bits);
+  }
+
+  private static int ceilSlot(int minutes) {
+    return (minutes + SLOT_MINUTES - 1) / SLOT_MINUTES;
+  }
+
+  /**
+   * Parses day codes such as "MWF" or "TTh".
+   *
+   * @param codes The day codes, run together
+   * @return The days, 0 for Monday; empty if the codes cannot be read
+   */
+  private static List<Integer> days(String codes) {
+    List<Integer> days = new ArrayList<>();
+    for (int i = 0; i < codes.length(); ) {
+      int len = codes.startsWith("Th", i) ? 2 : 1;
+      int day = DAYS.indexOf(codes.substring(i, i + len));
+      if (day < 0) return List.of();
+      days.add(day);
+      i += len;
+    }
+    return days;
+  }
+
+  /**
+   * Parses a 24-hour time given as hours or hours:minutes.
+   *
+   * @param time The time, e.g. "9" or "13:30"; "24" is the end of the day
+   * @param interval The interval it came from, for the error message
+   * @return Minutes since midnight
+   * @throws IllegalArgumentException If the time cannot be read
+   */
+  private static int minutes(String time, String interval) {
+    String[] hm = time.split(":");
+    try {
+      int hours = Integer.parseInt(hm[0]);
+      int minutes = hm.length == 2 ? Integer.parseInt(hm[1]) : 0;
+      int total = hours * 60 + minutes;
+      if (hm.length <= 2 && minutes >= 0 && minutes < 60 && total >= 0 && total <= 24 * 60) {
+        return total;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    throw new IllegalArgumentException(
+        "Can't read the time \"" + time + "\" in availability \"" + interval.trim() + "\"");
+  }
+
+  /**
+   * Parses a catalog time such as "930" or "1450".
+   *
+   * @param time The time as hours and minutes run together
+   * @return Minutes since midnight
+   */
+  private static int clock(String time) {
+    int t = Integer.parseInt(time.trim());
+    return t / 100 * 60 + t % 100;
+  }
+}
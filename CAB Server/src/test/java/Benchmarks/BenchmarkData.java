@@ -0,0 +1,80 @@
+package Benchmarks;
+
+import Scheduler.ScheduleGenerator;
+import Scheduler.SchedulerUtils;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Shared fixtures for the JMH benchmarks.
+ * Holds the term under test and the realistic constraint profiles that the
+ * generator benchmarks are parameterised over.
+ */
+final class BenchmarkData {
+
+  /** Term code of the real catalog in data/courses_formatted.json */
+  static final String TERM = "202420";
+
+  /** Courses a typical sophomore concentrator has already taken */
+  static final List<String> TAKEN =
+      List.of("CSCI 0150", "CSCI 0170", "MATH 0100", "MATH 0170", "ECON 0110");
+
+  /** Remaining concentration requirements offered this term */
+  static final List<String> REMAINING =
+      List.of("CSCI 0320", "CSCI 0200", "MATH 0520", "APMA 1650", "ECON 1130");
+
+  /** Preferred departments for electives */
+  static final List<String> DEPTS = List.of("CSCI", "MATH", "APMA", "ECON");
+
+  private BenchmarkData() {}
+
+  /**
+   * Builds a generator for one of the named constraint profiles.
+   * Profiles are encoded as {@code classes/writ/days/mwf/tth}, e.g.
+   * {@code "4/true/MTWThF/2/2"}, so that JMH can pass them as a {@code @Param}.
+   *
+   * @param profile The encoded constraint profile
+   * @param times The allowed time blocks
+   * @return A generator configured with the profile's constraints
+   */
+  static ScheduleGenerator generator(String profile, Set<String> times) {
+    String[] parts = profile.split("/");
+    int classes = Integer.parseInt(parts[0]);
+    boolean writ = Boolean.parseBoolean(parts[1]);
+    Set<String> days = SchedulerUtils.parseMeetingDays(parts[2]);
+
+    Map<String, Boolean> dayAvailability = new LinkedHashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) dayAvailability.put(d, days.contains(d));
+
+    return new ScheduleGenerator(
+        classes,
+        TAKEN,
+        REMAINING,
+        List.of(),
+        times,
+        dayAvailability,
+        new ScheduleGenerator.DayBalance(Integer.parseInt(parts[3]), Integer.parseInt(parts[4])),
+        Math.min(2, classes),
+        DEPTS,
+        writ);
+  }
+
+  /**
+   * Collects every distinct time block that appears in the loaded catalog, so the
+   * benchmarks can model a student who is free at any time.
+   *
+   * @param courses The loaded courses
+   * @return The set of all time blocks, e.g. "10-10:50a"
+   */
+  static Set<String> allTimeBlocks(List<Map<String, Object>> courses) {
+    Set<String> blocks = new TreeSet<>();
+    for (Map<String, Object> c : courses) {
+      String[] meets = String.valueOf(c.get("meets")).split(" ", 2);
+      if (meets.length > 1) blocks.add(meets[1]);
+    }
+    return blocks;
+  }
+}
@@ -0,0 +1,422 @@
+package Benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP load tester and traffic replayer for the schedule server. Starts {@code Server} in-process
+ * with a local stub in place of the Clerk API, then drives an endpoint in one of three modes and
+ * reports throughput and latency percentiles.
+ *
+ * <ul>
+ *   <li>{@code closed}: {@code concurrency} workers, each sending its next request when the
+ *       previous one finishes. With {@code rate} set, each worker follows a fixed schedule and
+ *       latency is also measured from the intended send time.
+ *   <li>{@code open}: requests arrive at {@code rate} per second regardless of how fast the server
+ *       answers, with uniform or Poisson inter-arrival times.
+ *   <li>{@code replay}: requests from a trace file (as captured with {@code -Dcab.trace}) are sent
+ *       at their recorded offsets, optionally sped up by {@code speed}.
+ * </ul>
+ *
+ * <p>Latency is corrected for coordinated omission by measuring from the time a request was
+ * scheduled to be sent rather than from when it was actually sent, so a stalled server shows up as
+ * queueing delay instead of silently reducing the number of samples.
+ *
+ * <p>Options are given as key=value pairs: mode, path, query, concurrency, rate, arrivals,
+ * duration, warmup, trace, speed, port, clerkDelay, timeout.
+ */
+public final class LoadTest {
+
+  /** Query used when none is given: a four-class request for a stubbed Clerk user */
+  private static final String DEFAULT_QUERY =
+      "user=user_loadtest&term=202420&classes=4&needed=&times=&depts=CSCI,MATH,APMA"
+          + "&writ=false&days=M,T,W,Th,F&mwf=2&tth=2&reqThisSem=1";
+
+  /** Metadata returned by the Clerk stub for every user */
+  private static final String CLERK_USER =
+      "{\"id\":\"user_loadtest\",\"unsafe_metadata\":{"
+          + "\"courses\":[{\"code\":\"CSCI 0150\"},{\"code\":\"CSCI 0170\"},"
+          + "{\"code\":\"MATH 0100\"},{\"code\":\"MATH 0170\"}],"
+          + "\"desiredCourses\":[{\"code\":\"CSCI 0320\"},{\"code\":\"CSCI 0200\"},"
+          + "{\"code\":\"MATH 0520\"},{\"code\":\"APMA 1650\"}]}}";
+
+  private final Map<String, String> opts;
+  private final HttpClient client;
+  private final String base;
+  private final Duration timeout;
+
+  /** Latencies measured from the intended send time (corrected for coordinated omission) */
+  private final Recorder corrected = new Recorder();
+  /** Latencies measured from the actual send time */
+  private final Recorder raw = new Recorder();
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+
+  /** Requests scheduled before this time are warmup and are not recorded */
+  private long measureFrom;
+
+  private long measureTo;
+
+  private LoadTest(Map<String, String> opts, int port) {
+    this.opts = opts;
+    this.base = "http://localhost:" + port;
+    this.timeout = Duration.ofSeconds(Long.parseLong(opts.getOrDefault("timeout", "60")));
+    this.client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newCachedThreadPool(daemon("loadtest-client")))
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+  }
+
+  /**
+   * Entry point for the load tester.
+   *
+   * @param args Options as key=value pairs
+   * @throws Exception If the server or stub cannot be started
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opts = new HashMap<>();
+    for (String a : args) {
+      String[] kv = a.split("=", 2);
+      if (kv.length == 2) opts.put(kv[0], kv[1]);
+    }
+
+    HttpServer clerk = startClerkStub(Long.parseLong(opts.getOrDefault("clerkDelay", "0")));
+    System.setProperty(
+        "clerk.api.url", "http://localhost:" + clerk.getAddress().getPort() + "/v1/users/");
+
+    // Server lives in the default package, so it can only be reached reflectively
+    int port = Integer.parseInt(opts.getOrDefault("port", "3232"));
+    Class.forName("Server")
+        .getMethod("main", String[].class)
+        .invoke(null, (Object) new String[] {String.valueOf(port)});
+
+    LoadTest test = new LoadTest(opts, port);
+    try {
+      test.run();
+    } finally {
+      spark.Spark.stop();
+      clerk.stop(0);
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Starts a stub of the Clerk users API that returns the same user for every ID.
+   *
+   * @param delayMs Artificial latency added to every response, to model a slow upstream
+   * @return The running stub server
+   * @throws IOException If the stub cannot bind a port
+   */
+  private static HttpServer startClerkStub(long delayMs) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    byte[] body = CLERK_USER.getBytes(StandardCharsets.UTF_8);
+    server.createContext(
+        "/v1/users/",
+        exchange -> {
+          if (delayMs > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(delayMs));
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.setExecutor(Executors.newCachedThreadPool(daemon("clerk-stub")));
+    server.start();
+    return server;
+  }
+
+  /**
+   * Runs the configured mode and prints the report.
+   *
+   * @throws Exception If the trace cannot be read
+   */
+  private void run() throws Exception {
+    String mode = opts.getOrDefault("mode", "closed");
+    long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(opts.getOrDefault("warmup", "5")));
+    long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(opts.getOrDefault("duration", "30")));
+    String target =
+        opts.getOrDefault("path", "/generate") + "?" + opts.getOrDefault("query", DEFAULT_QUERY);
+
+    long start = System.nanoTime();
+    measureFrom = start + warmup;
+    measureTo = measureFrom + duration;
+
+    switch (mode) {
+      case "open":
+        runOpen(start, List.of(target));
+        break;
+      case "replay":
+        runReplay(start);
+        break;
+      default:
+        runClosed(start, target);
+    }
+    report(mode, (measureTo - measureFrom) / 1e9);
+  }
+
+  /**
+   * Closed-loop mode: each worker waits for its response before sending again.
+   *
+   * @param start Time the test started
+   * @param target Path and query to request
+   * @throws InterruptedException If interrupted while waiting for the workers
+   */
+  private void runClosed(long start, String target) throws InterruptedException {
+    int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "8"));
+    double rate = Double.parseDouble(opts.getOrDefault("rate", "0"));
+    // With a target rate, each worker has a fixed schedule to fall behind on
+    long interval = rate > 0 ? (long) (1e9 * concurrency / rate) : 0;
+
+    CountDownLatch done = new CountDownLatch(concurrency);
+    for (int w = 0; w < concurrency; w++) {
+      long offset = interval * w / concurrency;
+      Thread t =
+          new Thread(
+              () -> {
+                long intended = start + offset;
+                while (intended < measureTo) {
+                  if (interval > 0) parkUntil(intended);
+                  long sentAt = System.nanoTime();
+                  if (interval == 0) intended = sentAt;
+                  send(target, intended, sentAt);
+                  intended = interval > 0 ? intended + interval : System.nanoTime();
+                }
+                done.countDown();
+              },
+              "loadtest-worker-" + w);
+      t.setDaemon(true);
+      t.start();
+    }
+    done.await();
+  }
+
+  /**
+   * Open-loop mode: requests are scheduled at a fixed rate whether or not earlier ones have
+   * completed, the way independent users arrive.
+   *
+   * @param start Time the test started
+   * @param targets Paths and queries to cycle through
+   * @throws InterruptedException If interrupted while draining in-flight requests
+   */
+  private void runOpen(long start, List<String> targets) throws InterruptedException {
+    double rate = Double.parseDouble(opts.getOrDefault("rate", "20"));
+    boolean poisson = "poisson".equals(opts.getOrDefault("arrivals", "uniform"));
+    Random rng = new Random(Long.parseLong(opts.getOrDefault("seed", "1")));
+
+    AtomicLong inFlight = new AtomicLong();
+    double meanGap = 1e9 / rate;
+    double next = start;
+    for (long i = 0; next < measureTo; i++) {
+      long intended = (long) next;
+      parkUntil(intended);
+      dispatch(targets.get((int) (i % targets.size())), intended, inFlight);
+      next += poisson ? -Math.log(1 - rng.nextDouble()) * meanGap : meanGap;
+    }
+    drain(inFlight);
+  }
+
+  /**
+   * Replay mode: requests from a trace are sent at their recorded offsets. Each line is either a
+   * path and query, or a timestamp in milliseconds, a tab, then a path and query. Lines without
+   * timestamps are spread evenly at {@code rate}.
+   *
+   * @param start Time the test started
+   * @throws Exception If the trace cannot be read
+   */
+  private void runReplay(long start) throws Exception {
+    String trace = opts.get("trace");
+    if (trace == null) throw new IllegalArgumentException("replay mode needs trace=<file>");
+    double speed = Double.parseDouble(opts.getOrDefault("speed", "1"));
+    double rate = Double.parseDouble(opts.getOrDefault("rate", "20"));
+
+    List<Long> offsets = new ArrayList<>();
+    List<String> targets = new ArrayList<>();
+    Long first = null;
+    for (String line : Files.readAllLines(Paths.get(trace))) {
+      if (line.isBlank() || line.startsWith("#")) continue;
+      String[] parts = line.split("\t", 2);
+      long offsetNanos;
+      if (parts.length == 2) {
+        long ms = Long.parseLong(parts[0].trim());
+        if (first == null) first = ms;
+        offsetNanos = (long) (TimeUnit.MILLISECONDS.toNanos(ms - first) / speed);
+      } else {
+        offsetNanos = (long) (targets.size() * 1e9 / rate);
+      }
+      offsets.add(offsetNanos);
+      targets.add(parts[parts.length - 1].trim());
+    }
+
+    // The trace decides how long the run is; warmup still applies to its start
+    long last = offsets.isEmpty() ? 0 : offsets.get(offsets.size() - 1);
+    measureTo = start + last + 1;
+    measureFrom = Math.min(measureFrom, measureTo - 1);
+
+    AtomicLong inFlight = new AtomicLong();
+    for (int i = 0; i < targets.size(); i++) {
+      long intended = start + offsets.get(i);
+      parkUntil(intended);
+      dispatch(targets.get(i), intended, inFlight);
+    }
+    drain(inFlight);
+  }
+
+  /**
+   * Sends a request synchronously and records its latency.
+   *
+   * @param target Path and query to request
+   * @param intended Time the request was scheduled to be sent
+   * @param sentAt Time the request was actually sent
+   */
+  private void send(String target, long intended, long sentAt) {
+    sent.incrementAndGet();
+    try {
+      HttpResponse<Void> resp =
+          client.send(request(target), HttpResponse.BodyHandlers.discarding());
+      complete(resp.statusCode(), intended, sentAt);
+    } catch (Exception e) {
+      complete(-1, intended, sentAt);
+    }
+  }
+
+  /**
+   * Sends a request asynchronously and records its latency when it completes.
+   *
+   * @param target Path and query to request
+   * @param intended Time the request was scheduled to be sent
+   * @param inFlight Counter of outstanding requests
+   */
+  private void dispatch(String target, long intended, AtomicLong inFlight) {
+    sent.incrementAndGet();
+    inFlight.incrementAndGet();
+    long sentAt = System.nanoTime();
+    client
+        .sendAsync(request(target), HttpResponse.BodyHandlers.discarding())
+        .whenComplete(
+            (resp, err) -> {
+              complete(err == null ? resp.statusCode() : -1, intended, sentAt);
+              inFlight.decrementAndGet();
+            });
+  }
+
+  /**
+   * Records the outcome of one request.
+   *
+   * @param status HTTP status, or -1 if the request failed
+   * @param intended Time the request was scheduled to be sent
+   * @param sentAt Time the request was actually sent
+   */
+  private void complete(int status, long intended, long sentAt) {
+    long now = System.nanoTime();
+    if (intended < measureFrom || intended >= measureTo) return;
+    if (status < 0) failed.incrementAndGet();
+    statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+    corrected.record(now - intended);
+    raw.record(now - sentAt);
+  }
+
+  private HttpRequest request(String target) {
+    return HttpRequest.newBuilder(URI.create(base + target)).timeout(timeout).GET().build();
+  }
+
+  /**
+   * Waits for outstanding asynchronous requests, up to the request timeout.
+   *
+   * @param inFlight Counter of outstanding requests
+   * @throws InterruptedException If interrupted while waiting
+   */
+  private void drain(AtomicLong inFlight) throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (inFlight.get() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+  }
+
+  /**
+   * Prints throughput, status counts and latency percentiles.
+   *
+   * @param mode The mode that was run
+   * @param seconds Length of the measured window
+   */
+  private void report(String mode, double seconds) {
+    long completed = corrected.count();
+    System.out.println();
+    System.out.printf(
+        "mode=%s window=%.1fs sent=%d recorded=%d failed=%d%n",
+        mode, seconds, sent.get(), completed, failed.get());
+    System.out.println("status counts: " + new TreeMap<>(statuses));
+    System.out.printf("throughput: %.1f req/s%n", completed / seconds);
+    System.out.println("latency (ms)            p50      p95      p99     p999      max");
+    System.out.println("  from intended send " + corrected.summary());
+    System.out.println("  from actual send   " + raw.summary());
+  }
+
+  /** Parks the calling thread until the given System.nanoTime() value */
+  private static void parkUntil(long nanoTime) {
+    long wait;
+    while ((wait = nanoTime - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+  }
+
+  private static ThreadFactory daemon(String name) {
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  /** Thread-safe latency recorder that keeps every sample for exact percentiles */
+  private static final class Recorder {
+    private long[] samples = new long[1 << 12];
+    private int size;
+
+    synchronized void record(long nanos) {
+      if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+      samples[size++] = nanos;
+    }
+
+    synchronized long count() {
+      return size;
+    }
+
+    synchronized String summary() {
+      if (size == 0) return "(no samples)";
+      long[] sorted = Arrays.copyOf(samples, size);
+      Arrays.sort(sorted);
+      return String.format(
+          "%8.1f %8.1f %8.1f %8.1f %8.1f",
+          ms(sorted, 0.50),
+          ms(sorted, 0.95),
+          ms(sorted, 0.99),
+          ms(sorted, 0.999),
+          sorted[size - 1] / 1e6);
+    }
+
+    private static double ms(long[] sorted, double q) {
+      int idx = (int) Math.ceil(q * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+  }
+}
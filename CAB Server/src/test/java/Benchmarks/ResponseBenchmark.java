@@ -0,0 +1,103 @@
+package Benchmarks;
+
+import Handlers.CborResponse;
+import Handlers.CompactResponse;
+import Handlers.FullResponse;
+import Handlers.ScheduleHandler;
+import Scheduler.ScheduleGenerator;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for turning a generation result into the JSON or CBOR body that /generate returns.
+ * The result is produced once per trial so only response building and serialisation
+ * are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseBenchmark {
+
+  /** Same adapter configuration as ScheduleHandler uses */
+  private static final JsonAdapter<Map<String, Object>> JSON =
+      new Moshi.Builder()
+          .build()
+          .adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+
+  /** Constraint profile: classes/writ/days/mwf/tth */
+  @Param({"3/false/MTWThF/2/1", "5/false/MTWThF/3/2"})
+  String profile;
+
+  /** Generation result to serialise */
+  private ScheduleGenerator.Result result;
+
+  @Setup
+  public void setup() throws Exception {
+    ScheduleGenerator gen = BenchmarkData.generator(profile, Set.of());
+    gen.loadCourseData(BenchmarkData.TERM);
+    gen = BenchmarkData.generator(profile, BenchmarkData.allTimeBlocks(gen.allCourses));
+    gen.loadCourseData(BenchmarkData.TERM);
+    gen.filterCourses(BenchmarkData.TERM);
+    result = gen.generateSchedules(BenchmarkData.TERM);
+
+    // Report body sizes once, as JMH only measures time
+    Buffer cbor = new Buffer();
+    CborResponse.write(result, cbor.outputStream());
+    System.out.printf(
+        "%nResponse bytes for %s: map+Moshi %d, compact %d, CBOR %d%n",
+        profile,
+        JSON.toJson(ScheduleHandler.buildResponse(result)).getBytes(StandardCharsets.UTF_8).length,
+        CompactResponse.toJson(result).getBytes(StandardCharsets.UTF_8).length,
+        cbor.size());
+  }
+
+  @Benchmark
+  public Map<String, Object> buildResponse() {
+    return ScheduleHandler.buildResponse(result);
+  }
+
+  @Benchmark
+  public String buildResponseToJson() {
+    return JSON.toJson(ScheduleHandler.buildResponse(result));
+  }
+
+  @Benchmark
+  public String compactResponseToJson() throws Exception {
+    return CompactResponse.toJson(result);
+  }
+
+  @Benchmark
+  public void fullResponseStreamed(Blackhole bh) throws Exception {
+    Buffer out = new Buffer();
+    FullResponse.write(result, out.outputStream());
+    bh.consume(out.size());
+  }
+
+  @Benchmark
+  public void cborResponse(Blackhole bh) throws Exception {
+    Buffer out = new Buffer();
+    CborResponse.write(result, out.outputStream());
+    bh.consume(out.size());
+  }
+}
@@ -0,0 +1,107 @@
+package Benchmarks;
+
+import Scheduler.ScheduleGenerator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the schedule generation pipeline: catalog loading, course filtering
+ * and the recursive schedule search, run against the real course catalog.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchedulerBenchmark {
+
+  /** Catalog state shared by all benchmarks in a trial */
+  @State(Scope.Benchmark)
+  public static class Catalog {
+    /** Courses for the benchmark term */
+    List<Map<String, Object>> allCourses;
+    /** Course code lookup for the benchmark term */
+    Map<String, Map<String, Object>> courseMap;
+    /** Every time block that appears in the catalog */
+    Set<String> times;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+      ScheduleGenerator gen = BenchmarkData.generator("4/false/MTWThF/2/2", Set.of());
+      gen.loadCourseData(BenchmarkData.TERM);
+      this.allCourses = gen.allCourses;
+      this.courseMap = gen.courseMap;
+      this.times = BenchmarkData.allTimeBlocks(allCourses);
+    }
+
+    /**
+     * Creates a generator for a profile that reuses the already loaded catalog.
+     *
+     * @param profile The encoded constraint profile
+     * @return A generator ready for filtering
+     */
+    ScheduleGenerator generator(String profile) {
+      ScheduleGenerator gen = BenchmarkData.generator(profile, times);
+      gen.allCourses = allCourses;
+      gen.courseMap = courseMap;
+      return gen;
+    }
+  }
+
+  /** A generator that has been loaded and filtered, ready to search */
+  @State(Scope.Thread)
+  public static class Filtered {
+    /** Constraint profile: classes/writ/days/mwf/tth */
+    @Param({
+      "3/false/MTWThF/2/1",
+      "4/false/MTWThF/2/2",
+      "4/true/MTWThF/2/2",
+      "5/false/MWF/5/0",
+      "5/true/TTh/0/5",
+      "6/false/MTWThF/3/3"
+    })
+    String profile;
+
+    /** Generator prepared for the next invocation */
+    ScheduleGenerator gen;
+
+    @Setup(Level.Invocation)
+    public void prepare(Catalog catalog) throws Exception {
+      gen = catalog.generator(profile);
+      gen.filterCourses(BenchmarkData.TERM);
+    }
+  }
+
+  @Benchmark
+  public ScheduleGenerator loadCourseData() throws Exception {
+    ScheduleGenerator gen = BenchmarkData.generator("4/false/MTWThF/2/2", Set.of());
+    gen.loadCourseData(BenchmarkData.TERM);
+    return gen;
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> filterCourses(Catalog catalog) throws Exception {
+    ScheduleGenerator gen = catalog.generator("4/true/MTWThF/2/2");
+    gen.filterCourses(BenchmarkData.TERM);
+    return gen.getFilteredCourses();
+  }
+
+  @Benchmark
+  public ScheduleGenerator.Result generateSchedules(Filtered filtered) throws Exception {
+    return filtered.gen.generateSchedules(BenchmarkData.TERM);
+  }
+}
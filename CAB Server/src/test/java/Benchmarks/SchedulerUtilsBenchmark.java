@@ -0,0 +1,61 @@
+package Benchmarks;
+
+import Scheduler.SchedulerUtils;
+import Utilities.CourseCatalog;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the per-pair checks the search runs in its inner loop: time conflict
+ * detection and prerequisite evaluation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerUtilsBenchmark {
+
+  /** Two TTh courses that meet at the same time */
+  private Map<String, Object> conflictA;
+  private Map<String, Object> conflictB;
+  /** An MWF course that does not overlap with the TTh courses */
+  private Map<String, Object> disjoint;
+  /** A course with three AND-ed prerequisite groups */
+  private Map<String, Object> prereqCourse;
+
+  @Setup
+  public void setup() {
+    conflictA = CourseCatalog.getCourse("CSCI 0320");
+    conflictB = CourseCatalog.getCourse("MATH 0180");
+    disjoint = CourseCatalog.getCourse("MATH 0520");
+    prereqCourse = CourseCatalog.getCourse("CSCI 1420");
+  }
+
+  @Benchmark
+  public boolean hasTimeConflict_conflicting() {
+    return SchedulerUtils.hasTimeConflict(conflictA, conflictB);
+  }
+
+  @Benchmark
+  public boolean hasTimeConflict_disjoint() {
+    return SchedulerUtils.hasTimeConflict(conflictA, disjoint);
+  }
+
+  @Benchmark
+  public boolean arePrerequisitesSatisfied() {
+    return SchedulerUtils.arePrerequisitesSatisfied(prereqCourse, BenchmarkData.TAKEN);
+  }
+}
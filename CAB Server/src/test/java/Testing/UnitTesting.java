@@ -4,12 +4,47 @@ import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import Handlers.CborResponse;
+import Handlers.CompactResponse;
+import Handlers.FullResponse;
+import Handlers.GenerateRequest;
+import Handlers.JobStore;
+import Handlers.JobSubmitHandler;
+import Handlers.PlanningSession;
+import Handlers.ScheduleErrorChecker;
+import Handlers.ScheduleHandler;
+import Scheduler.ConflictIndex;
+import Scheduler.DegreePlanner;
 import Scheduler.ScheduleGenerator;
 import Scheduler.SchedulerUtils;
+import Scheduler.SearchBudget;
+import Scheduler.SearchExecutor;
+import Utilities.ClerkAPI;
+import Utilities.CourseCatalog;
+import Utilities.Json;
+import Utilities.PrerequisiteGraph;
+import Utilities.SectionBundles;
+import Utilities.SyntheticCatalog;
+import Utilities.TermCatalog;
+import Utilities.WeeklyMask;
+import com.squareup.moshi.JsonDataException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import okio.Buffer;
 import org.junit.Test;
 
 public class UnitTesting {
@@ -108,6 +143,1085 @@ public class UnitTesting {
     assertEquals(9 * 60 + 50, mts.get(0).endTime);
   }
 
+  @Test
+  public void syntheticCatalog_isDeterministicAndConsistent() {
+    List<Map<String, Object>> a = new SyntheticCatalog(0.1, 2, 2, 2, 0.13, 0.24, 42).generate();
+    List<Map<String, Object>> b = new SyntheticCatalog(0.1, 2, 2, 2, 0.13, 0.24, 42).generate();
+    assertEquals(a, b);
+
+    for (Map<String, Object> c : a) {
+      String meets = (String) c.get("meets");
+      if ("TBA".equals(meets)) continue;
+      Set<Integer> days = new HashSet<>();
+      for (SchedulerUtils.MeetingTime mt : SchedulerUtils.parseMeetingTimes(c)) {
+        days.addAll(mt.days);
+      }
+      assertEquals(SchedulerUtils.parseMeetingDays(meets).size(), days.size());
+    }
+  }
+
+  @Test
+  public void generateSchedules_stopsWhenBudgetRunsOut() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(20);
+    Map<String, Map<String, Object>> byCode = new HashMap<>();
+    for (Map<String, Object> c : courses) byCode.put((String) c.get("code"), c);
+
+    ScheduleGenerator full = generator(false, Set.of());
+    full.allCourses = courses;
+    full.courseMap = byCode;
+    full.filterCourses("202420");
+    ScheduleGenerator.Result all = full.generateSchedules("202420");
+    assertFalse(all.truncated);
+    assertEquals(20 * 19 * 18 / 6, all.schedules.size());
+
+    ScheduleGenerator cut = generator(false, Set.of());
+    cut.allCourses = courses;
+    cut.courseMap = byCode;
+    cut.setBudget(SearchBudget.of(10_000, System.nanoTime(), () -> true));
+    cut.filterCourses("202420");
+    ScheduleGenerator.Result partial = cut.generateSchedules("202420");
+    assertTrue(partial.truncated);
+    assertTrue(partial.schedules.size() < all.schedules.size());
+  }
+
+  @Test
+  public void diverseSampling_isReproducibleAndVaried() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(20);
+    List<List<String>> first = null;
+    for (int run = 0; run < 2; run++) {
+      ScheduleGenerator gen = generator(false, Set.of());
+      gen.allCourses = courses;
+      gen.setSampling(42, 5);
+      gen.filterCourses("202420");
+      List<List<String>> codes = new ArrayList<>();
+      for (ScheduleGenerator.Schedule s : gen.generateSchedules("202420").schedules) {
+        codes.add(s.courses.stream().map(c -> (String) c.get("code")).collect(Collectors.toList()));
+      }
+      if (first == null) first = codes;
+      else assertEquals(first, codes);
+    }
+    assertEquals(5, first.size());
+
+    ScheduleGenerator all = generator(false, Set.of());
+    all.allCourses = courses;
+    all.setSampling(42, 0);
+    all.filterCourses("202420");
+    List<List<String>> best = new ArrayList<>();
+    for (ScheduleGenerator.Schedule s : all.generateSchedules("202420").schedules.subList(0, 5)) {
+      best.add(s.courses.stream().map(c -> (String) c.get("code")).collect(Collectors.toList()));
+    }
+    assertTrue(sharedCourses(first) < sharedCourses(best));
+  }
+
+  @Test
+  public void incrementalScore_matchesFullRescan() throws Exception {
+    List<Map<String, Object>> courses =
+        new SyntheticCatalog(0.1, 2, 2, 2, 0.13, 0.24, 7).generate();
+    List<String> required = new ArrayList<>();
+    for (int i = 0; i < courses.size(); i += 10) required.add((String) courses.get(i).get("code"));
+    List<String> depts = List.of(((String) courses.get(1).get("code")).split(" ")[0]);
+    Map<String, Boolean> days = new HashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
+
+    ScheduleGenerator gen =
+        new ScheduleGenerator(
+            4,
+            List.of(),
+            required,
+            List.of(),
+            Set.of(),
+            days,
+            new ScheduleGenerator.DayBalance(2, 2),
+            1,
+            depts,
+            true);
+    gen.allCourses = courses;
+    gen.filterCourses("202420");
+    List<ScheduleGenerator.Schedule> schedules = gen.generateSchedules("202420").schedules;
+    assertFalse(schedules.isEmpty());
+
+    for (ScheduleGenerator.Schedule s : schedules) {
+      ScheduleGenerator.DayBalance balance = s.getDayBalance();
+      double expected =
+          100
+              - (Math.abs(balance.mwfCount - 2) + Math.abs(balance.tthCount - 2)) * 10
+              - Math.abs(s.countRequiredCourses(required) - 1) * 15
+              - (s.hasWRITCourse() ? 0 : 10);
+      for (Map<String, Object> c : s.courses) {
+        String code = (String) c.get("code");
+        if (!required.contains(code) && !depts.contains(code.split(" ")[0])) expected -= 5;
+      }
+      assertEquals(Math.max(0, expected), s.score, 0.0);
+    }
+  }
+
+  @Test
+  public void electiveClasses_expandToEveryValidSchedule() throws Exception {
+    // Several courses share each meeting pattern; two of them are WRIT
+    List<Map<String, Object>> courses = new ArrayList<>();
+    int[][] patterns = {{0, 800, 3}, {1, 900, 3}, {2, 1000, 2}, {3, 1100, 2}, {4, 800, 2}};
+    for (int[] pattern : patterns) {
+      for (int i = 0; i < pattern[2]; i++) {
+        Map<String, Object> c = gridCourses(5).get(pattern[0]);
+        c.put("code", "TEST " + (courses.size() + 2000));
+        c.put("meets", List.of("M", "T", "W", "Th", "F").get(pattern[0]) + " " + pattern[1]);
+        c.put(
+            "meetingTimes",
+            String.format(
+                "[{\"meet_day\":\"%d\",\"start_time\":\"%d\",\"end_time\":\"%d\"}]",
+                pattern[0], pattern[1], pattern[1] + 50));
+        c.put("writ", courses.size() == 0 || courses.size() == 10);
+        courses.add(c);
+      }
+    }
+
+    ScheduleGenerator gen = generator(true, Set.of());
+    gen.allCourses = courses;
+    gen.filterCourses("202420");
+    Set<Set<String>> found = new HashSet<>();
+    for (ScheduleGenerator.Schedule s : gen.generateSchedules("202420").schedules) {
+      Set<String> codes = new HashSet<>();
+      for (Map<String, Object> c : s.courses) codes.add((String) c.get("code"));
+      assertTrue(found.add(codes));
+    }
+
+    Set<Set<String>> expected = new HashSet<>();
+    for (int i = 0; i < courses.size(); i++) {
+      for (int j = i + 1; j < courses.size(); j++) {
+        for (int k = j + 1; k < courses.size(); k++) {
+          List<Map<String, Object>> trio = List.of(courses.get(i), courses.get(j), courses.get(k));
+          if (new ScheduleGenerator.Schedule(trio).hasTimeConflicts()) continue;
+          if (trio.stream().noneMatch(c -> Boolean.TRUE.equals(c.get("writ")))) continue;
+          Set<String> codes = new HashSet<>();
+          for (Map<String, Object> c : trio) codes.add((String) c.get("code"));
+          expected.add(codes);
+        }
+      }
+    }
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void propagatingEngine_findsExactlyTheSchedulesMeetingTargets() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(20);
+
+    ScheduleGenerator all = generator(false, Set.of());
+    all.allCourses = courses;
+    all.filterCourses("202420");
+    Set<Set<Object>> expected = new HashSet<>();
+    for (ScheduleGenerator.Schedule s : all.generateSchedules("202420").schedules) {
+      ScheduleGenerator.DayBalance balance = s.getDayBalance();
+      if (balance.mwfCount == 2 && balance.tthCount == 1) {
+        Set<Object> codes = new HashSet<>();
+        for (Map<String, Object> c : s.courses) codes.add(c.get("code"));
+        expected.add(codes);
+      }
+    }
+
+    ScheduleGenerator exact = generator(false, Set.of());
+    exact.allCourses = courses;
+    exact.setEngine(ScheduleGenerator.Engine.PROPAGATE);
+    exact.filterCourses("202420");
+    Set<Set<Object>> found = new HashSet<>();
+    for (ScheduleGenerator.Schedule s : exact.generateSchedules("202420").schedules) {
+      Set<Object> codes = new HashSet<>();
+      for (Map<String, Object> c : s.courses) codes.add(c.get("code"));
+      found.add(codes);
+    }
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, found);
+
+    // Every course counts towards one side, so three courses can't make 3 MWF and 1 TTh
+    Map<String, Boolean> days = new HashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
+    ScheduleGenerator tight =
+        new ScheduleGenerator(
+            3,
+            List.of(),
+            List.of(),
+            List.of(),
+            Set.of(),
+            days,
+            new ScheduleGenerator.DayBalance(3, 1),
+            0,
+            List.of(),
+            false);
+    tight.allCourses = courses;
+    tight.setEngine(ScheduleGenerator.Engine.PROPAGATE);
+    tight.filterCourses("202420");
+    ScheduleGenerator.Result none = tight.generateSchedules("202420");
+    assertTrue(none.schedules.isEmpty());
+    assertFalse(none.errors.isEmpty());
+  }
+
+  @Test
+  public void enumeratingEngine_keepsSurplusRequiredCoursesAsElectives() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(8);
+    List<String> required = List.of("TEST 1000", "TEST 1001", "TEST 1002");
+    Map<String, Boolean> days = new HashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
+
+    for (ScheduleGenerator.Engine engine : ScheduleGenerator.Engine.values()) {
+      for (int reqThisSem : List.of(0, 1)) {
+        ScheduleGenerator gen =
+            new ScheduleGenerator(
+                3,
+                List.of(),
+                required,
+                List.of(),
+                Set.of(),
+                days,
+                new ScheduleGenerator.DayBalance(2, 1),
+                reqThisSem,
+                List.of(),
+                false);
+        gen.allCourses = courses;
+        gen.setEngine(engine);
+        gen.filterCourses("202420");
+        Set<Set<Object>> found = new HashSet<>();
+        int mostRequired = 0;
+        for (ScheduleGenerator.Schedule s : gen.generateSchedules("202420").schedules) {
+          Set<Object> codes = new HashSet<>();
+          for (Map<String, Object> c : s.courses) codes.add(c.get("code"));
+          found.add(codes);
+          mostRequired = Math.max(mostRequired, s.countRequiredCourses(required));
+        }
+        if (engine == ScheduleGenerator.Engine.ENUMERATE) {
+          // Every set of three courses is reached, however many required courses it holds
+          assertEquals(56, found.size());
+          assertEquals(3, mostRequired);
+        } else {
+          assertEquals(reqThisSem, mostRequired);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void feasibilityCheck_namesTheConstraintsThatConflict() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(20);
+    Map<String, Object> writ = makeCourse("WRIT 0001", "M 800", true);
+    writ.put("meetingTimes", courses.get(0).get("meetingTimes"));
+    courses.add(writ);
+    Map<String, Map<String, Object>> byCode = new HashMap<>();
+    for (Map<String, Object> c : courses) byCode.put((String) c.get("code"), c);
+    Map<String, Boolean> days = new HashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
+
+    // The only WRIT course meets with the needed course; the class count plays no part
+    ScheduleGenerator clash =
+        new ScheduleGenerator(
+            3,
+            List.of(),
+            List.of(),
+            List.of("TEST 1000"),
+            Set.of(),
+            days,
+            new ScheduleGenerator.DayBalance(2, 1),
+            0,
+            List.of(),
+            true);
+    clash.allCourses = courses;
+    clash.courseMap = byCode;
+    clash.filterCourses("202420");
+    List<String> errors = clash.checkFeasibility();
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("needed course TEST 1000, a WRIT course"));
+    assertFalse(errors.get(0).contains("3 classes"));
+
+    // Without the WRIT requirement the same request is fine
+    ScheduleGenerator fine = generator(false, Set.of());
+    fine.allCourses = courses;
+    fine.courseMap = byCode;
+    fine.filterCourses("202420");
+    assertTrue(fine.checkFeasibility().isEmpty());
+    assertFalse(fine.generateSchedules("202420").schedules.isEmpty());
+
+    // Courses that all meet at once fit one to a schedule
+    List<Map<String, Object>> sameHour = new ArrayList<>();
+    for (int i = 0; i < 5; i++) sameHour.add(gridCourses(1).get(0));
+    for (int i = 0; i < 5; i++) sameHour.get(i).put("code", "SAME " + i);
+    ScheduleGenerator crowded = generator(false, Set.of());
+    crowded.allCourses = sameHour;
+    crowded.filterCourses("202420");
+    errors = crowded.checkFeasibility();
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("This can't be met"));
+    assertTrue(errors.get(0).contains("3 classes"));
+    assertTrue(crowded.generateSchedules("202420").schedules.isEmpty());
+  }
+
+  @Test
+  public void sectionBundles_searchTakesOneBundlePerCourse() throws Exception {
+    // A lecture with two conferences; the first meets with TEST 1002 on Wednesday at 8
+    List<Map<String, Object>> sections = gridCourses(5);
+    sections.add(section("LAB 0100", "100", "S01", "101,102", 1, 1300));
+    sections.add(section("LAB 0100", "101", "C01", "", 2, 800));
+    sections.add(section("LAB 0100", "102", "C02", "", 2, 1300));
+    List<Map<String, Object>> courses = SectionBundles.build(sections);
+    assertEquals(7, courses.size());
+    assertTrue(courses.get(0) == sections.get(0));
+    assertEquals("S01 C01", courses.get(5).get("section"));
+    assertEquals("T 1300; W 800", courses.get(5).get("meets"));
+    String fragment = new String(TermCatalog.fragment(courses.get(6)));
+    assertTrue(fragment.contains("\"section\":\"S01 C02\""));
+
+    // Every valid three-course schedule, by brute force
+    Set<Set<String>> expected = new HashSet<>();
+    for (int i = 0; i < 7; i++) {
+      for (int j = i + 1; j < 7; j++) {
+        for (int k = j + 1; k < 7; k++) {
+          List<Map<String, Object>> pick = List.of(courses.get(i), courses.get(j), courses.get(k));
+          Set<Object> codes = new HashSet<>();
+          for (Map<String, Object> c : pick) codes.add(c.get("code"));
+          if (codes.size() == 3 && !new ScheduleGenerator.Schedule(pick).hasTimeConflicts()) {
+            expected.add(pick.stream().map(SectionBundles::id).collect(Collectors.toSet()));
+          }
+        }
+      }
+    }
+
+    ScheduleGenerator gen = generator(false, Set.of());
+    gen.allCourses = courses;
+    gen.filterCourses("202420");
+    Set<Set<String>> found = new HashSet<>();
+    for (ScheduleGenerator.Schedule s : gen.generateSchedules("202420").schedules) {
+      found.add(s.courses.stream().map(SectionBundles::id).collect(Collectors.toSet()));
+    }
+    assertEquals(expected, found);
+
+    // Needed alongside TEST 1002, the lecture can only be taken with its second conference
+    Map<String, Boolean> days = new HashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
+    Map<String, Map<String, Object>> byCode = new HashMap<>();
+    for (Map<String, Object> c : courses) byCode.putIfAbsent((String) c.get("code"), c);
+    ScheduleGenerator needed =
+        new ScheduleGenerator(
+            3,
+            List.of(),
+            List.of(),
+            List.of("LAB 0100", "TEST 1002"),
+            Set.of(),
+            days,
+            new ScheduleGenerator.DayBalance(2, 1),
+            0,
+            List.of(),
+            false);
+    needed.allCourses = courses;
+    needed.courseMap = byCode;
+    needed.filterCourses("202420");
+    assertTrue(needed.checkFeasibility().isEmpty());
+    ScheduleGenerator.Result result = needed.generateSchedules("202420");
+    assertEquals(4, result.schedules.size());
+    for (ScheduleGenerator.Schedule s : result.schedules) {
+      assertTrue(s.courses.stream().map(SectionBundles::id).anyMatch("LAB 0100 S01 C02"::equals));
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void compactResponse_decodesToFullResponse() throws Exception {
+    ScheduleGenerator.Result result = searchAll(gridCourses(8));
+
+    Map<String, Object> full =
+        Json.MAP.fromJson(Json.MAP.toJson(ScheduleHandler.buildResponse(result)));
+    Map<String, Object> compact = Json.MAP.fromJson(CompactResponse.toJson(result));
+
+    List<Object> dictionary = (List<Object>) compact.get("courses");
+    assertEquals(8, dictionary.size());
+    List<Map<String, Object>> decoded = new ArrayList<>();
+    for (Object o : (List<Object>) compact.get("schedules")) {
+      Map<String, Object> schedule = (Map<String, Object>) o;
+      List<Object> scheduleCourses = new ArrayList<>();
+      for (Object i : (List<Object>) schedule.get("courses")) {
+        scheduleCourses.add(dictionary.get(((Double) i).intValue()));
+      }
+      decoded.add(Map.of("score", schedule.get("score"), "courses", scheduleCourses));
+    }
+    assertEquals(full.get("schedules"), decoded);
+    assertEquals(full.get("schedulesCount"), compact.get("schedulesCount"));
+  }
+
+  @Test
+  public void fullResponse_matchesMapResponse() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(8);
+    courses.get(0).put("title", "Quotes \" and \u00e9");
+    ScheduleGenerator.Result result = searchAll(courses);
+
+    Map<String, Object> expected =
+        Json.MAP.fromJson(Json.MAP.toJson(ScheduleHandler.buildResponse(result)));
+    Map<String, Object> streamed = Json.MAP.fromJson(FullResponse.toJson(result));
+    assertEquals(expected, streamed);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void cborResponse_matchesCompactResponse() throws Exception {
+    List<Map<String, Object>> courses = gridCourses(8);
+    String title = "Unicode \u00e9\u4e2d\ud83d\ude00 and a title longer than twenty-three bytes";
+    courses.get(0).put("title", title);
+    ScheduleGenerator.Result result = searchAll(courses);
+
+    Map<String, Object> compact = Json.MAP.fromJson(CompactResponse.toJson(result));
+    Buffer buffer = new Buffer();
+    CborResponse.write(result, buffer.outputStream());
+    Map<String, Object> cbor = (Map<String, Object>) decodeCbor(buffer);
+    assertTrue(buffer.exhausted());
+
+    assertEquals(true, cbor.get("success"));
+    assertEquals(((Double) compact.get("schedulesCount")).longValue(), cbor.get("schedulesCount"));
+    assertEquals(compact.get("courses"), cbor.get("courses"));
+    List<Object> schedules = (List<Object>) cbor.get("schedules");
+    List<Object> expected = (List<Object>) compact.get("schedules");
+    assertEquals(expected.size(), schedules.size());
+    for (int i = 0; i < schedules.size(); i++) {
+      Map<String, Object> e = (Map<String, Object>) expected.get(i);
+      List<Object> packed = (List<Object>) schedules.get(i);
+      assertEquals((Double) e.get("score"), (Float) packed.get(0), 0.0);
+      List<Long> indices = new ArrayList<>();
+      for (Object idx : (List<Object>) e.get("courses")) indices.add(((Double) idx).longValue());
+      assertEquals(indices, packed.get(1));
+    }
+  }
+
+  @Test
+  public void degreePlanner_findsTheShortestPlanInPrerequisiteOrder() {
+    java.util.Random rnd = new java.util.Random(11);
+    for (int trial = 0; trial < 40; trial++) {
+      int n = 6 + rnd.nextInt(5);
+      int perTerm = 1 + rnd.nextInt(3);
+      List<String> codes = new ArrayList<>();
+      Map<String, Map<String, Object>> courseMap = new HashMap<>();
+      for (int i = 0; i < n; i++) {
+        // Prerequisites point only to earlier courses, or to a course already taken
+        List<List<String>> groups = new ArrayList<>();
+        for (int g = 0; g < 2 && i > 0; g++) {
+          if (rnd.nextInt(3) == 0) continue;
+          List<String> orSet = new ArrayList<>(List.of("C " + rnd.nextInt(i)));
+          if (rnd.nextBoolean()) orSet.add(rnd.nextBoolean() ? "TAKEN 1" : "C " + rnd.nextInt(i));
+          groups.add(orSet);
+        }
+        Map<String, Object> c = makeCourse("C " + i, "M 9-9:50a", false);
+        c.put("prereqGroups", groups);
+        courseMap.put("C " + i, c);
+        codes.add("C " + i);
+      }
+
+      DegreePlanner.Plan plan =
+          new DegreePlanner(courseMap, List.of("TAKEN 1"), codes, perTerm)
+              .plan(DegreePlanner.MAX_COURSES, SearchBudget.UNLIMITED);
+      assertTrue(plan.errors.isEmpty());
+      assertTrue(plan.optimal);
+
+      // Every course once, within the load, after its prerequisites
+      List<String> done = new ArrayList<>(List.of("TAKEN 1"));
+      for (List<String> term : plan.terms) {
+        assertTrue(term.size() <= perTerm);
+        for (String code : term) {
+          assertTrue(SchedulerUtils.arePrerequisitesSatisfied(courseMap.get(code), done));
+        }
+        done.addAll(term);
+      }
+      assertEquals(n + 1, new HashSet<>(done).size());
+      assertEquals(shortestPlan(courseMap, codes, perTerm), plan.terms.size());
+    }
+
+    // A prerequisite that is neither taken nor planned rules out any plan
+    Map<String, Object> course = makeCourse("LATE 2000", "M 9-9:50a", false);
+    course.put("prereqGroups", List.of(List.of("EARLY 1000")));
+    DegreePlanner.Plan none =
+        new DegreePlanner(Map.of("LATE 2000", course), List.of(), List.of("LATE 2000"), 4)
+            .plan(8, SearchBudget.UNLIMITED);
+    assertEquals(
+        List.of("Remaining course LATE 2000 needs EARLY 1000, which is neither taken nor remaining"),
+        none.errors);
+  }
+
+  @Test
+  public void prerequisiteGraph_agreesWithPerCourseCheck() throws Exception {
+    PrerequisiteGraph graph = CourseCatalog.prerequisites();
+    List<Map<String, Object>> courses = TermCatalog.forTerm("202420").courses;
+    List<String> withPrereqs =
+        courses.stream()
+            .filter(c -> !((List<?>) c.getOrDefault("prereqGroups", List.of())).isEmpty())
+            .map(c -> (String) c.get("code"))
+            .distinct()
+            .collect(Collectors.toList());
+    java.util.Random rnd = new java.util.Random(3);
+    for (int trial = 0; trial < 20; trial++) {
+      // Taken sets drawn from the courses prerequisites name, so some groups are met
+      List<String> taken = new ArrayList<>();
+      for (String code : withPrereqs) {
+        @SuppressWarnings("unchecked")
+        List<List<String>> groups =
+            (List<List<String>>) CourseCatalog.getCourse(code).get("prereqGroups");
+        for (List<String> orSet : groups) {
+          if (rnd.nextInt(4) == 0) taken.add(orSet.get(rnd.nextInt(orSet.size())));
+        }
+      }
+      BitSet bits = graph.bits(taken);
+      BitSet eligible = graph.eligible(bits);
+      for (Map<String, Object> course : courses) {
+        String code = (String) course.get("code");
+        boolean expected =
+            !taken.contains(code) && SchedulerUtils.arePrerequisitesSatisfied(course, taken);
+        assertEquals(expected, eligible.get(graph.bits(List.of(code)).nextSetBit(0)));
+      }
+
+      // A course unlocks exactly the courses that become eligible once it is taken
+      int i = eligible.nextSetBit(rnd.nextInt(eligible.length()));
+      if (i < 0) continue;
+      List<String> after = new ArrayList<>(taken);
+      after.add(graph.code(i));
+      BitSet expected = graph.eligible(graph.bits(after));
+      expected.andNot(eligible);
+      assertEquals(expected, graph.unlockedBy(i, bits));
+    }
+  }
+
+  @Test
+  public void weeklyMask_keepsCoursesInsideTheFreeHours() {
+    // Nothing before 10, and 12-1 kept free every day
+    WeeklyMask allowed =
+        WeeklyMask.ALL.minus(WeeklyMask.parse("MTWThF 0-10, MTWThF 12-13"));
+    Map<String, String> courses = new LinkedHashMap<>();
+    courses.put("EARLY 0900", "[" + meeting(0, 900, 950) + "]");
+    courses.put("LATE 1000", "[" + meeting(1, 1000, 1050) + "]");
+    courses.put("LUNCH 1130", "[" + meeting(3, 1130, 1220) + "]");
+    courses.put("EDGE 1100", "[" + meeting(4, 1100, 1159) + "]");
+    courses.put("SPLIT 1300", "[" + meeting(0, 1300, 1420) + "," + meeting(2, 800, 850) + "]");
+    courses.put("ONLINE 0001", "");
+    List<Map<String, Object>> catalog = new ArrayList<>();
+    courses.forEach(
+        (code, times) -> {
+          Map<String, Object> c = makeCourse(code, "M 1", false);
+          c.put("meetingTimes", times);
+          catalog.add(c);
+        });
+
+    Map<String, Boolean> days = new HashMap<>();
+    for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
+    List<String> kept =
+        ScheduleGenerator.availableCourses(catalog, days, Set.of(), allowed).stream()
+            .map(c -> (String) c.get("code"))
+            .collect(Collectors.toList());
+    assertEquals(List.of("LATE 1000", "EDGE 1100", "ONLINE 0001"), kept);
+
+    // Free hours alone, and the same intervals written out day by day
+    assertEquals(
+        WeeklyMask.parse("MWF 10-12, TTh 10-12"), WeeklyMask.parse("MTWThF 10:00-12:00"));
+    assertTrue(
+        TermCatalog.meetingMask(catalog.get(1)).within(WeeklyMask.parse("T 10-11")));
+    assertFalse(
+        TermCatalog.meetingMask(catalog.get(1)).within(WeeklyMask.parse("T 10:05-11")));
+  }
+
+  @Test
+  public void generateRequest_bindsTheJsonBodyLikeTheQuery() throws Exception {
+    String body =
+        "{\"term\":\"202420\",\"classes\":3,\"taken\":[\"CSCI 0150\"],"
+            + "\"remaining\":[\"CSCI 0200\",\"CSCI 0200\",\"CSCI 0150\"],"
+            + "\"days\":[\"M\",\"W\"],\"mwf\":2,\"tth\":1,\"reqThisSem\":2,"
+            + "\"extra\":{\"ignored\":[1,2]}}";
+    List<String> errors = new ArrayList<>();
+    ScheduleErrorChecker.Params p =
+        ScheduleErrorChecker.fromRequest(
+            GenerateRequest.read(new Buffer().writeUtf8(body)), null, errors);
+    assertTrue(errors.isEmpty());
+    ScheduleErrorChecker.validatePreFilter(p, errors);
+
+    // The same constraints as query parameters give the same errors
+    Map<String, String> query =
+        Map.ofEntries(
+            Map.entry("term", "202420"),
+            Map.entry("classes", "3"),
+            Map.entry("taken", "CSCI 0150"),
+            Map.entry("remaining", "CSCI 0200,CSCI 0200,CSCI 0150"),
+            Map.entry("needed", ""),
+            Map.entry("times", ""),
+            Map.entry("depts", ""),
+            Map.entry("writ", "false"),
+            Map.entry("days", "M,W"),
+            Map.entry("mwf", "2"),
+            Map.entry("tth", "1"),
+            Map.entry("reqThisSem", "2"));
+    List<String> queryErrors = new ArrayList<>();
+    ScheduleErrorChecker.validatePreFilter(
+        ScheduleErrorChecker.parseParams(query::get, null, queryErrors), queryErrors);
+    assertEquals(queryErrors, errors);
+    assertEquals(
+        List.of(
+            "The following courses are listed in both 'taken' and 'needed' or 'remaining': "
+                + "CSCI 0150"),
+        errors);
+
+    errors.clear();
+    ScheduleErrorChecker.fromRequest(
+        GenerateRequest.read(new Buffer().writeUtf8("{\"term\":\"202420\",\"mwf\":2}")),
+        null,
+        errors);
+    assertEquals(List.of("The request body is missing classes, days, tth, reqThisSem"), errors);
+
+    try {
+      GenerateRequest.read(new Buffer().writeUtf8("{\"classes\":\"four\"}"));
+      assertTrue(false);
+    } catch (JsonDataException e) {
+      assertTrue(e.getMessage().contains("$.classes"));
+    }
+  }
+
+  @Test
+  public void jobId_followsTheParsedRequest() throws Exception {
+    String base =
+        "{\"term\":\"202420\",\"classes\":3,\"days\":[\"M\",\"W\"],\"mwf\":2,"
+            + "\"tth\":1,\"reqThisSem\":1,\"remaining\":";
+    String a = jobIdOf(base + "[\"CSCI 0200\"]}");
+    String b = jobIdOf(base + "[\"CSCI 0320\"]}");
+    assertFalse(a.equals(b));
+    assertEquals(a, jobIdOf(base + "[\"CSCI 0200\"]}"));
+
+    // The same request as query parameters maps to the same job, however its lists are spaced
+    Map<String, String> query = new HashMap<>();
+    query.put("term", "202420");
+    query.put("classes", "3");
+    query.put("taken", "");
+    query.put("remaining", "CSCI 0200");
+    query.put("needed", "");
+    query.put("times", "");
+    query.put("depts", "");
+    query.put("writ", "false");
+    query.put("days", "M, W ");
+    query.put("mwf", "2");
+    query.put("tth", "1");
+    query.put("reqThisSem", "1");
+    assertEquals(
+        a,
+        JobSubmitHandler.jobId(
+            "ip:test", ScheduleErrorChecker.parseParams(query::get, null, new ArrayList<>())));
+  }
+
+  @Test
+  public void conflictIndex_agreesWithPairwiseCheck() {
+    List<Map<String, Object>> courses = gridCourses(12);
+    courses.add(makeCourse("OVER 0001", "M 9-9:50a", false));
+    courses.add(makeCourse("OVER 0002", "M 10-10:50a", false));
+    Map<String, Object> blank = makeCourse("NONE 0001", "TBA", false);
+    blank.put("meetingTimes", "");
+    courses.add(blank);
+    ConflictIndex index = ConflictIndex.of(courses);
+
+    for (Map<String, Object> a : courses) {
+      for (Map<String, Object> b : courses) {
+        assertEquals(SchedulerUtils.hasTimeConflict(a, b), index.conflict(a, b));
+      }
+    }
+    // Courses outside the index fall back to parsing
+    Map<String, Object> outside = makeCourse("OUT 0001", "M 9-9:50a", false);
+    assertTrue(index.conflict(outside, courses.get(12)));
+  }
+
+  @Test
+  public void jobStore_reusesAJobByIdAndSearchesEachSubmissionOnce() throws Exception {
+    JobStore store = new JobStore(10, 60_000, System::currentTimeMillis);
+    String base =
+        "{\"term\":\"202420\",\"classes\":3,\"days\":[\"M\",\"W\"],\"mwf\":2,"
+            + "\"tth\":1,\"reqThisSem\":1,\"remaining\":";
+    String a = jobIdOf(base + "[\"CSCI 0200\"]}");
+    String b = jobIdOf(base + "[\"CSCI 0320\"]}");
+    AtomicInteger searches = new AtomicInteger();
+    Callable<String> search = () -> "{\"run\":" + searches.incrementAndGet() + "}";
+
+    JobStore.Job first = awaitFinished(store.getOrStart(a, "test:jobs", search));
+    assertEquals(JobStore.Status.DONE, first.status);
+    assertTrue(first == store.getOrStart(a, "test:jobs", search));
+    assertTrue(first == store.get(a));
+    assertEquals(1, searches.get());
+
+    // A different submission gets its own job and search
+    JobStore.Job second = awaitFinished(store.getOrStart(b, "test:jobs", search));
+    assertFalse(first == second);
+    assertEquals(2, searches.get());
+    assertEquals("{\"run\":1}", first.result);
+    assertEquals("{\"run\":2}", second.result);
+  }
+
+  @Test
+  public void jobStore_replacesAFailedJob() throws Exception {
+    JobStore store = new JobStore(10, 60_000, System::currentTimeMillis);
+    JobStore.Job failed =
+        awaitFinished(
+            store.getOrStart(
+                "job",
+                "test:jobs",
+                () -> {
+                  throw new IllegalStateException("boom");
+                }));
+    assertEquals(JobStore.Status.FAILED, failed.status);
+    assertTrue(failed.failure.contains("boom"));
+
+    JobStore.Job retried = awaitFinished(store.getOrStart("job", "test:jobs", () -> "{}"));
+    assertFalse(failed == retried);
+    assertEquals(JobStore.Status.DONE, retried.status);
+    assertTrue(retried == store.get("job"));
+  }
+
+  @Test
+  public void jobStore_evictsFinishedJobsAfterTheirTtl() throws Exception {
+    AtomicLong now = new AtomicLong(1_000);
+    JobStore store = new JobStore(10, 500, now::get);
+    awaitFinished(store.getOrStart("job", "test:jobs", () -> "{}"));
+
+    now.addAndGet(500);
+    assertTrue(store.get("job") != null);
+    now.addAndGet(1);
+    assertEquals(null, store.get("job"));
+  }
+
+  @Test
+  public void jobStore_evictsTheOldestFinishedJobsOverCapacity() throws Exception {
+    JobStore store = new JobStore(2, 60_000, System::currentTimeMillis);
+    awaitFinished(store.getOrStart("a", "test:jobs", () -> "{}"));
+    awaitFinished(store.getOrStart("b", "test:jobs", () -> "{}"));
+    CountDownLatch finish = new CountDownLatch(1);
+    JobStore.Job running =
+        store.getOrStart(
+            "running",
+            "test:jobs",
+            () -> {
+              finish.await();
+              return "{}";
+            });
+    assertEquals(null, store.get("a"));
+    assertTrue(store.get("b") != null);
+
+    // Unfinished jobs are never dropped, so the oldest finished one goes instead
+    finish.countDown();
+    awaitFinished(running);
+    awaitFinished(store.getOrStart("c", "test:jobs", () -> "{}"));
+    assertEquals(null, store.get("b"));
+    assertTrue(running == store.get("running"));
+    assertTrue(store.get("c") != null);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void planningSession_derivedEditsMatchAFreshSearch() throws Exception {
+    ScheduleErrorChecker.Params p = sessionParams();
+    List<SessionEdit> edits =
+        List.of(
+            s -> s.dropDay("F", () -> false),
+            s -> s.exclude("AFRI 1098", () -> false),
+            s -> s.lock("POLS 2415", () -> false),
+            s -> s.resize(3, 1, 2, () -> false));
+    for (SessionEdit edit : edits) {
+      // An exhaustive first search answers the edit without searching
+      PlanningSession derived = PlanningSession.start("a", "test", p, () -> false);
+      edit.apply(derived);
+      assertEquals(true, Json.MAP.fromJson(derived.toJson()).get("incremental"));
+
+      // A first search stopped at once leaves nothing to derive from, so the edit searches again
+      PlanningSession searched = PlanningSession.start("b", "test", p, () -> true);
+      Map<String, Object> first = Json.MAP.fromJson(searched.toJson());
+      assertEquals(true, ((Map<String, Object>) first.get("result")).get("truncated"));
+      edit.apply(searched);
+      assertEquals(false, Json.MAP.fromJson(searched.toJson()).get("incremental"));
+
+      List<String> expected = sessionSchedules(searched);
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, sessionSchedules(derived));
+    }
+  }
+
+  @Test
+  public void planningSession_keepsALockedThursdayCourseWhenTuesdayIsDropped() throws Exception {
+    // POLS 2415 meets Thursdays only, so it still fits without Tuesday
+    PlanningSession session = PlanningSession.start("a", "test", sessionParams(), () -> false);
+    session.lock("POLS 2415", () -> false);
+    session.dropDay("T", () -> false);
+    assertEquals(true, Json.MAP.fromJson(session.toJson()).get("incremental"));
+
+    PlanningSession fresh =
+        PlanningSession.start(
+            "b",
+            "test",
+            sessionParams(Map.of("needed", "POLS 2415", "days", "M,W,Th,F")),
+            () -> false);
+    List<String> expected = sessionSchedules(fresh);
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, sessionSchedules(session));
+  }
+
+  @Test
+  public void clerkUser_readsOnlyTheCourseCodes() throws Exception {
+    String user =
+        "{\"id\":\"user_1\",\"email_addresses\":[{\"email_address\":\"a@b.edu\"}],"
+            + "\"unsafe_metadata\":{\"theme\":\"dark\","
+            + "\"courses\":[{\"code\":\"CSCI 0150\",\"grade\":\"A\"},{\"title\":\"x\"},"
+            + "{\"code\":\"MATH 0100\"}],\"desiredCourses\":[{\"code\":\"CSCI 0200\"}]},"
+            + "\"public_metadata\":{\"courses\":[{\"code\":\"NOT 0001\"}]}}";
+    ClerkAPI.Metadata meta = ClerkAPI.readUser(new Buffer().writeUtf8(user));
+    assertEquals(List.of("CSCI 0150", "MATH 0100"), new ArrayList<>(meta.taken));
+    assertEquals(List.of("CSCI 0200"), new ArrayList<>(meta.desired));
+
+    // Missing lists stay null, so the request's own parameters apply
+    meta = ClerkAPI.readUser(new Buffer().writeUtf8("{\"unsafe_metadata\":{}}"));
+    assertTrue(meta.taken == null && meta.desired == null);
+    assertTrue(ClerkAPI.readUser(new Buffer().writeUtf8("{\"id\":\"user_2\"}")) == null);
+  }
+
+  @Test
+  public void runBatch_deliversEveryResultOnce() throws Exception {
+    List<Callable<Integer>> searches = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      int v = i;
+      searches.add(
+          () -> {
+            if (v == 7) throw new IllegalStateException("boom");
+            return v * v;
+          });
+    }
+    Map<Integer, Object> delivered = new HashMap<>();
+    SearchExecutor.runBatch(
+        "test:batch",
+        searches,
+        3,
+        (i, result, failure) -> assertEquals(null, delivered.put(i, failure != null ? failure : result)));
+
+    assertEquals(20, delivered.size());
+    for (int i = 0; i < 20; i++) {
+      if (i == 7) assertTrue(delivered.get(i) instanceof IllegalStateException);
+      else assertEquals(i * i, delivered.get(i));
+    }
+  }
+
+  @Test
+  public void runBatch_keepsItsAdmissionWhileStartedSearchesRun() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    List<Callable<Integer>> searches = new ArrayList<>();
+    searches.add(() -> 0);
+    searches.add(
+        () -> {
+          started.countDown();
+          while (finish.getCount() > 0) Thread.onSpinWait();
+          return 1;
+        });
+
+    // The client goes away while the second search is running
+    try {
+      SearchExecutor.runBatch(
+          "test:batchStopped",
+          searches,
+          2,
+          (i, result, failure) -> {
+            try {
+              started.await();
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+            throw new IOException("client went away");
+          });
+      throw new AssertionError("The batch did not fail");
+    } catch (IOException expected) {
+      // The consumer's failure ends the batch
+    }
+
+    // The running search still holds the batch's admission, so only one more is admitted
+    Future<Object> other = SearchExecutor.submit("test:batchStopped", () -> null);
+    assertEquals(429, rejection("test:batchStopped").status());
+
+    finish.countDown();
+    other.get();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (true) {
+      try {
+        assertEquals(2, SearchExecutor.run("test:batchStopped", () -> 2));
+        break;
+      } catch (SearchExecutor.RejectedException e) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  @Test
+  public void searchExecutor_holdsAClientsSlotUntilItsSearchStops() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    // Ignores interrupts, as a search between cancellation checks does
+    Callable<Object> blocking =
+        () -> {
+          started.countDown();
+          while (finish.getCount() > 0) Thread.onSpinWait();
+          return null;
+        };
+    List<Future<Object>> held = new ArrayList<>();
+    held.add(SearchExecutor.submit("test:limited", blocking));
+    started.await();
+    while (held.size() < SearchExecutor.PER_CLIENT_LIMIT) {
+      held.add(SearchExecutor.submit("test:limited", blocking));
+    }
+
+    // Over its limit the client gets a 429, while others are still admitted
+    assertEquals(429, rejection("test:limited").status());
+    SearchExecutor.submit("test:other", () -> null).cancel(false);
+
+    // Cancelling a running search does not free its slot while it keeps running
+    held.get(0).cancel(true);
+    assertEquals(429, rejection("test:limited").status());
+
+    finish.countDown();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (true) {
+      try {
+        assertEquals(2, SearchExecutor.run("test:limited", () -> 2));
+        break;
+      } catch (SearchExecutor.RejectedException e) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  @Test
+  public void searchExecutor_rejectsWithServiceUnavailableWhenThePoolIsFull() throws Exception {
+    CountDownLatch finish = new CountDownLatch(1);
+    SearchExecutor.RejectedException busy = null;
+    // Fill every worker and queue slot, one search per client so no client limit applies
+    for (int i = 0; busy == null; i++) {
+      assertTrue(i <= SearchExecutor.THREADS + SearchExecutor.QUEUE_CAPACITY);
+      try {
+        SearchExecutor.submit(
+            "test:pool:" + i,
+            () -> {
+              finish.await();
+              return null;
+            });
+      } catch (SearchExecutor.RejectedException e) {
+        busy = e;
+      }
+    }
+    finish.countDown();
+    assertTrue(busy.overloaded);
+    assertEquals(503, busy.status());
+  }
+
+  /** Submits a search for a client that is expected to be refused, and returns the refusal. */
+  private static SearchExecutor.RejectedException rejection(String client) {
+    try {
+      SearchExecutor.submit(client, () -> null).cancel(false);
+    } catch (SearchExecutor.RejectedException e) {
+      return e;
+    }
+    throw new AssertionError("Search for " + client + " was admitted");
+  }
+
+  /** Decodes the subset of CBOR that CborWriter produces. */
+  private static Object decodeCbor(Buffer in) throws Exception {
+    int initial = in.readByte() & 0xff;
+    int major = initial >> 5;
+    int info = initial & 0x1f;
+    if (initial == 0xf4 || initial == 0xf5) return initial == 0xf5;
+    if (initial == 0xf6) return null;
+    if (initial == 0xfa) return Float.intBitsToFloat(in.readInt());
+    if (initial == 0xfb) return Double.longBitsToDouble(in.readLong());
+    long arg =
+        info < 24
+            ? info
+            : info == 24
+                ? in.readByte() & 0xff
+                : info == 25
+                    ? in.readShort() & 0xffff
+                    : info == 26 ? in.readInt() & 0xffffffffL : in.readLong();
+    switch (major) {
+      case 0:
+        return arg;
+      case 1:
+        return -1 - arg;
+      case 3:
+        return in.readUtf8(arg);
+      case 4:
+        List<Object> list = new ArrayList<>();
+        for (long i = 0; i < arg; i++) list.add(decodeCbor(in));
+        return list;
+      case 5:
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (long i = 0; i < arg; i++) map.put((String) decodeCbor(in), decodeCbor(in));
+        return map;
+      default:
+        throw new IllegalArgumentException("Unexpected CBOR byte " + initial);
+    }
+  }
+
+  /** Finds the fewest terms to take every course by breadth-first search over all choices. */
+  private static int shortestPlan(
+      Map<String, Map<String, Object>> courseMap, List<String> codes, int perTerm) {
+    Set<Set<String>> level = Set.of(Set.of("TAKEN 1"));
+    for (int terms = 0; ; terms++) {
+      Set<Set<String>> next = new HashSet<>();
+      for (Set<String> done : level) {
+        if (done.containsAll(codes)) return terms;
+        List<String> open =
+            codes.stream()
+                .filter(c -> !done.contains(c))
+                .filter(
+                    c ->
+                        SchedulerUtils.arePrerequisitesSatisfied(
+                            courseMap.get(c), new ArrayList<>(done)))
+                .collect(Collectors.toList());
+        for (int mask = 1; mask < 1 << open.size(); mask++) {
+          if (Integer.bitCount(mask) > perTerm) continue;
+          Set<String> after = new HashSet<>(done);
+          for (int i = 0; i < open.size(); i++) {
+            if ((mask & 1 << i) != 0) after.add(open.get(i));
+          }
+          next.add(after);
+        }
+      }
+      level = next;
+    }
+  }
+
+  /** Counts the courses shared by each pair of schedules, summed over all pairs. */
+  private static int sharedCourses(List<List<String>> schedules) {
+    int shared = 0;
+    for (int i = 0; i < schedules.size(); i++) {
+      for (int j = i + 1; j < schedules.size(); j++) {
+        for (String code : schedules.get(i)) {
+          if (schedules.get(j).contains(code)) shared++;
+        }
+      }
+    }
+    return shared;
+  }
+
+  /** Builds n mutually compatible courses, each meeting once a week in its own hour. */
+  private static List<Map<String, Object>> gridCourses(int n) {
+    List<Map<String, Object>> courses = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      String day = List.of("M", "T", "W", "Th", "F").get(i % 5);
+      int start = 800 + (i / 5) * 100;
+      Map<String, Object> c = makeCourse("TEST " + (1000 + i), day + " " + start, false);
+      c.put(
+          "meetingTimes",
+          String.format(
+              "[{\"meet_day\":\"%d\",\"start_time\":\"%d\",\"end_time\":\"%d\"}]",
+              i % 5, start, start + 50));
+      courses.add(c);
+    }
+    return courses;
+  }
+
+  /** Searches the given courses with the default generator and no time restrictions. */
+  private static ScheduleGenerator.Result searchAll(List<Map<String, Object>> courses)
+      throws Exception {
+    ScheduleGenerator gen = generator(false, Set.of());
+    gen.allCourses = courses;
+    gen.filterCourses("202420");
+    return gen.generateSchedules("202420");
+  }
+
   private static ScheduleGenerator generator(boolean needWrit, Set<String> allowedTimes) {
     Map<String, Boolean> days = new HashMap<>();
     for (String d : List.of("M", "T", "W", "Th", "F")) days.put(d, true);
@@ -148,6 +1262,100 @@ public class UnitTesting {
             "202420"));
   }
 
+  private static Map<String, Object> section(
+      String code, String crn, String no, String linked, int day, int start) {
+    String meets = List.of("M", "T", "W", "Th", "F").get(day) + " " + start;
+    Map<String, Object> c = makeCourse(code, meets, false);
+    c.put("crn", crn);
+    c.put("no", no);
+    c.put("linked_crns", linked);
+    c.put(
+        "meetingTimes",
+        String.format(
+            "[{\"meet_day\":\"%d\",\"start_time\":\"%d\",\"end_time\":\"%d\"}]",
+            day, start, start + 50));
+    return c;
+  }
+
+  /** One edit to a planning session */
+  private interface SessionEdit {
+    void apply(PlanningSession session) throws Exception;
+  }
+
+  /** Constraints whose search over the real catalog finds a few thousand schedules, all of them. */
+  private static ScheduleErrorChecker.Params sessionParams() {
+    return sessionParams(Map.of());
+  }
+
+  /** The constraints of {@link #sessionParams()} with some query parameters replaced. */
+  private static ScheduleErrorChecker.Params sessionParams(Map<String, String> changes) {
+    Map<String, String> query = new HashMap<>();
+    query.put("term", "202420");
+    query.put("classes", "3");
+    query.put("taken", "");
+    query.put("remaining", "POLS 2415");
+    query.put("needed", "");
+    query.put("times", "10-10:50a,9-10:20a,9-11:30a");
+    query.put("depts", "");
+    query.put("writ", "false");
+    query.put("days", "M,T,W,Th,F");
+    query.put("mwf", "2");
+    query.put("tth", "1");
+    query.put("reqThisSem", "1");
+    query.putAll(changes);
+    List<String> errors = new ArrayList<>();
+    ScheduleErrorChecker.Params p = ScheduleErrorChecker.parseParams(query::get, null, errors);
+    assertTrue(errors.isEmpty());
+    return p;
+  }
+
+  /**
+   * Lists a session's latest schedules as "score=code;code;..." with the codes sorted, in score
+   * order and then by text, so results that differ only in the order of ties compare equal.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<String> sessionSchedules(PlanningSession session) throws Exception {
+    Map<String, Object> result =
+        (Map<String, Object>) Json.MAP.fromJson(session.toJson()).get("result");
+    assertEquals(List.of(), result.get("errors"));
+    List<Object[]> schedules = new ArrayList<>();
+    for (Object o : (List<Object>) result.get("schedules")) {
+      Map<String, Object> s = (Map<String, Object>) o;
+      String codes =
+          ((List<Object>) s.get("courses"))
+              .stream()
+                  .map(c -> (String) ((Map<String, Object>) c).get("code"))
+                  .sorted()
+                  .collect(Collectors.joining(";"));
+      schedules.add(new Object[] {s.get("score"), s.get("score") + "=" + codes});
+    }
+    schedules.sort(
+        Comparator.comparing((Object[] s) -> -(Double) s[0]).thenComparing(s -> (String) s[1]));
+    return schedules.stream().map(s -> (String) s[1]).collect(Collectors.toList());
+  }
+
+  /** Waits up to five seconds for a job to finish. */
+  private static JobStore.Job awaitFinished(JobStore.Job job) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!job.finished()) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(5);
+    }
+    return job;
+  }
+
+  private static String jobIdOf(String body) throws Exception {
+    return JobSubmitHandler.jobId(
+        "ip:test",
+        ScheduleErrorChecker.fromRequest(
+            GenerateRequest.read(new Buffer().writeUtf8(body)), null, new ArrayList<>()));
+  }
+
+  private static String meeting(int day, int start, int end) {
+    return String.format(
+        "{\"meet_day\":\"%d\",\"start_time\":\"%d\",\"end_time\":\"%d\"}", day, start, end);
+  }
+
   private static Map<String, Object> courseWithMeetingTimes(String json) {
     Map<String, Object> c = new HashMap<>();
     c.put("meetingTimes", json);
@@ -1,42 +1,148 @@
-import { useState } from "react";
-import { useUser, useAuth } from "@clerk/clerk-react";
+import { useEffect, useRef, useState } from "react";
+import { useUser } from "@clerk/clerk-react";
 import "./schedule.css";
 
+type Course = {
+  code: string;
+  title: string;
+  meets: string;
+  writ: boolean;
+};
+
+type GeneratedSchedule = {
+  score: number;
+  courses: Course[];
+};
+
+type Progress = {
+  nodes: number;
+  found: number;
+  bestScore: number;
+  elapsedMs: number;
+};
+
+type Status = "idle" | "running" | "done" | "stopped" | "error";
+
+const SERVER = "http://localhost:3232";
+const TOP_SHOWN = 5;
+const DAYS = ["Mon", "Tue", "Wed", "Thu", "Fri"];
+const DAY_CODES: Record<string, string> = {
+  M: "Mon",
+  T: "Tue",
+  W: "Wed",
+  Th: "Thu",
+  F: "Fri",
+};
+
+/** Splits a meeting string such as "TTh 1-2:20p" into its days and time. */
+function parseMeets(meets: string): { days: string[]; time: string } {
+  const [dayPart, ...rest] = meets.split(" ");
+  const days = (dayPart.match(/Th|M|T|W|F/g) ?? []).map((d) => DAY_CODES[d]);
+  return { days, time: rest.join(" ") };
+}
+
+/** Inserts a schedule into a score-ordered list, keeping only the best few. */
+function insertTop(list: GeneratedSchedule[], s: GeneratedSchedule) {
+  return [...list, s].sort((a, b) => b.score - a.score).slice(0, TOP_SHOWN);
+}
+
 function Schedule() {
   const [concentration, setConcentration] = useState("");
   const [requirements, setRequirements] = useState("");
   const [numCourses, setNumCourses] = useState(4);
-  const [generated, setGenerated] = useState(false);
+  const [status, setStatus] = useState<Status>("idle");
+  const [progress, setProgress] = useState<Progress | null>(null);
+  const [top, setTop] = useState<GeneratedSchedule[]>([]);
+  const [truncated, setTruncated] = useState(false);
+  const [errors, setErrors] = useState<string[]>([]);
+  const source = useRef<EventSource | null>(null);
   const { user } = useUser();
 
-  const handleSubmit = async (e: React.FormEvent) => {
+  // Close the stream if the page is left mid-search, so the server stops too
+  useEffect(() => () => source.current?.close(), []);
+
+  const handleSubmit = (e: React.FormEvent) => {
     e.preventDefault();
-    try {
-      const response = await fetch(
-        `http://localhost:3232/generateschedule?user=${user?.id}`,
-      );
-      const unsafeMetadata = await response.json();
-      console.log("Unsafe Metadata:", unsafeMetadata);
-      setGenerated(true);
-    } catch (error) {
-      console.error("Error:", error);
-    }
+    // Each listed requirement fills a slot this term, as far as the schedule has room
+    const required = requirements
+      .split(",")
+      .map((c) => c.trim())
+      .filter((c) => c !== "");
+    const params = new URLSearchParams({
+      term: "202420",
+      classes: String(numCourses),
+      taken: "",
+      remaining: required.join(","),
+      needed: "",
+      times: "",
+      depts: "",
+      writ: "false",
+      days: "M,T,W,Th,F",
+      mwf: String(Math.ceil(numCourses / 2)),
+      tth: String(Math.floor(numCourses / 2)),
+      reqThisSem: String(Math.min(required.length, numCourses)),
+    });
+    if (user?.id) params.set("user", user.id);
+
+    setStatus("running");
+    setProgress(null);
+    setTop([]);
+    setTruncated(false);
+    setErrors([]);
+
+    const es = new EventSource(`${SERVER}/generate/stream?${params}`);
+    source.current = es;
+
+    es.addEventListener("progress", (ev) => {
+      setProgress(JSON.parse((ev as MessageEvent).data));
+    });
+    es.addEventListener("top", (ev) => {
+      const s: GeneratedSchedule = JSON.parse((ev as MessageEvent).data);
+      setTop((list) => insertTop(list, s));
+    });
+    es.addEventListener("result", (ev) => {
+      const result = JSON.parse((ev as MessageEvent).data);
+      es.close();
+      if (!result.success) {
+        setErrors(result.errors);
+        setStatus("error");
+        return;
+      }
+      setTop(result.schedules.slice(0, TOP_SHOWN));
+      setTruncated(result.truncated);
+      setStatus("done");
+    });
+    es.addEventListener("error", (ev) => {
+      es.close();
+      const data = (ev as MessageEvent).data;
+      setErrors(data ? JSON.parse(data).errors : ["Lost connection to server"]);
+      setStatus("error");
+    });
+  };
+
+  const handleStop = () => {
+    source.current?.close();
+    setTruncated(true);
+    setStatus("stopped");
   };
 
-  const mockSchedule = [
-    { name: "CSCI0320", day: "Mon", time: "10:00AM" },
-    { name: "MATH0100", day: "Tue", time: "11:00AM" },
-    { name: "PHIL0200", day: "Wed", time: "1:00PM" },
-    { name: "HIST0450", day: "Thu", time: "2:00PM" },
-  ];
+  const best = top[0];
 
   return (
     <div className="schedule-page fade-in">
       <div className="scheduler-container">
-        <h1>Mock Scheduler</h1>
+        <h1>Scheduler</h1>
 
-        {!generated ? (
+        {status === "idle" || status === "error" ? (
           <form className="scheduler-form fade-in" onSubmit={handleSubmit}>
+            {errors.length > 0 && (
+              <ul style={{ color: "#b00020", marginBottom: "1.5rem" }}>
+                {errors.map((err) => (
+                  <li key={err}>{err}</li>
+                ))}
+              </ul>
+            )}
+
             <div style={{ marginBottom: "1.5rem" }}>
               <label htmlFor="concentration">Concentration:</label>
               <br />
@@ -59,47 +165,56 @@ function Schedule() {
                 id="requirements"
                 value={requirements}
                 onChange={(e) => setRequirements(e.target.value)}
-                placeholder="e.g., CSCI0320, MATH0100"
+                placeholder="e.g., CSCI 0320, MATH 0100"
               />
             </div>
 
             <div style={{ marginBottom: "1.5rem" }}>
               <label>Number of Courses:</label>
               <br />
-              <label>
-                <input
-                  type="radio"
-                  value={3}
-                  checked={numCourses === 3}
-                  onChange={() => setNumCourses(3)}
-                />{" "}
-                3
-              </label>{" "}
-              <label>
-                <input
-                  type="radio"
-                  value={4}
-                  checked={numCourses === 4}
-                  onChange={() => setNumCourses(4)}
-                />{" "}
-                4
-              </label>{" "}
-              <label>
-                <input
-                  type="radio"
-                  value={5}
-                  checked={numCourses === 5}
-                  onChange={() => setNumCourses(5)}
-                />{" "}
-                5
-              </label>
+              {[3, 4, 5].map((n) => (
+                <label key={n}>
+                  <input
+                    type="radio"
+                    value={n}
+                    checked={numCourses === n}
+                    onChange={() => setNumCourses(n)}
+                  />{" "}
+                  {n}{" "}
+                </label>
+              ))}
             </div>
 
             <button type="submit">Build Schedule</button>
           </form>
         ) : (
           <div style={{ marginTop: "2rem" }}>
-            <h2>Your Generated Schedule</h2>
+            <h2>
+              {status === "running"
+                ? "Searching…"
+                : truncated
+                  ? "Best Schedule Found"
+                  : "Your Generated Schedule"}
+            </h2>
+
+            {progress && (
+              <p className="search-progress">
+                {progress.nodes.toLocaleString()} options explored ·{" "}
+                {progress.found.toLocaleString()} schedules found · best score{" "}
+                {progress.bestScore} · {(progress.elapsedMs / 1000).toFixed(1)}s
+              </p>
+            )}
+
+            {status === "running" ? (
+              <button type="button" onClick={handleStop}>
+                Stop and use best so far
+              </button>
+            ) : (
+              <button type="button" onClick={() => setStatus("idle")}>
+                New search
+              </button>
+            )}
+
             <div
               style={{
                 display: "grid",
@@ -108,7 +223,7 @@ function Schedule() {
                 marginTop: "2rem",
               }}
             >
-              {["Mon", "Tue", "Wed", "Thu", "Fri"].map((day) => (
+              {DAYS.map((day) => (
                 <div
                   key={day}
                   style={{
@@ -122,21 +237,35 @@ function Schedule() {
                   <h3 style={{ fontSize: "1rem", marginBottom: "0.5rem" }}>
                     {day}
                   </h3>
-                  {mockSchedule
-                    .filter((c) => c.day === day)
+                  {best?.courses
+                    .filter((c) => parseMeets(c.meets).days.includes(day))
                     .map((course) => (
                       <div
-                        key={course.name}
+                        key={course.code}
                         style={{ marginBottom: "0.5rem", textAlign: "center" }}
                       >
-                        <strong>{course.name}</strong>
+                        <strong>{course.code}</strong>
                         <br />
-                        <small>{course.time}</small>
+                        <small>{parseMeets(course.meets).time}</small>
                       </div>
                     ))}
                 </div>
               ))}
             </div>
+
+            {top.length > 1 && (
+              <div style={{ marginTop: "2rem" }}>
+                <h3>Other top schedules</h3>
+                <ol>
+                  {top.slice(1).map((s) => (
+                    <li key={s.courses.map((c) => c.code).join("|")}>
+                      {s.courses.map((c) => c.code).join(", ")} (score{" "}
+                      {s.score})
+                    </li>
+                  ))}
+                </ol>
+              </div>
+            )}
           </div>
         )}
       </div>